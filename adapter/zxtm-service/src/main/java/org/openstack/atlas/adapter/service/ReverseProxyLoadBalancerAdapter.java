@@ -11,6 +11,7 @@ import org.openstack.atlas.service.domain.entities.*;
 import org.openstack.atlas.service.domain.pojos.Hostssubnet;
 import org.openstack.atlas.service.domain.pojos.Stats;
 import org.openstack.atlas.service.domain.pojos.ZeusSslTermination;
+import org.openstack.atlas.service.domain.usage.entities.HostUsage;
 import org.rackspace.stingray.client.exception.StingrayRestClientException;
 import org.rackspace.stingray.client.exception.StingrayRestClientObjectNotFoundException;
 
@@ -176,6 +177,9 @@ public interface ReverseProxyLoadBalancerAdapter {
     Long getHostBytesOut(LoadBalancerEndpointConfiguration config)
             throws RemoteException;
 
+    HostUsage getHostBytesInAndOut(LoadBalancerEndpointConfiguration config, int timeoutMillis)
+            throws RemoteException;
+
     boolean isEndPointWorking(LoadBalancerEndpointConfiguration config)
             throws RemoteException;
 
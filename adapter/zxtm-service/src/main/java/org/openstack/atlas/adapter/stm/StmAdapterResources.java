@@ -12,6 +12,7 @@ import org.openstack.atlas.service.domain.entities.LoadBalancer;
 import org.openstack.atlas.service.domain.entities.UserPages;
 import org.openstack.atlas.adapter.stm.StmAdapterUtils.VSType;
 import org.rackspace.stingray.client.StingrayRestClient;
+import org.rackspace.stingray.client.StingrayRestClientRegistry;
 import org.rackspace.stingray.client.bandwidth.Bandwidth;
 import org.rackspace.stingray.client.exception.StingrayRestClientException;
 import org.rackspace.stingray.client.exception.StingrayRestClientObjectNotFoundException;
@@ -40,8 +41,8 @@ public class StmAdapterResources {
 
     public StingrayRestClient loadSTMRestClient(LoadBalancerEndpointConfiguration config) throws InsufficientRequestException {
         URI restEndpoint = config.getRestEndpoint();
-        LOG.debug("Building new STM client using endpoint: " + restEndpoint);
-        return new StingrayRestClient(restEndpoint, config.getUsername(), config.getPassword());
+        LOG.debug("Using pooled STM client for endpoint: " + restEndpoint);
+        return StingrayRestClientRegistry.getClient(restEndpoint, config.getUsername(), config.getPassword());
     }
 
     public Map<VSType, String> updateAppropriateVirtualServers(LoadBalancerEndpointConfiguration config, ResourceTranslator rt, LoadBalancer loadBalancer)
@@ -12,6 +12,7 @@ import org.openstack.atlas.adapter.service.ReverseProxyLoadBalancerAdapter;
 import org.openstack.atlas.service.domain.entities.*;
 import org.openstack.atlas.service.domain.exceptions.EntityNotFoundException;
 import org.openstack.atlas.service.domain.pojos.*;
+import org.openstack.atlas.service.domain.usage.entities.HostUsage;
 import org.openstack.atlas.service.domain.util.Constants;
 import org.openstack.atlas.util.ca.StringUtils;
 import org.openstack.atlas.util.ca.zeus.ZeusCrtFile;
@@ -3136,6 +3137,21 @@ public class ZxtmAdapterImpl implements ReverseProxyLoadBalancerAdapter {
         return serviceStubs.getSystemStatsBinding().getTotalBytesOut();
     }
 
+    /*
+     * SystemStats has no call that returns both totals, so both are read back
+     * to back over one cached binding and its kept alive connection. Each call
+     * gives up after timeoutMillis, interrupting the thread won't stop a
+     * blocked SOAP read.
+     */
+    @Override
+    public HostUsage getHostBytesInAndOut(LoadBalancerEndpointConfiguration config, int timeoutMillis) throws RemoteException {
+        SystemStatsBindingStub systemStats = getServiceStubs(config).getSystemStatsBinding(timeoutMillis);
+        HostUsage hostUsage = new HostUsage();
+        hostUsage.setBandwidthBytesIn(systemStats.getTotalBytesIn());
+        hostUsage.setBandwidthBytesOut(systemStats.getTotalBytesOut());
+        return hostUsage;
+    }
+
     @Override
     public boolean isEndPointWorking(LoadBalancerEndpointConfiguration config) throws RemoteException {
         try {
@@ -3145,6 +3161,8 @@ public class ZxtmAdapterImpl implements ReverseProxyLoadBalancerAdapter {
         } catch (AxisFault af) {
             LOG.error(String.format("Operation Failure, Full details: %s", Debug.getExtendedStackTrace(af)));
             if (IpHelper.isNetworkConnectionException(af)) {
+                // The host is about to be marked bad, don't hand out its stubs any more
+                ZxtmServiceStubs.invalidate(config.getEndpointUrl());
                 return false;
             }
             throw af;
@@ -2,25 +2,52 @@ package org.openstack.atlas.adapter.zxtm;
 
 import com.zxtm.service.client.*;
 import org.apache.axis.AxisFault;
+import org.apache.axis.AxisProperties;
+import org.apache.axis.EngineConfiguration;
+import org.apache.axis.SimpleTargetedChain;
+import org.apache.axis.client.Service;
+import org.apache.axis.client.Stub;
+import org.apache.axis.components.net.DefaultCommonsHTTPClientProperties;
+import org.apache.axis.configuration.SimpleProvider;
+import org.apache.axis.transport.http.CommonsHTTPSender;
+import org.apache.axis.transport.http.HTTPTransport;
 
 import java.net.URL;
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * Building an Axis binding stub registers every type in its WSDL, and each
+ * stub used to open its own connection per call. Stubs are now cached per
+ * endpoint and credentials and built on first use. They share one pooled
+ * CommonsHTTPSender so calls reuse kept alive connections. Two threads
+ * racing on a missing binding may both build it, either copy works.
+ */
 public class ZxtmServiceStubs {
-
-    private PoolBindingStub zxtmPoolService;
-    private SystemBackupsBindingStub zxtmSystemBackupsService;
-    private SystemMachineInfoBindingStub zxtmSystemMachineInfoService;
-    private TrafficIPGroupsBindingStub zxtmTrafficIpGroupService;
-    private VirtualServerBindingStub zxtmVirtualServerService;
-    private CatalogMonitorBindingStub zxtmMonitorCatalogService;
-    private CatalogRateBindingStub zxtmRateCatalogService;
-    private CatalogPersistenceBindingStub zxtmPersistenceService;
-    private CatalogProtectionBindingStub zxtmProtectionService;
-    private CatalogRuleBindingStub zxtmRuleCatalogService;
-    private SystemStatsBindingStub zxtmSystemStatsService;
-    private ConfExtraBindingStub zxtmConfExtraService;
-    private CatalogSSLCertificatesBindingStub zxtmCatalogSSLCertificatesService;
-    private GlobalSettingsBindingStub zxtmGlobalSettingsService;
+    private static final String MAX_TOTAL_CONNECTIONS = "200";
+    private static final String MAX_CONNECTIONS_PER_HOST = "20";
+    private static final ConcurrentMap<String, ZxtmServiceStubs> registry = new ConcurrentHashMap<String, ZxtmServiceStubs>();
+    private static final EngineConfiguration transport = buildTransport();
+
+    private URL endpoint;
+    private String username;
+    private String password;
+    private volatile PoolBindingStub zxtmPoolService;
+    private volatile SystemBackupsBindingStub zxtmSystemBackupsService;
+    private volatile SystemMachineInfoBindingStub zxtmSystemMachineInfoService;
+    private volatile TrafficIPGroupsBindingStub zxtmTrafficIpGroupService;
+    private volatile VirtualServerBindingStub zxtmVirtualServerService;
+    private volatile CatalogMonitorBindingStub zxtmMonitorCatalogService;
+    private volatile CatalogRateBindingStub zxtmRateCatalogService;
+    private volatile CatalogPersistenceBindingStub zxtmPersistenceService;
+    private volatile CatalogProtectionBindingStub zxtmProtectionService;
+    private volatile CatalogRuleBindingStub zxtmRuleCatalogService;
+    private volatile SystemStatsBindingStub zxtmSystemStatsService;
+    private volatile ConfExtraBindingStub zxtmConfExtraService;
+    private volatile CatalogSSLCertificatesBindingStub zxtmCatalogSSLCertificatesService;
+    private volatile GlobalSettingsBindingStub zxtmGlobalSettingsService;
+    private final ConcurrentMap<Integer, SystemStatsBindingStub> timedSystemStatsServices = new ConcurrentHashMap<Integer, SystemStatsBindingStub>();
 
     public ZxtmServiceStubs(PoolBindingStub zxtmPoolService,
             SystemBackupsBindingStub zxtmSystemBackupsService, SystemMachineInfoBindingStub zxtmSystemMachineInfoService,
@@ -46,125 +73,185 @@ public class ZxtmServiceStubs {
         this.zxtmGlobalSettingsService = zxtmGlobalSettingsService;
     }
 
-    public static ZxtmServiceStubs getServiceStubs(URL endpoint, String username, String password) throws AxisFault {
-        PoolBindingStub zxtmPoolService = new PoolBindingStub(endpoint, null);
-        zxtmPoolService.setUsername(username);
-        zxtmPoolService.setPassword(password);
-
-        SystemBackupsBindingStub zxtmSystemBackupsService = new SystemBackupsBindingStub(endpoint, null);
-        zxtmSystemBackupsService.setUsername(username);
-        zxtmSystemBackupsService.setPassword(password);
-
-        SystemMachineInfoBindingStub zxtmSystemMachineInfoService = new SystemMachineInfoBindingStub(endpoint, null);
-        zxtmSystemMachineInfoService.setUsername(username);
-        zxtmSystemMachineInfoService.setPassword(password);
-
-        TrafficIPGroupsBindingStub zxtmTrafficIpGroupService = new TrafficIPGroupsBindingStub(endpoint, null);
-        zxtmTrafficIpGroupService.setUsername(username);
-        zxtmTrafficIpGroupService.setPassword(password);
-
-        VirtualServerBindingStub zxtmVirtualServerService = new VirtualServerBindingStub(endpoint, null);
-        zxtmVirtualServerService.setUsername(username);
-        zxtmVirtualServerService.setPassword(password);
-
-        CatalogMonitorBindingStub zxtmMonitorCatalogService = new CatalogMonitorBindingStub(endpoint, null);
-        zxtmMonitorCatalogService.setUsername(username);
-        zxtmMonitorCatalogService.setPassword(password);
-
-        CatalogPersistenceBindingStub zxtmMonitorPersistenceService = new CatalogPersistenceBindingStub(endpoint, null);
-        zxtmMonitorPersistenceService.setUsername(username);
-        zxtmMonitorPersistenceService.setPassword(password);
-
-        CatalogProtectionBindingStub zxtmMonitorProtectionService = new CatalogProtectionBindingStub(endpoint, null);
-        zxtmMonitorProtectionService.setUsername(username);
-        zxtmMonitorProtectionService.setPassword(password);
-
-        CatalogRateBindingStub zxtmRateCatalogService = new CatalogRateBindingStub(endpoint, null);
-        zxtmRateCatalogService.setUsername(username);
-        zxtmRateCatalogService.setPassword(password);
+    private ZxtmServiceStubs(URL endpoint, String username, String password) {
+        this.endpoint = endpoint;
+        this.username = username;
+        this.password = password;
+    }
 
-        CatalogRuleBindingStub zxtmRuleCatalogService = new CatalogRuleBindingStub(endpoint, null);
-        zxtmRuleCatalogService.setUsername(username);
-        zxtmRuleCatalogService.setPassword(password);
+    /**
+     * Stubs are kept per endpoint and credentials and reused by every caller,
+     * each binding is only built the first time it is asked for.
+     */
+    public static ZxtmServiceStubs getServiceStubs(URL endpoint, String username, String password) throws AxisFault {
+        String key = String.format("%s|%s|%s", endpoint.toExternalForm(), username, password);
+        ZxtmServiceStubs stubs = registry.get(key);
+        if (stubs == null) {
+            stubs = new ZxtmServiceStubs(endpoint, username, password);
+            ZxtmServiceStubs raced = registry.putIfAbsent(key, stubs);
+            if (raced != null) {
+                stubs = raced;
+            }
+        }
+        return stubs;
+    }
 
-        SystemStatsBindingStub zxtmSystemStatsService = new SystemStatsBindingStub(endpoint, null);
-        zxtmSystemStatsService.setUsername(username);
-        zxtmSystemStatsService.setPassword(password);
+    /**
+     * Forget the stubs for an endpoint, the next caller builds new ones.
+     */
+    public static void invalidate(URL endpoint) {
+        String url = endpoint.toExternalForm();
+        for (Map.Entry<String, ZxtmServiceStubs> entry : registry.entrySet()) {
+            if (url.equals(entry.getValue().endpoint.toExternalForm())) {
+                registry.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
 
-        ConfExtraBindingStub zxtmConfExtraService = new ConfExtraBindingStub(endpoint, null);
-        zxtmConfExtraService.setUsername(username);
-        zxtmConfExtraService.setPassword(password);
+    public static void invalidateAll() {
+        registry.clear();
+    }
 
-        CatalogSSLCertificatesBindingStub zxtmCatalogSSLCertificatesService = new CatalogSSLCertificatesBindingStub(endpoint, null);
-        zxtmCatalogSSLCertificatesService.setUsername(username);
-        zxtmCatalogSSLCertificatesService.setPassword(password);
+    private static EngineConfiguration buildTransport() {
+        setDefault(DefaultCommonsHTTPClientProperties.MAXIMUM_TOTAL_CONNECTIONS_PROPERTY_KEY, MAX_TOTAL_CONNECTIONS);
+        setDefault(DefaultCommonsHTTPClientProperties.MAXIMUM_CONNECTIONS_PER_HOST_PROPERTY_KEY, MAX_CONNECTIONS_PER_HOST);
+        SimpleProvider config = new SimpleProvider();
+        SimpleTargetedChain transport = new SimpleTargetedChain(new CommonsHTTPSender());
+        config.deployTransport(HTTPTransport.DEFAULT_TRANSPORT_NAME, transport);
+        return config;
+    }
 
-        GlobalSettingsBindingStub zxtmGlobalSettingsService = new GlobalSettingsBindingStub(endpoint, null);
-        zxtmGlobalSettingsService.setUsername(username);
-        zxtmGlobalSettingsService.setPassword(password);
+    private static void setDefault(String key, String value) {
+        if (AxisProperties.getProperty(key) == null) {
+            AxisProperties.setProperty(key, value);
+        }
+    }
 
-        return new ZxtmServiceStubs(zxtmPoolService,
-                zxtmSystemBackupsService, zxtmSystemMachineInfoService,
-                zxtmTrafficIpGroupService, zxtmVirtualServerService,
-                zxtmMonitorCatalogService, zxtmMonitorPersistenceService,
-                zxtmMonitorProtectionService, zxtmRuleCatalogService,
-                zxtmSystemStatsService, zxtmRateCatalogService, zxtmConfExtraService,
-                zxtmCatalogSSLCertificatesService, zxtmGlobalSettingsService);
+    private <T extends Stub> T createStub(Class<T> stubClass) {
+        try {
+            // Each stub registers its type mappings with its Service, so they get one each over the shared transport
+            T stub = stubClass.getConstructor(URL.class, javax.xml.rpc.Service.class).newInstance(endpoint, new Service(transport));
+            stub.setUsername(username);
+            stub.setPassword(password);
+            return stub;
+        } catch (Exception e) {
+            throw new IllegalStateException(String.format("Unable to build %s for %s", stubClass.getSimpleName(), endpoint), e);
+        }
     }
 
     public PoolBindingStub getPoolBinding() {
+        if (zxtmPoolService == null) {
+            zxtmPoolService = createStub(PoolBindingStub.class);
+        }
         return zxtmPoolService;
     }
 
     public SystemBackupsBindingStub getSystemBackupsBinding() {
+        if (zxtmSystemBackupsService == null) {
+            zxtmSystemBackupsService = createStub(SystemBackupsBindingStub.class);
+        }
         return zxtmSystemBackupsService;
     }
 
     public SystemMachineInfoBindingStub getSystemMachineInfoBinding() {
+        if (zxtmSystemMachineInfoService == null) {
+            zxtmSystemMachineInfoService = createStub(SystemMachineInfoBindingStub.class);
+        }
         return zxtmSystemMachineInfoService;
     }
 
     public TrafficIPGroupsBindingStub getTrafficIpGroupBinding() {
+        if (zxtmTrafficIpGroupService == null) {
+            zxtmTrafficIpGroupService = createStub(TrafficIPGroupsBindingStub.class);
+        }
         return zxtmTrafficIpGroupService;
     }
 
     public VirtualServerBindingStub getVirtualServerBinding() {
+        if (zxtmVirtualServerService == null) {
+            zxtmVirtualServerService = createStub(VirtualServerBindingStub.class);
+        }
         return zxtmVirtualServerService;
     }
 
     public CatalogMonitorBindingStub getMonitorBinding() {
+        if (zxtmMonitorCatalogService == null) {
+            zxtmMonitorCatalogService = createStub(CatalogMonitorBindingStub.class);
+        }
         return zxtmMonitorCatalogService;
     }
 
     public CatalogPersistenceBindingStub getPersistenceBinding() {
+        if (zxtmPersistenceService == null) {
+            zxtmPersistenceService = createStub(CatalogPersistenceBindingStub.class);
+        }
         return zxtmPersistenceService;
     }
 
     public CatalogProtectionBindingStub getProtectionBinding() {
+        if (zxtmProtectionService == null) {
+            zxtmProtectionService = createStub(CatalogProtectionBindingStub.class);
+        }
         return zxtmProtectionService;
     }
 
     public SystemStatsBindingStub getSystemStatsBinding() {
+        if (zxtmSystemStatsService == null) {
+            zxtmSystemStatsService = createStub(SystemStatsBindingStub.class);
+        }
         return zxtmSystemStatsService;
     }
 
+    /**
+     * A SystemStats binding of its own whose calls give up after timeoutMillis.
+     * Setting the timeout on the shared binding would change it for every
+     * other stats caller on the endpoint, so there is one per timeout instead.
+     */
+    public SystemStatsBindingStub getSystemStatsBinding(int timeoutMillis) {
+        SystemStatsBindingStub stub = timedSystemStatsServices.get(timeoutMillis);
+        if (stub == null) {
+            stub = createStub(SystemStatsBindingStub.class);
+            stub.setTimeout(timeoutMillis);
+            SystemStatsBindingStub raced = timedSystemStatsServices.putIfAbsent(timeoutMillis, stub);
+            if (raced != null) {
+                stub = raced;
+            }
+        }
+        return stub;
+    }
+
     public CatalogRuleBindingStub getZxtmRuleCatalogService() {
+        if (zxtmRuleCatalogService == null) {
+            zxtmRuleCatalogService = createStub(CatalogRuleBindingStub.class);
+        }
         return zxtmRuleCatalogService;
     }
 
     public CatalogRateBindingStub getZxtmRateCatalogService() {
+        if (zxtmRateCatalogService == null) {
+            zxtmRateCatalogService = createStub(CatalogRateBindingStub.class);
+        }
         return zxtmRateCatalogService;
     }
 
     public ConfExtraBindingStub getZxtmConfExtraBinding() {
+        if (zxtmConfExtraService == null) {
+            zxtmConfExtraService = createStub(ConfExtraBindingStub.class);
+        }
         return zxtmConfExtraService;
     }
 
     public CatalogSSLCertificatesBindingStub getZxtmCatalogSSLCertificatesBinding() {
+        if (zxtmCatalogSSLCertificatesService == null) {
+            zxtmCatalogSSLCertificatesService = createStub(CatalogSSLCertificatesBindingStub.class);
+        }
         return zxtmCatalogSSLCertificatesService;
     }
 
     public GlobalSettingsBindingStub getGlobalSettingsBinding() {
+        if (zxtmGlobalSettingsService == null) {
+            zxtmGlobalSettingsService = createStub(GlobalSettingsBindingStub.class);
+        }
         return zxtmGlobalSettingsService;
     }
 }
@@ -0,0 +1,44 @@
+package org.openstack.atlas.adapter.zxtm;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URL;
+
+public class ZxtmServiceStubsTest {
+    private static final String ENDPOINT = "https://10.0.0.1:9090/soap";
+
+    @After
+    public void tearDown() {
+        ZxtmServiceStubs.invalidateAll();
+    }
+
+    @Test
+    public void shouldReuseStubsForSameEndpointAndCredentials() throws Exception {
+        ZxtmServiceStubs stubs = ZxtmServiceStubs.getServiceStubs(new URL(ENDPOINT), "admin", "secret");
+
+        Assert.assertSame(stubs, ZxtmServiceStubs.getServiceStubs(new URL(ENDPOINT), "admin", "secret"));
+        Assert.assertNotSame(stubs, ZxtmServiceStubs.getServiceStubs(new URL(ENDPOINT), "admin", "other"));
+    }
+
+    @Test
+    public void shouldBuildEachBindingOnceWithCredentials() throws Exception {
+        ZxtmServiceStubs stubs = ZxtmServiceStubs.getServiceStubs(new URL(ENDPOINT), "admin", "secret");
+
+        Assert.assertSame(stubs.getPoolBinding(), stubs.getPoolBinding());
+        Assert.assertEquals("admin", stubs.getVirtualServerBinding().getUsername());
+        Assert.assertEquals("secret", stubs.getVirtualServerBinding().getPassword());
+    }
+
+    @Test
+    public void shouldDropStubsForInvalidatedEndpoint() throws Exception {
+        ZxtmServiceStubs stubs = ZxtmServiceStubs.getServiceStubs(new URL(ENDPOINT), "admin", "secret");
+        ZxtmServiceStubs otherHost = ZxtmServiceStubs.getServiceStubs(new URL("https://10.0.0.2:9090/soap"), "admin", "secret");
+
+        ZxtmServiceStubs.invalidate(new URL(ENDPOINT));
+
+        Assert.assertNotSame(stubs, ZxtmServiceStubs.getServiceStubs(new URL(ENDPOINT), "admin", "secret"));
+        Assert.assertSame(otherHost, ZxtmServiceStubs.getServiceStubs(new URL("https://10.0.0.2:9090/soap"), "admin", "secret"));
+    }
+}
@@ -2,6 +2,7 @@ package org.openstack.atlas.api.async;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openstack.atlas.api.integration.LoadBalancerMessageCodec;
 import org.openstack.atlas.api.integration.ReverseProxyLoadBalancerService;
 import org.openstack.atlas.api.integration.ReverseProxyLoadBalancerStmService;
 import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
@@ -164,6 +165,10 @@ public abstract class BaseListener implements MessageListener {
     }
 
     protected LoadBalancer getLoadbalancerFromMessage(Message message) throws JMSException {
+        if (message instanceof BytesMessage) {
+            return LoadBalancerMessageCodec.fromMessage((BytesMessage) message);
+        }
+        // Sent by an api node from before the binary codec
         ObjectMessage object = (ObjectMessage) message;
         return (LoadBalancer) object.getObject();
     }
@@ -194,7 +199,7 @@ public abstract class BaseListener implements MessageListener {
 
             @Override
             public Message createMessage(Session session) throws JMSException {
-                ObjectMessage response = session.createObjectMessage(loadBalancer);
+                Message response = LoadBalancerMessageCodec.toMessage(session, loadBalancer, LoadBalancerMessageCodec.isEnabled(configuration));
                 response.setJMSCorrelationID(message.getJMSCorrelationID());
                 response.setObjectProperty("operationName", operationName);
                 return response;
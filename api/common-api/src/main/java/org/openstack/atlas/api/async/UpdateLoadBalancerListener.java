@@ -9,7 +9,6 @@ import org.openstack.atlas.service.domain.exceptions.EntityNotFoundException;
 import org.openstack.atlas.util.converters.StringConverter;
 
 import javax.jms.Message;
-import javax.jms.ObjectMessage;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,8 +30,7 @@ public class UpdateLoadBalancerListener extends BaseListener {
 
         List<String> updateStrList = new ArrayList<String>();
 
-        ObjectMessage object = (ObjectMessage) message;
-        LoadBalancer queueLb = (LoadBalancer) object.getObject();
+        LoadBalancer queueLb = getLoadbalancerFromMessage(message);
         LoadBalancer dbLoadBalancer;
         StringBuilder atomSummary = new StringBuilder("Load balancer successfully updated with ");
 
@@ -10,14 +10,32 @@ import org.openstack.identity.client.client.IdentityClient;
 import org.openstack.identity.client.fault.IdentityFault;
 import org.openstack.identity.client.token.AuthenticateResponse;
 
+import javax.xml.datatype.XMLGregorianCalendar;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
+/*
+ * The service admin token is kept and reused until shortly before identity
+ * says it expires, so a cache miss costs one identity call instead of two.
+ * Threads validating the same token for the same tenant at the same time
+ * share one call to identity.
+ */
 public class AuthTokenValidator {
     private static final Log LOG = LogFactory.getLog(AuthTokenValidator.class);
+    private static final long DEFAULT_REFRESH_AHEAD_SECS = 300;
+    private static final long UNKNOWN_EXPIRY_SECS = 900;
 
     public IdentityClient identityClient;
     private Configuration configuration;
+    private final Object adminLock = new Object();
+    private final ConcurrentMap<String, FutureTask<AuthenticateResponse>> inFlight = new ConcurrentHashMap<String, FutureTask<AuthenticateResponse>>();
+    private volatile AuthenticateResponse admin;
+    private volatile long adminRefreshAt;
 
     public AuthTokenValidator(Configuration cfg) throws MalformedURLException, URISyntaxException, IdentityFault {
         this.configuration = cfg;
@@ -33,9 +51,125 @@ public class AuthTokenValidator {
         }
     }
 
-    public AuthenticateResponse validate(String userToken, String tenantId) throws URISyntaxException, IdentityFault {
-        LOG.info("Within validate ... about to call client authenticate...");
-        AuthenticateResponse admin = identityClient.authenticateUsernamePassword(configuration.getString(PublicApiServiceConfigurationKeys.identity_user), configuration.getString(PublicApiServiceConfigurationKeys.identity_pass));
-        return identityClient.validateToken(admin.getToken().getId(), userToken, tenantId);
+    public AuthenticateResponse validate(final String userToken, final String tenantId) throws URISyntaxException, IdentityFault {
+        String key = tenantId + ":" + userToken;
+        FutureTask<AuthenticateResponse> task = new FutureTask<AuthenticateResponse>(new Callable<AuthenticateResponse>() {
+            @Override
+            public AuthenticateResponse call() throws Exception {
+                return validateWithAdminToken(userToken, tenantId);
+            }
+        });
+        FutureTask<AuthenticateResponse> running = inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+            running = task;
+        } else {
+            LOG.debug(String.format("Joining in flight validation for tenant %s", tenantId));
+        }
+        return await(running);
+    }
+
+    private AuthenticateResponse validateWithAdminToken(String userToken, String tenantId) throws URISyntaxException, IdentityFault {
+        LOG.info("Within validate ... about to call client validate...");
+        AuthenticateResponse adminToken = admin;
+        boolean fresh = false;
+        if (adminToken == null || System.currentTimeMillis() >= adminRefreshAt) {
+            adminToken = refreshAdminToken(adminToken);
+            fresh = true;
+        }
+        try {
+            return identityClient.validateToken(adminToken.getToken().getId(), userToken, tenantId);
+        } catch (IdentityFault fault) {
+            if (fault.code != 401 || fresh) {
+                throw fault;
+            }
+            // The admin token was revoked or expired early, get a new one and try once more
+            LOG.warn("Service admin token rejected by identity, re-authenticating");
+            adminToken = refreshAdminToken(adminToken);
+            return identityClient.validateToken(adminToken.getToken().getId(), userToken, tenantId);
+        }
+    }
+
+    private AuthenticateResponse refreshAdminToken(AuthenticateResponse stale) throws URISyntaxException, IdentityFault {
+        synchronized (adminLock) {
+            AuthenticateResponse current = admin;
+            if (current != null && current != stale && System.currentTimeMillis() < adminRefreshAt) {
+                return current; // Another thread already refreshed it
+            }
+            LOG.info("Authenticating service admin against identity");
+            current = identityClient.authenticateUsernamePassword(configuration.getString(PublicApiServiceConfigurationKeys.identity_user), configuration.getString(PublicApiServiceConfigurationKeys.identity_pass));
+            long expiresIn = secondsUntilExpiry(current);
+            if (expiresIn < 0) {
+                expiresIn = UNKNOWN_EXPIRY_SECS;
+            }
+            long refreshIn = Math.max(0, expiresIn - getRefreshAheadSecs());
+            adminRefreshAt = System.currentTimeMillis() + refreshIn * 1000;
+            admin = current;
+            return current;
+        }
+    }
+
+    /**
+     * @param response: an authenticate or validate response from identity
+     * @return seconds left before the token in the response expires, or -1
+     * when identity did not say
+     */
+    public static long secondsUntilExpiry(AuthenticateResponse response) {
+        if (response == null || response.getToken() == null) {
+            return -1;
+        }
+        XMLGregorianCalendar expires = response.getToken().getExpires();
+        if (expires == null) {
+            return -1;
+        }
+        long millis = expires.toGregorianCalendar().getTimeInMillis() - System.currentTimeMillis();
+        return Math.max(0, millis / 1000);
+    }
+
+    private long getRefreshAheadSecs() {
+        try {
+            if (configuration.hasKeys(PublicApiServiceConfigurationKeys.identity_admin_token_refresh_ahead_secs)) {
+                return Long.parseLong(configuration.getString(PublicApiServiceConfigurationKeys.identity_admin_token_refresh_ahead_secs));
+            }
+        } catch (Exception e) {
+            LOG.warn(String.format("Bad %s, using %d", PublicApiServiceConfigurationKeys.identity_admin_token_refresh_ahead_secs, DEFAULT_REFRESH_AHEAD_SECS));
+        }
+        return DEFAULT_REFRESH_AHEAD_SECS;
+    }
+
+    private static AuthenticateResponse await(FutureTask<AuthenticateResponse> task) throws URISyntaxException, IdentityFault {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IdentityFault) {
+                throw (IdentityFault) cause;
+            }
+            if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 }
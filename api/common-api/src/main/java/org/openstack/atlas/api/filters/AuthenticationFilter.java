@@ -19,6 +19,7 @@ import org.openstack.atlas.util.b64aes.PaddingException;
 import org.openstack.atlas.util.simplecache.CacheEntry;
 import org.openstack.atlas.util.simplecache.SimpleCache;
 import org.openstack.identity.client.fault.IdentityFault;
+import org.openstack.identity.client.token.AuthenticateResponse;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
@@ -187,19 +188,22 @@ public class AuthenticationFilter implements Filter {
         try {
             LOG.debug(String.format("Before calling validate on account: %s", accountId));
             String accountStr = String.format("%d", accountId);
-            CacheEntry<AuthInfo> ce = userCache.getEntry(accountStr);
+            // Users of the same account carry different tokens, so cache on both
+            String cacheKey = accountStr + ":" + authToken;
+            CacheEntry<AuthInfo> ce = userCache.getEntry(cacheKey);
             AuthInfo authInfo = null;
 
             if (ce == null || ce.isExpired()) {
-                userCache.remove(accountStr);
+                userCache.remove(cacheKey);
             } else {
                 authInfo = ce.getVal();
                 LOG.debug(String.format("Cache hit %s expires in %d secs", accountStr, ce.expiresIn()));
             }
 
-            if (authInfo == null || !authInfo.getAuthToken().equals(authToken)) {
+            if (authInfo == null) {
                 LOG.info(String.format("Attempting to contact the auth service for account %s", accountId));
-                username = authTokenValidator.validate(authToken, String.valueOf(accountId)).getUser().getName();
+                AuthenticateResponse response = authTokenValidator.validate(authToken, String.valueOf(accountId));
+                username = response.getUser().getName();
                 if (username == null) {
                     sendUnauthorizedResponse(httpServletRequest, httpServletResponse, INVALID_TOKEN_MESSAGE);
                     return;
@@ -208,8 +212,14 @@ public class AuthenticationFilter implements Filter {
                 LOG.info(String.format("Successfully retrieved users info from the auth service for account: %s returned username: %s", accountId, username));
                 authInfo = new AuthInfo(username, authToken);
 
-                LOG.debug(String.format("insert %s-%s into userCache", accountStr, username));
-                userCache.put(accountStr, authInfo);
+                // Never trust a token past the expiry identity gave it
+                long ttl = userCache.getTtl();
+                long expiresIn = AuthTokenValidator.secondsUntilExpiry(response);
+                if (expiresIn >= 0 && (ttl < 0 || expiresIn < ttl)) {
+                    ttl = expiresIn;
+                }
+                LOG.debug(String.format("insert %s-%s into userCache for %d secs", accountStr, username, ttl));
+                userCache.put(cacheKey, authInfo, ttl);
             } else {
                 username = authInfo.getUserName();
             }
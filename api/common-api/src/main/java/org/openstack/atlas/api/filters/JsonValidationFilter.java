@@ -1,8 +1,14 @@
 package org.openstack.atlas.api.filters;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.jaxrs.cfg.EndpointConfigBase;
+import com.fasterxml.jackson.jaxrs.cfg.ObjectWriterInjector;
+import com.fasterxml.jackson.jaxrs.cfg.ObjectWriterModifier;
 import org.openstack.atlas.api.filters.helpers.AcceptTypes;
 import org.openstack.atlas.api.filters.helpers.MediaType;
-import org.openstack.atlas.api.filters.wrappers.BufferedRequestWrapper;
+import org.openstack.atlas.api.filters.wrappers.StreamingRequestWrapper;
 import org.openstack.atlas.api.helpers.reflection.UriClassDiscover;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -10,11 +16,20 @@ import org.apache.commons.logging.LogFactory;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MultivaluedMap;
 import java.io.IOException;
 
 public class JsonValidationFilter extends ValidationFilter {
 
     private final Log LOG = LogFactory.getLog(JsonValidationFilter.class);
+    private static final ObjectWriterModifier PRETTY_PRINT = new ObjectWriterModifier() {
+        @Override
+        public ObjectWriter modify(EndpointConfigBase<?> endpoint, MultivaluedMap<String, Object> responseHeaders,
+                Object valueToWrite, ObjectWriter w, JsonGenerator g) throws IOException {
+            g.useDefaultPrettyPrinter();
+            return w.with(SerializationFeature.INDENT_OUTPUT);
+        }
+    };
 
     @Override
     public void init(FilterConfig config) throws ServletException {
@@ -23,13 +38,24 @@ public class JsonValidationFilter extends ValidationFilter {
 
     @Override
     public void doFilter(ServletRequest sreq, ServletResponse sresp, FilterChain fc) throws IOException, ServletException {
+        // Responses are compact unless a human asked to read them
+        if (isHeaderTrue((HttpServletRequest) sreq, "pretty-json")) {
+            ObjectWriterInjector.set(PRETTY_PRINT);
+        }
+        try {
+            validate(sreq, sresp, fc);
+        } finally {
+            ObjectWriterInjector.getAndClear();
+        }
+    }
+
+    private void validate(ServletRequest sreq, ServletResponse sresp, FilterChain fc) throws IOException, ServletException {
         Class classForUri;
         Object somePojo = null;
         HttpServletRequest hreq = (HttpServletRequest) sreq;
         HttpServletResponse hresp = (HttpServletResponse) sresp;
         String accept = hreq.getHeader("Accept");
-        BufferedRequestWrapper breq = new BufferedRequestWrapper(hreq);
-        String body = readFromInputStream(breq.getInputStream());
+        StreamingRequestWrapper breq = new StreamingRequestWrapper(hreq);
         String method = hreq.getMethod();
         MediaType contentMedia = MediaType.newInstance(hreq.getContentType());
         String overrideAccept;
@@ -55,7 +81,7 @@ public class JsonValidationFilter extends ValidationFilter {
 
         if (method == null
                 || containsMethod(method, "GET", "DELETE")
-                || body.length() == 0) {
+                || breq.isBodyEmpty()) {
             fc.doFilter(breq, sresp);
             return;
         }
@@ -74,7 +100,8 @@ public class JsonValidationFilter extends ValidationFilter {
             return;
         }
         try {
-            somePojo = mapper.readValue(body, classForUri);
+            breq.record();
+            somePojo = mapper.readValue(breq.getInputStream(), classForUri);
         } catch (Exception ex) {
             String errMsg = "JSON does not match the expected schema";
             String logMsg = getExtendedStackTrace(ex);
@@ -90,6 +117,9 @@ public class JsonValidationFilter extends ValidationFilter {
                 return;
             }
         }
+        // The resource may still want the body read by another provider
+        breq.rewind();
+        setValidatedEntity(breq, somePojo);
         fc.doFilter(breq, sresp);
     }
 
@@ -0,0 +1,49 @@
+package org.openstack.atlas.api.filters;
+
+import javax.annotation.Priority;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.APPLICATION_XML;
+
+/*
+ * Hands resources the object the xml or json validation filter already
+ * parsed out of the request body, so the body is only parsed once. When the
+ * filter left nothing behind, or left an object of another type, the normal
+ * jaxb and json providers read the body instead. The filters rewind the
+ * body after parsing it, so those providers still see all of it.
+ */
+@Provider
+@Priority(1)
+@Consumes({APPLICATION_XML, APPLICATION_JSON})
+public class ValidatedEntityProvider implements MessageBodyReader<Object> {
+
+    @Context
+    private HttpServletRequest request;
+
+    @Override
+    public boolean isReadable(Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType) {
+        Object entity = ValidationFilter.getValidatedEntity(request);
+        return entity != null && aClass.isInstance(entity);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> aClass, Type type, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, String> headers, InputStream inputStream) {
+        Object entity = ValidationFilter.getValidatedEntity(request);
+        request.removeAttribute(ValidationFilter.VALIDATED_ENTITY);
+        return entity;
+    }
+
+    public void setRequest(HttpServletRequest request) {
+        this.request = request;
+    }
+}
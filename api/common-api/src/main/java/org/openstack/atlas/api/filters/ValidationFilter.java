@@ -31,6 +31,7 @@ import org.xml.sax.SAXParseException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -64,6 +65,7 @@ public class ValidationFilter implements Filter {
     protected Schema fSchema;
     protected JsonObjectMapper mapper;
     public static final int BUFFSIZE = 16384;
+    public static final String VALIDATED_ENTITY = "org.openstack.atlas.api.filters.validatedEntity";
     public static final int BADREQ = 400;
     public static final String dashline = "--------------------------------------\n";
     public static final Pattern jsonUriPattern = Pattern.compile(".*\\.json$", Pattern.CASE_INSENSITIVE);
@@ -171,14 +173,17 @@ public class ValidationFilter implements Filter {
     }
 
     public static Object xml2pojo(String xml, JAXBContext ctx, Schema schema, XmlValidationExceptionHandler errHandler) throws JAXBException, UnsupportedEncodingException, IOException {
+        return xml2pojo(new ByteArrayInputStream(xml.getBytes("UTF-8")), ctx, schema, errHandler);
+    }
+
+    public static Object xml2pojo(InputStream xml, JAXBContext ctx, Schema schema, XmlValidationExceptionHandler errHandler) throws JAXBException, IOException {
         Object out = null;
         XMLInputFactory xif = XMLInputFactory.newFactory();
         xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
         xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
         XMLStreamReader xsr;
-        ByteArrayInputStream bytes = new ByteArrayInputStream(xml.getBytes("UTF-8"));
         try {
-            xsr = xif.createXMLStreamReader(bytes);
+            xsr = xif.createXMLStreamReader(xml);
         } catch (Exception ex) {
             Logger.getLogger(ValidationFilter.class.getName()).log(Level.SEVERE, null, ex);
             throw new IOException("Could not create XMLStreamReader", ex);
@@ -204,6 +209,25 @@ public class ValidationFilter implements Filter {
 
     }
 
+    // The request body parsed and validated by a filter, for ValidatedEntityProvider to hand on
+    public static Object getValidatedEntity(HttpServletRequest hreq) {
+        return hreq == null ? null : hreq.getAttribute(VALIDATED_ENTITY);
+    }
+
+    protected static void setValidatedEntity(HttpServletRequest hreq, Object entity) {
+        setValidatedEntity(hreq, entity, Object.class);
+    }
+
+    // Leaves nothing behind unless the parsed body is of the expected class
+    protected static void setValidatedEntity(HttpServletRequest hreq, Object entity, Class expected) {
+        if (entity instanceof JAXBElement) {
+            entity = ((JAXBElement) entity).getValue();
+        }
+        if (entity != null && expected.isInstance(entity)) {
+            hreq.setAttribute(VALIDATED_ENTITY, entity);
+        }
+    }
+
     protected String readFromInputStream(InputStream is) throws IOException {
         String out;
         StringBuilder sb = new StringBuilder(PAGESIZE);
@@ -3,7 +3,8 @@ package org.openstack.atlas.api.filters;
 import org.openstack.atlas.api.filters.helpers.AcceptTypes;
 import org.openstack.atlas.api.filters.helpers.MediaType;
 import org.openstack.atlas.api.filters.helpers.XmlValidationExceptionHandler;
-import org.openstack.atlas.api.filters.wrappers.BufferedRequestWrapper;
+import org.openstack.atlas.api.filters.wrappers.StreamingRequestWrapper;
+import org.openstack.atlas.api.helpers.reflection.UriClassDiscover;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,12 +30,11 @@ public class XmlValidationFilter extends ValidationFilter {
     @Override
     public void doFilter(ServletRequest sreq, ServletResponse sresp, FilterChain fc) throws IOException, ServletException {
         XmlValidationExceptionHandler errHandler;
-        Object somePojo;
+        Object somePojo = null;
         HttpServletRequest hreq = (HttpServletRequest) sreq;
         HttpServletResponse hresp = (HttpServletResponse) sresp;
         String accept = hreq.getHeader("Accept");
-        BufferedRequestWrapper breq = new BufferedRequestWrapper(hreq);
-        String body = readFromInputStream(breq.getInputStream());
+        StreamingRequestWrapper breq = new StreamingRequestWrapper(hreq);
         String method = hreq.getMethod();
         MediaType contentMedia = MediaType.newInstance(hreq.getContentType());
         String overideAccept;
@@ -60,7 +60,7 @@ public class XmlValidationFilter extends ValidationFilter {
 
         if (method == null
                 || containsMethod(method, "GET", "DELETE")
-                || body.length() == 0) {
+                || breq.isBodyEmpty()) {
             fc.doFilter(breq, sresp);
             return;
         }
@@ -71,7 +71,8 @@ public class XmlValidationFilter extends ValidationFilter {
         }
 
         try {
-            somePojo = xml2pojo(body, pCtx, pSchema, errHandler);
+            breq.record();
+            somePojo = xml2pojo(breq.getInputStream(), pCtx, pSchema, errHandler);
 
             if (!errHandler.getErrList().isEmpty()) {
                 if (acceptType.equalsIgnoreCase(XML)) {
@@ -108,6 +109,13 @@ public class XmlValidationFilter extends ValidationFilter {
             }
         }
 
+        // The resource may still want the body read by another provider
+        breq.rewind();
+        // Only hand on what this uri is known to take, same as the json filter
+        Class classForUri = UriClassDiscover.getClassForUri(hreq.getRequestURI());
+        if (classForUri != null) {
+            setValidatedEntity(breq, somePojo, classForUri);
+        }
         fc.doFilter(breq, sresp);
     }
 }
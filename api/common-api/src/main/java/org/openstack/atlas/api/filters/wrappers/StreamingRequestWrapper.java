@@ -0,0 +1,130 @@
+package org.openstack.atlas.api.filters.wrappers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/*
+ * Hands the request body on as a stream instead of copying it into memory.
+ * Only leading whitespace is read ahead, so the validation filters can skip
+ * empty bodies the way they did when the whole body was buffered and
+ * trimmed, and the bytes read ahead are pushed back before anyone else sees
+ * the stream.
+ *
+ * A filter that parses the body calls record() first and rewind() after, so
+ * whatever reads the request next still gets the whole body. The bytes are
+ * only held for the one request, never turned into a String, and are handed
+ * back without another copy. Parsers close the stream they were given when
+ * they finish (Jackson and SAX both do), so close() is ignored while
+ * recording, or rewind() would be left replaying onto a closed body.
+ */
+public class StreamingRequestWrapper extends HttpServletRequestWrapper {
+    private static final int PEEK_LIMIT = 4096;
+    private PushbackServletInputStream body;
+
+    public StreamingRequestWrapper(HttpServletRequest req) {
+        super(req);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (body == null) {
+            body = new PushbackServletInputStream(super.getInputStream());
+        }
+        return body;
+    }
+
+    // Keeps a copy of every byte read from here on, for rewind()
+    public void record() throws IOException {
+        ((PushbackServletInputStream) getInputStream()).copy = new ReplayBuffer();
+    }
+
+    // Starts the body over from where record() was called
+    public void rewind() throws IOException {
+        PushbackServletInputStream in = (PushbackServletInputStream) getInputStream();
+        if (in.copy == null) {
+            throw new IllegalStateException("rewind() without record()");
+        }
+        InputStream replay = in.copy.toInputStream();
+        in.copy = null;
+        body = new PushbackServletInputStream(new SequenceInputStream(replay, in.in));
+    }
+
+    public boolean isBodyEmpty() throws IOException {
+        PushbackServletInputStream in = (PushbackServletInputStream) getInputStream();
+        ReplayBuffer copy = in.copy;
+        in.copy = null; // Peeked bytes are pushed back, they aren't read yet
+        byte[] seen = new byte[PEEK_LIMIT];
+        int nseen = 0;
+        int b;
+        try {
+            while (nseen < PEEK_LIMIT && (b = in.read()) >= 0) {
+                seen[nseen++] = (byte) b;
+                if (b > ' ') {
+                    return false;
+                }
+            }
+            return nseen < PEEK_LIMIT;
+        } finally {
+            in.unread(seen, 0, nseen);
+            in.copy = copy;
+        }
+    }
+
+    private static class PushbackServletInputStream extends ServletInputStream {
+        private final PushbackInputStream in;
+        private ReplayBuffer copy;
+
+        private PushbackServletInputStream(InputStream in) {
+            this.in = new PushbackInputStream(in, PEEK_LIMIT);
+        }
+
+        private void unread(byte[] buf, int off, int len) throws IOException {
+            in.unread(buf, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (copy != null && b >= 0) {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int nread = in.read(buf, off, len);
+            if (copy != null && nread > 0) {
+                copy.write(buf, off, nread);
+            }
+            return nread;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (copy == null) {
+                in.close();
+            }
+        }
+    }
+
+    // Replays what was recorded straight from its buffer instead of copying it
+    private static class ReplayBuffer extends ByteArrayOutputStream {
+
+        private InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
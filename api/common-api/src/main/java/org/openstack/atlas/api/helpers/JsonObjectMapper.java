@@ -18,6 +18,8 @@ import java.util.GregorianCalendar;
 
 public class JsonObjectMapper extends ObjectMapper {
 
+    private boolean indentOutput = false;
+
     public void init() {
         SerializationConfig serConf = this.getSerializationConfig();
 
@@ -53,12 +55,20 @@ public class JsonObjectMapper extends ObjectMapper {
         registerModule(new SimpleModule().addDeserializer(AccessList.class, new PropertyListDeserializer(AccessList.class, NetworkItem.class, "getNetworkItems")));
 
 
-        // Suppress null properties from being serialized and indent output.
-        this.enable(SerializationFeature.INDENT_OUTPUT);
-        this.configure(SerializationFeature.INDENT_OUTPUT, true);
+        // Suppress null properties from being serialized. Output is compact
+        // unless indentOutput is set, since the whitespace adds up on big lists.
+        this.configure(SerializationFeature.INDENT_OUTPUT, indentOutput);
         this.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         this.configure(SerializationFeature.WRITE_SINGLE_ELEM_ARRAYS_UNWRAPPED, true);
         this.configure(SerializationFeature.WRITE_EMPTY_JSON_ARRAYS, false);
         this.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
     }
+
+    public boolean isIndentOutput() {
+        return indentOutput;
+    }
+
+    public void setIndentOutput(boolean indentOutput) {
+        this.indentOutput = indentOutput;
+    }
 }
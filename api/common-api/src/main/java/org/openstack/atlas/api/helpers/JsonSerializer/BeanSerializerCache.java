@@ -0,0 +1,58 @@
+package org.openstack.atlas.api.helpers.JsonSerializer;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.BeanSerializerFactory;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Plain bean serializers, looked up past any custom serializer registered
+ * for the type, built and resolved once per class and then reused. The
+ * wrapping serializers need these to write the object they wrap without
+ * recursing into themselves, and building one means introspecting the bean,
+ * which is far too slow to repeat for every object of every response.
+ * <p/>
+ * Serializers are resolved against the mapper the first request came
+ * through, so a cache must not be shared between differently configured
+ * mappers. Each wrapping serializer keeps its own.
+ */
+public class BeanSerializerCache {
+
+    private final ConcurrentMap<Class<?>, JsonSerializer<Object>> serializers = new ConcurrentHashMap<Class<?>, JsonSerializer<Object>>();
+
+    public JsonSerializer<Object> get(Class<?> type, SerializerProvider sp) throws JsonMappingException {
+        JsonSerializer<Object> serializer = serializers.get(type);
+        if (serializer == null) {
+            serializer = build(type, sp);
+            JsonSerializer<Object> raced = serializers.putIfAbsent(type, serializer);
+            if (raced != null) {
+                serializer = raced;
+            }
+        }
+        return serializer;
+    }
+
+    public int size() {
+        return serializers.size();
+    }
+
+    private static JsonSerializer<Object> build(Class<?> type, SerializerProvider sp) throws JsonMappingException {
+        JavaType javaType = sp.getConfig().constructType(type);
+        BeanDescription beanDesc = sp.getConfig().introspect(javaType);
+        JsonSerializer<Object> serializer = BeanSerializerFactory.instance.findBeanSerializer(sp, javaType, beanDesc);
+        if (serializer == null) {
+            // Not a bean, let the provider pick the usual serializer
+            return sp.findValueSerializer(javaType, null);
+        }
+        if (serializer instanceof ResolvableSerializer) {
+            ((ResolvableSerializer) serializer).resolve(sp);
+        }
+        return serializer;
+    }
+}
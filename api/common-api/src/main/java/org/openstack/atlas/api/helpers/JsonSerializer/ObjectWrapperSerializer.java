@@ -2,17 +2,14 @@ package org.openstack.atlas.api.helpers.JsonSerializer;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.*;
-import com.fasterxml.jackson.databind.ser.BeanSerializerFactory;
-import com.fasterxml.jackson.databind.type.TypeFactory;
 import org.openstack.atlas.api.helpers.reflection.ClassReflectionTools;
 
 import java.io.IOException;
-import java.util.GregorianCalendar;
-
 public class ObjectWrapperSerializer extends JsonSerializer<Object> {
 
     private final SerializationConfig config;
     private final String wrapperFieldName;
+    private final BeanSerializerCache beanSerializers = new BeanSerializerCache();
 
     public ObjectWrapperSerializer(SerializationConfig config, Class someClass) {
         String rootName;
@@ -32,9 +29,7 @@ public class ObjectWrapperSerializer extends JsonSerializer<Object> {
     @Override
     public void serialize(Object object, JsonGenerator jgen, SerializerProvider sp) throws IOException {
 
-        JavaType type = TypeFactory.defaultInstance().constructType(object.getClass());
-        BeanDescription beanDesc = sp.getConfig().introspect(type);
-        JsonSerializer<Object> serializer = BeanSerializerFactory.instance.findBeanSerializer(sp, type, beanDesc);
+        JsonSerializer<Object> serializer = beanSerializers.get(object.getClass(), sp);
 
         if (wrapperFieldName != null) {
             jgen.writeStartObject();
@@ -7,9 +7,7 @@ import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.cfg.SerializerFactoryConfig;
 import com.fasterxml.jackson.databind.jsontype.impl.StdSubtypeResolver;
 import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.databind.ser.BeanSerializerFactory;
 import com.fasterxml.jackson.databind.ser.Serializers;
-import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
 import org.openstack.atlas.api.helpers.reflection.ClassReflectionTools;
 import org.openstack.atlas.api.helpers.reflection.ClassReflectionToolsException;
@@ -36,6 +34,7 @@ public class PropertyCollectionSerializer extends JsonSerializer<Object> {
     private String wrapperFieldName;
     private String getterName;
     private Boolean hasLinks = false;
+    private final BeanSerializerCache beanSerializers = new BeanSerializerCache();
 
     public PropertyCollectionSerializer(SerializationConfig config, Class someClass, String getterName) {
         this.config = config;
@@ -120,9 +119,7 @@ public class PropertyCollectionSerializer extends JsonSerializer<Object> {
 
     private void childSerialize(Object obj, JsonGenerator jgen, SerializerProvider sp) throws IOException {
 
-        JavaType type = TypeFactory.defaultInstance().constructType(obj.getClass());
-        BeanDescription beanDesc = sp.getConfig().introspect(type);
-        JsonSerializer<Object> serializer = BeanSerializerFactory.instance.findBeanSerializer(sp, type, beanDesc);
+        JsonSerializer<Object> serializer = beanSerializers.get(obj.getClass(), sp);
         serializer.serialize(obj, jgen, sp);
     }
 }
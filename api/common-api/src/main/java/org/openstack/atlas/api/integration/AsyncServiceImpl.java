@@ -1,5 +1,6 @@
 package org.openstack.atlas.api.integration;
 
+import org.openstack.atlas.cfg.Configuration;
 import org.openstack.atlas.service.domain.entities.LoadBalancer;
 import org.openstack.atlas.service.domain.operations.Operation;
 import org.openstack.atlas.service.domain.pojos.MessageDataContainer;
@@ -15,13 +16,14 @@ import javax.jms.Session;
 public class AsyncServiceImpl implements AsyncService {
     private final Log LOG = LogFactory.getLog(AsyncServiceImpl.class);
     private JmsTemplate jmsTemplate;
+    private Configuration configuration;
 
     @Override
     public void callAsyncLoadBalancingOperation(final Operation operation, final LoadBalancer lb) throws JMSException {
         LOG.debug(String.format("Sending message to '%s' queue...", operation.name()));
         jmsTemplate.send(operation.name(), new MessageCreator() {
             public Message createMessage(Session session) throws JMSException {
-                return session.createObjectMessage(lb);
+                return LoadBalancerMessageCodec.toMessage(session, lb, LoadBalancerMessageCodec.isEnabled(configuration));
             }
         });
     }
@@ -39,4 +41,8 @@ public class AsyncServiceImpl implements AsyncService {
     public void setJmsTemplate(JmsTemplate jmsTemplate) {
         this.jmsTemplate = jmsTemplate;
     }
+
+    public void setConfiguration(Configuration configuration) {
+        this.configuration = configuration;
+    }
 }
@@ -0,0 +1,410 @@
+package org.openstack.atlas.api.integration;
+
+import org.openstack.atlas.cfg.Configuration;
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.atlas.service.domain.entities.*;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.TimeZone;
+
+/**
+ * Binary form of the load balancer handed to the async listeners.
+ * <p/>
+ * The queued load balancer is a request, not a snapshot: listeners reload
+ * the load balancer from the database and only look at the queued copy for
+ * its ids, the user, the scalar settings and the nodes, access list items,
+ * monitor, throttle, rate limit, error page and vips the request touched.
+ * That is what gets written, field by field behind a version byte, instead
+ * of Java serializing the whole entity graph. Anything else on the entity
+ * (ssl termination, certificate mappings, metadata, tickets, usage, host,
+ * suspension) does not travel and decodes as the entity default.
+ * <p/>
+ * Fields are only ever appended. A new field means a new VERSION, and
+ * decode keeps reading every older version so messages already sitting in
+ * the broker survive a rolling deploy.
+ * <p/>
+ * Listeners read both this form and the old ObjectMessage. Senders keep
+ * sending ObjectMessages until async_binary_lb_messages is turned on, which
+ * should only happen once every listener node can read the binary form.
+ */
+public final class LoadBalancerMessageCodec {
+
+    public static final int MAGIC = 0x4c42;
+    public static final int VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    private LoadBalancerMessageCodec() {
+    }
+
+    public static boolean isEnabled(Configuration configuration) {
+        if (configuration == null || !configuration.hasKeys(PublicApiServiceConfigurationKeys.async_binary_lb_messages)) {
+            return false;
+        }
+        return Boolean.parseBoolean(configuration.getString(PublicApiServiceConfigurationKeys.async_binary_lb_messages).trim());
+    }
+
+    public static Message toMessage(Session session, LoadBalancer lb, boolean binary) throws JMSException {
+        if (binary) {
+            return toMessage(session, lb);
+        }
+        return session.createObjectMessage(lb);
+    }
+
+    public static BytesMessage toMessage(Session session, LoadBalancer lb) throws JMSException {
+        BytesMessage message = session.createBytesMessage();
+        try {
+            message.writeBytes(encode(lb));
+        } catch (IOException ex) {
+            throw jmsException(String.format("Could not encode load balancer '%d'", lb.getId()), ex);
+        }
+        return message;
+    }
+
+    public static LoadBalancer fromMessage(BytesMessage message) throws JMSException {
+        byte[] bytes = new byte[(int) message.getBodyLength()];
+        message.readBytes(bytes);
+        try {
+            return decode(bytes);
+        } catch (IOException ex) {
+            throw jmsException(String.format("Could not decode load balancer message '%s'", message.getJMSMessageID()), ex);
+        }
+    }
+
+    public static byte[] encode(LoadBalancer lb) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(MAGIC);
+        out.writeByte(VERSION);
+
+        writeInteger(out, lb.getId());
+        writeString(out, lb.getUserName());
+        writeInteger(out, lb.getAccountId());
+        writeString(out, lb.getName());
+        writeInteger(out, lb.getPort());
+        writeInteger(out, lb.getTimeout());
+        writeBoolean(out, lb.isConnectionLogging());
+        writeBoolean(out, lb.isContentCaching());
+        writeBoolean(out, lb.getHttpsRedirect());
+        writeBoolean(out, lb.getHalfClosed());
+        out.writeBoolean(lb.getIsSticky());
+        out.writeBoolean(lb.isProcessingDeletion());
+        writeEnum(out, lb.getAlgorithm());
+        writeEnum(out, lb.getProtocol());
+        writeEnum(out, lb.getStatus());
+        writeEnum(out, lb.getSessionPersistence());
+        writeCalendar(out, lb.getCreated());
+        writeCalendar(out, lb.getUpdated());
+        writeCalendar(out, lb.getProvisioned());
+
+        Collection<Node> nodes = orEmpty(lb.getNodes());
+        out.writeInt(nodes.size());
+        for (Node node : nodes) {
+            writeInteger(out, node.getId());
+            writeString(out, node.getUserName());
+            writeString(out, node.getIpAddress());
+            writeInteger(out, node.getPort());
+            writeInteger(out, node.getWeight());
+            writeEnum(out, node.getCondition());
+            writeEnum(out, node.getStatus());
+            writeEnum(out, node.getType());
+            out.writeBoolean(node.isNew());
+            out.writeBoolean(node.isToBeUpdated());
+        }
+
+        Collection<AccessList> accessLists = orEmpty(lb.getAccessLists());
+        out.writeInt(accessLists.size());
+        for (AccessList item : accessLists) {
+            writeInteger(out, item.getId());
+            writeString(out, item.getUserName());
+            writeString(out, item.getIpAddress());
+            writeEnum(out, item.getType());
+        }
+
+        HealthMonitor monitor = lb.getHealthMonitor();
+        out.writeBoolean(monitor != null);
+        if (monitor != null) {
+            writeInteger(out, monitor.getId());
+            writeEnum(out, monitor.getType());
+            writeInteger(out, monitor.getDelay());
+            writeInteger(out, monitor.getTimeout());
+            writeInteger(out, monitor.getAttemptsBeforeDeactivation());
+            writeString(out, monitor.getPath());
+            writeString(out, monitor.getStatusRegex());
+            writeString(out, monitor.getBodyRegex());
+            writeString(out, monitor.getHostHeader());
+        }
+
+        ConnectionLimit limit = lb.getConnectionLimit();
+        out.writeBoolean(limit != null);
+        if (limit != null) {
+            writeInteger(out, limit.getId());
+            writeInteger(out, limit.getMinConnections());
+            writeInteger(out, limit.getMaxConnections());
+            writeInteger(out, limit.getMaxConnectionRate());
+            writeInteger(out, limit.getRateInterval());
+        }
+
+        RateLimit rateLimit = lb.getRateLimit();
+        out.writeBoolean(rateLimit != null);
+        if (rateLimit != null) {
+            writeInteger(out, rateLimit.getId());
+            writeInteger(out, rateLimit.getMaxRequestsPerSecond());
+            writeCalendar(out, rateLimit.getExpirationTime());
+        }
+
+        UserPages userPages = lb.getUserPages();
+        out.writeBoolean(userPages != null);
+        if (userPages != null) {
+            writeInteger(out, userPages.getId());
+            writeString(out, userPages.getErrorpage());
+        }
+
+        Collection<LoadBalancerJoinVip> joinVips = orEmpty(lb.getLoadBalancerJoinVipSet());
+        out.writeInt(joinVips.size());
+        for (LoadBalancerJoinVip join : joinVips) {
+            VirtualIp vip = join.getVirtualIp();
+            writeInteger(out, join.getPort());
+            writeInteger(out, vip.getId());
+            writeString(out, vip.getIpAddress());
+            writeEnum(out, vip.getVipType());
+            writeEnum(out, vip.getIpVersion());
+        }
+
+        Collection<LoadBalancerJoinVip6> joinVip6s = orEmpty(lb.getLoadBalancerJoinVip6Set());
+        out.writeInt(joinVip6s.size());
+        for (LoadBalancerJoinVip6 join : joinVip6s) {
+            VirtualIpv6 vip = join.getVirtualIp();
+            writeInteger(out, join.getPort());
+            writeInteger(out, vip.getId());
+            writeInteger(out, vip.getAccountId());
+            writeInteger(out, vip.getVipOctets());
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static LoadBalancer decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int magic = in.readUnsignedShort();
+        if (magic != MAGIC) {
+            throw new IOException(String.format("Not a load balancer message, magic was 0x%04x", magic));
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException(String.format("Unsupported load balancer message version %d, expected at most %d", version, VERSION));
+        }
+
+        LoadBalancer lb = new LoadBalancer();
+        lb.setId(readInteger(in));
+        lb.setUserName(readString(in));
+        lb.setAccountId(readInteger(in));
+        lb.setName(readString(in));
+        lb.setPort(readInteger(in));
+        lb.setTimeout(readInteger(in));
+        lb.setConnectionLogging(readBoolean(in));
+        lb.setContentCaching(readBoolean(in));
+        lb.setHttpsRedirect(readBoolean(in));
+        lb.setHalfClosed(readBoolean(in));
+        lb.setIsSticky(in.readBoolean());
+        lb.setProcessingDeletion(in.readBoolean());
+        lb.setAlgorithm(readEnum(in, LoadBalancerAlgorithm.class));
+        lb.setProtocol(readEnum(in, LoadBalancerProtocol.class));
+        lb.setStatus(readEnum(in, LoadBalancerStatus.class));
+        lb.setSessionPersistence(readEnum(in, SessionPersistence.class));
+        lb.setCreated(readCalendar(in));
+        lb.setUpdated(readCalendar(in));
+        lb.setProvisioned(readCalendar(in));
+
+        for (int i = in.readInt(); i > 0; i--) {
+            Node node = new Node();
+            node.setId(readInteger(in));
+            node.setUserName(readString(in));
+            node.setIpAddress(readString(in));
+            node.setPort(readInteger(in));
+            node.setWeight(readInteger(in));
+            node.setCondition(readEnum(in, NodeCondition.class));
+            node.setStatus(readEnum(in, NodeStatus.class));
+            node.setType(readEnum(in, NodeType.class));
+            node.setNew(in.readBoolean());
+            node.setToBeUpdated(in.readBoolean());
+            node.setLoadbalancer(lb);
+            lb.getNodes().add(node);
+        }
+
+        for (int i = in.readInt(); i > 0; i--) {
+            AccessList item = new AccessList();
+            item.setId(readInteger(in));
+            item.setUserName(readString(in));
+            item.setIpAddress(readString(in));
+            item.setType(readEnum(in, AccessListType.class));
+            item.setLoadbalancer(lb);
+            lb.getAccessLists().add(item);
+        }
+
+        if (in.readBoolean()) {
+            HealthMonitor monitor = new HealthMonitor();
+            monitor.setId(readInteger(in));
+            monitor.setType(readEnum(in, HealthMonitorType.class));
+            monitor.setDelay(readInteger(in));
+            monitor.setTimeout(readInteger(in));
+            monitor.setAttemptsBeforeDeactivation(readInteger(in));
+            monitor.setPath(readString(in));
+            monitor.setStatusRegex(readString(in));
+            monitor.setBodyRegex(readString(in));
+            monitor.setHostHeader(readString(in));
+            monitor.setLoadbalancer(lb);
+            lb.setHealthMonitor(monitor);
+        }
+
+        if (in.readBoolean()) {
+            ConnectionLimit limit = new ConnectionLimit();
+            limit.setId(readInteger(in));
+            limit.setMinConnections(readInteger(in));
+            limit.setMaxConnections(readInteger(in));
+            limit.setMaxConnectionRate(readInteger(in));
+            limit.setRateInterval(readInteger(in));
+            limit.setLoadBalancer(lb);
+            lb.setConnectionLimit(limit);
+        }
+
+        if (in.readBoolean()) {
+            RateLimit rateLimit = new RateLimit();
+            rateLimit.setId(readInteger(in));
+            rateLimit.setMaxRequestsPerSecond(readInteger(in));
+            rateLimit.setExpirationTime(readCalendar(in));
+            rateLimit.setLoadbalancer(lb);
+            lb.setRateLimit(rateLimit);
+        }
+
+        if (in.readBoolean()) {
+            UserPages userPages = new UserPages();
+            userPages.setId(readInteger(in));
+            userPages.setErrorpage(readString(in));
+            userPages.setLoadbalancer(lb);
+            lb.setUserPages(userPages);
+        }
+
+        for (int i = in.readInt(); i > 0; i--) {
+            Integer port = readInteger(in);
+            VirtualIp vip = new VirtualIp();
+            vip.setId(readInteger(in));
+            vip.setIpAddress(readString(in));
+            vip.setVipType(readEnum(in, VirtualIpType.class));
+            vip.setIpVersion(readEnum(in, IpVersion.class));
+            new LoadBalancerJoinVip(port, lb, vip);
+        }
+
+        for (int i = in.readInt(); i > 0; i--) {
+            Integer port = readInteger(in);
+            VirtualIpv6 vip = new VirtualIpv6();
+            vip.setId(readInteger(in));
+            vip.setAccountId(readInteger(in));
+            vip.setVipOctets(readInteger(in));
+            new LoadBalancerJoinVip6(port, lb, vip);
+        }
+
+        return lb;
+    }
+
+    private static <T> Collection<T> orEmpty(Collection<T> values) {
+        return values == null ? Collections.<T>emptyList() : values;
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    // 0 for null so a Boolean still costs one byte
+    private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+        out.writeByte(value == null ? 0 : (value ? 1 : 2));
+    }
+
+    private static Boolean readBoolean(DataInputStream in) throws IOException {
+        int value = in.readUnsignedByte();
+        return value == 0 ? null : value == 1;
+    }
+
+    // Not writeUTF, error pages can be larger than its 64k limit
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    // By name, so reordering an enum can't change the meaning of queued messages
+    private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+        writeString(out, value == null ? null : value.name());
+    }
+
+    private static <E extends Enum<E>> E readEnum(DataInputStream in, Class<E> type) throws IOException {
+        String name = readString(in);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(String.format("Unknown %s '%s'", type.getSimpleName(), name), ex);
+        }
+    }
+
+    private static void writeCalendar(DataOutputStream out, Calendar value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getTimeInMillis());
+            writeString(out, value.getTimeZone().getID());
+        }
+    }
+
+    private static Calendar readCalendar(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long millis = in.readLong();
+        Calendar value = Calendar.getInstance(TimeZone.getTimeZone(readString(in)));
+        value.setTimeInMillis(millis);
+        return value;
+    }
+
+    private static JMSException jmsException(String msg, Exception cause) {
+        JMSException ex = new JMSException(msg);
+        ex.setLinkedException(cause);
+        ex.initCause(cause);
+        return ex;
+    }
+}
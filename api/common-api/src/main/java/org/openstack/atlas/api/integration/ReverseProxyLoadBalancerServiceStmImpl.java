@@ -16,13 +16,13 @@ import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
 import org.openstack.atlas.service.domain.cache.AtlasCache;
 import org.openstack.atlas.service.domain.entities.*;
 import org.openstack.atlas.service.domain.exceptions.EntityNotFoundException;
+import org.openstack.atlas.service.domain.pojos.ClusterEndpointConfig;
 import org.openstack.atlas.service.domain.pojos.Stats;
 import org.openstack.atlas.service.domain.pojos.ZeusSslTermination;
 import org.openstack.atlas.service.domain.services.HealthMonitorService;
 import org.openstack.atlas.service.domain.services.HostService;
 import org.openstack.atlas.service.domain.services.LoadBalancerService;
 import org.openstack.atlas.service.domain.services.NotificationService;
-import org.openstack.atlas.util.crypto.CryptoUtil;
 import org.openstack.atlas.util.crypto.exception.DecryptException;
 import org.openstack.atlas.util.debug.Debug;
 import org.rackspace.stingray.client.exception.StingrayRestClientException;
@@ -378,46 +378,34 @@ public class ReverseProxyLoadBalancerServiceStmImpl implements ReverseProxyLoadB
 
     LoadBalancerEndpointConfiguration getConfigbyClusterId(Integer clusterId) throws EntityNotFoundException, DecryptException {
         Cluster cluster = hostService.getClusterById(clusterId);
-        Host soapEndpointHost = hostService.getRestEndPointHost(cluster.getId());
-        List<String> failoverHostNames = hostService.getFailoverHostNames(cluster.getId());
+        ClusterEndpointConfig endpointConfig = hostService.getClusterEndpointConfig(cluster);
+        Host soapEndpointHost = endpointConfig.getRestEndpointHost();
         String logFileLocation = configuration.getString(PublicApiServiceConfigurationKeys.access_log_file_location);
-        List<Host> failoverHosts = hostService.getFailoverHosts(cluster.getId());
 
-        return new LoadBalancerEndpointConfiguration(soapEndpointHost, cluster.getUsername(), CryptoUtil.decrypt(cluster.getPassword()), soapEndpointHost, failoverHostNames, logFileLocation, failoverHosts);
+        return new LoadBalancerEndpointConfiguration(soapEndpointHost, endpointConfig.getUsername(), endpointConfig.getPassword(), soapEndpointHost, endpointConfig.getFailoverHostNames(), logFileLocation, endpointConfig.getFailoverHosts());
     }
 
     // Send request to proper SOAPEndpoint(Calculated by the database) for host's traffic manager
     @Override
     public LoadBalancerEndpointConfiguration getConfig(Host host) throws DecryptException, MalformedURLException {
-        Cluster cluster = host.getCluster();
-        Host soapEndpointHost = hostService.getRestEndPointHost(cluster.getId());
-        List<String> failoverHostNames = hostService.getFailoverHostNames(cluster.getId());
-        List<Host> failoverHosts = hostService.getFailoverHosts(cluster.getId());
+        ClusterEndpointConfig endpointConfig = hostService.getClusterEndpointConfig(host.getCluster());
         String logFileLocation = configuration.getString(PublicApiServiceConfigurationKeys.access_log_file_location);
 
-        return new LoadBalancerEndpointConfiguration(soapEndpointHost, cluster.getUsername(), CryptoUtil.decrypt(cluster.getPassword()), host, failoverHostNames, logFileLocation, failoverHosts);
+        return new LoadBalancerEndpointConfiguration(endpointConfig.getRestEndpointHost(), endpointConfig.getUsername(), endpointConfig.getPassword(), host, endpointConfig.getFailoverHostNames(), logFileLocation, endpointConfig.getFailoverHosts());
     }
 
     // Send SOAP request directly to the hosts traffic manager.
     @Override
     public LoadBalancerEndpointConfiguration getConfigHost(Host host) throws DecryptException, MalformedURLException {
-        Cluster cluster = host.getCluster();
-        List<String> failoverHostNames = hostService.getFailoverHostNames(cluster.getId());
-        List<Host> failoverHosts = hostService.getFailoverHosts(cluster.getId());
+        ClusterEndpointConfig endpointConfig = hostService.getClusterEndpointConfig(host.getCluster());
         String logFileLocation = configuration.getString(PublicApiServiceConfigurationKeys.access_log_file_location);
 
-        return new LoadBalancerEndpointConfiguration(host, cluster.getUsername(), CryptoUtil.decrypt(cluster.getPassword()), host, failoverHostNames, logFileLocation, failoverHosts);
+        return new LoadBalancerEndpointConfiguration(host, endpointConfig.getUsername(), endpointConfig.getPassword(), host, endpointConfig.getFailoverHostNames(), logFileLocation, endpointConfig.getFailoverHosts());
     }
 
     private LoadBalancerEndpointConfiguration getConfigbyLoadBalancerId(Integer lbId) throws EntityNotFoundException, DecryptException, MalformedURLException {
         LoadBalancer loadBalancer = loadBalancerService.get(lbId);
-        Host host = loadBalancer.getHost();
-        Cluster cluster = host.getCluster();
-        Host soapEndpointHost = hostService.getRestEndPointHost(cluster.getId());
-        List<String> failoverHostNames = hostService.getFailoverHostNames(cluster.getId());
-        List<Host> failoverHosts = hostService.getFailoverHosts(cluster.getId());
-        String logFileLocation = configuration.getString(PublicApiServiceConfigurationKeys.access_log_file_location);
-        return new LoadBalancerEndpointConfiguration(soapEndpointHost, cluster.getUsername(), CryptoUtil.decrypt(cluster.getPassword()), host, failoverHostNames, logFileLocation, failoverHosts);
+        return getConfig(loadBalancer.getHost());
     }
 
     public void setReverseProxyLoadBalancerStmAdapter(ReverseProxyLoadBalancerStmAdapter reverseProxyLoadBalancerStmAdapter) {
@@ -432,8 +420,7 @@ public class ReverseProxyLoadBalancerServiceStmImpl implements ReverseProxyLoadB
         Host configuredHost = config.getEndpointUrlHost();
         if (IpHelper.isNetworkConnectionException(ex)) {
             LOG.error(String.format("STM endpoint %s went bad marking host[%d] as bad. Exception was %s", configuredHost.getEndpoint(), configuredHost.getId(), Debug.getExtendedStackTrace(ex)));
-            configuredHost.setRestEndpointActive(Boolean.FALSE);
-            hostService.update(configuredHost);
+            markRestEndpointBad(configuredHost);
         } else {
             LOG.warn(String.format("STM endpoint %s on host[%d] throw an STM Fault but not marking as bad as it was not a network connection error: Exception was %s", configuredHost.getEndpoint(), configuredHost.getId(), Debug.getExtendedStackTrace(ex)));
         }
@@ -443,12 +430,21 @@ public class ReverseProxyLoadBalancerServiceStmImpl implements ReverseProxyLoadB
         Host configuredHost = config.getEndpointUrlHost();
         if (IpHelper.isNetworkConnectionException(af)) {
             LOG.error(String.format("SOAP endpoint %s went bad marking host[%d] as bad. Exception was %s", configuredHost.getEndpoint(), configuredHost.getId(), Debug.getExtendedStackTrace(af)));
-            configuredHost.setRestEndpointActive(Boolean.FALSE);
-            hostService.update(configuredHost);
+            markRestEndpointBad(configuredHost);
         }
         LOG.warn(String.format("SOAP endpoint %s on host[%d] throw an RollBackException but not marking as bad as it was not a network connection error: Exception was %s", configuredHost.getEndpoint(), configuredHost.getId(), Debug.getExtendedStackTrace(af)));
     }
 
+    // The configured host is a copy from the endpoint config cache, so the host is updated by id
+    private void markRestEndpointBad(Host configuredHost) {
+        configuredHost.setRestEndpointActive(Boolean.FALSE);
+        try {
+            hostService.setRestEndpointActive(configuredHost.getId(), Boolean.FALSE);
+        } catch (EntityNotFoundException e) {
+            LOG.warn(String.format("Could not mark host[%d] as bad, it no longer exists", configuredHost.getId()));
+        }
+    }
+
     @Override
     public void updateSslTermination(LoadBalancer loadBalancer, ZeusSslTermination sslTermination) throws MalformedURLException, EntityNotFoundException, DecryptException, InsufficientRequestException, RollBackException {
         LoadBalancerEndpointConfiguration config = getConfigbyLoadBalancerId(loadBalancer.getId());
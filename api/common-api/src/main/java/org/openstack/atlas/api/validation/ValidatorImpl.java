@@ -5,6 +5,8 @@ import org.openstack.atlas.api.validation.results.ExpectationResult;
 import org.openstack.atlas.api.validation.results.ExpectationResultBuilder;
 import org.openstack.atlas.api.validation.results.ValidatorResult;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -13,11 +15,11 @@ public class ValidatorImpl<ObjectTypeToValidate> implements Validator<ObjectType
     private final List<ExpectationTarget<ObjectTypeToValidate>> validationTargetList;
 
     public ValidatorImpl(List<ExpectationTarget<ObjectTypeToValidate>> validationTargetList) {
-        this.validationTargetList = validationTargetList;
+        this.validationTargetList = Collections.unmodifiableList(new ArrayList<ExpectationTarget<ObjectTypeToValidate>>(validationTargetList));
     }
 
     @Override
-    public synchronized ValidatorResult validate(ObjectTypeToValidate object, Object context) {
+    public ValidatorResult validate(ObjectTypeToValidate object, Object context) {
         if (object == null) {
             return generateEmptyResult();
         }
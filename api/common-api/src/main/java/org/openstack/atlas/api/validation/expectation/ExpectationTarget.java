@@ -8,19 +8,29 @@ import org.openstack.atlas.api.validation.exceptions.ValidationChainExecutionExc
 import org.openstack.atlas.api.validation.results.ExpectationResult;
 import org.openstack.atlas.api.validation.results.ExpectationResultBuilder;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+/*
+ * Expectations are only added while the owning ValidatorBuilder runs. After
+ * toValidator() the target is read only, so validate() needs no lock and any
+ * number of request threads can share one validator.
+ */
 public class ExpectationTarget<T> {
 
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
     private final Method targetMethod;
+    private final MethodHandle accessor;
     private final List<Expectation> expectations;
 
     public ExpectationTarget(Method targetMethod) {
         this.targetMethod = targetMethod;
+        this.accessor = targetMethod == null ? null : compileAccessor(targetMethod);
         this.expectations = new LinkedList<Expectation>();
     }
 
@@ -52,9 +62,8 @@ public class ExpectationTarget<T> {
         return target == targetMethod;
     }
 
-    public synchronized List<ExpectationResult> validate(T target, Object context) {
-        //TODO: Inline? Too complex?
-        final Object objectToValidateAgainst = targetMethod == null ? target : invokeMethod(targetMethod, target);
+    public List<ExpectationResult> validate(T target, Object context) {
+        final Object objectToValidateAgainst = accessor == null ? target : invokeAccessor(target);
 
         return validateObject(expectations, objectToValidateAgainst, context);
     }
@@ -80,19 +89,27 @@ public class ExpectationTarget<T> {
         return gatheredResults;
     }
 
-    private Object invokeMethod(Method m, T object) throws ValidationChainExecutionException {
+    private Object invokeAccessor(T object) throws ValidationChainExecutionException {
         try {
-            return m.invoke(object);
-        } catch (IllegalAccessException iae) {
-            throw new ValidationChainExecutionException("Fatal exception encountered during validation. Please verify your JVM security model.", iae);
-        } catch (IllegalArgumentException iae) {
-            throw new ValidationChainExecutionException("This shouldn't happen but if it does, you lose. Please report this as a bug.", iae);
-        } catch (InvocationTargetException ite) {
-            final Throwable t = ite.getTargetException();
-
+            return accessor.invokeExact((Object) object);
+        } catch (ClassCastException cce) {
+            throw new ValidationChainExecutionException("This shouldn't happen but if it does, you lose. Please report this as a bug.", cce);
+        } catch (Throwable t) {
             throw new ValidationChainExecutionException("Exception \""
                     + t.getMessage()
                     + "\" encountered during validation chain execution. Pump cause for more details.", t);
         }
     }
+
+    // Resolved once per getter so each validation is a direct call instead of Method.invoke
+    private static MethodHandle compileAccessor(Method m) throws ValidationChainExecutionException {
+        try {
+            m.setAccessible(true);
+            return MethodHandles.lookup().unreflect(m).asType(ACCESSOR_TYPE);
+        } catch (IllegalAccessException iae) {
+            throw new ValidationChainExecutionException("Fatal exception encountered during validation. Please verify your JVM security model.", iae);
+        } catch (SecurityException se) {
+            throw new ValidationChainExecutionException("Fatal exception encountered during validation. Please verify your JVM security model.", se);
+        }
+    }
 }
@@ -0,0 +1,124 @@
+package org.openstack.atlas.api.auth;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openstack.atlas.cfg.Configuration;
+import org.openstack.atlas.cfg.ConfigurationKey;
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.identity.client.client.IdentityClient;
+import org.openstack.identity.client.token.AuthenticateResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class AuthTokenValidatorTest {
+    private IdentityClient identityClient;
+    private AuthTokenValidator validator;
+    private AuthenticateResponse admin;
+    private AuthenticateResponse user;
+
+    @Before
+    public void standUp() throws Exception {
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.hasKeys(any(ConfigurationKey.class), any(ConfigurationKey.class), any(ConfigurationKey.class))).thenReturn(true);
+        when(configuration.getString(PublicApiServiceConfigurationKeys.identity_auth_url)).thenReturn("https://identity.example.com/v2.0/");
+        when(configuration.getString(PublicApiServiceConfigurationKeys.identity_user)).thenReturn("lbaas");
+        when(configuration.getString(PublicApiServiceConfigurationKeys.identity_pass)).thenReturn("secret");
+
+        admin = mock(AuthenticateResponse.class, RETURNS_DEEP_STUBS);
+        when(admin.getToken().getId()).thenReturn("admin-token");
+        when(admin.getToken().getExpires()).thenReturn(null);
+        user = mock(AuthenticateResponse.class, RETURNS_DEEP_STUBS);
+        when(user.getUser().getName()).thenReturn("someUser");
+
+        identityClient = mock(IdentityClient.class);
+        when(identityClient.authenticateUsernamePassword("lbaas", "secret")).thenReturn(admin);
+
+        validator = new AuthTokenValidator(configuration);
+        validator.identityClient = identityClient;
+    }
+
+    @Test
+    public void shouldReuseAdminTokenAcrossValidations() throws Exception {
+        when(identityClient.validateToken("admin-token", "userToken", "1234")).thenReturn(user);
+
+        Assert.assertSame(user, validator.validate("userToken", "1234"));
+        Assert.assertSame(user, validator.validate("userToken", "1234"));
+
+        verify(identityClient, times(1)).authenticateUsernamePassword(anyString(), anyString());
+        verify(identityClient, times(2)).validateToken("admin-token", "userToken", "1234");
+    }
+
+    @Test
+    public void shouldShareOneCallForConcurrentValidationsOfSameToken() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(identityClient.validateToken("admin-token", "userToken", "1234")).thenAnswer(new Answer<AuthenticateResponse>() {
+            @Override
+            public AuthenticateResponse answer(InvocationOnMock invocation) throws Throwable {
+                entered.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return user;
+            }
+        });
+
+        int nThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        List<Future<AuthenticateResponse>> results = new ArrayList<Future<AuthenticateResponse>>();
+        try {
+            results.add(executor.submit(validation("userToken", "1234")));
+            Assert.assertTrue(entered.await(10, TimeUnit.SECONDS));
+            for (int i = 1; i < nThreads; i++) {
+                results.add(executor.submit(validation("userToken", "1234")));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<AuthenticateResponse> result : results) {
+                Assert.assertSame(user, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(identityClient, times(1)).validateToken("admin-token", "userToken", "1234");
+    }
+
+    @Test
+    public void shouldNotShareValidationsAcrossTenants() throws Exception {
+        when(identityClient.validateToken(eq("admin-token"), eq("userToken"), anyString())).thenReturn(user);
+
+        validator.validate("userToken", "1234");
+        validator.validate("userToken", "5678");
+
+        verify(identityClient).validateToken("admin-token", "userToken", "1234");
+        verify(identityClient).validateToken("admin-token", "userToken", "5678");
+    }
+
+    @Test
+    public void shouldReportUnknownExpiry() {
+        Assert.assertEquals(-1, AuthTokenValidator.secondsUntilExpiry(admin));
+        Assert.assertEquals(-1, AuthTokenValidator.secondsUntilExpiry(null));
+    }
+
+    private Callable<AuthenticateResponse> validation(final String token, final String tenant) {
+        return new Callable<AuthenticateResponse>() {
+            @Override
+            public AuthenticateResponse call() throws Exception {
+                return validator.validate(token, tenant);
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package org.openstack.atlas.api.filters;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack.atlas.api.filters.wrappers.StreamingRequestWrapper;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ValidatedEntityProviderTest {
+    private static final String BODY = "{\"name\": \"a\"}";
+
+    private HttpServletRequest request;
+    private StreamingRequestWrapper wrapper;
+    private ValidatedEntityProvider provider;
+    private Parsed parsed;
+
+    // Stands in for whatever class the filter parsed the body into
+    public static class Parsed {
+    }
+
+    @Before
+    public void standUp() throws IOException {
+        request = mock(HttpServletRequest.class);
+        ServletInputStream in = new BufferedServletInputStream(new ByteArrayInputStream(BODY.getBytes("UTF-8")));
+        when(request.getInputStream()).thenReturn(in);
+        wrapper = new StreamingRequestWrapper(request);
+
+        // What the validation filters do with the body
+        parsed = new Parsed();
+        wrapper.record();
+        read(wrapper.getInputStream());
+        wrapper.rewind();
+        when(request.getAttribute(ValidationFilter.VALIDATED_ENTITY)).thenReturn(parsed);
+
+        provider = new ValidatedEntityProvider();
+        provider.setRequest(wrapper);
+    }
+
+    @Test
+    public void shouldHandOnParsedEntityWhenTypeMatches() throws IOException {
+        Assert.assertTrue(provider.isReadable(Parsed.class, Parsed.class, new Annotation[0], MediaType.APPLICATION_JSON_TYPE));
+        Object entity = provider.readFrom((Class) Parsed.class, Parsed.class, new Annotation[0], MediaType.APPLICATION_JSON_TYPE, null, wrapper.getInputStream());
+        Assert.assertSame(parsed, entity);
+        verify(request).removeAttribute(ValidationFilter.VALIDATED_ENTITY);
+    }
+
+    @Test
+    public void shouldLeaveWholeBodyForOtherProvidersWhenTypeDiffers() throws IOException {
+        Assert.assertFalse(provider.isReadable(String.class, String.class, new Annotation[0], MediaType.APPLICATION_JSON_TYPE));
+        Assert.assertEquals(BODY, read(wrapper.getInputStream()));
+    }
+
+    @Test
+    public void shouldNotReadWhenFilterLeftNothing() {
+        when(request.getAttribute(ValidationFilter.VALIDATED_ENTITY)).thenReturn(null);
+        Assert.assertFalse(provider.isReadable(Parsed.class, Parsed.class, new Annotation[0], MediaType.APPLICATION_JSON_TYPE));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int nread;
+        while ((nread = in.read(buf)) > 0) {
+            out.write(buf, 0, nread);
+        }
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,151 @@
+package org.openstack.atlas.api.filters.wrappers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstack.atlas.api.filters.BufferedServletInputStream;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StreamingRequestWrapperTest {
+
+    @Test
+    public void shouldTreatWhitespaceOnlyBodyAsEmpty() throws IOException {
+        Assert.assertTrue(wrap("").isBodyEmpty());
+        Assert.assertTrue(wrap(" \n\t ").isBodyEmpty());
+    }
+
+    @Test
+    public void shouldHandOnWholeBodyAfterPeeking() throws IOException {
+        String body = "  \n<loadBalancer name=\"a\"/>";
+        StreamingRequestWrapper wrapper = wrap(body);
+
+        Assert.assertFalse(wrapper.isBodyEmpty());
+        Assert.assertEquals(body, read(wrapper.getInputStream()));
+    }
+
+    @Test
+    public void shouldNotCallLongWhitespaceRunEmpty() throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            body.append(' ');
+        }
+        body.append("{}");
+        StreamingRequestWrapper wrapper = wrap(body.toString());
+
+        Assert.assertFalse(wrapper.isBodyEmpty());
+        Assert.assertEquals(body.toString(), read(wrapper.getInputStream()));
+    }
+
+    @Test
+    public void shouldReplayRecordedBodyAfterRewind() throws IOException {
+        String body = " {\"loadBalancer\": {\"name\": \"a\"}}";
+        StreamingRequestWrapper wrapper = wrap(body);
+
+        Assert.assertFalse(wrapper.isBodyEmpty());
+        wrapper.record();
+        byte[] buf = new byte[10];
+        Assert.assertEquals(10, wrapper.getInputStream().read(buf));
+        wrapper.rewind();
+        Assert.assertEquals(body, read(wrapper.getInputStream()));
+    }
+
+    @Test
+    public void shouldReplayFullyParsedBody() throws IOException {
+        String body = "<loadBalancer name=\"a\"/>";
+        StreamingRequestWrapper wrapper = wrap(body);
+        wrapper.record();
+        Assert.assertEquals(body, read(wrapper.getInputStream()));
+        wrapper.rewind();
+        Assert.assertEquals(body, read(wrapper.getInputStream()));
+    }
+
+    @Test
+    public void shouldReplayWholeBodyAfterJacksonClosesIt() throws IOException {
+        StringBuilder body = new StringBuilder("{\"loadBalancer\": {\"name\": \"a\", \"pad\": \"");
+        for (int i = 0; i < 20000; i++) {
+            body.append('x');
+        }
+        body.append("\"}}");
+        StreamingRequestWrapper wrapper = wrap(new ClosableInputStream(body.toString().getBytes("UTF-8")));
+
+        Assert.assertFalse(wrapper.isBodyEmpty());
+        wrapper.record();
+        JsonNode parsed = new ObjectMapper().readTree(wrapper.getInputStream());
+        Assert.assertEquals("a", parsed.get("loadBalancer").get("name").asText());
+        wrapper.rewind();
+        Assert.assertEquals(body.toString(), read(wrapper.getInputStream()));
+    }
+
+    @Test
+    public void shouldReplayAndFinishPartlyParsedBodyAfterClose() throws IOException {
+        String body = "{\"name\": \"a\"} trailing";
+        StreamingRequestWrapper wrapper = wrap(new ClosableInputStream(body.getBytes("UTF-8")));
+        wrapper.record();
+        byte[] buf = new byte[4];
+        Assert.assertEquals(4, wrapper.getInputStream().read(buf));
+        wrapper.getInputStream().close();
+        wrapper.rewind();
+        Assert.assertEquals(body, read(wrapper.getInputStream()));
+    }
+
+    private static StreamingRequestWrapper wrap(String body) throws IOException {
+        return wrap(new BufferedServletInputStream(new ByteArrayInputStream(body.getBytes("UTF-8"))));
+    }
+
+    private static StreamingRequestWrapper wrap(ServletInputStream body) throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getInputStream()).thenReturn(body);
+        return new StreamingRequestWrapper(request);
+    }
+
+    // Fails reads after close() the way a container's request stream does
+    private static class ClosableInputStream extends ServletInputStream {
+        private final ByteArrayInputStream in;
+        private boolean closed;
+
+        private ClosableInputStream(byte[] buf) {
+            in = new ByteArrayInputStream(buf);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int nread;
+        while ((nread = in.read(buf)) > 0) {
+            out.write(buf, 0, nread);
+        }
+        return out.toString("UTF-8");
+    }
+}
@@ -35,6 +35,7 @@ public class JsonObjectMapperTest {
     @Before
     public void setUp() {
         mapper = new JsonObjectMapper();
+        mapper.setIndentOutput(true);
         mapper.init();
     }
 
@@ -305,6 +306,23 @@ public class JsonObjectMapperTest {
         Assert.assertEquals(lbsmanStr, expected);
     }
 
+    @Test
+    public void shouldSerializeCompactlyByDefault() throws IOException {
+        JsonObjectMapper compact = new JsonObjectMapper();
+        compact.init();
+        StubResource stub = new StubResource();
+        LoadBalancers loadbalancers = (LoadBalancers) stub.stubLoadBalancers().getEntity();
+
+        Assert.assertEquals("{\"loadBalancers\":[]}", compact.writeValueAsString(new LoadBalancers()));
+
+        // Second pass goes through the cached serializers and must match the first
+        String first = compact.writeValueAsString(loadbalancers);
+        String second = compact.writeValueAsString(loadbalancers);
+        Assert.assertEquals(first, second);
+        Assert.assertFalse(first.contains("\n"));
+        Assert.assertTrue(first.contains("\"address\":\"127.0.0.20\""));
+    }
+
     public void nop() {
     }
 }
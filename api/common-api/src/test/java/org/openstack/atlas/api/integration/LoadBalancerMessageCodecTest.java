@@ -0,0 +1,284 @@
+package org.openstack.atlas.api.integration;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack.atlas.cfg.Configuration;
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.atlas.service.domain.entities.*;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LoadBalancerMessageCodecTest {
+
+    private LoadBalancer lb;
+
+    @Before
+    public void standUp() {
+        lb = new LoadBalancer();
+        lb.setId(1234);
+        lb.setAccountId(5678);
+        lb.setUserName("someUser");
+        lb.setName("some lb");
+        lb.setPort(443);
+        lb.setTimeout(30);
+        lb.setConnectionLogging(true);
+        lb.setContentCaching(false);
+        lb.setHttpsRedirect(null);
+        lb.setHalfClosed(true);
+        lb.setIsSticky(true);
+        lb.setAlgorithm(LoadBalancerAlgorithm.WEIGHTED_ROUND_ROBIN);
+        lb.setProtocol(LoadBalancerProtocol.HTTPS);
+        lb.setStatus(LoadBalancerStatus.PENDING_UPDATE);
+        lb.setSessionPersistence(SessionPersistence.HTTP_COOKIE);
+        Calendar created = Calendar.getInstance(TimeZone.getTimeZone("America/Chicago"));
+        created.setTimeInMillis(1500000000000L);
+        lb.setCreated(created);
+
+        for (int i = 1; i <= 3; i++) {
+            Node node = new Node();
+            node.setId(i);
+            node.setIpAddress("10.0.0." + i);
+            node.setPort(80 + i);
+            node.setWeight(i * 10);
+            node.setCondition(i == 3 ? NodeCondition.DRAINING : NodeCondition.ENABLED);
+            node.setStatus(NodeStatus.ONLINE);
+            node.setType(i == 2 ? NodeType.SECONDARY : NodeType.PRIMARY);
+            node.setToBeUpdated(i == 2);
+            lb.getNodes().add(node);
+        }
+
+        AccessList item = new AccessList();
+        item.setId(77);
+        item.setIpAddress("192.168.0.0/16");
+        item.setType(AccessListType.DENY);
+        lb.getAccessLists().add(item);
+    }
+
+    @Test
+    public void shouldRoundTripLoadBalancerFields() throws IOException {
+        LoadBalancer decoded = roundTrip(lb);
+        Assert.assertEquals(lb.getId(), decoded.getId());
+        Assert.assertEquals(lb.getAccountId(), decoded.getAccountId());
+        Assert.assertEquals(lb.getUserName(), decoded.getUserName());
+        Assert.assertEquals(lb.getName(), decoded.getName());
+        Assert.assertEquals(lb.getPort(), decoded.getPort());
+        Assert.assertEquals(lb.getTimeout(), decoded.getTimeout());
+        Assert.assertEquals(Boolean.TRUE, decoded.isConnectionLogging());
+        Assert.assertEquals(Boolean.FALSE, decoded.isContentCaching());
+        Assert.assertNull(decoded.getHttpsRedirect());
+        Assert.assertEquals(Boolean.TRUE, decoded.getHalfClosed());
+        Assert.assertTrue(decoded.getIsSticky());
+        Assert.assertFalse(decoded.isProcessingDeletion());
+        Assert.assertEquals(LoadBalancerAlgorithm.WEIGHTED_ROUND_ROBIN, decoded.getAlgorithm());
+        Assert.assertEquals(LoadBalancerProtocol.HTTPS, decoded.getProtocol());
+        Assert.assertEquals(LoadBalancerStatus.PENDING_UPDATE, decoded.getStatus());
+        Assert.assertEquals(SessionPersistence.HTTP_COOKIE, decoded.getSessionPersistence());
+        Assert.assertEquals(1500000000000L, decoded.getCreated().getTimeInMillis());
+        Assert.assertEquals("America/Chicago", decoded.getCreated().getTimeZone().getID());
+        Assert.assertNull(decoded.getUpdated());
+        Assert.assertNull(decoded.getHealthMonitor());
+        Assert.assertNull(decoded.getConnectionLimit());
+        Assert.assertNull(decoded.getRateLimit());
+        Assert.assertNull(decoded.getUserPages());
+    }
+
+    @Test
+    public void shouldRoundTripNodesAndAccessList() throws IOException {
+        LoadBalancer decoded = roundTrip(lb);
+        Assert.assertEquals(3, decoded.getNodes().size());
+        Map<Integer, Node> nodes = new HashMap<Integer, Node>();
+        for (Node node : decoded.getNodes()) {
+            nodes.put(node.getId(), node);
+            Assert.assertSame(decoded, node.getLoadbalancer());
+        }
+        for (Node expected : lb.getNodes()) {
+            Node found = nodes.get(expected.getId());
+            Assert.assertEquals(expected.getIpAddress(), found.getIpAddress());
+            Assert.assertEquals(expected.getPort(), found.getPort());
+            Assert.assertEquals(expected.getWeight(), found.getWeight());
+            Assert.assertEquals(expected.getCondition(), found.getCondition());
+            Assert.assertEquals(expected.getStatus(), found.getStatus());
+            Assert.assertEquals(expected.getType(), found.getType());
+            Assert.assertEquals(expected.isToBeUpdated(), found.isToBeUpdated());
+            Assert.assertEquals(expected.isNew(), found.isNew());
+        }
+
+        Assert.assertEquals(1, decoded.getAccessLists().size());
+        AccessList item = decoded.getAccessLists().iterator().next();
+        Assert.assertEquals(Integer.valueOf(77), item.getId());
+        Assert.assertEquals("192.168.0.0/16", item.getIpAddress());
+        Assert.assertEquals(AccessListType.DENY, item.getType());
+    }
+
+    @Test
+    public void shouldRoundTripOptionalChildren() throws IOException {
+        HealthMonitor monitor = new HealthMonitor();
+        monitor.setId(9);
+        monitor.setType(HealthMonitorType.HTTP);
+        monitor.setDelay(10);
+        monitor.setTimeout(5);
+        monitor.setAttemptsBeforeDeactivation(3);
+        monitor.setPath("/status");
+        monitor.setStatusRegex("^[234][0-9][0-9]$");
+        monitor.setHostHeader("example.com");
+        lb.setHealthMonitor(monitor);
+
+        ConnectionLimit limit = new ConnectionLimit();
+        limit.setMaxConnections(100);
+        limit.setMaxConnectionRate(50);
+        limit.setRateInterval(60);
+        lb.setConnectionLimit(limit);
+
+        RateLimit rateLimit = new RateLimit();
+        rateLimit.setMaxRequestsPerSecond(25);
+        rateLimit.setExpirationTime(Calendar.getInstance());
+        lb.setRateLimit(rateLimit);
+
+        // Bigger than writeUTF could carry
+        StringBuilder page = new StringBuilder();
+        while (page.length() < 100000) {
+            page.append("<p>café fermé</p>");
+        }
+        UserPages userPages = new UserPages();
+        userPages.setErrorpage(page.toString());
+        lb.setUserPages(userPages);
+
+        LoadBalancer decoded = roundTrip(lb);
+        Assert.assertEquals(HealthMonitorType.HTTP, decoded.getHealthMonitor().getType());
+        Assert.assertEquals(Integer.valueOf(9), decoded.getHealthMonitor().getId());
+        Assert.assertEquals(Integer.valueOf(3), decoded.getHealthMonitor().getAttemptsBeforeDeactivation());
+        Assert.assertEquals("^[234][0-9][0-9]$", decoded.getHealthMonitor().getStatusRegex());
+        Assert.assertNull(decoded.getHealthMonitor().getBodyRegex());
+        Assert.assertEquals("example.com", decoded.getHealthMonitor().getHostHeader());
+        Assert.assertNull(decoded.getConnectionLimit().getMinConnections());
+        Assert.assertEquals(Integer.valueOf(100), decoded.getConnectionLimit().getMaxConnections());
+        Assert.assertEquals(Integer.valueOf(60), decoded.getConnectionLimit().getRateInterval());
+        Assert.assertEquals(Integer.valueOf(25), decoded.getRateLimit().getMaxRequestsPerSecond());
+        Assert.assertEquals(rateLimit.getExpirationTime().getTimeInMillis(), decoded.getRateLimit().getExpirationTime().getTimeInMillis());
+        Assert.assertEquals(page.toString(), decoded.getUserPages().getErrorpage());
+    }
+
+    @Test
+    public void shouldRoundTripVirtualIps() throws IOException {
+        VirtualIp vip = new VirtualIp();
+        vip.setId(11);
+        vip.setIpAddress("172.16.0.11");
+        vip.setVipType(VirtualIpType.PUBLIC);
+        vip.setIpVersion(IpVersion.IPV4);
+        new LoadBalancerJoinVip(443, lb, vip);
+        VirtualIpv6 vip6 = new VirtualIpv6();
+        vip6.setId(12);
+        vip6.setAccountId(5678);
+        vip6.setVipOctets(4);
+        new LoadBalancerJoinVip6(443, lb, vip6);
+
+        LoadBalancer decoded = roundTrip(lb);
+        LoadBalancerJoinVip join = decoded.getLoadBalancerJoinVipSet().iterator().next();
+        Assert.assertEquals(Integer.valueOf(443), join.getPort());
+        Assert.assertEquals(Integer.valueOf(11), join.getVirtualIp().getId());
+        Assert.assertEquals("172.16.0.11", join.getVirtualIp().getIpAddress());
+        Assert.assertEquals(VirtualIpType.PUBLIC, join.getVirtualIp().getVipType());
+        Assert.assertEquals(IpVersion.IPV4, join.getVirtualIp().getIpVersion());
+        Assert.assertSame(decoded, join.getLoadBalancer());
+        LoadBalancerJoinVip6 join6 = decoded.getLoadBalancerJoinVip6Set().iterator().next();
+        Assert.assertEquals(Integer.valueOf(12), join6.getVirtualIp().getId());
+        Assert.assertEquals(Integer.valueOf(5678), join6.getVirtualIp().getAccountId());
+        Assert.assertEquals(Integer.valueOf(4), join6.getVirtualIp().getVipOctets());
+    }
+
+    @Test
+    public void shouldRoundTripEmptyLoadBalancer() throws IOException {
+        LoadBalancer decoded = roundTrip(new LoadBalancer());
+        Assert.assertNull(decoded.getId());
+        Assert.assertNull(decoded.getUserName());
+        Assert.assertNull(decoded.getAlgorithm());
+        Assert.assertNull(decoded.isConnectionLogging());
+        Assert.assertTrue(decoded.getNodes().isEmpty());
+        Assert.assertTrue(decoded.getAccessLists().isEmpty());
+        Assert.assertTrue(decoded.getLoadBalancerJoinVipSet().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectNewerVersion() throws IOException {
+        byte[] bytes = LoadBalancerMessageCodec.encode(lb);
+        bytes[2] = (byte) (LoadBalancerMessageCodec.VERSION + 1);
+        LoadBalancerMessageCodec.decode(bytes);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectJavaSerializedPayload() throws IOException {
+        LoadBalancerMessageCodec.decode(javaSerialize(lb));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectTruncatedPayload() throws IOException {
+        byte[] bytes = LoadBalancerMessageCodec.encode(lb);
+        byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        LoadBalancerMessageCodec.decode(truncated);
+    }
+
+    @Test
+    public void shouldBeMuchSmallerThanJavaSerialization() throws IOException {
+        int encoded = LoadBalancerMessageCodec.encode(lb).length;
+        int serialized = javaSerialize(lb).length;
+        Assert.assertTrue(String.format("encoded %d bytes, serialized %d", encoded, serialized), encoded * 4 < serialized);
+    }
+
+    @Test
+    public void shouldSendObjectMessagesUnlessBinaryIsTurnedOn() throws JMSException {
+        Configuration configuration = mock(Configuration.class);
+        Session session = mock(Session.class);
+        ObjectMessage objectMessage = mock(ObjectMessage.class);
+        when(session.createObjectMessage(lb)).thenReturn(objectMessage);
+
+        Assert.assertFalse(LoadBalancerMessageCodec.isEnabled(null));
+        Assert.assertFalse(LoadBalancerMessageCodec.isEnabled(configuration));
+        Assert.assertSame(objectMessage, LoadBalancerMessageCodec.toMessage(session, lb, LoadBalancerMessageCodec.isEnabled(configuration)));
+        verify(session, never()).createBytesMessage();
+    }
+
+    @Test
+    public void shouldSendBytesMessagesWhenBinaryIsTurnedOn() throws JMSException {
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.hasKeys(PublicApiServiceConfigurationKeys.async_binary_lb_messages)).thenReturn(true);
+        when(configuration.getString(PublicApiServiceConfigurationKeys.async_binary_lb_messages)).thenReturn("true");
+        Session session = mock(Session.class);
+        BytesMessage bytesMessage = mock(BytesMessage.class);
+        when(session.createBytesMessage()).thenReturn(bytesMessage);
+
+        Assert.assertTrue(LoadBalancerMessageCodec.isEnabled(configuration));
+        Assert.assertSame(bytesMessage, LoadBalancerMessageCodec.toMessage(session, lb, LoadBalancerMessageCodec.isEnabled(configuration)));
+        verify(session, never()).createObjectMessage(any(LoadBalancer.class));
+        verify(bytesMessage).writeBytes(any(byte[].class));
+    }
+
+    private static LoadBalancer roundTrip(LoadBalancer lb) throws IOException {
+        return LoadBalancerMessageCodec.decode(LoadBalancerMessageCodec.encode(lb));
+    }
+
+    private static byte[] javaSerialize(Object obj) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(obj);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
@@ -11,7 +11,15 @@ import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.openstack.atlas.api.validation.ValidatorBuilder.build;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -160,6 +168,32 @@ public class ValidatorTest {
             result.getValidationResults().clear();
             assertTrue(result.getValidationResults().size() == 1);
         }
+
+        @Test
+        public void shouldValidateFromManyThreadsAtOnce() throws Exception {
+            final Validator<SimpleBean> validator = build(new ValidatorBuilder<SimpleBean>(SimpleBean.class) {
+
+                {
+                    result(validationTarget().getIntProperty1()).must().exist().withMessage("Must not be null");
+                }
+            });
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            List<Future<Boolean>> outcomes = new ArrayList<Future<Boolean>>();
+
+            for (int i = 0; i < 200; i++) {
+                final SimpleBean bean = i % 2 == 0 ? testObjectA : testObjectB;
+                outcomes.add(pool.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return validator.validate(bean, HttpRequestType.POST).passedValidation();
+                    }
+                }));
+            }
+            for (int i = 0; i < outcomes.size(); i++) {
+                assertEquals(i % 2 == 0, outcomes.get(i).get());
+            }
+            pool.shutdown();
+        }
     }
 
     public static class WhenHandlingExceptionsDuringValidation {
@@ -4,6 +4,7 @@ public enum PublicApiServiceConfigurationKeys implements ConfigurationKey {
 
     access_log_file_location,
     adapter_soap_rest,
+    async_binary_lb_messages,
     allow_bypassauth,
     allow_internal_auth,
     auth_callback_uri,
@@ -37,8 +38,23 @@ public enum PublicApiServiceConfigurationKeys implements ConfigurationKey {
     stats_timeout_in_millis,
     ttl,
     usage_poller_log_all_counters,
+    usage_poller_snmp_async,
+    usage_poller_snmp_deadline_millis,
+    host_usage_poller_threads,
+    host_usage_poller_timeout_millis,
+    usage_event_collection_threads,
+    usage_event_collection_queue_size,
+    usage_event_collection_rejection_policy,
+    usage_event_collection_host_limit,
+    usage_event_collection_host_wait_millis,
     usage_timezone_code,
     usage_deletion_limit,
+    usage_batch_insert_chunk_size,
+    event_purge_batch_size,
+    event_purge_pause_millis,
+    endpoint_config_cache_ttl_millis,
+    blacklist_index_ttl_millis,
+    identity_admin_token_refresh_ahead_secs,
     stingray_stats_base_uri,
     rest_api_retries
 }
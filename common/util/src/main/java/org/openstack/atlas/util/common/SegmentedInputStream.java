@@ -5,49 +5,81 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
+/*
+ * Reads one segment of a file with positional FileChannel reads, so several
+ * segments of the same file can be streamed at once over a shared channel
+ * without fighting over a file pointer. A stream built on a caller's channel
+ * leaves that channel open on close.
+ */
 public class SegmentedInputStream extends InputStream {
 
-    private RandomAccessFile ra;
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private long position;
     long bytesLeft;
 
     public SegmentedInputStream(File filePath, long offset, long bytesLeft) throws FileNotFoundException, IOException {
-        ra = new RandomAccessFile(filePath, "r");
-        ra.seek(offset);
+        this(new RandomAccessFile(filePath, "r").getChannel(), offset, bytesLeft, true);
+    }
+
+    public SegmentedInputStream(FileChannel channel, long offset, long bytesLeft) {
+        this(channel, offset, bytesLeft, false);
+    }
+
+    private SegmentedInputStream(FileChannel channel, long offset, long bytesLeft, boolean ownsChannel) {
+        this.channel = channel;
+        this.position = offset;
         this.bytesLeft = bytesLeft;
+        this.ownsChannel = ownsChannel;
     }
 
     @Override
     public int read() throws IOException {
-        if (bytesLeft <= 0) {
-            return -1;
-        }
-        int data = ra.read();
-        if (data >= 0) {
-            bytesLeft--;
-        }
-        return data;
+        byte[] b = new byte[1];
+        int nBytesRead = read(b, 0, 1);
+        return (nBytesRead <= 0) ? -1 : (b[0] & 0xff);
     }
 
+    @Override
     public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
         if (bytesLeft <= 0) {
             return -1;
         }
         int needBytes = len;
-        int nBytesRead;
         if (bytesLeft < needBytes) {
             needBytes = (int) bytesLeft;
         }
-        nBytesRead = ra.read(b, off, needBytes);
+        int nBytesRead = channel.read(ByteBuffer.wrap(b, off, needBytes), position);
         if (nBytesRead > 0) {
+            position += nBytesRead;
             bytesLeft -= nBytesRead;
         }
-        //System.out.printf("read %d bytes\n", nBytesRead);
         return nBytesRead;
     }
 
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, bytesLeft));
+        position += skipped;
+        bytesLeft -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, bytesLeft);
+    }
+
     @Override
     public void close() throws IOException {
-        ra.close();
+        if (ownsChannel) {
+            channel.close();
+        }
     }
 }
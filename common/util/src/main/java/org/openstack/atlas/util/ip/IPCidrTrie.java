@@ -0,0 +1,88 @@
+package org.openstack.atlas.util.ip;
+
+import org.openstack.atlas.util.ip.exception.IPStringConversionException;
+
+/*
+ * Binary radix trie over IPv4 and IPv6 prefixes. A lookup walks at most 32
+ * or 128 bits of the address no matter how many cidrs were added, where
+ * IPv4Cidrs and IPv6Cidrs have to test every block in turn.
+ *
+ * Not thread safe while cidrs are being added. Once filled it is only read,
+ * so it can be handed to other threads through a final or volatile field.
+ */
+public class IPCidrTrie {
+
+    private final Node ipv4Root = new Node();
+    private final Node ipv6Root = new Node();
+    private int size;
+
+    public IPCidrTrie() {
+    }
+
+    public void add(IPv4Cidr cidr) {
+        add(ipv4Root, cidr.getIpBytes(), cidr.getSubnet());
+    }
+
+    public void add(IPv6Cidr cidr) {
+        add(ipv6Root, cidr.getIpBytes(), cidr.getSubnet());
+    }
+
+    public boolean contains(String ip) throws IPStringConversionException {
+        if (ip == null) {
+            return false;
+        }
+        if (IPUtils.isValidIpv4String(ip)) {
+            return contains(ipv4Root, new IPv4(ip).getBytes());
+        }
+        if (IPUtils.isValidIpv6String(ip)) {
+            return contains(ipv6Root, new IPv6(ip).getBytes());
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void add(Node root, byte[] bytes, int prefixLength) {
+        Node node = root;
+        for (int i = 0; i < prefixLength && !node.terminal; i++) {
+            int bit = bit(bytes, i);
+            if (node.children[bit] == null) {
+                node.children[bit] = new Node();
+            }
+            node = node.children[bit];
+        }
+        if (!node.terminal) {
+            // A shorter prefix already covers everything below this node
+            node.terminal = true;
+            node.children[0] = null;
+            node.children[1] = null;
+        }
+        size++;
+    }
+
+    private static boolean contains(Node root, byte[] bytes) {
+        Node node = root;
+        int bits = bytes.length * 8;
+        for (int i = 0; node != null; i++) {
+            if (node.terminal) {
+                return true;
+            }
+            if (i >= bits) {
+                return false;
+            }
+            node = node.children[bit(bytes, i)];
+        }
+        return false;
+    }
+
+    private static int bit(byte[] bytes, int i) {
+        return (bytes[i >> 3] >> (7 - (i & 7))) & 1;
+    }
+
+    private static class Node {
+        private final Node[] children = new Node[2];
+        private boolean terminal;
+    }
+}
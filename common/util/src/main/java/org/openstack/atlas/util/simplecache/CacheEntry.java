@@ -1,7 +1,5 @@
 package org.openstack.atlas.util.simplecache;
 
-import java.util.Calendar;
-
 public class CacheEntry <E>{
     private long updated;
     private long ttl;
@@ -55,8 +53,7 @@ public class CacheEntry <E>{
 
 
     private long nowInSeconds(){
-        long seconds = Calendar.getInstance().getTimeInMillis()/1000;
-        return seconds;
+        return System.currentTimeMillis()/1000;
     }
 
 
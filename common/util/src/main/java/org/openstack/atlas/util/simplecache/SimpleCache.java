@@ -1,46 +1,55 @@
 package org.openstack.atlas.util.simplecache;
 
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/*
+ * Entries are spread over independently locked segments, so requests for
+ * different keys rarely wait on each other. Each segment keeps its entries
+ * in access order and drops the least recently used one once it holds its
+ * share of maxEntries. Expired entries are dropped when they are next read,
+ * and cleanExpiredByCount sweeps the rest one segment at a time.
+ */
 public class SimpleCache<E> {
 
-    private int count = 0;
-    private int cleanExpiredOn = -1;
-    private Map<String, CacheEntry<E>> cache;
-    private long ttl;
+    private static final int SEGMENTS = 16;
+    private static final int DEFAULT_MAX_ENTRIES = 65536;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final List<Segment> segments;
+    private volatile int cleanExpiredOn = -1;
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES; // Use negative values for no bound
+    private volatile long ttl;
 
     public SimpleCache() {
-        cache = new HashMap<String, CacheEntry<E>>();
-        this.ttl = 300; // Use negative values to specify No expiration
+        this(300); // Use negative values to specify No expiration
     }
 
-    public int cleanExpiredByCount() {
-        boolean shouldClean=false;
-        synchronized(this){
-            if (cleanExpiredOn > 0 && count >= cleanExpiredOn) {
-                count = 0;
-                shouldClean = true;
-            }
-        }
-        if (shouldClean) {
-            return removeExpired();
-        } else {
-            return -1;
+    public SimpleCache(long ttl) {
+        this.ttl = ttl;
+        segments = new ArrayList<Segment>(SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new Segment());
         }
     }
 
-    public SimpleCache(long ttl) {
-        cache = new HashMap<String, CacheEntry<E>>();
-        this.ttl = ttl;
+    public int cleanExpiredByCount() {
+        if (cleanExpiredOn > 0 && count.incrementAndGet() >= cleanExpiredOn) {
+            count.set(0);
+            return removeExpired();
+        }
+        return -1;
     }
 
     public long getTtl() {
@@ -52,58 +61,68 @@ public class SimpleCache<E> {
     }
 
     public void put(String key, E val) {
-        CacheEntry entry = new CacheEntry<E>();
-        entry.setVal(val);
-        entry.setTtl(ttl);
-        entry.setUpdated();
-        synchronized (this) {
-            cache.put(key, entry);
+        put(key, val, ttl);
+    }
+
+    public void put(String key, E val, long ttl) {
+        CacheEntry<E> entry = new CacheEntry<E>(ttl, val);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, entry);
         }
     }
 
     public CacheEntry<E> getEntry(String key) {
         CacheEntry<E> entry;
-        synchronized (this) {
-            entry = cache.get(key);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && entry.isExpired()) {
+                segment.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
         }
         return entry;
     }
 
     public boolean remove(String key) {
-        synchronized (this) {
-            if (cache.containsKey(key)) {
-                cache.remove(key);
-                return true;
-            }
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.remove(key) != null;
         }
-        return false;
     }
 
     public boolean containsKey(String key) {
-        boolean out;
-        synchronized (this) {
-            out = cache.containsKey(key);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.containsKey(key);
         }
-        return out;
     }
 
     public Set<String> getKeySet() {
-        Set<String> keys;
-        synchronized (this) {
-            keys = new HashSet<String>(cache.keySet());
+        Set<String> keys = new HashSet<String>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                keys.addAll(segment.keySet());
+            }
         }
         return keys;
     }
 
     public Set<String> getExpiredKeySet() {
         Set<String> keys = new HashSet<String>();
-        Set<Entry<String, CacheEntry<E>>> entrySet;
-        synchronized (this) {
-            entrySet = new HashSet<Entry<String, CacheEntry<E>>>(cache.entrySet());
-        }
-        for (Entry<String, CacheEntry<E>> e : entrySet) {
-            if (e.getValue().isExpired()) {
-                keys.add(e.getKey());
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Entry<String, CacheEntry<E>> e : segment.entrySet()) {
+                    if (e.getValue().isExpired()) {
+                        keys.add(e.getKey());
+                    }
+                }
             }
         }
         return keys;
@@ -111,12 +130,12 @@ public class SimpleCache<E> {
 
     public int numExpiredKeys() {
         int expiredCount = 0;
-        Set<Entry<String, CacheEntry<E>>> entrySet;
-        synchronized (this) {
-            entrySet = new HashSet<Entry<String, CacheEntry<E>>>(cache.entrySet());
-            for (Entry<String, CacheEntry<E>> e : entrySet) {
-                if (e.getValue().isExpired()) {
-                    expiredCount++;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (CacheEntry<E> cacheEntry : segment.values()) {
+                    if (cacheEntry.isExpired()) {
+                        expiredCount++;
+                    }
                 }
             }
         }
@@ -124,35 +143,46 @@ public class SimpleCache<E> {
     }
 
     public void clear() {
-        cache.clear();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
     }
 
     public Map<String, Long> expiresIn() {
         Map<String, Long> out = new HashMap<String, Long>();
-
-        Set<Entry<String, CacheEntry<E>>> entrySet;
-        synchronized (this) {
-            entrySet = new HashSet<Entry<String, CacheEntry<E>>>(cache.entrySet());
-        }
-        for (Entry<String, CacheEntry<E>> e : entrySet) {
-            String key = e.getKey();
-            CacheEntry<E> cacheEntry = e.getValue();
-            out.put(key, cacheEntry.expiresIn());
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Entry<String, CacheEntry<E>> e : segment.entrySet()) {
+                    out.put(e.getKey(), e.getValue().expiresIn());
+                }
+            }
         }
         return out;
     }
 
     public Map<String, CacheEntry<E>> getExpiredEntriesAndRemoveFromCache() {
         Map<String, CacheEntry<E>> out = new HashMap<String, CacheEntry<E>>();
-        synchronized (this) {
-            Set<Entry<String, CacheEntry<E>>> entrySet;
-            entrySet = new HashSet<Entry<String, CacheEntry<E>>>(cache.entrySet());
-            for (Entry<String, CacheEntry<E>> e : entrySet) {
-                String key = e.getKey();
-                CacheEntry<E> cacheEntry = e.getValue();
-                if (cacheEntry.isExpired()) {
-                    out.put(key, cacheEntry);
-                    cache.remove(key);
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<Entry<String, CacheEntry<E>>> it = segment.entrySet().iterator();
+                while (it.hasNext()) {
+                    Entry<String, CacheEntry<E>> e = it.next();
+                    if (e.getValue().isExpired()) {
+                        out.put(e.getKey(), e.getValue());
+                        it.remove();
+                    }
                 }
             }
         }
@@ -161,15 +191,14 @@ public class SimpleCache<E> {
 
     public int removeExpired() {
         int n = 0;
-        synchronized (this) {
-            Set<Entry<String, CacheEntry<E>>> entrySet;
-            entrySet = new HashSet<Entry<String, CacheEntry<E>>>(cache.entrySet());
-            for (Entry<String, CacheEntry<E>> e : entrySet) {
-                String key = e.getKey();
-                CacheEntry<E> cacheEntry = e.getValue();
-                if (cacheEntry.isExpired()) {
-                    cache.remove(key);
-                    n++;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<CacheEntry<E>> it = segment.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().isExpired()) {
+                        it.remove();
+                        n++;
+                    }
                 }
             }
         }
@@ -177,11 +206,11 @@ public class SimpleCache<E> {
     }
 
     public int getCount() {
-        return count;
+        return count.get();
     }
 
     public void setCount(int count) {
-        this.count = count;
+        this.count.set(count);
     }
 
     public int getCleanExpiredOn() {
@@ -191,4 +220,48 @@ public class SimpleCache<E> {
     public void setCleanExpiredOn(int cleanExpiredOn) {
         this.cleanExpiredOn = cleanExpiredOn;
     }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments.get(h & (SEGMENTS - 1));
+    }
+
+    private class Segment extends LinkedHashMap<String, CacheEntry<E>> {
+        private static final long serialVersionUID = 1L;
+
+        private Segment() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<E>> eldest) {
+            int max = maxEntries;
+            if (max < 0 || size() <= (max + SEGMENTS - 1) / SEGMENTS) {
+                return false;
+            }
+            evictions.incrementAndGet();
+            return true;
+        }
+    }
 }
@@ -0,0 +1,183 @@
+package org.openstack.atlas.util.snmp;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openstack.atlas.util.snmp.exceptions.StingraySnmpGeneralException;
+import org.openstack.atlas.util.snmp.exceptions.StingraySnmpRetryExceededException;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Walks a set of table columns on one host without blocking the caller.
+ * Like StingraySnmpSession.walkColumns every GETBULK carries one binding per
+ * column still being walked, so the columns advance together and a host is
+ * walked in a third of the round trips a request per column would take.
+ * Responses are handled on the snmp4j dispatcher thread which sends the
+ * next request, so no thread is parked waiting on the host.
+ */
+public class StingraySnmpAsyncWalk implements ResponseListener {
+
+    private static final Log LOG = LogFactory.getLog(StingraySnmpAsyncWalk.class);
+    private static final double SHRINK_FACTOR = 0.75;
+    private static final double GROW_FACTOR = 1.25;
+    private final Snmp snmp;
+    private final Target target;
+    private final String connectionName;
+    private final long deadline;
+    private final StingraySnmpWalkListener listener;
+    private final Map<String, List<VariableBinding>> bindings = new LinkedHashMap<String, List<VariableBinding>>();
+    private final Map<String, String> nextOids = new LinkedHashMap<String, String>();
+    private final double maxBudget;
+    private double varBindBudget;
+    private Object userObject;
+    private int responses = 0;
+    private boolean done = false;
+
+    public StingraySnmpAsyncWalk(Snmp snmp, Target target, List<String> baseOids, int maxRepetitions, long deadline, StingraySnmpWalkListener listener) {
+        this.snmp = snmp;
+        this.target = target;
+        this.connectionName = target.getAddress().toString();
+        this.deadline = deadline;
+        this.listener = listener;
+        for (String baseOid : baseOids) {
+            bindings.put(baseOid, new ArrayList<VariableBinding>());
+            nextOids.put(baseOid, baseOid);
+        }
+        this.maxBudget = (double) Math.max(1, maxRepetitions) * Math.max(1, baseOids.size());
+        this.varBindBudget = maxBudget;
+    }
+
+    public synchronized void start() {
+        if (done) {
+            return;
+        }
+        if (nextOids.isEmpty()) {
+            finish();
+            return;
+        }
+        send();
+    }
+
+    @Override
+    public void onResponse(ResponseEvent event) {
+        // Always release the request or snmp4j keeps retrying it
+        ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            responses++;
+            @SuppressWarnings("unchecked")
+            List<String> columns = (List<String>) event.getUserObject();
+            if (System.currentTimeMillis() > deadline) {
+                fail(new StingraySnmpRetryExceededException(String.format("Deadline exceeded walking %s on snmp server %s after %d responses", columns, connectionName, responses)));
+                return;
+            }
+            PDU resp = event.getResponse();
+            if (resp == null || resp.getErrorStatus() == PDU.tooBig) {
+                LOG.warn(String.format("Error fetching bulk response reducing varbind budget from %d to %d for %s", (int) varBindBudget, (int) (varBindBudget * SHRINK_FACTOR), connectionName));
+                varBindBudget *= SHRINK_FACTOR;
+                if (varBindBudget <= 1.0) {
+                    fail(new StingraySnmpRetryExceededException(String.format("Error maxRepetitions was shrunk to 1 to snmp server %s", connectionName)));
+                    return;
+                }
+                send();
+                return;
+            }
+            if (resp.getErrorStatus() != PDU.noError) {
+                fail(new StingraySnmpGeneralException(String.format("Error status %s walking %s on snmp server %s", resp.getErrorStatusText(), columns, connectionName)));
+                return;
+            }
+            int respSize = resp.size();
+            if (respSize == 0) {
+                finish();
+                return;
+            }
+            int nCols = columns.size();
+            for (int i = 0; i < respSize; i++) {
+                String column = columns.get(i % nCols);
+                if (!nextOids.containsKey(column)) {
+                    continue; // This column already walked off its subtree
+                }
+                VariableBinding vb = resp.get(i);
+                String vbOid = vb.getOid().toString();
+                if (vb.isException() || !vbOid.startsWith(column + ".")) {
+                    nextOids.remove(column);
+                    continue;
+                }
+                bindings.get(column).add(vb);
+                nextOids.put(column, vbOid);
+            }
+            if (respSize < reps(nCols) * nCols) {
+                varBindBudget = Math.max(1.0, (double) respSize); // Truncated by the agent
+            } else {
+                varBindBudget = Math.min(maxBudget, varBindBudget * GROW_FACTOR);
+            }
+            start();
+        }
+    }
+
+    private int reps(int nCols) {
+        return Math.max(1, (int) (varBindBudget / nCols));
+    }
+
+    private void send() {
+        List<String> columns = new ArrayList<String>(nextOids.keySet());
+        PDU req = new PDU();
+        for (String column : columns) {
+            req.add(new VariableBinding(new OID(nextOids.get(column))));
+        }
+        req.setType(PDU.GETBULK);
+        req.setNonRepeaters(0);
+        req.setMaxRepetitions(reps(columns.size()));
+        req.setRequestID(new Integer32(StingraySnmpClient.incRequestId()));
+        try {
+            snmp.send(req, target, columns, this);
+        } catch (IOException ex) {
+            fail(new StingraySnmpGeneralException(String.format("Error sending bulk request to snmp server %s for %s", connectionName, columns), ex));
+        }
+    }
+
+    private void finish() {
+        done = true;
+        listener.walkFinished(this, bindings);
+    }
+
+    private void fail(StingraySnmpGeneralException ex) {
+        done = true;
+        LOG.error(ex.getMessage(), ex.getCause());
+        listener.walkFailed(this, ex);
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public Object getUserObject() {
+        return userObject;
+    }
+
+    public void setUserObject(Object userObject) {
+        this.userObject = userObject;
+    }
+
+    public String getConnectionName() {
+        return connectionName;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+}
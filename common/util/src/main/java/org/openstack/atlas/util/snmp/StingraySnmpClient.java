@@ -7,17 +7,13 @@ import org.openstack.atlas.util.snmp.exceptions.StingraySnmpGeneralException;
 import org.openstack.atlas.util.snmp.exceptions.StingraySnmpObjectNotFoundException;
 import org.openstack.atlas.util.snmp.exceptions.StingraySnmpRetryExceededException;
 import org.openstack.atlas.util.snmp.exceptions.StingraySnmpSetupException;
-import org.snmp4j.CommunityTarget;
 import org.snmp4j.PDU;
 import org.snmp4j.Snmp;
-import org.snmp4j.TransportMapping;
-import org.snmp4j.event.ResponseEvent;
 import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.smi.*;
-import org.snmp4j.transport.DefaultUdpTransportMapping;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +31,7 @@ public class StingraySnmpClient {
     }
     private int nonRepeaters = 0;
     private int maxRepetitions = 1000;
+    private int maxVarBindsPerGet = 60;
     private String address;
     private String port = StingraySnmpConstants.PORT;
     private String community = StingraySnmpConstants.COMMUNITY;
@@ -43,6 +40,7 @@ public class StingraySnmpClient {
     private int version = SnmpConstants.version2c;
     private static final Random rnd = new Random();
     private static final Pattern dotSplitter = Pattern.compile("\\.");
+    private static final List<String> usageOids = Arrays.asList(OIDConstants.VS_CURRENT_CONNECTIONS, OIDConstants.VS_BYTES_IN, OIDConstants.VS_BYTES_OUT);
     private static final VerboseLogger vlog = new VerboseLogger(StingraySnmpClient.class);
     private static final Log LOG = LogFactory.getLog(StingraySnmpClient.class);
     private static int requestId;
@@ -104,47 +102,56 @@ public class StingraySnmpClient {
 
     public Map<String, RawSnmpUsage> getSnmpUsage() throws StingraySnmpSetupException, StingraySnmpRetryExceededException, StingraySnmpGeneralException {
         vlog.printf("in call to getSnmpUsage()");
+        return toRawSnmpUsage(getSession().walkColumns(usageOids, maxRepetitions, timeout));
+    }
+
+    /*
+     * Starts a non blocking walk of the usage columns over the given snmp
+     * instance. The listener receives the bindings which can be handed to
+     * toRawSnmpUsage.
+     */
+    public StingraySnmpAsyncWalk startSnmpUsageWalk(Snmp snmp, long deadline, Object userObject, StingraySnmpWalkListener listener) throws StingraySnmpSetupException {
+        vlog.printf("in call to startSnmpUsageWalk() for %s", getConnectionName());
+        StingraySnmpSession session = getSession();
+        StingraySnmpAsyncWalk walk = new StingraySnmpAsyncWalk(snmp, session.getTarget(timeout), usageOids, maxRepetitions, deadline, listener);
+        walk.setUserObject(userObject);
+        walk.start();
+        return walk;
+    }
+
+    public static Map<String, RawSnmpUsage> toRawSnmpUsage(Map<String, List<VariableBinding>> columns) {
         Map<String, RawSnmpUsage> rawSnmpMap = new HashMap<String, RawSnmpUsage>();
-        List<VariableBinding> bindings;
 
         // Fetch Current Connections
-        bindings = getBulkOidBindingList(OIDConstants.VS_CURRENT_CONNECTIONS);
-        for (VariableBinding vb : bindings) {
+        for (VariableBinding vb : columns.get(OIDConstants.VS_CURRENT_CONNECTIONS)) {
             String vsName = getVirtualServerNameFromOid(OIDConstants.VS_CURRENT_CONNECTIONS, vb.getOid().toString());
-            if (!rawSnmpMap.containsKey(vsName)) {
-                RawSnmpUsage entry = new RawSnmpUsage();
-                entry.setVsName(vsName);
-                rawSnmpMap.put(vsName, entry);
-            }
-            rawSnmpMap.get(vsName).setConcurrentConnections(vb.getVariable().toLong());
+            getRawSnmpUsage(rawSnmpMap, vsName).setConcurrentConnections(vb.getVariable().toLong());
         }
 
         // Fetch BytesIn In
-        bindings = getBulkOidBindingList(OIDConstants.VS_BYTES_IN);
-        for (VariableBinding vb : bindings) {
+        for (VariableBinding vb : columns.get(OIDConstants.VS_BYTES_IN)) {
             String vsName = getVirtualServerNameFromOid(OIDConstants.VS_BYTES_IN, vb.getOid().toString());
-            if (!rawSnmpMap.containsKey(vsName)) {
-                RawSnmpUsage entry = new RawSnmpUsage();
-                entry.setVsName(vsName);
-                rawSnmpMap.put(vsName, entry);
-            }
-            rawSnmpMap.get(vsName).setBytesIn(vb.getVariable().toLong());
+            getRawSnmpUsage(rawSnmpMap, vsName).setBytesIn(vb.getVariable().toLong());
         }
 
         // Fetch Bytes out
-        bindings = getBulkOidBindingList(OIDConstants.VS_BYTES_OUT);
-        for (VariableBinding vb : bindings) {
+        for (VariableBinding vb : columns.get(OIDConstants.VS_BYTES_OUT)) {
             String vsName = getVirtualServerNameFromOid(OIDConstants.VS_BYTES_OUT, vb.getOid().toString());
-            if (!rawSnmpMap.containsKey(vsName)) {
-                RawSnmpUsage entry = new RawSnmpUsage();
-                entry.setVsName(vsName);
-                rawSnmpMap.put(vsName, entry);
-            }
-            rawSnmpMap.get(vsName).setBytesOut(vb.getVariable().toLong());
+            getRawSnmpUsage(rawSnmpMap, vsName).setBytesOut(vb.getVariable().toLong());
         }
         return rawSnmpMap;
     }
 
+    private static RawSnmpUsage getRawSnmpUsage(Map<String, RawSnmpUsage> rawSnmpMap, String vsName) {
+        RawSnmpUsage entry = rawSnmpMap.get(vsName);
+        if (entry == null) {
+            entry = new RawSnmpUsage();
+            entry.setVsName(vsName);
+            rawSnmpMap.put(vsName, entry);
+        }
+        return entry;
+    }
+
     public long getBytesIn(String vsName, boolean zeroOnNotFound, boolean negativeOneOnNotFoundException) throws StingraySnmpSetupException, StingraySnmpObjectNotFoundException, StingraySnmpGeneralException {
         return getLongValueForVirtualServer(vsName, OIDConstants.VS_BYTES_IN, zeroOnNotFound, negativeOneOnNotFoundException);
     }
@@ -195,63 +202,19 @@ public class StingraySnmpClient {
         req.add(new VariableBinding(new OID(searchOid)));
         req.setType(PDU.GET);
         req.setRequestID(new Integer32(incRequestId()));
-        UdpAddress udpAddr = new UdpAddress(address + "/" + port);
-        CommunityTarget target = new CommunityTarget();
-        target.setCommunity(new OctetString(community));
-        target.setVersion(version);
-        target.setAddress(udpAddr);
-        target.setTimeout(timeout);
-        TransportMapping transport;
-        try {
-            transport = new DefaultUdpTransportMapping();
-        } catch (IOException ex) {
-            String msg = String.format("Error setting up connection to %s/%s for SNMP connections for oid value %s for vs %s", address, port, baseOid, vsName);
-            LOG.error(msg, ex);
-            throw new StingraySnmpSetupException(msg, ex);
-        }
-        Snmp snmp = new Snmp(transport);
-        try {
-            transport.listen();
-        } catch (IOException ex) {
-            String msg = String.format("Error listening on udp port %s/%s for SNMP connections for oid value %s for vs %s", address, port, baseOid, vsName);
-            LOG.error(msg, ex);
-            closeConnection(snmp, null);
-            throw new StingraySnmpSetupException(msg, ex);
-        }
-        VariableBinding vb = null;
-        ResponseEvent respEvent = null;
-        try {
-            respEvent = snmp.get(req, target);
-        } catch (IOException ex) {
-            closeConnection(snmp, transport);
-            String msg = String.format("Error getting OID value %s for vs %s at SNMP server %s/%s", baseOid, vsName, address, port);
-            LOG.error(msg, ex);
-            closeConnection(snmp, transport);
-            throw new StingraySnmpGeneralException(msg, ex);
-        }
-        if (respEvent == null) {
-            String msg = String.format("Error response for OID %s for vs %s was null on SNMP server %s/%s", baseOid, vsName, address, port);
-            LOG.error(msg);
-            closeConnection(snmp, transport);
-        }
-        PDU resp;
-        resp = respEvent.getResponse();
+        PDU resp = getSession().sendPdu(req, timeout);
         if (resp == null) {
             String msg = String.format("Error responseEvent for OID %s for vs %s was null on SNMP server %s/%s", baseOid, vsName, address, port);
             LOG.error(msg);
-            closeConnection(snmp, transport);
             throw new StingraySnmpGeneralException(msg);
         }
         int respSize = resp.size();
         if (respSize < 1) {
             String msg = String.format("Error response binding size for for OID %s for vs %s was %d on SNMP server", baseOid, vsName, respSize, address, port);
             LOG.error(msg);
-            closeConnection(snmp, transport);
             throw new StingraySnmpGeneralException(msg);
         }
-        vb = resp.get(0);
-        String vbOid = vb.getOid().toString();
-        closeConnection(snmp, transport);
+        VariableBinding vb = resp.get(0);
         Class vbClass = vb.getVariable().getClass();
         if (vbClass.equals(Null.class)) {
             if (zeroOnNotFoundException) {
@@ -265,110 +228,41 @@ public class StingraySnmpClient {
         return vb.getVariable();
     }
 
-    public List<VariableBinding> getBulkOidBindingList(String oid) throws StingraySnmpSetupException, StingraySnmpGeneralException {
-        vlog.printf("in call getBulkOidBindingList(%s) for %s", oid, getConnectionName());
-        List<VariableBinding> bindings = new ArrayList<VariableBinding>();
-        String startOID = oid;
-        String currOID = startOID;
-        int totalItems = 0;
-        int matchedItems = 0;
-        double currMaxReps = maxRepetitions;
-        boolean finished = false;
-        while (!finished) {
-            vlog.printf("total items = %d matched items= %d from  CONTINUING", totalItems, matchedItems, getConnectionName(oid));
-            PDU req = new PDU();
-            req.add(new VariableBinding(new OID(currOID)));
-            req.setType(PDU.GETBULK);
-            req.setNonRepeaters(nonRepeaters);
-            req.setMaxRepetitions((int) currMaxReps);
-            req.setRequestID(new Integer32(incRequestId()));
-            UdpAddress udpAddr;
-            try {
-                udpAddr = new UdpAddress(address + "/" + port);
-            } catch (Exception ex) {
-                String msg = String.format("Invalid udpAddress specification %s/%s", address, port);
-                LOG.error(msg, ex);
-                throw new StingraySnmpSetupException(msg, ex);
-            }
-            CommunityTarget target = new CommunityTarget();
-            target.setCommunity(new OctetString(community));
-            target.setVersion(version);
-            target.setTimeout(timeout);
-            target.setAddress(udpAddr);
-            TransportMapping transport;
-            try {
-                transport = new DefaultUdpTransportMapping();
-            } catch (IOException ex) {
-                String msg = String.format("Error setting up snmp connection to %s", getConnectionName());
-                LOG.error(msg, ex);
-                throw new StingraySnmpSetupException(msg, ex);
-            }
-            Snmp snmp = new Snmp(transport);
-            try {
-                transport.listen();
-            } catch (IOException ex) {
-                String msg = String.format("Error listening on local udp port for snmp connection %s/%s", address, port);
-                LOG.error(msg, ex);
-                closeConnection(snmp, transport);
-                throw new StingraySnmpSetupException(msg, ex);
-            }
-            VariableBinding vb = null;
-            ResponseEvent respEvent = null;
-            try {
-                respEvent = snmp.getBulk(req, target);
-            } catch (IOException ex) {
-                String msg = String.format("Error getting bulk request from snmp server %s", getConnectionName(oid));
-                LOG.error(msg, ex);
-                closeConnection(snmp, transport);
-                throw new StingraySnmpGeneralException(msg, ex);
+    /*
+     * The given columns for each of the virtual servers, fetched together
+     * instead of one GET per value, keyed by virtual server name and then
+     * base oid. Values the agent doesn't have come back as an exception Null.
+     */
+    public Map<String, Map<String, org.snmp4j.smi.Variable>> getValuesForVirtualServers(List<String> vsNames, List<String> baseOids) throws StingraySnmpSetupException, StingraySnmpGeneralException {
+        vlog.printf("in call getValuesForVirtualServers(%s) for %s", vsNames, getConnectionName());
+        List<String> oids = new ArrayList<String>(vsNames.size() * baseOids.size());
+        for (String vsName : vsNames) {
+            for (String baseOid : baseOids) {
+                oids.add(getOidFromVirtualServerName(baseOid, vsName));
             }
-            PDU respPdu = respEvent.getResponse();
-            if (respPdu == null) {
-                String msg = String.format("Error fetching bulk response reducing maxRepetitions from %d to %d for %s", (int) currMaxReps, (int) (currMaxReps * 0.75), getConnectionName(oid));
-                currMaxReps *= 0.75;
-                LOG.warn(msg);
-                if (currMaxReps <= 1.0) {
-                    String exMsg = String.format("Error maxRepetitions was shrunk to 1 to snmp server %s", getConnectionName(oid));
-                    LOG.error(exMsg);
-                    closeConnection(snmp, transport);
-                    throw new StingraySnmpRetryExceededException(exMsg);
-                }
-                closeConnection(snmp, transport);
-                continue;
-            }
-            int respSize = respPdu.size();
-            for (int i = 0; i < respSize; i++) {
-                totalItems++;
-                vb = respPdu.get(i);
-                String vbOid = vb.getOid().toString();
-                if (!vbOid.startsWith(oid + ".")) {
-                    finished = true;
-                    continue;
-                }
-                matchedItems++;
-                bindings.add(vb);
-                currOID = vbOid;
-            }
-            closeConnection(snmp, transport);
-            if (respSize < currMaxReps) {
-                break; // This was the last set of entries.
+        }
+        Map<String, org.snmp4j.smi.Variable> values = getSession().getValues(oids, maxVarBindsPerGet, timeout);
+        Map<String, Map<String, org.snmp4j.smi.Variable>> vsValues = new HashMap<String, Map<String, org.snmp4j.smi.Variable>>();
+        int i = 0;
+        for (String vsName : vsNames) {
+            Map<String, org.snmp4j.smi.Variable> columns = new HashMap<String, org.snmp4j.smi.Variable>();
+            for (String baseOid : baseOids) {
+                columns.put(baseOid, values.get(oids.get(i++)));
             }
+            vsValues.put(vsName, columns);
         }
-        vlog.printf("total items = %d matched items= %d for %s FINISHED", totalItems, matchedItems, getConnectionName(oid));
-        return bindings;
+        return vsValues;
     }
 
-    private void closeConnection(Snmp snmp, TransportMapping transport) {
-        try {
-            snmp.close();
-        } catch (Exception ex) {
-            LOG.warn(String.format("Warning unable to close snmp connection on %s", getConnectionName()));
-        }
-        try {
-            transport.close();
-        } catch (Exception ex) {
-            LOG.warn(String.format("Warning unable to close transport on %s", getConnectionName()));
-        }
+    public List<VariableBinding> getBulkOidBindingList(String oid) throws StingraySnmpSetupException, StingraySnmpGeneralException {
+        vlog.printf("in call getBulkOidBindingList(%s) for %s", oid, getConnectionName());
+        return getSession().walkColumns(Arrays.asList(oid), maxRepetitions, timeout).get(oid);
+    }
+
+    public StingraySnmpSession getSession() {
+        StingraySnmpSession session = StingraySnmpSession.getSession(address, port, community);
+        session.setVersion(version);
+        return session;
     }
 
     public static String getOidFromVirtualServerName(String baseOid, String vsName) {
@@ -504,6 +398,14 @@ public class StingraySnmpClient {
         this.reportUdpCountEveryNMilliSeconds = reportUdpCountEveryNMilliSeconds;
     }
 
+    public int getMaxVarBindsPerGet() {
+        return maxVarBindsPerGet;
+    }
+
+    public void setMaxVarBindsPerGet(int maxVarBindsPerGet) {
+        this.maxVarBindsPerGet = maxVarBindsPerGet;
+    }
+
     public int getNonRepeaters() {
         return nonRepeaters;
     }
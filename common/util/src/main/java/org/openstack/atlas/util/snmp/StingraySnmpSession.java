@@ -0,0 +1,430 @@
+package org.openstack.atlas.util.snmp;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openstack.atlas.util.common.VerboseLogger;
+import org.openstack.atlas.util.snmp.exceptions.StingraySnmpGeneralException;
+import org.openstack.atlas.util.snmp.exceptions.StingraySnmpRetryExceededException;
+import org.openstack.atlas.util.snmp.exceptions.StingraySnmpSetupException;
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.TransportMapping;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long lived SNMP session to a single Stingray host. The UDP transport is
+ * opened on first use and kept open across polls so a poll no longer sets up
+ * and tears down a socket per GETBULK request.
+ *
+ * Sessions are shared per address/port/community through getSession. The
+ * maxRepetitions used for bulk walks is learned from earlier responses and
+ * carried over to the next poll of the same host.
+ *
+ * Requests are not serialized: snmp4j matches responses to requests by
+ * request id, so a GET for one virtual server goes out while a walk of the
+ * same host is in flight. Only opening and closing the transport is locked.
+ * Sessions that haven't sent anything for IDLE_TIMEOUT_MILLIS, which
+ * includes hosts that were removed and are no longer polled, are closed and
+ * dropped the next time any session is looked up.
+ */
+public class StingraySnmpSession {
+
+    private static final Log LOG = LogFactory.getLog(StingraySnmpSession.class);
+    private static final VerboseLogger vlog = new VerboseLogger(StingraySnmpSession.class);
+    private static final ConcurrentHashMap<String, StingraySnmpSession> sessions = new ConcurrentHashMap<String, StingraySnmpSession>();
+    private static final double SHRINK_FACTOR = 0.75;
+    private static final double GROW_FACTOR = 1.25;
+    private static final int SUCCESSES_BEFORE_LIMIT_GROWS = 32;
+    public static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final AtomicLong nextIdleSweep = new AtomicLong(0);
+    private final String address;
+    private final String port;
+    private final String community;
+    private int version = SnmpConstants.version2c;
+    private volatile double varBindBudget = -1.0;
+    private volatile int agentVarBindLimit = Integer.MAX_VALUE;
+    private final AtomicInteger successesSinceLimitChanged = new AtomicInteger(0);
+    private volatile long lastUsed = System.currentTimeMillis();
+    private boolean evicted = false;
+    private volatile Snmp snmp;
+
+    public StingraySnmpSession(String address, String port, String community) {
+        this.address = address;
+        this.port = port;
+        this.community = community;
+    }
+
+    public static StingraySnmpSession getSession(String address, String port, String community) {
+        long now = System.currentTimeMillis();
+        long sweepAt = nextIdleSweep.get();
+        if (now >= sweepAt && nextIdleSweep.compareAndSet(sweepAt, now + IDLE_TIMEOUT_MILLIS / 2)) {
+            evictIdleSessions(IDLE_TIMEOUT_MILLIS);
+        }
+        String key = address + "/" + port + "/" + community;
+        while (true) {
+            StingraySnmpSession session = sessions.get(key);
+            if (session == null) {
+                StingraySnmpSession newSession = new StingraySnmpSession(address, port, community);
+                session = sessions.putIfAbsent(key, newSession);
+                if (session == null) {
+                    session = newSession;
+                }
+            }
+            if (session.touch()) {
+                return session;
+            }
+            // Lost a race with the idle sweep
+            sessions.remove(key, session);
+        }
+    }
+
+    /**
+     * Closes and drops every session that hasn't been used for maxIdleMillis.
+     */
+    public static void evictIdleSessions(long maxIdleMillis) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, StingraySnmpSession> ent : sessions.entrySet()) {
+            if (ent.getValue().evictIfIdle(now, maxIdleMillis)) {
+                sessions.remove(ent.getKey(), ent.getValue());
+                LOG.info(String.format("Closed idle snmp session to %s", ent.getValue().getConnectionName()));
+            }
+        }
+    }
+
+    public static void closeAll() {
+        for (StingraySnmpSession session : sessions.values()) {
+            session.close();
+        }
+        sessions.clear();
+    }
+
+    /**
+     * Walks all of the given table columns together. Each GETBULK carries one
+     * binding per column that is still being walked so the columns advance in
+     * lock step and the host is only walked once.
+     *
+     * @return the bindings for each base oid in the order the agent returned them
+     */
+    public Map<String, List<VariableBinding>> walkColumns(List<String> baseOids, int maxRepetitions, long timeout) throws StingraySnmpSetupException, StingraySnmpGeneralException {
+        vlog.printf("in call walkColumns(%s) for %s", baseOids, getConnectionName());
+        Map<String, List<VariableBinding>> bindings = new LinkedHashMap<String, List<VariableBinding>>();
+        Map<String, String> nextOids = new LinkedHashMap<String, String>();
+        for (String baseOid : baseOids) {
+            bindings.put(baseOid, new ArrayList<VariableBinding>());
+            nextOids.put(baseOid, baseOid);
+        }
+        double maxBudget = (double) maxRepetitions * baseOids.size();
+        if (varBindBudget <= 0.0 || varBindBudget > maxBudget) {
+            varBindBudget = maxBudget;
+        }
+        int totalItems = 0;
+        while (!nextOids.isEmpty()) {
+            List<String> columns = new ArrayList<String>(nextOids.keySet());
+            int nCols = columns.size();
+            int reps = Math.max(1, (int) (varBindBudget / nCols));
+            PDU req = new PDU();
+            for (String column : columns) {
+                req.add(new VariableBinding(new OID(nextOids.get(column))));
+            }
+            req.setType(PDU.GETBULK);
+            req.setNonRepeaters(0);
+            req.setMaxRepetitions(reps);
+            req.setRequestID(new Integer32(StingraySnmpClient.incRequestId()));
+            PDU resp = sendPdu(req, timeout);
+            if (resp == null || resp.getErrorStatus() == PDU.tooBig) {
+                double newBudget = varBindBudget * SHRINK_FACTOR;
+                LOG.warn(String.format("Error fetching bulk response reducing varbind budget from %d to %d for %s", (int) varBindBudget, (int) newBudget, getConnectionName()));
+                varBindBudget = newBudget;
+                if (varBindBudget <= 1.0) {
+                    varBindBudget = -1.0;
+                    String exMsg = String.format("Error maxRepetitions was shrunk to 1 to snmp server %s", getConnectionName());
+                    LOG.error(exMsg);
+                    throw new StingraySnmpRetryExceededException(exMsg);
+                }
+                continue;
+            }
+            if (resp.getErrorStatus() != PDU.noError) {
+                String msg = String.format("Error status %s walking %s on snmp server %s", resp.getErrorStatusText(), columns, getConnectionName());
+                LOG.error(msg);
+                throw new StingraySnmpGeneralException(msg);
+            }
+            int respSize = resp.size();
+            if (respSize == 0) {
+                break;
+            }
+            for (int i = 0; i < respSize; i++) {
+                String column = columns.get(i % nCols);
+                if (!nextOids.containsKey(column)) {
+                    continue; // This column already walked off its subtree
+                }
+                totalItems++;
+                VariableBinding vb = resp.get(i);
+                String vbOid = vb.getOid().toString();
+                if (vb.isException() || !vbOid.startsWith(column + ".")) {
+                    nextOids.remove(column);
+                    continue;
+                }
+                bindings.get(column).add(vb);
+                nextOids.put(column, vbOid);
+            }
+            int requested = reps * nCols;
+            if (respSize < requested && !nextOids.isEmpty()) {
+                // The agent truncated the response to fit its PDU size so don't ask for more than that for a while
+                shrinkAgentVarBindLimit(respSize);
+                varBindBudget = agentVarBindLimit;
+            } else {
+                recordFullResponse();
+                varBindBudget = Math.min(Math.min(maxBudget, agentVarBindLimit), varBindBudget * GROW_FACTOR);
+            }
+        }
+        vlog.printf("total items = %d for %s FINISHED", totalItems, getConnectionName());
+        return bindings;
+    }
+
+    /**
+     * Fetches the given oids with as few GETs as the agent will answer,
+     * packing up to maxVarBinds bindings into each request. When the agent
+     * answers tooBig the request is split, and the smaller size is kept for
+     * later requests to this host until enough full responses come back.
+     *
+     * @return the value of each oid, an exception Null for oids the agent doesn't have
+     */
+    public Map<String, Variable> getValues(List<String> oids, int maxVarBinds, long timeout) throws StingraySnmpSetupException, StingraySnmpGeneralException {
+        vlog.printf("in call getValues(%d oids) for %s", oids.size(), getConnectionName());
+        Map<String, Variable> values = new LinkedHashMap<String, Variable>();
+        int from = 0;
+        while (from < oids.size()) {
+            int count = Math.min(oids.size() - from, Math.max(1, Math.min(maxVarBinds, agentVarBindLimit)));
+            PDU req = new PDU();
+            for (int i = from; i < from + count; i++) {
+                req.add(new VariableBinding(new OID(oids.get(i))));
+            }
+            req.setType(PDU.GET);
+            req.setRequestID(new Integer32(StingraySnmpClient.incRequestId()));
+            PDU resp = sendPdu(req, timeout);
+            if (resp == null) {
+                String msg = String.format("Error no response to GET of %d oids from snmp server %s", count, getConnectionName());
+                LOG.error(msg);
+                throw new StingraySnmpGeneralException(msg);
+            }
+            if (resp.getErrorStatus() == PDU.tooBig) {
+                if (count <= 1) {
+                    String msg = String.format("Error snmp server %s answered tooBig to a single oid GET", getConnectionName());
+                    LOG.error(msg);
+                    throw new StingraySnmpRetryExceededException(msg);
+                }
+                shrinkAgentVarBindLimit((int) (count * SHRINK_FACTOR));
+                LOG.warn(String.format("GET of %d oids was tooBig, retrying with %d for %s", count, agentVarBindLimit, getConnectionName()));
+                continue;
+            }
+            if (resp.getErrorStatus() != PDU.noError || resp.size() != count) {
+                String msg = String.format("Error status %s with %d of %d bindings in GET response from snmp server %s",
+                        resp.getErrorStatusText(), resp.size(), count, getConnectionName());
+                LOG.error(msg);
+                throw new StingraySnmpGeneralException(msg);
+            }
+            recordFullResponse();
+            for (int i = 0; i < count; i++) {
+                values.put(oids.get(from + i), resp.get(i).getVariable());
+            }
+            from += count;
+        }
+        return values;
+    }
+
+    private void shrinkAgentVarBindLimit(int limit) {
+        agentVarBindLimit = Math.max(1, limit);
+        successesSinceLimitChanged.set(0);
+    }
+
+    // After a run of full responses try a larger request again, the agent may have been busy or fixed
+    private void recordFullResponse() {
+        int limit = agentVarBindLimit;
+        if (limit == Integer.MAX_VALUE || successesSinceLimitChanged.incrementAndGet() < SUCCESSES_BEFORE_LIMIT_GROWS) {
+            return;
+        }
+        successesSinceLimitChanged.set(0);
+        agentVarBindLimit = (int) Math.min(Integer.MAX_VALUE, Math.max(limit + 1L, (long) (limit * GROW_FACTOR)));
+    }
+
+    /**
+     * Sends a single request over the shared transport and waits for the
+     * response. Safe to call from many threads at once.
+     *
+     * @return the response PDU or null if the request timed out
+     */
+    public PDU sendPdu(PDU req, long timeout) throws StingraySnmpSetupException, StingraySnmpGeneralException {
+        Snmp currSnmp = getSnmp();
+        lastUsed = System.currentTimeMillis();
+        ResponseEvent respEvent;
+        try {
+            respEvent = currSnmp.send(req, getTarget(timeout));
+        } catch (IOException ex) {
+            String msg = String.format("Error sending request to snmp server %s", getConnectionName());
+            LOG.error(msg, ex);
+            closeIfCurrent(currSnmp);
+            throw new StingraySnmpGeneralException(msg, ex);
+        }
+        if (respEvent == null) {
+            return null;
+        }
+        return respEvent.getResponse();
+    }
+
+    public CommunityTarget getTarget(long timeout) throws StingraySnmpSetupException {
+        UdpAddress udpAddr;
+        try {
+            udpAddr = new UdpAddress(address + "/" + port);
+        } catch (Exception ex) {
+            String msg = String.format("Invalid udpAddress specification %s/%s", address, port);
+            LOG.error(msg, ex);
+            throw new StingraySnmpSetupException(msg, ex);
+        }
+        CommunityTarget target = new CommunityTarget();
+        target.setCommunity(new OctetString(community));
+        target.setVersion(version);
+        target.setTimeout(timeout);
+        target.setRetries(0);
+        target.setAddress(udpAddr);
+        return target;
+    }
+
+    public synchronized Snmp getSnmp() throws StingraySnmpSetupException {
+        if (snmp != null) {
+            return snmp;
+        }
+        snmp = openSnmp(getConnectionName());
+        return snmp;
+    }
+
+    /**
+     * Opens a listening Snmp instance on its own local udp port. Callers that
+     * send asynchronously to many hosts can share a single one of these.
+     */
+    public static Snmp openSnmp(String connectionName) throws StingraySnmpSetupException {
+        TransportMapping newTransport;
+        try {
+            newTransport = new DefaultUdpTransportMapping();
+        } catch (IOException ex) {
+            String msg = String.format("Error setting up snmp connection to %s", connectionName);
+            LOG.error(msg, ex);
+            throw new StingraySnmpSetupException(msg, ex);
+        }
+        Snmp newSnmp = new Snmp(newTransport);
+        try {
+            newTransport.listen();
+        } catch (IOException ex) {
+            String msg = String.format("Error listening on local udp port for snmp connection %s", connectionName);
+            LOG.error(msg, ex);
+            closeQuietly(newSnmp, connectionName);
+            throw new StingraySnmpSetupException(msg, ex);
+        }
+        return newSnmp;
+    }
+
+    public synchronized void close() {
+        if (snmp != null) {
+            closeQuietly(snmp, getConnectionName());
+        }
+        snmp = null;
+    }
+
+    // Another thread may already have replaced a transport that failed
+    private synchronized void closeIfCurrent(Snmp failedSnmp) {
+        if (snmp == failedSnmp) {
+            close();
+        }
+    }
+
+    private synchronized boolean touch() {
+        if (evicted) {
+            return false;
+        }
+        lastUsed = System.currentTimeMillis();
+        return true;
+    }
+
+    private synchronized boolean evictIfIdle(long now, long maxIdleMillis) {
+        if (now - lastUsed < maxIdleMillis) {
+            return false;
+        }
+        evicted = true;
+        close();
+        return true;
+    }
+
+    public boolean isOpen() {
+        return snmp != null;
+    }
+
+    public static void closeQuietly(Snmp currSnmp, String connectionName) {
+        try {
+            // Also closes the transport mappings owned by this Snmp
+            currSnmp.close();
+        } catch (Exception ex) {
+            LOG.warn(String.format("Warning unable to close snmp connection on %s", connectionName));
+        }
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getPort() {
+        return port;
+    }
+
+    public String getCommunity() {
+        return community;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public int getVarBindBudget() {
+        return (int) varBindBudget;
+    }
+
+    public int getAgentVarBindLimit() {
+        return agentVarBindLimit;
+    }
+
+    private String getConnectionName() {
+        return address + "/" + port;
+    }
+
+    @Override
+    public String toString() {
+        return "StingraySnmpSession{address=" + address
+                + ", port=" + port
+                + ", community=" + community
+                + ", varBindBudget=" + (int) varBindBudget
+                + ", agentVarBindLimit=" + agentVarBindLimit
+                + ", open=" + (snmp != null)
+                + "}";
+    }
+}
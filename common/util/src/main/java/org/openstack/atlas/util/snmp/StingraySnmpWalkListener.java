@@ -0,0 +1,22 @@
+package org.openstack.atlas.util.snmp;
+
+import org.openstack.atlas.util.snmp.exceptions.StingraySnmpGeneralException;
+import org.snmp4j.smi.VariableBinding;
+
+import java.util.List;
+import java.util.Map;
+
+public interface StingraySnmpWalkListener {
+
+    /*
+     * Called once from the snmp dispatcher thread when every column of
+     * the walk has run off the end of its subtree.
+     */
+    void walkFinished(StingraySnmpAsyncWalk walk, Map<String, List<VariableBinding>> bindings);
+
+    /*
+     * Called once if the walk passed its deadline, shrunk maxRepetitions
+     * to nothing or could not send a request. No further callbacks follow.
+     */
+    void walkFailed(StingraySnmpAsyncWalk walk, StingraySnmpGeneralException ex);
+}
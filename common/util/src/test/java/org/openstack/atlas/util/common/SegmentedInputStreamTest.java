@@ -0,0 +1,109 @@
+package org.openstack.atlas.util.common;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+public class SegmentedInputStreamTest {
+
+    private File tmpFile;
+    private byte[] data;
+
+    @Before
+    public void standUp() throws IOException {
+        data = new byte[100000];
+        new Random(42).nextBytes(data);
+        tmpFile = File.createTempFile("segmentedInputStream", ".bin");
+        FileOutputStream os = new FileOutputStream(tmpFile);
+        try {
+            os.write(data);
+        } finally {
+            os.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        tmpFile.delete();
+    }
+
+    @Test
+    public void shouldReadOnlyItsSegment() throws IOException {
+        InputStream is = new SegmentedInputStream(tmpFile, 1000, 5000);
+        try {
+            assertBytes(1000, 5000, readAll(is));
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void shouldReadSingleBytesAsUnsigned() throws IOException {
+        InputStream is = new SegmentedInputStream(tmpFile, 10, 3);
+        try {
+            Assert.assertEquals(data[10] & 0xff, is.read());
+            Assert.assertEquals(data[11] & 0xff, is.read());
+            Assert.assertEquals(data[12] & 0xff, is.read());
+            Assert.assertEquals(-1, is.read());
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void shouldInterleaveSegmentsOverOneChannel() throws IOException {
+        RandomAccessFile ra = new RandomAccessFile(tmpFile, "r");
+        FileChannel channel = ra.getChannel();
+        try {
+            InputStream first = new SegmentedInputStream(channel, 0, 50000);
+            InputStream second = new SegmentedInputStream(channel, 50000, 50000);
+            ByteArrayOutputStream firstOut = new ByteArrayOutputStream();
+            ByteArrayOutputStream secondOut = new ByteArrayOutputStream();
+            byte[] buff = new byte[777];
+            int n1 = 0;
+            int n2 = 0;
+            while (n1 >= 0 || n2 >= 0) {
+                if (n1 >= 0 && (n1 = first.read(buff, 0, buff.length)) > 0) {
+                    firstOut.write(buff, 0, n1);
+                }
+                if (n2 >= 0 && (n2 = second.read(buff, 0, buff.length)) > 0) {
+                    secondOut.write(buff, 0, n2);
+                }
+            }
+            first.close();
+            second.close();
+            Assert.assertTrue(channel.isOpen());
+            assertBytes(0, 50000, firstOut.toByteArray());
+            assertBytes(50000, 50000, secondOut.toByteArray());
+        } finally {
+            ra.close();
+        }
+    }
+
+    private void assertBytes(int offset, int length, byte[] found) {
+        Assert.assertEquals(length, found.length);
+        for (int i = 0; i < length; i++) {
+            Assert.assertEquals(data[offset + i], found[i]);
+        }
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buff = new byte[4096];
+        int n;
+        while ((n = is.read(buff, 0, buff.length)) > 0) {
+            out.write(buff, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
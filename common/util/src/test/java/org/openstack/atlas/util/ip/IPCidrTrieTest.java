@@ -0,0 +1,71 @@
+package org.openstack.atlas.util.ip;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack.atlas.util.ip.exception.IPException;
+import org.openstack.atlas.util.ip.exception.IPStringConversionException;
+
+import static org.junit.Assert.*;
+
+public class IPCidrTrieTest {
+
+    private IPCidrTrie trie;
+
+    @Before
+    public void setUp() throws IPStringConversionException {
+        trie = new IPCidrTrie();
+        trie.add(new IPv4Cidr("192.168.0.0/16"));
+        trie.add(new IPv4Cidr("10.0.0.0/8"));
+        trie.add(new IPv4Cidr("172.16.0.0/12"));
+        trie.add(new IPv4Cidr("1.2.3.4/32"));
+        trie.add(new IPv6Cidr("2001:07FA:0001::/48"));
+    }
+
+    @Test
+    public void shouldMatchIPv4AddressesInsideBlocks() throws IPException {
+        assertTrue(trie.contains("10.0.0.0"));
+        assertTrue(trie.contains("10.1.2.3"));
+        assertTrue(trie.contains("192.168.3.51"));
+        assertTrue(trie.contains("172.17.1.1"));
+        assertTrue(trie.contains("1.2.3.4"));
+    }
+
+    @Test
+    public void shouldNotMatchIPv4AddressesOutsideBlocks() throws IPException {
+        assertFalse(trie.contains("1.2.3.5"));
+        assertFalse(trie.contains("12.13.14.15"));
+        assertFalse(trie.contains("172.15.23.42"));
+        assertFalse(trie.contains("172.32.0.1"));
+    }
+
+    @Test
+    public void shouldMatchIPv6AddressesInsideBlocks() throws IPException {
+        assertTrue(trie.contains("2001:07fa:0001:0000:0000:0000:0000:0000"));
+        assertTrue(trie.contains("2001:7fa:1:ffff::1"));
+        assertFalse(trie.contains("2001:07fa:0002:0000:0000:0000:0000:0000"));
+    }
+
+    @Test
+    public void shouldKeepAddressFamiliesApart() throws IPException {
+        IPCidrTrie v4Only = new IPCidrTrie();
+        v4Only.add(new IPv4Cidr("0.0.0.0/0"));
+        assertTrue(v4Only.contains("8.8.8.8"));
+        assertFalse(v4Only.contains("::1"));
+    }
+
+    @Test
+    public void shouldIgnoreInvalidAddresses() throws IPException {
+        assertFalse(trie.contains(null));
+        assertFalse(trie.contains("not an ip"));
+    }
+
+    @Test
+    public void shouldLetShorterPrefixCoverLongerOne() throws IPException {
+        IPCidrTrie nested = new IPCidrTrie();
+        nested.add(new IPv4Cidr("10.1.1.0/24"));
+        nested.add(new IPv4Cidr("10.0.0.0/8"));
+        assertTrue(nested.contains("10.200.0.1"));
+        assertTrue(nested.contains("10.1.1.1"));
+        assertEquals(2, nested.size());
+    }
+}
@@ -0,0 +1,91 @@
+package org.openstack.atlas.util.simplecache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SimpleCacheTest {
+
+    @Test
+    public void shouldCountHitsAndMisses() {
+        SimpleCache<String> cache = new SimpleCache<String>(300);
+        cache.put("a", "1");
+
+        Assert.assertEquals("1", cache.getEntry("a").getVal());
+        Assert.assertNull(cache.getEntry("b"));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void shouldDropExpiredEntryOnRead() {
+        SimpleCache<String> cache = new SimpleCache<String>(300);
+        cache.put("a", "1", -1);
+
+        Assert.assertNull(cache.getEntry("a"));
+        Assert.assertFalse(cache.containsKey("a"));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedOnceFull() {
+        SimpleCache<Integer> cache = new SimpleCache<Integer>(300);
+        cache.setMaxEntries(16);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, i);
+        }
+
+        Assert.assertTrue(cache.size() <= 16);
+        Assert.assertEquals(1000 - cache.size(), cache.getEvictions());
+        Assert.assertNotNull(cache.getEntry("key999"));
+    }
+
+    @Test
+    public void shouldRemoveExpiredAfterCleanExpiredOnCalls() {
+        SimpleCache<String> cache = new SimpleCache<String>(300);
+        cache.setCleanExpiredOn(3);
+        cache.put("stale", "1", -1);
+        cache.put("fresh", "2");
+
+        Assert.assertEquals(-1, cache.cleanExpiredByCount());
+        Assert.assertEquals(-1, cache.cleanExpiredByCount());
+        Assert.assertEquals(1, cache.cleanExpiredByCount());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldTakeConcurrentPutsAndGets() throws Exception {
+        final SimpleCache<Integer> cache = new SimpleCache<Integer>(300);
+        cache.setMaxEntries(-1);
+        int nThreads = 8;
+        final int perThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < nThreads; t++) {
+            final int base = t * perThread;
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int found = 0;
+                    for (int i = base; i < base + perThread; i++) {
+                        cache.put("key" + i, i);
+                        if (cache.getEntry("key" + i) != null) {
+                            found++;
+                        }
+                    }
+                    return found;
+                }
+            }));
+        }
+        for (Future<Integer> result : results) {
+            Assert.assertEquals(perThread, (int) result.get());
+        }
+        executor.shutdown();
+        Assert.assertEquals(nThreads * perThread, cache.size());
+    }
+}
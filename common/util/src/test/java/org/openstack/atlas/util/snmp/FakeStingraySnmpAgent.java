@@ -0,0 +1,147 @@
+package org.openstack.atlas.util.snmp;
+
+import org.snmp4j.CommandResponder;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.mp.StatusInformation;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Minimal in process SNMP agent serving GET/GETNEXT/GETBULK from a sorted map
+public class FakeStingraySnmpAgent implements CommandResponder {
+
+    private final TreeMap<OID, Variable> mib = new TreeMap<OID, Variable>();
+    private final AtomicInteger requestCount = new AtomicInteger(0);
+    private int maxResponseVbs = Integer.MAX_VALUE;
+    private long bulkResponseDelayMillis = 0;
+    private ScheduledExecutorService delayedResponses;
+    private Snmp snmp;
+    private DefaultUdpTransportMapping transport;
+
+    public void addVirtualServer(String baseOid, String vsName, long value) {
+        mib.put(new OID(StingraySnmpClient.getOidFromVirtualServerName(baseOid, vsName)), new Counter64(value));
+    }
+
+    public void put(String oid, Variable value) {
+        mib.put(new OID(oid), value);
+    }
+
+    public String start() throws IOException {
+        transport = new DefaultUdpTransportMapping(new UdpAddress("127.0.0.1/0"));
+        snmp = new Snmp(transport);
+        snmp.addCommandResponder(this);
+        delayedResponses = Executors.newSingleThreadScheduledExecutor();
+        transport.listen();
+        return Integer.toString(transport.getListenAddress().getPort());
+    }
+
+    public void stop() throws IOException {
+        delayedResponses.shutdownNow();
+        snmp.close();
+    }
+
+    @Override
+    public void processPdu(final CommandResponderEvent event) {
+        PDU req = event.getPDU();
+        if (req == null) {
+            return;
+        }
+        requestCount.incrementAndGet();
+        final PDU resp = new PDU();
+        resp.setType(PDU.RESPONSE);
+        resp.setRequestID(req.getRequestID());
+        switch (req.getType()) {
+            case PDU.GET:
+                if (req.size() > maxResponseVbs) {
+                    // A GET can't be truncated, the agent refuses it whole
+                    resp.setErrorStatus(PDU.tooBig);
+                    break;
+                }
+                for (VariableBinding vb : req.getVariableBindings()) {
+                    Variable val = mib.get(vb.getOid());
+                    resp.add(new VariableBinding(vb.getOid(), val == null ? Null.noSuchInstance : val));
+                }
+                break;
+            case PDU.GETNEXT:
+                for (VariableBinding vb : req.getVariableBindings()) {
+                    resp.add(next(vb.getOid()));
+                }
+                break;
+            case PDU.GETBULK:
+                int nCols = req.size();
+                OID[] curr = new OID[nCols];
+                for (int i = 0; i < nCols; i++) {
+                    curr[i] = req.get(i).getOid();
+                }
+                for (int r = 0; r < req.getMaxRepetitions(); r++) {
+                    for (int c = 0; c < nCols; c++) {
+                        if (resp.size() >= maxResponseVbs) {
+                            break;
+                        }
+                        VariableBinding vb = next(curr[c]);
+                        curr[c] = vb.getOid();
+                        resp.add(vb);
+                    }
+                }
+                break;
+            default:
+                return;
+        }
+        event.setProcessed(true);
+        if (req.getType() == PDU.GETBULK && bulkResponseDelayMillis > 0) {
+            // Answer later without holding up the listener thread, like a host slow to walk its tables
+            delayedResponses.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    respond(event, resp);
+                }
+            }, bulkResponseDelayMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+        respond(event, resp);
+    }
+
+    private static void respond(CommandResponderEvent event, PDU resp) {
+        try {
+            event.getMessageDispatcher().returnResponsePdu(event.getMessageProcessingModel(), event.getSecurityModel(),
+                    event.getSecurityName(), event.getSecurityLevel(), resp, event.getMaxSizeResponsePDU(),
+                    event.getStateReference(), new StatusInformation());
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private VariableBinding next(OID oid) {
+        Map.Entry<OID, Variable> ent = mib.higherEntry(oid);
+        if (ent == null) {
+            return new VariableBinding(oid, Null.endOfMibView);
+        }
+        return new VariableBinding(ent.getKey(), ent.getValue());
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public void setMaxResponseVbs(int maxResponseVbs) {
+        this.maxResponseVbs = maxResponseVbs;
+    }
+
+    public void setBulkResponseDelayMillis(long bulkResponseDelayMillis) {
+        this.bulkResponseDelayMillis = bulkResponseDelayMillis;
+    }
+}
@@ -0,0 +1,112 @@
+package org.openstack.atlas.util.snmp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack.atlas.util.snmp.exceptions.StingraySnmpGeneralException;
+import org.snmp4j.Snmp;
+import org.snmp4j.smi.VariableBinding;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StingraySnmpAsyncWalkTest {
+
+    private static final int VS_COUNT = 120;
+    private FakeStingraySnmpAgent agent;
+    private String agentPort;
+    private Snmp snmp;
+    private long oldTimeout;
+
+    @Before
+    public void setUp() throws Exception {
+        agent = new FakeStingraySnmpAgent();
+        for (int i = 0; i < VS_COUNT; i++) {
+            String vsName = "1234_" + i;
+            agent.addVirtualServer(OIDConstants.VS_CURRENT_CONNECTIONS, vsName, i);
+            agent.addVirtualServer(OIDConstants.VS_BYTES_IN, vsName, i * 10L);
+            agent.addVirtualServer(OIDConstants.VS_BYTES_OUT, vsName, i * 100L);
+        }
+        agentPort = agent.start();
+        snmp = StingraySnmpSession.openSnmp("test");
+        oldTimeout = StingraySnmpClient.getTimeout();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        StingraySnmpClient.setTimeout(oldTimeout);
+        StingraySnmpSession.closeAll();
+        snmp.close();
+        agent.stop();
+    }
+
+    @Test
+    public void shouldWalkUsageColumnsWithoutBlocking() throws Exception {
+        StingraySnmpClient client = new StingraySnmpClient("127.0.0.1", agentPort, "public");
+        client.setMaxRepetitions(16);
+        RecordingListener listener = new RecordingListener();
+        long deadline = System.currentTimeMillis() + 10000;
+        StingraySnmpAsyncWalk walk = client.startSnmpUsageWalk(snmp, deadline, "host1", listener);
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+        assertNull(listener.failure);
+        assertEquals("host1", walk.getUserObject());
+        Map<String, RawSnmpUsage> usage = StingraySnmpClient.toRawSnmpUsage(listener.bindings);
+        assertEquals(VS_COUNT, usage.size());
+        assertEquals(420L, usage.get("1234_42").getBytesIn());
+        assertEquals(4200L, usage.get("1234_42").getBytesOut());
+        // 120 rows at 16 repetitions with the three columns in each GETBULK, not 8 requests per column
+        assertTrue(agent.getRequestCount() <= 9);
+    }
+
+    @Test
+    public void shouldFollowResponsesTheAgentTruncates() throws Exception {
+        agent.setMaxResponseVbs(20);
+        StingraySnmpClient client = new StingraySnmpClient("127.0.0.1", agentPort, "public");
+        RecordingListener listener = new RecordingListener();
+        client.startSnmpUsageWalk(snmp, System.currentTimeMillis() + 10000, null, listener);
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+        assertNull(listener.failure);
+        Map<String, RawSnmpUsage> usage = StingraySnmpClient.toRawSnmpUsage(listener.bindings);
+        assertEquals(VS_COUNT, usage.size());
+        assertEquals(119L, usage.get("1234_119").getConcurrentConnections());
+    }
+
+    @Test
+    public void shouldFailOnceDeadlinePasses() throws Exception {
+        agent.stop();
+        StingraySnmpClient.setTimeout(100);
+        StingraySnmpClient client = new StingraySnmpClient("127.0.0.1", agentPort, "public");
+        RecordingListener listener = new RecordingListener();
+        client.startSnmpUsageWalk(snmp, System.currentTimeMillis() + 250, null, listener);
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+        assertNotNull(listener.failure);
+        assertNull(listener.bindings);
+        agent.start();
+    }
+
+    private static class RecordingListener implements StingraySnmpWalkListener {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private Map<String, List<VariableBinding>> bindings;
+        private StingraySnmpGeneralException failure;
+
+        @Override
+        public void walkFinished(StingraySnmpAsyncWalk walk, Map<String, List<VariableBinding>> bindings) {
+            this.bindings = bindings;
+            latch.countDown();
+        }
+
+        @Override
+        public void walkFailed(StingraySnmpAsyncWalk walk, StingraySnmpGeneralException ex) {
+            this.failure = ex;
+            latch.countDown();
+        }
+    }
+}
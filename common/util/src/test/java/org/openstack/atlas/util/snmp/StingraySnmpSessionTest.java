@@ -0,0 +1,195 @@
+package org.openstack.atlas.util.snmp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StingraySnmpSessionTest {
+
+    private static final int VS_COUNT = 250;
+    private FakeStingraySnmpAgent agent;
+    private StingraySnmpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        agent = new FakeStingraySnmpAgent();
+        for (int i = 0; i < VS_COUNT; i++) {
+            String vsName = "1234_" + i;
+            agent.addVirtualServer(OIDConstants.VS_CURRENT_CONNECTIONS, vsName, i);
+            agent.addVirtualServer(OIDConstants.VS_BYTES_IN, vsName, i * 10L);
+            agent.addVirtualServer(OIDConstants.VS_BYTES_OUT, vsName, i * 100L);
+            agent.addVirtualServer(OIDConstants.VS_MAX_CONNECTIONS, vsName, 7);
+        }
+        // Rows after the last column so the walk has to notice it left the subtree
+        agent.put("1.3.6.1.4.1.7146.1.2.2.2.1.33.1.65", new Counter64(1));
+        String port = agent.start();
+        client = new StingraySnmpClient("127.0.0.1", port, "public");
+        client.setMaxRepetitions(40);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        StingraySnmpSession.closeAll();
+        agent.stop();
+    }
+
+    @Test
+    public void shouldWalkAllUsageColumnsTogether() throws Exception {
+        Map<String, RawSnmpUsage> usage = client.getSnmpUsage();
+        assertEquals(VS_COUNT, usage.size());
+        RawSnmpUsage raw = usage.get("1234_17");
+        assertEquals(17L, raw.getConcurrentConnections());
+        assertEquals(170L, raw.getBytesIn());
+        assertEquals(1700L, raw.getBytesOut());
+        // 250 rows at 40 repetitions per column is 7 interleaved requests instead of 21
+        assertTrue(agent.getRequestCount() <= 8);
+    }
+
+    @Test
+    public void shouldReuseTransportAcrossPolls() throws Exception {
+        StingraySnmpSession session = client.getSession();
+        client.getSnmpUsage();
+        assertTrue(session.isOpen());
+        client.getSnmpUsage();
+        assertTrue(session == client.getSession());
+        assertEquals(VS_COUNT, client.getBulkOidBindingList(OIDConstants.VS_BYTES_OUT).size());
+    }
+
+    @Test
+    public void shouldShrinkBudgetWhenAgentTruncatesResponses() throws Exception {
+        agent.setMaxResponseVbs(25);
+        List<String> oids = Arrays.asList(OIDConstants.VS_CURRENT_CONNECTIONS, OIDConstants.VS_BYTES_IN, OIDConstants.VS_BYTES_OUT);
+        Map<String, List<VariableBinding>> columns = client.getSession().walkColumns(oids, 1000, 5000);
+        for (String oid : oids) {
+            assertEquals(VS_COUNT, columns.get(oid).size());
+        }
+        assertTrue(client.getSession().getVarBindBudget() <= 25);
+    }
+
+    @Test
+    public void shouldGetSingleValueOverSharedSession() throws Exception {
+        assertEquals(7, client.getMaxConnections("1234_3", false, false));
+        assertEquals(-1L, client.getBytesIn("missing_vs", false, true));
+    }
+
+    @Test
+    public void shouldGetManyVirtualServersInFewRequests() throws Exception {
+        List<String> vsNames = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            vsNames.add("1234_" + i);
+        }
+        vsNames.add("missing_vs");
+        List<String> oids = Arrays.asList(OIDConstants.VS_CURRENT_CONNECTIONS, OIDConstants.VS_BYTES_IN, OIDConstants.VS_BYTES_OUT);
+        client.setMaxVarBindsPerGet(60);
+
+        Map<String, Map<String, Variable>> values = client.getValuesForVirtualServers(vsNames, oids);
+
+        assertEquals(101, values.size());
+        assertEquals(42L, values.get("1234_42").get(OIDConstants.VS_CURRENT_CONNECTIONS).toLong());
+        assertEquals(420L, values.get("1234_42").get(OIDConstants.VS_BYTES_IN).toLong());
+        assertEquals(4200L, values.get("1234_42").get(OIDConstants.VS_BYTES_OUT).toLong());
+        assertTrue(values.get("missing_vs").get(OIDConstants.VS_BYTES_IN).isException());
+        // 303 values at 60 per GET
+        assertEquals(6, agent.getRequestCount());
+    }
+
+    @Test
+    public void shouldSplitGetsTheAgentRefusesAsTooBig() throws Exception {
+        agent.setMaxResponseVbs(10);
+        List<String> vsNames = Arrays.asList("1234_1", "1234_2", "1234_3", "1234_4", "1234_5", "1234_6", "1234_7");
+        List<String> oids = Arrays.asList(OIDConstants.VS_CURRENT_CONNECTIONS, OIDConstants.VS_MAX_CONNECTIONS);
+
+        Map<String, Map<String, Variable>> values = client.getValuesForVirtualServers(vsNames, oids);
+        assertEquals(7, values.get("1234_7").get(OIDConstants.VS_CURRENT_CONNECTIONS).toInt());
+        assertEquals(7, values.get("1234_7").get(OIDConstants.VS_MAX_CONNECTIONS).toInt());
+
+        // The smaller size sticks, so the next poll isn't refused again
+        int before = agent.getRequestCount();
+        client.getValuesForVirtualServers(vsNames, oids);
+        assertEquals(2, agent.getRequestCount() - before);
+    }
+
+    @Test
+    public void shouldNotHoldGetsBehindAWalkOfTheSameHost() throws Exception {
+        agent.setBulkResponseDelayMillis(200);
+        client.setMaxRepetitions(25);
+        final AtomicReference<Exception> walkFailure = new AtomicReference<Exception>();
+        Thread walk = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.getSnmpUsage();
+                } catch (Exception ex) {
+                    walkFailure.set(ex);
+                }
+            }
+        });
+        walk.start();
+        Thread.sleep(100);
+
+        assertEquals(7, client.getMaxConnections("1234_3", false, false));
+        // 250 rows at 25 repetitions is 11 delayed GETBULKs, the GET went out between the first few
+        assertTrue(agent.getRequestCount() < 6);
+        walk.join();
+        assertEquals(null, walkFailure.get());
+    }
+
+    @Test
+    public void shouldCloseAndReplaceIdleSessions() throws Exception {
+        StingraySnmpSession session = client.getSession();
+        client.getSnmpUsage();
+        assertTrue(session.isOpen());
+
+        StingraySnmpSession.evictIdleSessions(0);
+
+        assertFalse(session.isOpen());
+        StingraySnmpSession replacement = client.getSession();
+        assertTrue(replacement != session);
+        assertEquals(VS_COUNT, client.getSnmpUsage().size());
+        assertTrue(replacement.isOpen());
+    }
+
+    @Test
+    public void shouldKeepSessionsInUse() throws Exception {
+        StingraySnmpSession session = client.getSession();
+        client.getSnmpUsage();
+
+        StingraySnmpSession.evictIdleSessions(60000);
+
+        assertTrue(session.isOpen());
+        assertTrue(session == client.getSession());
+    }
+
+    @Test
+    public void shouldGrowLearnedLimitAfterFullResponses() throws Exception {
+        agent.setMaxResponseVbs(10);
+        List<String> vsNames = Arrays.asList("1234_1", "1234_2", "1234_3", "1234_4", "1234_5", "1234_6", "1234_7");
+        List<String> oids = Arrays.asList(OIDConstants.VS_CURRENT_CONNECTIONS, OIDConstants.VS_MAX_CONNECTIONS);
+        client.getValuesForVirtualServers(vsNames, oids);
+        int shrunk = client.getSession().getAgentVarBindLimit();
+        assertTrue(shrunk <= 10);
+
+        // The host recovers, so the limit has to find its way back up
+        agent.setMaxResponseVbs(Integer.MAX_VALUE);
+        for (int i = 0; i < 50; i++) {
+            client.getValuesForVirtualServers(vsNames, oids);
+        }
+        assertTrue(client.getSession().getAgentVarBindLimit() > shrunk);
+        int before = agent.getRequestCount();
+        client.getValuesForVirtualServers(vsNames, oids);
+        assertEquals(1, agent.getRequestCount() - before);
+    }
+}
@@ -40,8 +40,11 @@ public class UsageEntryFactoryImpl implements UsageEntryFactory {
     private static final String LBAAS_TITLE = "cloudLoadBalancers";
     private static final String SERVICE_CODE = "CloudLoadBalancers";
     private static final String USAGE_VERSION = "1";
+    private static final String USAGE_CONTEXT_PATH = "org.w3._2005.atom:com.rackspace.docs.usage.lbaas";
+    private static final String DELETE_CONTEXT_PATH = "org.w3._2005.atom:com.rackspace.docs.event.lbaas.delete";
 
     protected Configuration atomHopperConfig;
+    private boolean compactXml;
 
     private org.w3._2005.atom.ObjectFactory usageEntryFactory;
     private com.rackspace.docs.usage.lbaas.ObjectFactory lbUsageFactory;
@@ -55,6 +58,15 @@ public class UsageEntryFactoryImpl implements UsageEntryFactory {
         this.lbUsageFactory = new com.rackspace.docs.usage.lbaas.ObjectFactory();
         this.lbDeleteFactory = new com.rackspace.docs.event.lbaas.delete.ObjectFactory();
         this.v1EventFactory = new com.rackspace.docs.core.event.ObjectFactory();
+        this.compactXml = isCompactXml(atomHopperConfig);
+    }
+
+    private static boolean isCompactXml(Configuration config) {
+        try {
+            return "ENABLED".equals(config.getString(AtomHopperConfigurationKeys.ahusl_compact_xml));
+        } catch (Exception e) {
+            return false;
+        }
     }
 
     @Override
@@ -184,12 +196,12 @@ public class UsageEntryFactoryImpl implements UsageEntryFactory {
         Map<Object, Object> map = new HashMap<Object, Object>();
         JAXBContext context;
         if (usageEntry.getContent().getEvent().getType().equals(EventType.DELETE)) {
-               context = JAXBContext.newInstance("org.w3._2005.atom:com.rackspace.docs.event.lbaas.delete");
+            context = UsageMarshaller.getContext(DELETE_CONTEXT_PATH);
         } else {
-            context = JAXBContext.newInstance("org.w3._2005.atom:com.rackspace.docs.usage.lbaas");
+            context = UsageMarshaller.getContext(USAGE_CONTEXT_PATH);
         }
         map.put("entrystring", UsageMarshaller
-                .marshallResource(usageEntryFactory.createEntry(usageEntry), context).toString());
+                .marshallResource(usageEntryFactory.createEntry(usageEntry), context, !compactXml).toString());
         map.put("entryobject", usageEntry);
         return map;
     }
@@ -7,8 +7,53 @@ import javax.xml.bind.*;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * JAXBContexts are expensive to build and thread safe, so one is kept per
+ * context path or class for the life of the JVM. Marshallers are not thread
+ * safe, so each thread keeps its own per context and output mode. Pass
+ * contexts from getContext() to marshallResource, a fresh context every call
+ * would never find its pooled marshaller.
+ */
 public class UsageMarshaller {
+    private static final int OBJECT_PRETTY = 0;
+    private static final int OBJECT_COMPACT = 1;
+    private static final int RESOURCE_PRETTY = 2;
+    private static final int RESOURCE_COMPACT = 3;
+    private static final Map<Object, JAXBContext> contexts = new ConcurrentHashMap<Object, JAXBContext>();
+    private static final ThreadLocal<Map<JAXBContext, Marshaller[]>> marshallers = new ThreadLocal<Map<JAXBContext, Marshaller[]>>() {
+        @Override
+        protected Map<JAXBContext, Marshaller[]> initialValue() {
+            return new IdentityHashMap<JAXBContext, Marshaller[]>();
+        }
+    };
+
+    /**
+     * @param contextPath: colon separated list of schema packages
+     * @return the shared context for the packages
+     * @throws JAXBException
+     */
+    public static JAXBContext getContext(String contextPath) throws JAXBException {
+        JAXBContext context = contexts.get(contextPath);
+        if (context == null) {
+            context = JAXBContext.newInstance(contextPath);
+            contexts.put(contextPath, context);
+        }
+        return context;
+    }
+
+    public static JAXBContext getContext(Class clazz) throws JAXBException {
+        JAXBContext context = contexts.get(clazz);
+        if (context == null) {
+            context = JAXBContext.newInstance(clazz);
+            contexts.put(clazz, context);
+        }
+        return context;
+    }
+
     /**
      *
      * @param object: the object to marshall
@@ -16,18 +61,27 @@ public class UsageMarshaller {
      * @throws JAXBException
      */
     public static String marshallObject(Object object) throws JAXBException {
-        JAXBContext jc = JAXBContext.newInstance(object.getClass());
+        return marshallObject(object, true);
+    }
 
-        Marshaller marshaller = jc.createMarshaller();
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+    public static String marshallObject(Object object, boolean formatted) throws JAXBException {
+        JAXBContext jc = getContext(object.getClass());
+        Marshaller[] pooled = pooledMarshallers(jc);
+        int slot = formatted ? OBJECT_PRETTY : OBJECT_COMPACT;
+        Marshaller marshaller = pooled[slot];
+        if (marshaller == null) {
+            marshaller = jc.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formatted);
 
-        marshaller.setProperty("com.sun.xml.bind.xmlDeclaration", Boolean.TRUE);
-        marshaller.setProperty(CharacterEscapeHandler.class.getName(), new CharacterEscapeHandler() {
-            @Override
-            public void escape(char[] ch, int start, int length, boolean isAttVal, Writer out) throws IOException {
-                out.write(ch, start, length);
-            }
-        });
+            marshaller.setProperty("com.sun.xml.bind.xmlDeclaration", Boolean.TRUE);
+            marshaller.setProperty(CharacterEscapeHandler.class.getName(), new CharacterEscapeHandler() {
+                @Override
+                public void escape(char[] ch, int start, int length, boolean isAttVal, Writer out) throws IOException {
+                    out.write(ch, start, length);
+                }
+            });
+            pooled[slot] = marshaller;
+        }
 
         StringWriter st = new StringWriter();
 
@@ -37,14 +91,34 @@ public class UsageMarshaller {
     }
 
     public static StringWriter marshallResource(JAXBElement element, JAXBContext context) throws JAXBException {
-        Marshaller marshaller = context.createMarshaller();
-        marshaller.setProperty("jaxb.formatted.output", Boolean.TRUE);
-        marshaller.setProperty("jaxb.encoding", "UTF-8");
+        return marshallResource(element, context, true);
+    }
+
+    public static StringWriter marshallResource(JAXBElement element, JAXBContext context, boolean formatted) throws JAXBException {
+        Marshaller[] pooled = pooledMarshallers(context);
+        int slot = formatted ? RESOURCE_PRETTY : RESOURCE_COMPACT;
+        Marshaller marshaller = pooled[slot];
+        if (marshaller == null) {
+            marshaller = context.createMarshaller();
+            marshaller.setProperty("jaxb.formatted.output", formatted);
+            marshaller.setProperty("jaxb.encoding", "UTF-8");
+            pooled[slot] = marshaller;
+        }
         StringWriter writer = new StringWriter();
         marshaller.marshal(element, writer);
         return writer;
     }
 
+    private static Marshaller[] pooledMarshallers(JAXBContext context) {
+        Map<JAXBContext, Marshaller[]> byContext = marshallers.get();
+        Marshaller[] pooled = byContext.get(context);
+        if (pooled == null) {
+            pooled = new Marshaller[4];
+            byContext.put(context, pooled);
+        }
+        return pooled;
+    }
+
     public static JAXBElement unmarshallResource(Object content, JAXBContext context) throws JAXBException {
         Unmarshaller um = context.createUnmarshaller();
         return (JAXBElement) um.unmarshal((Node) content);
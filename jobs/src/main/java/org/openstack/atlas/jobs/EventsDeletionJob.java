@@ -2,23 +2,35 @@ package org.openstack.atlas.jobs;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openstack.atlas.cfg.Configuration;
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.atlas.cfg.RestApiConfiguration;
+import org.openstack.atlas.jobs.helpers.EventRetentionPurger;
 import org.openstack.atlas.service.domain.entities.JobName;
-import org.openstack.atlas.service.domain.entities.JobStateVal;
-import org.openstack.atlas.service.domain.events.entities.Alert;
+import org.openstack.atlas.service.domain.events.entities.*;
 import org.openstack.atlas.service.domain.events.repository.LoadBalancerEventRepository;
 import org.openstack.atlas.service.domain.services.helpers.AlertHelper;
 import org.openstack.atlas.service.domain.services.helpers.AlertType;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Required;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
 
 @Component
 public class EventsDeletionJob extends AbstractJob {
     private final Log LOG = LogFactory.getLog(EventsDeletionJob.class);
+    private static final int RETENTION_DAYS = 90;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_PAUSE_MILLIS = 500;
+    private static final List<Class<? extends Event>> EVENT_CLASSES = Arrays.<Class<? extends Event>>asList(
+            LoadBalancerEvent.class, LoadBalancerServiceEvent.class, NodeEvent.class, NodeServiceEvent.class,
+            VirtualIpEvent.class, ConnectionLimitEvent.class, SessionPersistenceEvent.class,
+            AccessListEvent.class, HealthMonitorEvent.class);
+    private final Configuration configuration = new RestApiConfiguration();
 
     @Autowired
     LoadBalancerEventRepository loadBalancerEventRepository;
@@ -40,59 +52,23 @@ public class EventsDeletionJob extends AbstractJob {
     @Override
     public void run() throws Exception {
         try {
-            //LoadBalancerEvent
-            LOG.info("Loadbalancer events deletion job started...");
-            LOG.info(String.format("Attempting to remove loadbalancer events from the database... "));
-            loadBalancerEventRepository.removeLoadBalancerEventEntries();
-            LOG.info("LoadBalancer events deletion job completed.");
-
-            //LoadBalancerServiceEvent
-            LOG.info("Loadbalancer service events deletion job started...");
-            LOG.info(String.format("Attempting to remove loadbalancer service events from the database... "));
-            loadBalancerEventRepository.removeLoadBalancerServiceEventEntries();
-            LOG.info("LoadBalancer service events deletion job completed.");
-
-            //NodeEvent
-            LOG.info("Node events deletion job started...");
-            LOG.info(String.format("Attempting to remove node events from the database... "));
-            loadBalancerEventRepository.removeNodeEventEntries();
-            LOG.info("Node events deletion job completed.");
-
-            //NodeServiceEvent
-            LOG.info("Node service events deletion job started...");
-            LOG.info(String.format("Attempting to remove old node service events from the database... "));
-            loadBalancerEventRepository.removeNodeServiceEventEntries();
-            LOG.info("Node service events deletion job completed.");
-
-            //VirtualIpEvent
-            LOG.info("Virtual ip events deletion job started...");
-            LOG.info(String.format("Attempting to remove virtual ip events from the database... "));
-            loadBalancerEventRepository.removeVirtualIpEventEntries();
-            LOG.info("Virtual ip events deletion job completed.");
-
-            //ConnectionLimitEvent
-            LOG.info("Connection limit events deletion job started...");
-            LOG.info(String.format("Attempting to remove connection limit events from the database... "));
-            loadBalancerEventRepository.removeConnectionLimitEventEntries();
-            LOG.info("Connection limit events deletion job completed.");
-
-            //SessionPersistenceEvent
-            LOG.info("Session persistence events deletion job started...");
-            LOG.info(String.format("Attempting to remove session persistence events from the database... "));
-            loadBalancerEventRepository.removeSessionPersistenceEventEntries();
-            LOG.info("Session persistence events deletion job completed.");
-
-            //AccessListEvent
-            LOG.info("Access list events deletion job started...");
-            LOG.info(String.format("Attempting to remove access list events from the database... "));
-            loadBalancerEventRepository.removeAccessListEventEntries();
-            LOG.info("Access list events deletion job completed.");
-
-            //HealthMonitorEvent
-            LOG.info("Health monitor events deletion job started...");
-            LOG.info(String.format("Attempting to remove health monitor events from the database... "));
-            loadBalancerEventRepository.removeHealthMonitorEventEntries();
-            LOG.info("Health monitor events deletion job completed.");
+            Calendar cutoff = Calendar.getInstance();
+            cutoff.add(Calendar.DATE, -RETENTION_DAYS);
+            EventRetentionPurger purger = new EventRetentionPurger(loadBalancerEventRepository,
+                    getInt(PublicApiServiceConfigurationKeys.event_purge_batch_size, DEFAULT_BATCH_SIZE),
+                    getInt(PublicApiServiceConfigurationKeys.event_purge_pause_millis, DEFAULT_PAUSE_MILLIS));
+
+            // A checkpoint left behind means the last run didn't finish
+            String resumeFrom = jobStateService.getByName(getJobName()).getInputPath();
+            LOG.info(String.format("Attempting to remove events created before %s from the database...", cutoff.getTime()));
+            long deleted = purger.purge(EVENT_CLASSES, cutoff, resumeFrom, new EventRetentionPurger.Checkpoint() {
+                @Override
+                public void save(String checkpoint) {
+                    jobStateService.updateInputPath(getJobName(), checkpoint);
+                }
+            });
+            jobStateService.updateInputPath(getJobName(), null);
+            LOG.info(String.format("Events deletion job completed, removed %d events.", deleted));
         } catch (Exception e) {
             Alert alert = AlertHelper.createAlert(1, 1, e, AlertType.API_FAILURE.name(), "Failed removing an event entry...");
             alertRepository.save(alert);
@@ -100,6 +76,17 @@ public class EventsDeletionJob extends AbstractJob {
         }
     }
 
+    private int getInt(PublicApiServiceConfigurationKeys key, int defaultValue) {
+        try {
+            if (configuration.hasKeys(key)) {
+                return Integer.parseInt(configuration.getString(key).trim());
+            }
+        } catch (NumberFormatException nfe) {
+            LOG.warn(String.format("Invalid value for %s, using %d", key, defaultValue));
+        }
+        return defaultValue;
+    }
+
     @Override
     public void cleanup() {
     }
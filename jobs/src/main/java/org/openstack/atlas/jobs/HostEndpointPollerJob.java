@@ -5,14 +5,14 @@ import org.apache.commons.logging.LogFactory;
 import org.openstack.atlas.adapter.LoadBalancerEndpointConfiguration;
 import org.openstack.atlas.adapter.service.ReverseProxyLoadBalancerAdapter;
 import org.openstack.atlas.adapter.service.ReverseProxyLoadBalancerStmAdapter;
-import org.openstack.atlas.service.domain.entities.Cluster;
 import org.openstack.atlas.service.domain.entities.Host;
 import org.openstack.atlas.service.domain.entities.JobName;
 import org.openstack.atlas.service.domain.events.entities.Alert;
+import org.openstack.atlas.service.domain.pojos.ClusterEndpointConfig;
 import org.openstack.atlas.service.domain.repository.HostRepository;
+import org.openstack.atlas.service.domain.services.HostService;
 import org.openstack.atlas.service.domain.services.helpers.AlertHelper;
 import org.openstack.atlas.service.domain.services.helpers.AlertType;
-import org.openstack.atlas.util.crypto.CryptoUtil;
 import org.openstack.atlas.util.crypto.exception.DecryptException;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -32,6 +32,8 @@ public class HostEndpointPollerJob extends AbstractJob {
     private ReverseProxyLoadBalancerStmAdapter reverseProxyLoadBalancerStmAdapter;
     @Autowired
     private HostRepository hostRepository;
+    @Autowired
+    private HostService hostService;
 
     @Override
     public Log getLogger() {
@@ -79,6 +81,7 @@ public class HostEndpointPollerJob extends AbstractJob {
                 hostRepository.update(host);
                 LOG.info("Finished updating host: " + host.getId() + " in the database.");
             }
+            hostService.invalidateClusterEndpointConfigs();
         } catch (Exception e) {
             Alert alert = AlertHelper.createAlert(null, null, e, AlertType.API_FAILURE.name(), "HostEndpointPoller Failure, check Alerts for more information... ");
             alertRepository.save(alert);
@@ -92,10 +95,8 @@ public class HostEndpointPollerJob extends AbstractJob {
 
     //TODO: refactor to use service/null adapter
     public LoadBalancerEndpointConfiguration getConfigHost(Host host) throws DecryptException, MalformedURLException {
-        Cluster cluster = host.getCluster();
-        List<String> failoverHostNames = hostRepository.getFailoverHostNames(cluster.getId());
-        List<Host> failoverHosts = hostRepository.getFailoverHosts(cluster.getId());
-        return new LoadBalancerEndpointConfiguration(host, cluster.getUsername(), CryptoUtil.decrypt(cluster.getPassword()), host, failoverHostNames, failoverHosts);
+        ClusterEndpointConfig endpointConfig = hostService.getClusterEndpointConfig(host.getCluster());
+        return new LoadBalancerEndpointConfiguration(host, endpointConfig.getUsername(), endpointConfig.getPassword(), host, endpointConfig.getFailoverHostNames(), endpointConfig.getFailoverHosts());
     }
 
 }
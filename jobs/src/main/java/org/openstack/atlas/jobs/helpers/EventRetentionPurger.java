@@ -0,0 +1,101 @@
+package org.openstack.atlas.jobs.helpers;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openstack.atlas.service.domain.events.entities.Event;
+import org.openstack.atlas.service.domain.events.repository.LoadBalancerEventRepository;
+
+import java.util.Calendar;
+import java.util.List;
+
+/*
+ * Deletes expired events a chunk at a time in id order, pausing between
+ * chunks. Every chunk is its own short transaction, so API writes to the
+ * same tables only ever wait behind one chunk instead of the whole purge.
+ * After each chunk the purger hands back a checkpoint ("NodeEvent:1234")
+ * that lets an interrupted purge pick up where it stopped.
+ */
+public class EventRetentionPurger {
+    private static final Log LOG = LogFactory.getLog(EventRetentionPurger.class);
+
+    public interface Checkpoint {
+        void save(String checkpoint);
+    }
+
+    private final LoadBalancerEventRepository repository;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    public EventRetentionPurger(LoadBalancerEventRepository repository, int batchSize, long pauseMillis) {
+        this.repository = repository;
+        this.batchSize = Math.max(1, batchSize);
+        this.pauseMillis = Math.max(0, pauseMillis);
+    }
+
+    /**
+     * Purges every event type in order, starting at the type and id in
+     * resumeFrom when there is one. Returns the number of rows deleted.
+     */
+    public long purge(List<Class<? extends Event>> eventClasses, Calendar cutoff, String resumeFrom, Checkpoint checkpoint) throws InterruptedException {
+        int first = 0;
+        int afterId = 0;
+        if (resumeFrom != null) {
+            int sep = resumeFrom.lastIndexOf(':');
+            int found = sep < 0 ? -1 : indexOf(eventClasses, resumeFrom.substring(0, sep));
+            if (found < 0) {
+                LOG.warn(String.format("Ignoring unrecognized purge checkpoint '%s'", resumeFrom));
+            } else {
+                try {
+                    afterId = Integer.parseInt(resumeFrom.substring(sep + 1));
+                    first = found;
+                    LOG.info(String.format("Resuming event purge at %s", resumeFrom));
+                } catch (NumberFormatException nfe) {
+                    LOG.warn(String.format("Ignoring unrecognized purge checkpoint '%s'", resumeFrom));
+                }
+            }
+        }
+
+        long total = 0;
+        for (int i = first; i < eventClasses.size(); i++) {
+            total += purge(eventClasses.get(i), cutoff, i == first ? afterId : 0, checkpoint);
+        }
+        return total;
+    }
+
+    public long purge(Class<? extends Event> eventClass, Calendar cutoff, int afterId, Checkpoint checkpoint) throws InterruptedException {
+        String name = eventClass.getSimpleName();
+        long startTime = System.currentTimeMillis();
+        long deleted = 0;
+        int chunks = 0;
+        while (true) {
+            List<Integer> ids = repository.getEventIdsCreatedBefore(eventClass, cutoff, afterId, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            deleted += repository.removeEventsCreatedBefore(eventClass, cutoff, ids);
+            chunks++;
+            afterId = ids.get(ids.size() - 1);
+            checkpoint.save(name + ":" + afterId);
+            if (ids.size() < batchSize) {
+                break;
+            }
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+
+        long millis = System.currentTimeMillis() - startTime;
+        LOG.info(String.format("Removed %d %s rows in %d chunks over %d ms (%.1f rows/sec)", deleted, name, chunks, millis,
+                millis > 0 ? deleted * 1000.0 / millis : (double) deleted));
+        return deleted;
+    }
+
+    private static int indexOf(List<Class<? extends Event>> eventClasses, String name) {
+        for (int i = 0; i < eventClasses.size(); i++) {
+            if (eventClasses.get(i).getSimpleName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -9,13 +9,16 @@ import org.openstack.atlas.service.domain.entities.VirtualIpType;
 import org.openstack.atlas.service.domain.repository.AccountUsageRepository;
 import org.openstack.atlas.service.domain.repository.LoadBalancerRepository;
 import org.openstack.atlas.service.domain.repository.VirtualIpRepository;
+import org.openstack.atlas.service.domain.util.JdbcBatchInsert;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class AccountUsagePoller extends AbstractJob {
@@ -42,29 +45,58 @@ public class AccountUsagePoller extends AbstractJob {
     public void setup(JobExecutionContext jobExecutionContext) throws JobExecutionException {
     }
 
+    /*
+     * Works through the accounts a chunk at a time in account order: one
+     * grouped query for the load balancer counts of the next chunk, one per
+     * vip type for that chunk's range of accounts, then a batched insert of
+     * the chunk's account_usage rows. Every row of a run shares one start time.
+     */
     @Override
     public void run() throws Exception {
-        List<Integer> accountIds = loadBalancerRepository.getAllAccountIds();
+        int chunkSize = JdbcBatchInsert.getConfiguredChunkSize();
+        Calendar startTime = Calendar.getInstance();
+        Integer afterAccountId = Integer.MIN_VALUE;
+        int numAccounts = 0;
 
-        for (Integer accountId : accountIds) {
-            LOG.debug(String.format("Creating account usage entry for account '%d'...", accountId));
-            createAccountUsageEntry(accountId);
-            LOG.debug(String.format("Account usage entry successfully created for account '%d'.", accountId));
+        while (true) {
+            Map<Integer, Integer> numLoadBalancers = loadBalancerRepository.getNumNonDeletedLoadBalancersByAccount(afterAccountId, chunkSize);
+            if (numLoadBalancers.isEmpty()) {
+                break;
+            }
+            List<Integer> accountIds = new ArrayList<Integer>(numLoadBalancers.keySet());
+            Integer firstAccountId = accountIds.get(0);
+            Integer lastAccountId = accountIds.get(accountIds.size() - 1);
+            Map<Integer, Integer> numPublicVips = virtualIpRepository.getNumUniqueVipsByAccount(firstAccountId, lastAccountId, VirtualIpType.PUBLIC);
+            Map<Integer, Integer> numServicenetVips = virtualIpRepository.getNumUniqueVipsByAccount(firstAccountId, lastAccountId, VirtualIpType.SERVICENET);
+
+            List<AccountUsage> usages = new ArrayList<AccountUsage>(accountIds.size());
+            for (Integer accountId : accountIds) {
+                usages.add(newAccountUsage(accountId, numLoadBalancers.get(accountId), numPublicVips.get(accountId), numServicenetVips.get(accountId), startTime));
+            }
+            accountUsageRepository.batchCreate(usages);
+            numAccounts += usages.size();
+            LOG.debug(String.format("Account usage entries created for accounts '%d' through '%d'.", firstAccountId, lastAccountId));
+
+            if (accountIds.size() < chunkSize) {
+                break;
+            }
+            afterAccountId = lastAccountId;
         }
+        LOG.info(String.format("Account usage entries successfully created for %d accounts.", numAccounts));
     }
 
     @Override
     public void cleanup() {
     }
 
-    private void createAccountUsageEntry(Integer accountId) {
+    private static AccountUsage newAccountUsage(Integer accountId, Integer numLoadBalancers, Integer numPublicVips, Integer numServicenetVips, Calendar startTime) {
         AccountUsage usage = new AccountUsage();
         usage.setAccountId(accountId);
-        usage.setNumLoadBalancers(loadBalancerRepository.getNumNonDeletedLoadBalancersForAccount(accountId));
-        usage.setNumPublicVips(virtualIpRepository.getNumUniqueVipsForAccount(accountId, VirtualIpType.PUBLIC));
-        usage.setNumServicenetVips(virtualIpRepository.getNumUniqueVipsForAccount(accountId, VirtualIpType.SERVICENET));
-        usage.setStartTime(Calendar.getInstance());
-        accountUsageRepository.save(usage);
+        usage.setNumLoadBalancers(numLoadBalancers == null ? 0 : numLoadBalancers);
+        usage.setNumPublicVips(numPublicVips == null ? 0 : numPublicVips);
+        usage.setNumServicenetVips(numServicenetVips == null ? 0 : numServicenetVips);
+        usage.setStartTime(startTime);
+        return usage;
     }
 
 }
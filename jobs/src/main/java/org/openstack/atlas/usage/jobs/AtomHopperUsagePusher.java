@@ -6,6 +6,7 @@ import org.openstack.atlas.jobs.AbstractJob;
 import org.openstack.atlas.restclients.atomhopper.AtomHopperClient;
 import org.openstack.atlas.restclients.atomhopper.AtomHopperClientImpl;
 import org.openstack.atlas.restclients.atomhopper.config.AtomHopperConfiguration;
+import org.openstack.atlas.restclients.atomhopper.config.AtomHopperConfigurationKeys;
 import org.openstack.atlas.restclients.atomhopper.util.AtomHopperUtil;
 import org.openstack.atlas.restclients.auth.IdentityAuthClient;
 import org.openstack.atlas.restclients.auth.IdentityClientImpl;
@@ -17,6 +18,7 @@ import org.openstack.atlas.service.domain.repository.UsageRepository;
 import org.openstack.atlas.usage.BatchAction;
 import org.openstack.atlas.usage.ExecutionUtilities;
 import org.openstack.atlas.usage.thread.UsageThread;
+import org.openstack.atlas.usage.thread.helper.AdaptiveRequestWindow;
 import org.openstack.atlas.usage.thread.service.RejectedExecutionHandler;
 import org.openstack.atlas.usage.thread.service.ThreadPoolExecutorService;
 import org.openstack.atlas.usage.thread.service.ThreadPoolMonitorService;
@@ -47,6 +49,8 @@ public class AtomHopperUsagePusher extends AbstractJob {
     private long keepAliveTime;
     private int corePoolSize;
     private int maxPoolSize;
+    private int maxRetries;
+    private AdaptiveRequestWindow requestWindow;
     private ThreadPoolExecutor poolExecutor;
     private AtomHopperClient ahuslClient;
     private IdentityAuthClient identityClient;
@@ -85,6 +89,14 @@ public class AtomHopperUsagePusher extends AbstractJob {
         corePoolSize = Integer.valueOf(configuration.getString(ahusl_pool_core_size));
         keepAliveTime = Long.valueOf(configuration.getString(ahusl_pool_conn_timeout));
 
+        // Start at the core pool size and never go past the threads or http connections there are to use
+        int maxInFlight = Math.min(maxPoolSize, getInt(configuration, ahusl_max_total_connections, maxPoolSize));
+        maxRetries = getInt(configuration, ahusl_window_max_retries, 5);
+        requestWindow = new AdaptiveRequestWindow(corePoolSize, 1, maxInFlight,
+                getInt(configuration, ahusl_window_target_latency_millis, 2000),
+                getInt(configuration, ahusl_window_backoff_base_millis, 500),
+                getInt(configuration, ahusl_window_backoff_max_millis, 30000));
+
         try {
             poolExecutor = threadPoolExecutorService.createNewThreadPool(corePoolSize, maxPoolSize, keepAliveTime, QUERY_SIZE, new RejectedExecutionHandler());
             ThreadServiceUtil.startThreadMonitor(poolExecutor, threadPoolMonitorService);
@@ -132,7 +144,7 @@ public class AtomHopperUsagePusher extends AbstractJob {
 
             BatchAction<Usage> batchAction = new BatchAction<Usage>() {
                 public void execute(Collection<Usage> allUsages) throws Exception {
-                    poolExecutor.execute(new UsageThread(allUsages, ahuslClient, identityClient, usageRepository, loadBalancerEventRepository, alertRepository));
+                    poolExecutor.execute(new UsageThread(allUsages, ahuslClient, identityClient, usageRepository, loadBalancerEventRepository, alertRepository, requestWindow, maxRetries));
                 }
             };
 
@@ -142,6 +154,15 @@ public class AtomHopperUsagePusher extends AbstractJob {
         }
     }
 
+    private int getInt(AtomHopperConfiguration configuration, AtomHopperConfigurationKeys key, int defaultValue) {
+        try {
+            return Integer.valueOf(configuration.getString(key));
+        } catch (Exception e) {
+            LOG.warn(String.format("%s not configured, using %d", key, defaultValue));
+            return defaultValue;
+        }
+    }
+
     private void sortUsages(List<Usage> usages) {
         Collections.sort(usages, new Comparator<Usage>() {
             public int compare(Usage usage1, Usage usage2) {
@@ -5,6 +5,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openstack.atlas.adapter.LoadBalancerEndpointConfiguration;
 import org.openstack.atlas.adapter.service.ReverseProxyLoadBalancerAdapter;
+import org.openstack.atlas.cfg.Configuration;
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.atlas.cfg.RestApiConfiguration;
 import org.openstack.atlas.jobs.AbstractJob;
 import org.openstack.atlas.service.domain.entities.Host;
 import org.openstack.atlas.service.domain.entities.JobName;
@@ -20,12 +23,31 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.net.ConnectException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class HostUsagePoller extends AbstractJob {
     private final Log LOG = LogFactory.getLog(HostUsagePoller.class);
+    private static final int DEFAULT_THREADS = 16;
+    private static final int DEFAULT_TIMEOUT_MILLIS = 30000;
+    private static final long IDLE_THREAD_SECONDS = 60;
+    private Configuration configuration = new RestApiConfiguration();
+    private Calendar scheduledPollTime;
+    private ExecutorService threadPool;
 
     @Autowired
     private ReverseProxyLoadBalancerAdapter reverseProxyLoadBalancerAdapter;
@@ -46,54 +68,158 @@ public class HostUsagePoller extends AbstractJob {
 
     @Override
     public void setup(JobExecutionContext jobExecutionContext) throws JobExecutionException {
+        scheduledPollTime = Calendar.getInstance();
+        if (jobExecutionContext != null && jobExecutionContext.getScheduledFireTime() != null) {
+            scheduledPollTime.setTime(jobExecutionContext.getScheduledFireTime());
+        }
     }
 
+    /*
+     * Every host is polled at once, up to host_usage_poller_threads at a time,
+     * over one pool kept for the life of the job. Each SOAP call gives up
+     * after host_usage_poller_timeout_millis, and a host that still hasn't
+     * answered two timeouts after its poll started is skipped rather than
+     * holding up the rest. Hosts waiting for a thread aren't charged for the
+     * wait. Every snapshot of a run carries the scheduled fire time and they
+     * are all saved in one batch.
+     */
     @Override
     public void run() throws Exception {
+        Calendar pollTime = (scheduledPollTime == null) ? Calendar.getInstance() : scheduledPollTime;
         List<Host> hosts = hostRepository.getAll();
+        if (hosts.isEmpty()) {
+            return;
+        }
 
-        for (final Host host : hosts) {
+        Map<Host, LoadBalancerEndpointConfiguration> configs = new LinkedHashMap<Host, LoadBalancerEndpointConfiguration>();
+        for (Host host : hosts) {
             try {
-                final LoadBalancerEndpointConfiguration config = HostConfigHelper.getConfig(host, hostRepository);
-                Calendar pollTime = Calendar.getInstance();
+                configs.put(host, HostConfigHelper.getConfig(host, hostRepository));
+            } catch (DecryptException de) {
+                LOG.error(String.format("Error decrypting configuration for '%s' (%s)", host.getName(), host.getEndpoint()), de);
+            }
+        }
 
-                LOG.debug(String.format("Retrieving host bytes in from '%s' (%s)...", host.getName(), host.getEndpoint()));
-                long hostBytesIn = reverseProxyLoadBalancerAdapter.getHostBytesIn(config);
-                LOG.debug(String.format("Retrieving host bytes out from '%s' (%s)...", host.getName(), host.getEndpoint()));
-                long hostBytesOut = reverseProxyLoadBalancerAdapter.getHostBytesOut(config);
+        List<HostUsage> snapshots = pollHosts(configs, pollTime, getInt(PublicApiServiceConfigurationKeys.host_usage_poller_timeout_millis, DEFAULT_TIMEOUT_MILLIS));
+        LOG.debug(String.format("Saving %d usage snapshots...", snapshots.size()));
+        hostUsageRepository.batchCreate(snapshots);
+        LOG.debug(String.format("Usage snapshots successfully saved."));
+    }
 
-                LOG.info(String.format("Host Name: '%s', Bandwidth In: %d, Bandwidth Out: %d", host.getName(), hostBytesIn, hostBytesOut));
+    List<HostUsage> pollHosts(Map<Host, LoadBalancerEndpointConfiguration> configs, Calendar pollTime, int timeoutMillis) throws InterruptedException {
+        Map<Host, HostPoll> polls = new LinkedHashMap<Host, HostPoll>();
+        for (Map.Entry<Host, LoadBalancerEndpointConfiguration> config : configs.entrySet()) {
+            HostPoll poll = new HostPoll(config.getKey(), config.getValue(), timeoutMillis);
+            getThreadPool().execute(poll);
+            polls.put(config.getKey(), poll);
+        }
 
-                LOG.debug(String.format("Saving usage snapshot for '%s' (%s)...", host.getName(), host.getEndpoint()));
-                addRecordForHost(host, hostBytesIn, hostBytesOut, pollTime);
-                LOG.debug(String.format("Usage snapshot successfully saved."));
-            } catch (DecryptException de) {
-                LOG.error(String.format("Error decrypting configuration for '%s' (%s)", host.getName(), host.getEndpoint()), de);
-            } catch (AxisFault af) {
-                if (af.getCause() instanceof ConnectException) {
-                    LOG.error(String.format("Error connecting to '%s' (%s). Skipping...", host.getName(), host.getEndpoint()));
-                } else {
-                    LOG.error("Axis Fault Exception caught", af);
-                    af.printStackTrace();
-                }
-            } catch (Exception e) {
-                LOG.error("Exception caught", e);
-                e.printStackTrace();
+        // Both counters are separate SOAP calls, each bounded by the timeout
+        long budgetMillis = 2L * timeoutMillis;
+        List<HostUsage> snapshots = new ArrayList<HostUsage>();
+        for (Map.Entry<Host, HostPoll> poll : polls.entrySet()) {
+            Host host = poll.getKey();
+            try {
+                HostUsage hostUsage = poll.getValue().await(budgetMillis);
+                LOG.info(String.format("Host Name: '%s', Bandwidth In: %d, Bandwidth Out: %d", host.getName(), hostUsage.getBandwidthBytesIn(), hostUsage.getBandwidthBytesOut()));
+                hostUsage.setHostId(host.getId());
+                hostUsage.setSnapshotTime(pollTime);
+                snapshots.add(hostUsage);
+            } catch (TimeoutException te) {
+                // Its thread comes back once the SOAP timeout fires, the late answer is dropped
+                LOG.error(String.format("Timed out polling '%s' (%s). Skipping...", host.getName(), host.getEndpoint()));
+            } catch (ExecutionException ee) {
+                logPollFailure(host, ee.getCause());
             }
         }
+        return snapshots;
+    }
+
+    synchronized ExecutorService getThreadPool() {
+        if (threadPool == null) {
+            int threads = Math.max(1, getInt(PublicApiServiceConfigurationKeys.host_usage_poller_threads, DEFAULT_THREADS));
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new PollerThreadFactory());
+            // The job fires every few minutes, don't keep idle threads around in between
+            pool.allowCoreThreadTimeOut(true);
+            threadPool = pool;
+        }
+        return threadPool;
     }
 
     @Override
     public void cleanup() {
     }
 
-    private void addRecordForHost(Host host, long hostBytesIn, long hostBytesOut, Calendar pollTime) {
-        HostUsage hostUsage = new HostUsage();
-        hostUsage.setHostId(host.getId());
-        hostUsage.setBandwidthBytesIn(hostBytesIn);
-        hostUsage.setBandwidthBytesOut(hostBytesOut);
-        hostUsage.setSnapshotTime(pollTime);
-        hostUsageRepository.save(hostUsage);
+    private void logPollFailure(Host host, Throwable cause) {
+        if (cause instanceof AxisFault) {
+            if (cause.getCause() instanceof ConnectException) {
+                LOG.error(String.format("Error connecting to '%s' (%s). Skipping...", host.getName(), host.getEndpoint()));
+            } else {
+                LOG.error("Axis Fault Exception caught", cause);
+            }
+        } else {
+            LOG.error("Exception caught", cause);
+        }
     }
 
+    private int getInt(PublicApiServiceConfigurationKeys key, int defaultValue) {
+        try {
+            if (configuration.hasKeys(key)) {
+                return Integer.parseInt(configuration.getString(key).trim());
+            }
+        } catch (NumberFormatException nfe) {
+            LOG.warn(String.format("Invalid value for %s, using %d", key, defaultValue));
+        }
+        return defaultValue;
+    }
+
+    private class HostPoll extends FutureTask<HostUsage> {
+        private volatile long startedAt;
+
+        HostPoll(final Host host, final LoadBalancerEndpointConfiguration config, final int timeoutMillis) {
+            super(new Callable<HostUsage>() {
+                @Override
+                public HostUsage call() throws Exception {
+                    LOG.debug(String.format("Retrieving host bytes in and out from '%s' (%s)...", host.getName(), host.getEndpoint()));
+                    return reverseProxyLoadBalancerAdapter.getHostBytesInAndOut(config, timeoutMillis);
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            startedAt = System.currentTimeMillis();
+            super.run();
+        }
+
+        /*
+         * Waits until budgetMillis after the poll started. A poll still
+         * queued behind other hosts hasn't started its clock yet.
+         */
+        HostUsage await(long budgetMillis) throws InterruptedException, ExecutionException, TimeoutException {
+            while (true) {
+                long started = startedAt;
+                if (started == 0) {
+                    try {
+                        return get(budgetMillis, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException te) {
+                        continue;
+                    }
+                }
+                return get(Math.max(0, started + budgetMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static class PollerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "host-usage-poller-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
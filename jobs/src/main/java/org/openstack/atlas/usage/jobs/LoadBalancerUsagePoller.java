@@ -2,6 +2,9 @@ package org.openstack.atlas.usage.jobs;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openstack.atlas.cfg.Configuration;
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.atlas.cfg.RestApiConfiguration;
 import org.openstack.atlas.jobs.AbstractJob;
 import org.openstack.atlas.service.domain.entities.Host;
 import org.openstack.atlas.service.domain.entities.JobName;
@@ -11,11 +14,13 @@ import org.openstack.atlas.service.domain.usage.entities.LoadBalancerHostUsage;
 import org.openstack.atlas.service.domain.usage.entities.LoadBalancerMergedHostUsage;
 import org.openstack.atlas.usage.BatchAction;
 import org.openstack.atlas.usage.ExecutionUtilities;
+import org.openstack.atlas.usagerefactor.AsyncHostUsageCollector;
 import org.openstack.atlas.usagerefactor.HostThread;
 import org.openstack.atlas.usagerefactor.SnmpUsage;
 import org.openstack.atlas.usagerefactor.UsageProcessor;
 import org.openstack.atlas.usagerefactor.helpers.HostIdUsageMap;
 import org.openstack.atlas.usagerefactor.helpers.UsageProcessorResult;
+import org.openstack.atlas.util.common.MapUtil;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,6 +33,9 @@ import java.util.concurrent.*;
 public class LoadBalancerUsagePoller extends AbstractJob {
     private final Log LOG = LogFactory.getLog(LoadBalancerUsagePoller.class);
     private final int BATCH_SIZE = 1000;
+    private static final long DEFAULT_SNMP_DEADLINE_MILLIS = 120000;
+    private final Configuration configuration = new RestApiConfiguration();
+    private AsyncHostUsageCollector asyncHostUsageCollector;
 
     @Autowired
     private UsageRefactorService usageRefactorService;
@@ -57,17 +65,17 @@ public class LoadBalancerUsagePoller extends AbstractJob {
         Map<Integer, Map<Integer, List<LoadBalancerHostUsage>>> existingUsages = usageRefactorService.getRecordsBeforeTimeInclusive(pollTime);
         Long maxId = findMaxId(existingUsages);
         LOG.info("Retrieved records for " + existingUsages.size() + " load balancers from lb_host_usage table.");
-        Map<Integer, Map<Integer, SnmpUsage>> currentUsages;
+        Map<Integer, Map<Integer, SnmpUsage>> currentUsagesByLb;
         try {
-            currentUsages = getCurrentData();
-            LOG.info("Retrieved records for " + currentUsages.size() + " hosts from stingray by SNMP.");
+            currentUsagesByLb = getCurrentDataByLoadBalancer();
+            LOG.info("Retrieved records for " + currentUsagesByLb.size() + " load balancers from stingray by SNMP.");
         } catch (Exception e) {
             LOG.error("There was an error retrieving current usage from stingray using snmp. " + e);
             return;
         }
 
 
-        UsageProcessorResult result = usageProcessor.mergeRecords(existingUsages, currentUsages, pollTime);
+        UsageProcessorResult result = usageProcessor.mergeRecordsByLoadBalancer(existingUsages, currentUsagesByLb, pollTime);
         LOG.info("Completed processing of current usage");
         LOG.info("Checking if any events were inserted between the beginning of this job and now...");
         Map<Integer, Map<Integer, List<LoadBalancerHostUsage>>> newEvents = usageRefactorService.getRecordsAfterTimeInclusive(pollTime);
@@ -102,6 +110,30 @@ public class LoadBalancerUsagePoller extends AbstractJob {
     public void cleanup() {
     }
 
+    /*
+     *  Current usage keyed by loadbalancerId and then hostId. With async
+     *  SNMP each host's usage is folded in as soon as its walk comes back.
+     */
+    private Map<Integer, Map<Integer, SnmpUsage>> getCurrentDataByLoadBalancer() throws Exception {
+        if (!isAsyncSnmpEnabled()) {
+            return MapUtil.swapKeys(getCurrentData());
+        }
+        LOG.info("Collecting Stingray data from each host...");
+        final Map<Integer, Map<Integer, SnmpUsage>> usagesByLb = new HashMap<Integer, Map<Integer, SnmpUsage>>();
+        getAsyncHostUsageCollector().collect(getAccessibleHosts(), new AsyncHostUsageCollector.HostUsageHandler() {
+            @Override
+            public void handle(HostIdUsageMap hostUsage) {
+                for (Map.Entry<Integer, SnmpUsage> lbUsage : hostUsage.getMap().entrySet()) {
+                    if (!usagesByLb.containsKey(lbUsage.getKey())) {
+                        usagesByLb.put(lbUsage.getKey(), new HashMap<Integer, SnmpUsage>());
+                    }
+                    usagesByLb.get(lbUsage.getKey()).put(hostUsage.getHostId(), lbUsage.getValue());
+                }
+            }
+        });
+        return usagesByLb;
+    }
+
     private Map<Integer, Map<Integer, SnmpUsage>> getCurrentData() throws Exception {
         LOG.info("Collecting Stingray data from each host...");
         Map<Integer, Map<Integer, SnmpUsage>> mergedHostsUsage = new HashMap<Integer, Map<Integer, SnmpUsage>>();
@@ -125,6 +157,22 @@ public class LoadBalancerUsagePoller extends AbstractJob {
         }
     }
 
+    private boolean isAsyncSnmpEnabled() {
+        return configuration.hasKeys(PublicApiServiceConfigurationKeys.usage_poller_snmp_async) &&
+                configuration.getString(PublicApiServiceConfigurationKeys.usage_poller_snmp_async).equalsIgnoreCase("enabled");
+    }
+
+    private synchronized AsyncHostUsageCollector getAsyncHostUsageCollector() {
+        if (asyncHostUsageCollector == null) {
+            long deadlineMillis = DEFAULT_SNMP_DEADLINE_MILLIS;
+            if (configuration.hasKeys(PublicApiServiceConfigurationKeys.usage_poller_snmp_deadline_millis)) {
+                deadlineMillis = Long.parseLong(configuration.getString(PublicApiServiceConfigurationKeys.usage_poller_snmp_deadline_millis));
+            }
+            asyncHostUsageCollector = new AsyncHostUsageCollector(deadlineMillis);
+        }
+        return asyncHostUsageCollector;
+    }
+
     private List<Host> getAccessibleHosts() {
         LOG.info("Discovering accessible hosts...");
         List<Host> hostList = hostService.getAllOnline();
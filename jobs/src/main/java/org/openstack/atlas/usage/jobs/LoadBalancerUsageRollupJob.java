@@ -10,10 +10,9 @@ import org.openstack.atlas.service.domain.entities.Usage;
 import org.openstack.atlas.service.domain.pojos.LbIdAccountId;
 import org.openstack.atlas.service.domain.repository.LoadBalancerRepository;
 import org.openstack.atlas.service.domain.repository.UsageRepository;
-import org.openstack.atlas.service.domain.usage.entities.LoadBalancerMergedHostUsage;
 import org.openstack.atlas.service.domain.usage.repository.LoadBalancerMergedHostUsageRepository;
 import org.openstack.atlas.usage.BatchAction;
-import org.openstack.atlas.usage.ExecutionUtilities;
+import org.openstack.atlas.usagerefactor.StreamingUsageRollup;
 import org.openstack.atlas.usagerefactor.UsageRollupProcessor;
 import org.openstack.atlas.util.common.CalendarUtils;
 import org.quartz.JobExecutionContext;
@@ -24,13 +23,13 @@ import org.springframework.stereotype.Component;
 import java.text.ParseException;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.List;
 import java.util.Set;
 
 @Component
 public class LoadBalancerUsageRollupJob extends AbstractJob {
     private final Log LOG = LogFactory.getLog(LoadBalancerUsageRollupJob.class);
     private final int BATCH_SIZE = 1000;
+    private final int FETCH_SIZE = Integer.MIN_VALUE; // MySQL Connector/J only streams rows with this fetch size
 
     @Autowired
     private UsageRepository usageRepository;
@@ -86,6 +85,7 @@ public class LoadBalancerUsageRollupJob extends AbstractJob {
         Calendar hourToRollup = null;
         Calendar rollupMarker = null;
 
+        // One hour per pass so the last rolled up hour is saved after every hour
         while (hourToRollup == null || hourToRollup.before(hourToStop)) {
             try {
                 hourToRollup = getHourToRollup(hourToStop);
@@ -101,23 +101,19 @@ public class LoadBalancerUsageRollupJob extends AbstractJob {
             Set<LbIdAccountId> loadBalancersActiveDuringPeriod = loadBalancerRepository.getLoadBalancersActiveDuringPeriod(hourToRollup, rollupMarker);
             LOG.info(String.format("%d loadbalancers were active for hour '%s'.", loadBalancersActiveDuringPeriod.size(), hourToRollup.getTime().toString()));
 
-            LOG.info(String.format("Retrieving usage entries to process from polling DB for hour '%s'...", hourToRollup.getTime().toString()));
-            List<LoadBalancerMergedHostUsage> pollingUsages = lbMergedHostUsageRepository.getAllUsageRecordsInOrderBeforeOrEqualToTime(rollupMarker);
-
-            LOG.info(String.format("Processing usage entries for hour '%s'...", hourToRollup.getTime().toString()));
-            List<Usage> usagesToInsert = usageRollupProcessor.processRecords(pollingUsages, hourToRollup, loadBalancersActiveDuringPeriod);
-
-            if (!usagesToInsert.isEmpty()) {
-                BatchAction<Usage> usageInsertBatchAction = new BatchAction<Usage>() {
-                    @Override
-                    public void execute(Collection<Usage> usagesToInsert) throws Exception {
-                        LOG.info(String.format("Inserting %d new records into lb_usage table...", usagesToInsert.size()));
-                        usageRepository.batchCreate(usagesToInsert);
-                        LOG.info(String.format("Inserted %d new records into lb_usage table.", usagesToInsert.size()));
-                    }
-                };
-                ExecutionUtilities.ExecuteInBatches(usagesToInsert, BATCH_SIZE, usageInsertBatchAction);
-            }
+            BatchAction<Usage> usageInsertBatchAction = new BatchAction<Usage>() {
+                @Override
+                public void execute(Collection<Usage> usagesToInsert) throws Exception {
+                    LOG.info(String.format("Inserting %d new records into lb_usage table...", usagesToInsert.size()));
+                    usageRepository.batchCreate(usagesToInsert);
+                    LOG.info(String.format("Inserted %d new records into lb_usage table.", usagesToInsert.size()));
+                }
+            };
+
+            LOG.info(String.format("Streaming usage entries from polling DB for hour '%s'...", hourToRollup.getTime().toString()));
+            StreamingUsageRollup streamingUsageRollup = new StreamingUsageRollup(usageRollupProcessor, hourToRollup, loadBalancersActiveDuringPeriod, BATCH_SIZE, usageInsertBatchAction);
+            lbMergedHostUsageRepository.streamUsageRecordsByLoadBalancerBeforeOrEqualToTime(rollupMarker, FETCH_SIZE, streamingUsageRollup);
+            streamingUsageRollup.finish();
 
             String lastSuccessfulHourProcessed = CalendarUtils.calendarToString(hourToRollup);
             jobStateService.updateInputPath(JobName.LB_USAGE_ROLLUP, lastSuccessfulHourProcessed);
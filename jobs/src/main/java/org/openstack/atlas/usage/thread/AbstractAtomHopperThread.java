@@ -13,6 +13,7 @@ import org.openstack.atlas.service.domain.entities.Usage;
 import org.openstack.atlas.service.domain.events.repository.AlertRepository;
 import org.openstack.atlas.service.domain.events.repository.LoadBalancerEventRepository;
 import org.openstack.atlas.usage.thread.helper.AHRecordHelper;
+import org.openstack.atlas.usage.thread.helper.AdaptiveRequestWindow;
 
 import java.util.Calendar;
 import java.util.ConcurrentModificationException;
@@ -31,6 +32,8 @@ public abstract class AbstractAtomHopperThread implements Runnable {
     protected LoadBalancerEventRepository loadBalancerEventRepository;
 
     protected List<Usage> failedRecords;
+    protected AdaptiveRequestWindow window;
+    protected int maxRetries;
 
     public abstract String getThreadName();
 
@@ -48,6 +51,14 @@ public abstract class AbstractAtomHopperThread implements Runnable {
         this.alertRepository = alertRepository;
     }
 
+    public AbstractAtomHopperThread(List<Usage> usages, AtomHopperClient client, IdentityAuthClient identityAuthClient,
+                                    LoadBalancerEventRepository loadBalancerEventRepository,
+                                    AlertRepository alertRepository, AdaptiveRequestWindow window, int maxRetries) {
+        this(usages, client, identityAuthClient, loadBalancerEventRepository, alertRepository);
+        this.window = window;
+        this.maxRetries = maxRetries;
+    }
+
     @Override
     public void run() {
         AtomHopperUtil ahutil = new AtomHopperUtil();
@@ -60,7 +71,7 @@ public abstract class AbstractAtomHopperThread implements Runnable {
             String authToken = identityAuthClient.getAuthToken();
             ahelper = new AHRecordHelper(configuration.getString(AtomHopperConfigurationKeys
                     .ahusl_log_requests).equals("ENABLED"), client,
-                    loadBalancerEventRepository, alertRepository);
+                    loadBalancerEventRepository, alertRepository, window, maxRetries);
 
             for (Usage usageRecord : usages) {
                 Map<Object, Object> entryMap = generateAtomHopperEntry(usageRecord);
@@ -9,6 +9,7 @@ import org.openstack.atlas.service.domain.entities.Usage;
 import org.openstack.atlas.service.domain.events.repository.AlertRepository;
 import org.openstack.atlas.service.domain.events.repository.LoadBalancerEventRepository;
 import org.openstack.atlas.service.domain.repository.UsageRepository;
+import org.openstack.atlas.usage.thread.helper.AdaptiveRequestWindow;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -28,6 +29,15 @@ public class UsageThread extends AbstractAtomHopperThread {
         this.usageEntryFactory = new UsageEntryFactoryImpl();
     }
 
+    public UsageThread(Collection<Usage> usages, AtomHopperClient client, IdentityAuthClient identityAuthClient,
+                       UsageRepository usageRepository,
+                       LoadBalancerEventRepository loadBalancerEventRepository,
+                       AlertRepository alertRepository, AdaptiveRequestWindow window, int maxRetries) {
+        super(new ArrayList<Usage>(usages), client, identityAuthClient, loadBalancerEventRepository, alertRepository, window, maxRetries);
+        this.usageRepository = usageRepository;
+        this.usageEntryFactory = new UsageEntryFactoryImpl();
+    }
+
     @Override
     public void updatePushedRecords(List<Usage> successfullyPushedRecords) {
         if (!successfullyPushedRecords.isEmpty()) {
@@ -27,15 +27,29 @@ public class AHRecordHelper {
     protected LoadBalancerEventRepository loadBalancerEventRepository;
     protected List<Usage> failedRecords;
     protected boolean isVerboseLog;
+    protected AdaptiveRequestWindow window;
+    protected int maxRetries;
 
     public AHRecordHelper(boolean isVerboseLog, AtomHopperClient client,
                           LoadBalancerEventRepository loadBalancerEventRepository,
                           AlertRepository alertRepository) {
+        this(isVerboseLog, client, loadBalancerEventRepository, alertRepository, null, 0);
+    }
+
+    /**
+     * @param window: shared by every helper posting in the same run, null posts without limit or retry
+     * @param maxRetries: times an entry is re-posted in this run after a 429 or 5xx
+     */
+    public AHRecordHelper(boolean isVerboseLog, AtomHopperClient client,
+                          LoadBalancerEventRepository loadBalancerEventRepository,
+                          AlertRepository alertRepository, AdaptiveRequestWindow window, int maxRetries) {
         this.isVerboseLog = isVerboseLog;
         this.client = client;
         this.loadBalancerEventRepository = loadBalancerEventRepository;
         this.alertRepository = alertRepository;
         this.failedRecords = new ArrayList<Usage>();
+        this.window = window;
+        this.maxRetries = maxRetries;
     }
 
     public List<Usage> handleUsageRecord(Usage usageRecord, String authToken, Map<Object, Object> entryMap) {
@@ -49,7 +63,7 @@ public class AHRecordHelper {
                 entryString = (String) entryMap.get("entrystring");
                 UsageEntry entryObject = (UsageEntry) entryMap.get("entryobject");
 
-                response = client.postEntryWithToken(entryString, authToken);
+                response = postEntry(entryString, authToken, usageRecord);
                 if (response != null) {
                     processResponse(response, authToken, usageRecord, entryObject, entryString);
                 } else {
@@ -98,6 +112,36 @@ public class AHRecordHelper {
         return failedRecords;
     }
 
+    protected ClientResponse postEntry(String entryString, String authToken, Usage usageRecord) throws Exception {
+        if (window == null) {
+            return client.postEntryWithToken(entryString, authToken);
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            window.acquire();
+            long start = System.currentTimeMillis();
+            ClientResponse response;
+            try {
+                response = client.postEntryWithToken(entryString, authToken);
+            } catch (Exception e) {
+                window.release(AdaptiveRequestWindow.NO_RESPONSE, System.currentTimeMillis() - start, 0);
+                throw e;
+            }
+            int status = (response == null) ? AdaptiveRequestWindow.NO_RESPONSE : response.getStatus();
+            long retryAfter = (response == null) ? 0 : AdaptiveRequestWindow.parseRetryAfter(response.getHeaders().getFirst("Retry-After"));
+            window.release(status, System.currentTimeMillis() - start, retryAfter);
+
+            if (response == null || !AdaptiveRequestWindow.isOverload(status) || attempt >= maxRetries) {
+                return response;
+            }
+            response.close();
+            long wait = Math.max(retryAfter, window.backoffMillis(attempt));
+            LOG.warn(String.format("Atom Hopper returned %d for LBID: %d, retrying in %d ms (window now %d)",
+                    status, usageRecord.getLoadbalancer().getId(), wait, window.getLimit()));
+            Thread.sleep(wait);
+        }
+    }
+
     protected void processResponse(ClientResponse response, String authToken, Usage usageRecord,
                                    UsageEntry entryobject, String entrystring) throws Exception {
 
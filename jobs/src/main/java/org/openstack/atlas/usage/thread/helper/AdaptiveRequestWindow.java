@@ -0,0 +1,127 @@
+package org.openstack.atlas.usage.thread.helper;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * Caps how many Atom Hopper posts the usage threads have in flight at once.
+ * The cap grows by one per window of healthy, fast responses and halves on a
+ * 429, a 5xx or a post that got no response at all (AIMD), so the pushers
+ * settle at the rate Atom Hopper is actually accepting. A Retry-After from
+ * Atom Hopper holds back every thread, not just the one that got it.
+ */
+public class AdaptiveRequestWindow {
+    public static final int NO_RESPONSE = -1;
+    private static final double DECREASE_FACTOR = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyMillis;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+    private final Random random = new Random();
+    private double limit;
+    private int inFlight;
+    private long pausedUntil;
+    private long lastDecrease;
+
+    public AdaptiveRequestWindow(int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis,
+                                 long backoffBaseMillis, long backoffMaxMillis) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.backoffBaseMillis = backoffBaseMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+    }
+
+    public static boolean isOverload(int status) {
+        return status == NO_RESPONSE || status == 429 || status >= 500;
+    }
+
+    /**
+     * Blocks until the window has room for another post and no Retry-After
+     * pause is in effect. Every acquire must be followed by one release.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (true) {
+            long wait = pausedUntil - System.currentTimeMillis();
+            if (wait > 0) {
+                wait(wait);
+            } else if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            } else {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * @param status: the http status of the post, NO_RESPONSE if it failed outright
+     * @param latencyMillis: how long the post took
+     * @param retryAfterMillis: the Retry-After Atom Hopper sent, 0 if none
+     */
+    public synchronized void release(int status, long latencyMillis, long retryAfterMillis) {
+        long now = System.currentTimeMillis();
+        inFlight--;
+        if (isOverload(status)) {
+            // Posts already in flight when the cap was cut report the same overload, only cut once per round trip
+            if (now - lastDecrease >= latencyMillis) {
+                limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+                lastDecrease = now;
+            }
+            if (retryAfterMillis > 0) {
+                pausedUntil = Math.max(pausedUntil, now + retryAfterMillis);
+            }
+        } else if (status >= 200 && status < 300 && latencyMillis <= targetLatencyMillis) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * @param attempt: retries already made for the entry, starting at 0
+     * @return a random wait between 0 and the exponential backoff for the attempt
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = backoffBaseMillis << Math.min(attempt, 30);
+        if (ceiling <= 0 || ceiling > backoffMaxMillis) {
+            ceiling = backoffMaxMillis;
+        }
+        synchronized (random) {
+            return (long) (random.nextDouble() * ceiling);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @param retryAfter: a Retry-After header, either delta seconds or an http date
+     * @return the wait it asks for in millis, 0 when absent or unreadable
+     */
+    public static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return 0;
+        }
+        String value = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            return Math.max(0, httpDate.parse(value).getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
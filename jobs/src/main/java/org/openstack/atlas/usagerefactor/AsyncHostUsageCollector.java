@@ -0,0 +1,161 @@
+package org.openstack.atlas.usagerefactor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openstack.atlas.service.domain.entities.Host;
+import org.openstack.atlas.usagerefactor.helpers.HostIdUsageMap;
+import org.openstack.atlas.usagerefactor.snmp.StingrayUsageClient;
+import org.openstack.atlas.usagerefactor.snmp.StingrayUsageClientImpl;
+import org.openstack.atlas.util.snmp.RawSnmpUsage;
+import org.openstack.atlas.util.snmp.StingraySnmpAsyncWalk;
+import org.openstack.atlas.util.snmp.StingraySnmpClient;
+import org.openstack.atlas.util.snmp.StingraySnmpConstants;
+import org.openstack.atlas.util.snmp.StingraySnmpSession;
+import org.openstack.atlas.util.snmp.StingraySnmpWalkListener;
+import org.openstack.atlas.util.snmp.exceptions.StingraySnmpGeneralException;
+import org.snmp4j.Snmp;
+import org.snmp4j.smi.VariableBinding;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Non blocking replacement for running one HostThread per host. Every host
+ * is walked asynchronously over one shared snmp transport. Each host gets
+ * its own deadline from when its walk starts, and its usage is handed to
+ * the HostUsageHandler as soon as the walk finishes, fails or runs out of
+ * time, so no thread sits blocked on a host's round trips and nothing
+ * waits on the slowest host.
+ */
+public class AsyncHostUsageCollector implements StingraySnmpWalkListener {
+    private final Log LOG = LogFactory.getLog(AsyncHostUsageCollector.class);
+    private final StingrayUsageClient stingrayUsageClient;
+    private final long hostDeadlineMillis;
+    private final BlockingQueue<HostWalkResult> finishedWalks = new LinkedBlockingQueue<HostWalkResult>();
+    private String snmpPort = StingraySnmpConstants.PORT;
+    private Snmp snmp;
+
+    public interface HostUsageHandler {
+        /*
+         *  Called once per host on the collecting thread, with an empty
+         *  map for hosts whose walk failed or passed its deadline.
+         */
+        void handle(HostIdUsageMap hostUsage);
+    }
+
+    public AsyncHostUsageCollector(long hostDeadlineMillis) {
+        this.stingrayUsageClient = new StingrayUsageClientImpl();
+        this.hostDeadlineMillis = hostDeadlineMillis;
+    }
+
+    public void setSnmpPort(String snmpPort) {
+        this.snmpPort = snmpPort;
+    }
+
+    public Map<Integer, Map<Integer, SnmpUsage>> collect(List<Host> hostList) throws StingraySnmpGeneralException {
+        final Map<Integer, Map<Integer, SnmpUsage>> mergedHostsUsage = new HashMap<Integer, Map<Integer, SnmpUsage>>();
+        collect(hostList, new HostUsageHandler() {
+            @Override
+            public void handle(HostIdUsageMap hostUsage) {
+                mergedHostsUsage.put(hostUsage.getHostId(), hostUsage.getMap());
+            }
+        });
+        return mergedHostsUsage;
+    }
+
+    public synchronized void collect(List<Host> hostList, HostUsageHandler handler) throws StingraySnmpGeneralException {
+        // Every walk reports back by its deadline so the grace period only covers a wedged dispatcher
+        Map<Integer, Long> giveUpByHost = new HashMap<Integer, Long>();
+        finishedWalks.clear();
+        if (snmp == null) {
+            snmp = StingraySnmpSession.openSnmp("async usage poller");
+        }
+        for (Host host : hostList) {
+            StingraySnmpClient client = new StingraySnmpClient(host.getManagementIp(), snmpPort);
+            long deadline = System.currentTimeMillis() + hostDeadlineMillis;
+            giveUpByHost.put(host.getId(), deadline + StingraySnmpClient.getTimeout());
+            try {
+                client.startSnmpUsageWalk(snmp, deadline, host, this);
+            } catch (StingraySnmpGeneralException e) {
+                LOG.warn(String.format("Warning! Request for host %s usage from SNMP server failed.", host.getName()), e);
+                giveUpByHost.remove(host.getId());
+                handler.handle(new HostIdUsageMap(host.getId(), new HashMap<Integer, SnmpUsage>()));
+            }
+        }
+
+        while (!giveUpByHost.isEmpty()) {
+            HostWalkResult result;
+            try {
+                result = finishedWalks.poll(Math.max(0, Collections.min(giveUpByHost.values()) - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (result != null) {
+                if (giveUpByHost.remove(result.host.getId()) != null) {
+                    handler.handle(toHostIdUsageMap(result));
+                }
+                continue;
+            }
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<Integer, Long>> giveUps = giveUpByHost.entrySet().iterator();
+            while (giveUps.hasNext()) {
+                Map.Entry<Integer, Long> giveUp = giveUps.next();
+                if (giveUp.getValue() <= now) {
+                    giveUps.remove();
+                    giveUpOn(giveUp.getKey(), handler);
+                }
+            }
+        }
+        for (Integer hostId : giveUpByHost.keySet()) {
+            giveUpOn(hostId, handler);
+        }
+    }
+
+    private void giveUpOn(Integer hostId, HostUsageHandler handler) {
+        LOG.warn(String.format("Warning! Host %d did not finish its SNMP walk before the deadline.", hostId));
+        handler.handle(new HostIdUsageMap(hostId, new HashMap<Integer, SnmpUsage>()));
+    }
+
+    public synchronized void close() {
+        if (snmp != null) {
+            StingraySnmpSession.closeQuietly(snmp, "async usage poller");
+            snmp = null;
+        }
+    }
+
+    @Override
+    public void walkFinished(StingraySnmpAsyncWalk walk, Map<String, List<VariableBinding>> bindings) {
+        finishedWalks.add(new HostWalkResult((Host) walk.getUserObject(), StingraySnmpClient.toRawSnmpUsage(bindings)));
+    }
+
+    @Override
+    public void walkFailed(StingraySnmpAsyncWalk walk, StingraySnmpGeneralException ex) {
+        Host host = (Host) walk.getUserObject();
+        LOG.warn(String.format("Warning! Request for host %s usage from SNMP server failed.", host.getName()), ex);
+        finishedWalks.add(new HostWalkResult(host, null));
+    }
+
+    private HostIdUsageMap toHostIdUsageMap(HostWalkResult result) {
+        if (result.rawMap == null) {
+            return new HostIdUsageMap(result.host.getId(), new HashMap<Integer, SnmpUsage>());
+        }
+        return new HostIdUsageMap(result.host.getId(), stingrayUsageClient.getHostUsage(result.host, result.rawMap));
+    }
+
+    private static class HostWalkResult {
+        private final Host host;
+        private final Map<String, RawSnmpUsage> rawMap;
+
+        private HostWalkResult(Host host, Map<String, RawSnmpUsage> rawMap) {
+            this.host = host;
+            this.rawMap = rawMap;
+        }
+    }
+}
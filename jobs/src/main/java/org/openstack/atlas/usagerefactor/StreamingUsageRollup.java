@@ -0,0 +1,111 @@
+package org.openstack.atlas.usagerefactor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openstack.atlas.service.domain.entities.Usage;
+import org.openstack.atlas.service.domain.pojos.LbIdAccountId;
+import org.openstack.atlas.service.domain.usage.entities.LoadBalancerMergedHostUsage;
+import org.openstack.atlas.service.domain.usage.repository.LoadBalancerMergedHostUsageRepository;
+import org.openstack.atlas.usage.BatchAction;
+import org.openstack.atlas.util.common.CalendarUtils;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Rolls up one hour in a single pass over the merged usage records. Records
+ * arrive one load balancer at a time (see
+ * LoadBalancerMergedHostUsageRepository.streamUsageRecordsByLoadBalancerBeforeOrEqualToTime)
+ * and are rolled up before moving on, so memory is bounded by one load
+ * balancer's records plus one batch of Usage rows.
+ *
+ * The processor sees exactly the records the hour by hour job used to see:
+ * records polled from the start of the previous hour up to and including
+ * the end of the hour being processed.
+ */
+public class StreamingUsageRollup implements LoadBalancerMergedHostUsageRepository.LoadBalancerUsageHandler {
+    private final Log LOG = LogFactory.getLog(StreamingUsageRollup.class);
+    private final UsageRollupProcessor usageRollupProcessor;
+    private final Calendar hourToRollup;
+    private final Calendar previousHour;
+    private final Calendar rollupMarker;
+    private final Set<LbIdAccountId> lbsActiveDuringHour;
+    private final int batchSize;
+    private final BatchAction<Usage> usageInsertBatchAction;
+    private List<Usage> usageBatch = new ArrayList<Usage>();
+    private int numLoadBalancers = 0;
+    private long numUsagesWritten = 0;
+
+    /*
+     *  @param lbsActiveDuringHour
+     *  Consumed as load balancers with records are processed.
+     */
+    public StreamingUsageRollup(UsageRollupProcessor usageRollupProcessor, Calendar hourToRollup, Set<LbIdAccountId> lbsActiveDuringHour,
+                                int batchSize, BatchAction<Usage> usageInsertBatchAction) {
+        this.usageRollupProcessor = usageRollupProcessor;
+        this.hourToRollup = hourToRollup;
+        this.previousHour = CalendarUtils.copy(hourToRollup);
+        this.previousHour.add(Calendar.HOUR, -1);
+        this.rollupMarker = CalendarUtils.copy(hourToRollup);
+        this.rollupMarker.add(Calendar.HOUR, 1);
+        this.lbsActiveDuringHour = lbsActiveDuringHour;
+        this.batchSize = batchSize;
+        this.usageInsertBatchAction = usageInsertBatchAction;
+    }
+
+    @Override
+    public void handle(Integer accountId, Integer loadbalancerId, List<LoadBalancerMergedHostUsage> recordsInOrder) throws Exception {
+        numLoadBalancers++;
+        int windowStart = 0;
+        while (windowStart < recordsInOrder.size() && recordsInOrder.get(windowStart).getPollTime().before(previousHour)) {
+            windowStart++;
+        }
+        int windowEnd = windowStart;
+        while (windowEnd < recordsInOrder.size() && recordsInOrder.get(windowEnd).getPollTime().compareTo(rollupMarker) <= 0) {
+            windowEnd++;
+        }
+
+        boolean wasActive = lbsActiveDuringHour.remove(new LbIdAccountId(loadbalancerId, accountId));
+        if (windowStart == windowEnd && !wasActive) {
+            return;
+        }
+        List<LoadBalancerMergedHostUsage> window = new ArrayList<LoadBalancerMergedHostUsage>(recordsInOrder.subList(windowStart, windowEnd));
+        addUsages(usageRollupProcessor.processRecordsForLb(accountId, loadbalancerId, window, hourToRollup));
+    }
+
+    /*
+     *  Rolls up the load balancers that were active but had no records and
+     *  writes out whatever is left in the current batch.
+     */
+    public void finish() throws Exception {
+        for (LbIdAccountId lbIdAccountId : lbsActiveDuringHour) {
+            addUsages(usageRollupProcessor.processRecordsForLb(lbIdAccountId.getAccountId(), lbIdAccountId.getLbId(),
+                    new ArrayList<LoadBalancerMergedHostUsage>(), hourToRollup));
+        }
+        lbsActiveDuringHour.clear();
+        flush();
+        LOG.info(String.format("Rolled up hour '%s' for %d loadbalancers with records into %d lb_usage records.", hourToRollup.getTime().toString(), numLoadBalancers, numUsagesWritten));
+    }
+
+    private void addUsages(List<Usage> usages) throws Exception {
+        usageBatch.addAll(usages);
+        if (usageBatch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    private void flush() throws Exception {
+        if (usageBatch.isEmpty()) {
+            return;
+        }
+        usageInsertBatchAction.execute(usageBatch);
+        numUsagesWritten += usageBatch.size();
+        usageBatch = new ArrayList<Usage>();
+    }
+
+    public long getNumUsagesWritten() {
+        return numUsagesWritten;
+    }
+}
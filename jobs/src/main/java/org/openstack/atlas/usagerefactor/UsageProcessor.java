@@ -28,6 +28,19 @@ public class UsageProcessor {
     public UsageProcessorResult mergeRecords(Map<Integer, Map<Integer, List<LoadBalancerHostUsage>>> existingUsages,
                                                  Map<Integer, Map<Integer, SnmpUsage>> currentUsages,
                                                  Calendar pollTime)
+    {
+        //Parent key is hostId, child key loadbalancerId
+        return mergeRecordsByLoadBalancer(existingUsages, MapUtil.swapKeys(currentUsages), pollTime);
+    }
+
+    /*
+     *  Same as mergeRecords but the current usage is already keyed by
+     *  loadbalancerId and then hostId, e.g. folded in host by host as
+     *  each host's SNMP walk came back.
+     */
+    public UsageProcessorResult mergeRecordsByLoadBalancer(Map<Integer, Map<Integer, List<LoadBalancerHostUsage>>> existingUsages,
+                                                           Map<Integer, Map<Integer, SnmpUsage>> currentUsagesByLb,
+                                                           Calendar pollTime)
     {
         /*
          * 1. Query SNMP
@@ -48,11 +61,8 @@ public class UsageProcessor {
         //Process events that have come in between now and last poller run
         List<LoadBalancerMergedHostUsage> mergedHostUsages = usagePollerHelper.processExistingEvents(existingUsages);
 
-        //Now parent key should be loadbalancerId, and child key hostId
-        currentUsages = MapUtil.swapKeys(currentUsages);
-
         //Process current usage now. The method processExistingEvents should have removed
-        UsageProcessorResult processorResult = usagePollerHelper.processCurrentUsage(existingUsages, currentUsages,
+        UsageProcessorResult processorResult = usagePollerHelper.processCurrentUsage(existingUsages, currentUsagesByLb,
                 pollTime);
         mergedHostUsages.addAll(processorResult.getMergedUsages());
 
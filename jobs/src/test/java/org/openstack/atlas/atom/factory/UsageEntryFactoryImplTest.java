@@ -0,0 +1,177 @@
+package org.openstack.atlas.atom.factory;
+
+import com.rackspace.docs.core.event.EventType;
+import com.rackspace.docs.core.event.Region;
+import com.rackspace.docs.core.event.V1Element;
+import com.rackspace.docs.usage.lbaas.CloudLoadBalancersType;
+import com.rackspace.docs.usage.lbaas.StatusEnum;
+import com.rackspace.docs.usage.lbaas.VipTypeEnum;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.openstack.atlas.atomhopper.exception.AtomHopperMappingException;
+import org.openstack.atlas.atomhopper.factory.UsageEntryFactoryImpl;
+import org.openstack.atlas.atomhopper.marshaller.UsageMarshaller;
+import org.openstack.atlas.service.domain.entities.LoadBalancer;
+import org.openstack.atlas.service.domain.entities.Usage;
+import org.openstack.atlas.service.domain.usage.BitTag;
+import org.w3._2005.atom.UsageEntry;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.util.Calendar;
+import java.util.Map;
+
+@RunWith(Enclosed.class)
+public class UsageEntryFactoryImplTest {
+    public static class WhenCreatingEntries {
+        private static final String USAGE_CONTEXT_PATH = "org.w3._2005.atom:com.rackspace.docs.usage.lbaas";
+        private static final String DELETE_CONTEXT_PATH = "org.w3._2005.atom:com.rackspace.docs.event.lbaas.delete";
+
+        private Usage usage;
+        private UsageEntryFactoryImpl factory;
+
+        @Before
+        public void standUp() {
+            Calendar end = Calendar.getInstance();
+            Calendar start = (Calendar) end.clone();
+            start.add(Calendar.HOUR_OF_DAY, -1);
+
+            LoadBalancer lb = new LoadBalancer();
+            lb.setId(1223);
+            lb.setName("base");
+
+            usage = new Usage();
+            usage.setLoadbalancer(lb);
+            usage.setAccountId(54321);
+            usage.setStartTime(start);
+            usage.setEndTime(end);
+            usage.setEntryVersion(1);
+            usage.setAverageConcurrentConnections(2.5);
+            usage.setAverageConcurrentConnectionsSsl(0.0);
+            usage.setIncomingTransfer(1000L);
+            usage.setOutgoingTransfer(2000L);
+            usage.setIncomingTransferSsl(0L);
+            usage.setOutgoingTransferSsl(0L);
+            usage.setNumberOfPolls(12);
+            usage.setNumVips(1);
+            usage.setTags(0);
+
+            factory = new UsageEntryFactoryImpl();
+        }
+
+        @Test
+        public void shouldRoundTripUsageEntry() throws Exception {
+            Map<Object, Object> mapped = factory.createEntry(usage);
+
+            V1Element event = unmarshall((String) mapped.get("entrystring"), USAGE_CONTEXT_PATH);
+            Assert.assertEquals(EventType.USAGE, event.getType());
+            Assert.assertEquals("54321", event.getTenantId());
+            Assert.assertEquals("1223", event.getResourceId());
+            Assert.assertEquals("base", event.getResourceName());
+            Assert.assertNull(event.getReferenceId());
+            Assert.assertEquals(((UsageEntry) mapped.get("entryobject")).getContent().getEvent().getId(), event.getId());
+
+            CloudLoadBalancersType product = productOf(event, CloudLoadBalancersType.class);
+            Assert.assertEquals(1000L, product.getBandWidthIn());
+            Assert.assertEquals(2000L, product.getBandWidthOut());
+            Assert.assertEquals(2.5, product.getAvgConcurrentConnections(), 0.0);
+            Assert.assertEquals(12, product.getNumPolls());
+            Assert.assertEquals(VipTypeEnum.PUBLIC, product.getVipType());
+            Assert.assertEquals(StatusEnum.ACTIVE, product.getStatus());
+        }
+
+        @Test
+        public void shouldRoundTripDeleteEntry() throws Exception {
+            usage.setEventType(org.openstack.atlas.service.domain.events.entities.EventType.DELETE_LOADBALANCER.name());
+            Map<Object, Object> mapped = factory.createEntry(usage);
+
+            V1Element event = unmarshall((String) mapped.get("entrystring"), DELETE_CONTEXT_PATH);
+            Assert.assertEquals(EventType.DELETE, event.getType());
+            Assert.assertEquals("54321", event.getTenantId());
+            Assert.assertNotNull(event.getEventTime());
+            Assert.assertNull(event.getStartTime());
+            productOf(event, com.rackspace.docs.event.lbaas.delete.CloudLoadBalancersType.class);
+        }
+
+        @Test
+        public void shouldMarkServicenetVips() throws Exception {
+            usage.setTags(BitTag.SERVICENET_LB.tagValue());
+
+            V1Element event = unmarshall((String) factory.createEntry(usage).get("entrystring"), USAGE_CONTEXT_PATH);
+            Assert.assertEquals(VipTypeEnum.SERVICENET, productOf(event, CloudLoadBalancersType.class).getVipType());
+        }
+
+        @Test
+        public void shouldReferencePreviousEntryWhenCorrected() throws Exception {
+            usage.setUuid("6a7b8c9d-0000-0000-0000-000000000000");
+            usage.setCorrected(true);
+
+            V1Element event = unmarshall((String) factory.createEntry(usage).get("entrystring"), USAGE_CONTEXT_PATH);
+            Assert.assertEquals("6a7b8c9d-0000-0000-0000-000000000000", event.getReferenceId());
+        }
+
+        @Test
+        public void shouldWriteSameEntryForSameRecord() throws Exception {
+            String first = (String) factory.createEntry(usage).get("entrystring");
+            Assert.assertEquals(first, factory.createEntry(usage).get("entrystring"));
+            Assert.assertEquals(first, new UsageEntryFactoryImpl().createEntry(usage).get("entrystring"));
+        }
+
+        @Test
+        public void shouldChangeIdWithEntryVersion() throws Exception {
+            String first = ((UsageEntry) factory.createEntry(usage).get("entryobject")).getContent().getEvent().getId();
+            usage.setEntryVersion(2);
+            Assert.assertFalse(first.equals(((UsageEntry) factory.createEntry(usage).get("entryobject")).getContent().getEvent().getId()));
+        }
+
+        @Test(expected = AtomHopperMappingException.class)
+        public void shouldFailToMapWithoutLoadBalancer() throws AtomHopperMappingException {
+            usage.setLoadbalancer(null);
+            factory.createEntry(usage);
+        }
+
+        @Test(expected = AtomHopperMappingException.class)
+        public void shouldFailToMapWithoutAccount() throws AtomHopperMappingException {
+            usage.setAccountId(null);
+            factory.createEntry(usage);
+        }
+
+        private static V1Element unmarshall(String xml, String contextPath) throws Exception {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true);
+            JAXBContext context = UsageMarshaller.getContext(contextPath);
+            JAXBElement element = UsageMarshaller.unmarshallResource(dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes("UTF-8"))).getDocumentElement(), context);
+            return ((UsageEntry) element.getValue()).getContent().getEvent();
+        }
+
+        private static <T> T productOf(V1Element event, Class<T> productClass) {
+            Assert.assertEquals(1, event.getAny().size());
+            Object product = ((JAXBElement) event.getAny().get(0)).getValue();
+            Assert.assertTrue(productClass.isInstance(product));
+            return productClass.cast(product);
+        }
+    }
+
+    public static class WhenMappingRegions {
+
+        @Test
+        public void shouldMapConfiguredRegions() {
+            Assert.assertEquals(Region.DFW, UsageEntryFactoryImpl.mapRegion("DFW"));
+            Assert.assertEquals(Region.ORD, UsageEntryFactoryImpl.mapRegion("ORD"));
+            Assert.assertEquals(Region.LON, UsageEntryFactoryImpl.mapRegion("LON"));
+            Assert.assertEquals(Region.SYD, UsageEntryFactoryImpl.mapRegion("SYD"));
+            Assert.assertEquals(Region.IAD, UsageEntryFactoryImpl.mapRegion("IAD"));
+            Assert.assertEquals(Region.HKG, UsageEntryFactoryImpl.mapRegion("HKG"));
+        }
+
+        @Test
+        public void shouldFallBackToGlobalForUnknownRegion() {
+            Assert.assertEquals(Region.GLOBAL, UsageEntryFactoryImpl.mapRegion("XYZ"));
+        }
+    }
+}
@@ -5,16 +5,36 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
+import com.rackspace.docs.core.event.EventType;
+import com.rackspace.docs.core.event.V1Element;
 import org.openstack.atlas.atomhopper.exception.AtomHopperMappingException;
 import org.openstack.atlas.atomhopper.factory.UsageEntryFactoryImpl;
+import org.openstack.atlas.atomhopper.marshaller.UsageMarshaller;
 import org.openstack.atlas.service.domain.entities.LoadBalancer;
 import org.openstack.atlas.service.domain.entities.Usage;
 import org.w3._2005.atom.ObjectFactory;
+import org.w3._2005.atom.Title;
+import org.w3._2005.atom.Type;
+import org.w3._2005.atom.UsageContent;
+import org.w3._2005.atom.UsageEntry;
+import org.w3c.dom.Document;
 
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 @RunWith(Enclosed.class)
@@ -73,4 +93,177 @@ public class UsageMarshallerTest {
             Assert.assertTrue(entry.contains("54321"));
         }
     }
-}
\ No newline at end of file
+
+    public static class WhenSharingContexts {
+        private static final String USAGE_CONTEXT_PATH = "org.w3._2005.atom:com.rackspace.docs.usage.lbaas";
+
+        @Test
+        public void shouldReuseContextForSamePath() throws JAXBException {
+            Assert.assertSame(UsageMarshaller.getContext(USAGE_CONTEXT_PATH), UsageMarshaller.getContext(USAGE_CONTEXT_PATH));
+        }
+
+        @Test
+        public void shouldReuseContextForSameClass() throws JAXBException {
+            Assert.assertSame(UsageMarshaller.getContext(Note.class), UsageMarshaller.getContext(Note.class));
+        }
+
+        @Test
+        public void shouldKeepContextsForDifferentPathsApart() throws JAXBException {
+            Assert.assertNotSame(UsageMarshaller.getContext(USAGE_CONTEXT_PATH), UsageMarshaller.getContext("org.w3._2005.atom:com.rackspace.docs.event.lbaas.delete"));
+        }
+
+        @Test
+        public void shouldNotCacheFailedContexts() {
+            for (int i = 0; i < 2; i++) {
+                try {
+                    UsageMarshaller.getContext("org.openstack.atlas.no.such.schema");
+                    Assert.fail("Expected a JAXBException");
+                } catch (JAXBException expected) {
+                }
+            }
+        }
+    }
+
+    public static class WhenMarshallingObjects {
+        private Note note;
+
+        @Before
+        public void standUp() {
+            note = new Note();
+            note.title = "usage";
+            note.body = "pushed";
+        }
+
+        @Test
+        public void shouldRoundTripObject() throws JAXBException {
+            String xml = UsageMarshaller.marshallObject(note);
+            Note read = (Note) UsageMarshaller.getContext(Note.class).createUnmarshaller().unmarshal(new StringReader(xml));
+            Assert.assertEquals("usage", read.title);
+            Assert.assertEquals("pushed", read.body);
+        }
+
+        @Test
+        public void shouldWriteXmlDeclaration() throws JAXBException {
+            Assert.assertTrue(UsageMarshaller.marshallObject(note).startsWith("<?xml"));
+            Assert.assertTrue(UsageMarshaller.marshallObject(note, false).startsWith("<?xml"));
+        }
+
+        @Test
+        public void shouldOnlyIndentWhenFormatted() throws JAXBException {
+            Assert.assertTrue(UsageMarshaller.marshallObject(note, true).contains("\n    <title>usage</title>"));
+            Assert.assertTrue(UsageMarshaller.marshallObject(note, false).contains("<note><title>usage</title><body>pushed</body></note>"));
+        }
+
+        @Test
+        public void shouldKeepOutputModesApartOnOneThread() throws JAXBException {
+            String pretty = UsageMarshaller.marshallObject(note, true);
+            String compact = UsageMarshaller.marshallObject(note, false);
+            Assert.assertFalse(pretty.equals(compact));
+            Assert.assertEquals(pretty, UsageMarshaller.marshallObject(note, true));
+            Assert.assertEquals(compact, UsageMarshaller.marshallObject(note, false));
+        }
+
+        @Test
+        public void shouldWriteEachNoteWhenReusingMarshaller() throws JAXBException {
+            Note other = new Note();
+            other.title = "delete";
+            other.body = "skipped";
+            UsageMarshaller.marshallObject(note, false);
+            Assert.assertTrue(UsageMarshaller.marshallObject(other, false).contains("<note><title>delete</title><body>skipped</body></note>"));
+        }
+
+        @Test
+        public void shouldMarshallSameXmlFromManyThreads() throws Exception {
+            final String expected = UsageMarshaller.marshallObject(note);
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+                for (int i = 0; i < 8; i++) {
+                    results.add(pool.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws Exception {
+                            for (int j = 0; j < 50; j++) {
+                                if (!expected.equals(UsageMarshaller.marshallObject(note))) {
+                                    return false;
+                                }
+                            }
+                            return true;
+                        }
+                    }));
+                }
+                for (Future<Boolean> result : results) {
+                    Assert.assertTrue(result.get());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    public static class WhenMarshallingResources {
+        private JAXBContext context;
+        private UsageEntry entry;
+        private ObjectFactory entryFactory;
+
+        @Before
+        public void standUp() throws JAXBException {
+            context = UsageMarshaller.getContext("org.w3._2005.atom:com.rackspace.docs.usage.lbaas");
+            entryFactory = new ObjectFactory();
+
+            V1Element event = new com.rackspace.docs.core.event.ObjectFactory().createV1Element();
+            event.setVersion("1");
+            event.setId(UUID.randomUUID().toString());
+            event.setTenantId("54321");
+            event.setResourceId("1223");
+            event.setType(EventType.USAGE);
+            UsageContent content = entryFactory.createUsageContent();
+            content.setEvent(event);
+            content.setType("application/xml");
+            Title title = new Title();
+            title.setType(Type.TEXT);
+            title.setValue("cloudLoadBalancers");
+            entry = entryFactory.createUsageEntry();
+            entry.setTitle(title);
+            entry.setContent(content);
+        }
+
+        @Test
+        public void shouldRoundTripUsageEntry() throws Exception {
+            String xml = UsageMarshaller.marshallResource(entryFactory.createEntry(entry), context).toString();
+
+            JAXBElement read = UsageMarshaller.unmarshallResource(parse(xml).getDocumentElement(), context);
+            UsageEntry readEntry = (UsageEntry) read.getValue();
+            Assert.assertEquals("cloudLoadBalancers", readEntry.getTitle().getValue());
+            Assert.assertEquals("54321", readEntry.getContent().getEvent().getTenantId());
+            Assert.assertEquals("1223", readEntry.getContent().getEvent().getResourceId());
+            Assert.assertEquals(EventType.USAGE, readEntry.getContent().getEvent().getType());
+        }
+
+        @Test
+        public void shouldOnlyIndentWhenFormatted() throws JAXBException {
+            String pretty = UsageMarshaller.marshallResource(entryFactory.createEntry(entry), context, true).toString();
+            String compact = UsageMarshaller.marshallResource(entryFactory.createEntry(entry), context, false).toString();
+            Assert.assertTrue(pretty.contains("\n    <title"));
+            Assert.assertFalse(compact.contains("\n    <title"));
+            Assert.assertTrue(compact.contains("cloudLoadBalancers</title>"));
+        }
+
+        @Test
+        public void shouldMarshallSameXmlEveryTime() throws JAXBException {
+            String first = UsageMarshaller.marshallResource(entryFactory.createEntry(entry), context).toString();
+            Assert.assertEquals(first, UsageMarshaller.marshallResource(entryFactory.createEntry(entry), context).toString());
+        }
+
+        private static Document parse(String xml) throws Exception {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true);
+            return dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        }
+    }
+
+    @XmlRootElement(name = "note")
+    static class Note {
+        public String title;
+        public String body;
+    }
+}
@@ -0,0 +1,146 @@
+package org.openstack.atlas.jobs.helpers;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack.atlas.service.domain.events.entities.Event;
+import org.openstack.atlas.service.domain.events.entities.LoadBalancerEvent;
+import org.openstack.atlas.service.domain.events.entities.NodeEvent;
+import org.openstack.atlas.service.domain.events.repository.LoadBalancerEventRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class EventRetentionPurgerTest {
+
+    private Calendar cutoff;
+    private InMemoryEventRepository repository;
+    private List<String> checkpoints;
+    private EventRetentionPurger.Checkpoint checkpoint;
+    private List<Class<? extends Event>> eventClasses;
+
+    @Before
+    public void standUp() {
+        cutoff = Calendar.getInstance();
+        cutoff.add(Calendar.DATE, -90);
+        repository = new InMemoryEventRepository();
+        checkpoints = new ArrayList<String>();
+        checkpoint = new EventRetentionPurger.Checkpoint() {
+            @Override
+            public void save(String checkpoint) {
+                checkpoints.add(checkpoint);
+            }
+        };
+        eventClasses = Arrays.<Class<? extends Event>>asList(LoadBalancerEvent.class, NodeEvent.class);
+    }
+
+    @Test
+    public void shouldDeleteOnlyExpiredEventsInChunks() throws InterruptedException {
+        // ids 1-25 expired, 26-30 recent, 31-35 expired again
+        repository.add(LoadBalancerEvent.class, 1, 25, -100);
+        repository.add(LoadBalancerEvent.class, 26, 30, -10);
+        repository.add(LoadBalancerEvent.class, 31, 35, -95);
+
+        long deleted = new EventRetentionPurger(repository, 10, 0).purge(LoadBalancerEvent.class, cutoff, 0, checkpoint);
+
+        Assert.assertEquals(30, deleted);
+        Assert.assertEquals(Arrays.asList(26, 27, 28, 29, 30), new ArrayList<Integer>(repository.table(LoadBalancerEvent.class).keySet()));
+        Assert.assertEquals(Arrays.asList(10, 10, 10), repository.chunkSizes);
+        Assert.assertEquals(Arrays.asList("LoadBalancerEvent:10", "LoadBalancerEvent:20", "LoadBalancerEvent:35"), checkpoints);
+    }
+
+    @Test
+    public void shouldPurgeEveryEventType() throws InterruptedException {
+        repository.add(LoadBalancerEvent.class, 1, 5, -100);
+        repository.add(NodeEvent.class, 1, 12, -100);
+
+        long deleted = new EventRetentionPurger(repository, 5, 0).purge(eventClasses, cutoff, null, checkpoint);
+
+        Assert.assertEquals(17, deleted);
+        Assert.assertTrue(repository.table(LoadBalancerEvent.class).isEmpty());
+        Assert.assertTrue(repository.table(NodeEvent.class).isEmpty());
+        Assert.assertEquals("NodeEvent:12", checkpoints.get(checkpoints.size() - 1));
+    }
+
+    @Test
+    public void shouldResumeFromCheckpoint() throws InterruptedException {
+        repository.add(LoadBalancerEvent.class, 1, 5, -100);
+        repository.add(NodeEvent.class, 1, 12, -100);
+
+        long deleted = new EventRetentionPurger(repository, 5, 0).purge(eventClasses, cutoff, "NodeEvent:7", checkpoint);
+
+        Assert.assertEquals(5, deleted);
+        Assert.assertEquals(5, repository.table(LoadBalancerEvent.class).size());
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), new ArrayList<Integer>(repository.table(NodeEvent.class).keySet()));
+    }
+
+    @Test
+    public void shouldStartOverOnUnrecognizedCheckpoint() throws InterruptedException {
+        repository.add(LoadBalancerEvent.class, 1, 5, -100);
+        repository.add(NodeEvent.class, 1, 5, -100);
+
+        EventRetentionPurger purger = new EventRetentionPurger(repository, 5, 0);
+        Assert.assertEquals(10, purger.purge(eventClasses, cutoff, "AlertEvent:7", checkpoint));
+        Assert.assertEquals(0, purger.purge(eventClasses, cutoff, "NodeEvent:seven", checkpoint));
+    }
+
+    @Test
+    public void shouldLeaveNothingToCheckpointWhenNothingExpired() throws InterruptedException {
+        repository.add(NodeEvent.class, 1, 5, -1);
+
+        Assert.assertEquals(0, new EventRetentionPurger(repository, 5, 0).purge(eventClasses, cutoff, null, checkpoint));
+        Assert.assertTrue(checkpoints.isEmpty());
+        Assert.assertEquals(5, repository.table(NodeEvent.class).size());
+    }
+
+    private static class InMemoryEventRepository extends LoadBalancerEventRepository {
+        private final Map<Class<?>, TreeMap<Integer, Calendar>> tables = new HashMap<Class<?>, TreeMap<Integer, Calendar>>();
+        private final List<Integer> chunkSizes = new ArrayList<Integer>();
+
+        void add(Class<? extends Event> eventClass, int fromId, int toId, int daysAgo) {
+            for (int id = fromId; id <= toId; id++) {
+                Calendar created = Calendar.getInstance();
+                created.add(Calendar.DATE, daysAgo);
+                table(eventClass).put(id, created);
+            }
+        }
+
+        TreeMap<Integer, Calendar> table(Class<?> eventClass) {
+            if (!tables.containsKey(eventClass)) {
+                tables.put(eventClass, new TreeMap<Integer, Calendar>());
+            }
+            return tables.get(eventClass);
+        }
+
+        @Override
+        public List<Integer> getEventIdsCreatedBefore(Class<? extends Event> eventClass, Calendar cutoff, int afterId, int limit) {
+            List<Integer> ids = new ArrayList<Integer>();
+            for (Map.Entry<Integer, Calendar> row : table(eventClass).tailMap(afterId, false).entrySet()) {
+                if (ids.size() == limit) {
+                    break;
+                }
+                if (!row.getValue().after(cutoff)) {
+                    ids.add(row.getKey());
+                }
+            }
+            return ids;
+        }
+
+        @Override
+        public int removeEventsCreatedBefore(Class<? extends Event> eventClass, Calendar cutoff, List<Integer> ids) {
+            chunkSizes.add(ids.size());
+            int removed = 0;
+            for (Integer id : ids) {
+                if (table(eventClass).remove(id) != null) {
+                    removed++;
+                }
+            }
+            return removed;
+        }
+    }
+}
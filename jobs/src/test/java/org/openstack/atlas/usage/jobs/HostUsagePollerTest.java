@@ -0,0 +1,138 @@
+package org.openstack.atlas.usage.jobs;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.openstack.atlas.adapter.LoadBalancerEndpointConfiguration;
+import org.openstack.atlas.adapter.service.ReverseProxyLoadBalancerAdapter;
+import org.openstack.atlas.cfg.Configuration;
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.atlas.service.domain.entities.Host;
+import org.openstack.atlas.service.domain.usage.entities.HostUsage;
+
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(Enclosed.class)
+public class HostUsagePollerTest {
+
+    @RunWith(MockitoJUnitRunner.class)
+    public static class WhenPollingHosts {
+        private static final int TIMEOUT_MILLIS = 100;
+
+        private Map<Host, LoadBalancerEndpointConfiguration> configs;
+        private LoadBalancerEndpointConfiguration fastConfig;
+        private LoadBalancerEndpointConfiguration slowConfig;
+        private Calendar pollTime;
+
+        @Mock
+        private Configuration configuration;
+        @Mock
+        private ReverseProxyLoadBalancerAdapter reverseProxyLoadBalancerAdapter;
+        @InjectMocks
+        private HostUsagePoller hostUsagePoller;
+
+        @Before
+        public void standUp() throws Exception {
+            when(configuration.hasKeys(PublicApiServiceConfigurationKeys.host_usage_poller_threads)).thenReturn(true);
+            when(configuration.getString(PublicApiServiceConfigurationKeys.host_usage_poller_threads)).thenReturn("1");
+
+            fastConfig = mock(LoadBalancerEndpointConfiguration.class);
+            slowConfig = mock(LoadBalancerEndpointConfiguration.class);
+            configs = new LinkedHashMap<Host, LoadBalancerEndpointConfiguration>();
+            pollTime = Calendar.getInstance();
+        }
+
+        @Test
+        public void shouldBoundEachSoapCallWithTheTimeout() throws Exception {
+            configs.put(newHost(1), fastConfig);
+            when(reverseProxyLoadBalancerAdapter.getHostBytesInAndOut(eq(fastConfig), anyInt())).thenAnswer(respondAfter(0));
+
+            List<HostUsage> snapshots = hostUsagePoller.pollHosts(configs, pollTime, TIMEOUT_MILLIS);
+
+            verify(reverseProxyLoadBalancerAdapter).getHostBytesInAndOut(fastConfig, TIMEOUT_MILLIS);
+            Assert.assertEquals(1, snapshots.size());
+            Assert.assertEquals(1, snapshots.get(0).getHostId().intValue());
+            Assert.assertSame(pollTime, snapshots.get(0).getSnapshotTime());
+        }
+
+        @Test
+        public void shouldSkipAHostThatOutlastsItsBudget() throws Exception {
+            when(configuration.getString(PublicApiServiceConfigurationKeys.host_usage_poller_threads)).thenReturn("2");
+            configs.put(newHost(1), slowConfig);
+            configs.put(newHost(2), fastConfig);
+            when(reverseProxyLoadBalancerAdapter.getHostBytesInAndOut(eq(slowConfig), anyInt())).thenAnswer(respondAfter(10 * TIMEOUT_MILLIS));
+            when(reverseProxyLoadBalancerAdapter.getHostBytesInAndOut(eq(fastConfig), anyInt())).thenAnswer(respondAfter(0));
+
+            long start = System.currentTimeMillis();
+            List<HostUsage> snapshots = hostUsagePoller.pollHosts(configs, pollTime, TIMEOUT_MILLIS);
+
+            Assert.assertTrue(System.currentTimeMillis() - start < 10 * TIMEOUT_MILLIS);
+            Assert.assertEquals(1, snapshots.size());
+            Assert.assertEquals(2, snapshots.get(0).getHostId().intValue());
+        }
+
+        @Test
+        public void shouldNotChargeAQueuedHostForItsWait() throws Exception {
+            configs.put(newHost(1), slowConfig);
+            configs.put(newHost(2), fastConfig);
+            // Each fits in its own budget of two timeouts, together they don't
+            when(reverseProxyLoadBalancerAdapter.getHostBytesInAndOut(eq(slowConfig), anyInt())).thenAnswer(respondAfter(3 * TIMEOUT_MILLIS / 2));
+            when(reverseProxyLoadBalancerAdapter.getHostBytesInAndOut(eq(fastConfig), anyInt())).thenAnswer(respondAfter(3 * TIMEOUT_MILLIS / 2));
+
+            List<HostUsage> snapshots = hostUsagePoller.pollHosts(configs, pollTime, TIMEOUT_MILLIS);
+
+            Assert.assertEquals(2, snapshots.size());
+        }
+
+        @Test
+        public void shouldReuseOneThreadPoolAcrossRuns() throws Exception {
+            configs.put(newHost(1), fastConfig);
+            when(reverseProxyLoadBalancerAdapter.getHostBytesInAndOut(eq(fastConfig), anyInt())).thenAnswer(respondAfter(0));
+
+            hostUsagePoller.pollHosts(configs, pollTime, TIMEOUT_MILLIS);
+            ExecutorService threadPool = hostUsagePoller.getThreadPool();
+            hostUsagePoller.pollHosts(configs, pollTime, TIMEOUT_MILLIS);
+
+            Assert.assertSame(threadPool, hostUsagePoller.getThreadPool());
+            Assert.assertFalse(threadPool.isShutdown());
+        }
+
+        private static Host newHost(int id) {
+            Host host = new Host();
+            host.setId(id);
+            host.setName("host" + id);
+            host.setEndpoint("https://10.0.0." + id + ":9090/soap");
+            return host;
+        }
+
+        private static Answer<HostUsage> respondAfter(final long delayMillis) {
+            return new Answer<HostUsage>() {
+                @Override
+                public HostUsage answer(InvocationOnMock invocation) throws Throwable {
+                    Thread.sleep(delayMillis);
+                    HostUsage hostUsage = new HostUsage();
+                    hostUsage.setBandwidthBytesIn(100L);
+                    hostUsage.setBandwidthBytesOut(200L);
+                    return hostUsage;
+                }
+            };
+        }
+    }
+}
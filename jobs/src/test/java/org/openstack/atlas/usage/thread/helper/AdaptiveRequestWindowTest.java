@@ -0,0 +1,97 @@
+package org.openstack.atlas.usage.thread.helper;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+public class AdaptiveRequestWindowTest {
+
+    @Test
+    public void shouldGrowByAboutOnePerWindowOfHealthyResponses() throws Exception {
+        AdaptiveRequestWindow window = new AdaptiveRequestWindow(4, 1, 100, 1000, 10, 100);
+        for (int i = 0; i < 5; i++) {
+            window.acquire();
+            window.release(201, 10, 0);
+        }
+        Assert.assertEquals(5, window.getLimit());
+        Assert.assertEquals(0, window.getInFlight());
+    }
+
+    @Test
+    public void shouldNotGrowOnSlowResponses() throws Exception {
+        AdaptiveRequestWindow window = new AdaptiveRequestWindow(4, 1, 100, 1000, 10, 100);
+        for (int i = 0; i < 20; i++) {
+            window.acquire();
+            window.release(201, 5000, 0);
+        }
+        Assert.assertEquals(4, window.getLimit());
+    }
+
+    @Test
+    public void shouldHalveOnceForBurstOfThrottledResponses() throws Exception {
+        AdaptiveRequestWindow window = new AdaptiveRequestWindow(16, 1, 100, 1000, 10, 100);
+        for (int i = 0; i < 8; i++) {
+            window.acquire();
+        }
+        for (int i = 0; i < 8; i++) {
+            window.release(429, 60000, 0);
+        }
+        Assert.assertEquals(8, window.getLimit());
+    }
+
+    @Test
+    public void shouldShrinkOnServerErrorsAndLostPosts() throws Exception {
+        AdaptiveRequestWindow window = new AdaptiveRequestWindow(16, 2, 100, 1000, 10, 100);
+        window.acquire();
+        window.release(503, 0, 0);
+        window.acquire();
+        window.release(AdaptiveRequestWindow.NO_RESPONSE, 0, 0);
+        window.acquire();
+        window.release(500, 0, 0);
+        Assert.assertEquals(2, window.getLimit());
+    }
+
+    @Test
+    public void shouldIgnoreClientErrors() throws Exception {
+        AdaptiveRequestWindow window = new AdaptiveRequestWindow(4, 1, 100, 1000, 10, 100);
+        window.acquire();
+        window.release(409, 10, 0);
+        Assert.assertEquals(4, window.getLimit());
+    }
+
+    @Test
+    public void shouldHoldEveryoneBackForRetryAfter() throws Exception {
+        AdaptiveRequestWindow window = new AdaptiveRequestWindow(4, 1, 100, 1000, 10, 100);
+        window.acquire();
+        window.release(429, 0, 300);
+        long start = System.currentTimeMillis();
+        window.acquire();
+        Assert.assertTrue(System.currentTimeMillis() - start >= 250);
+    }
+
+    @Test
+    public void shouldKeepBackoffUnderCeiling() {
+        AdaptiveRequestWindow window = new AdaptiveRequestWindow(4, 1, 100, 1000, 10, 100);
+        for (int attempt = 0; attempt < 64; attempt++) {
+            long wait = window.backoffMillis(attempt);
+            Assert.assertTrue(wait >= 0);
+            Assert.assertTrue(wait <= Math.min(100, 10L << Math.min(attempt, 30)));
+        }
+    }
+
+    @Test
+    public void shouldParseRetryAfter() {
+        Assert.assertEquals(0, AdaptiveRequestWindow.parseRetryAfter(null));
+        Assert.assertEquals(0, AdaptiveRequestWindow.parseRetryAfter("soon"));
+        Assert.assertEquals(7000, AdaptiveRequestWindow.parseRetryAfter(" 7 "));
+
+        SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        long wait = AdaptiveRequestWindow.parseRetryAfter(httpDate.format(new Date(System.currentTimeMillis() + 60000)));
+        Assert.assertTrue(wait > 55000 && wait <= 60000);
+    }
+}
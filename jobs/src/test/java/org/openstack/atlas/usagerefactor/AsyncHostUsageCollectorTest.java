@@ -0,0 +1,106 @@
+package org.openstack.atlas.usagerefactor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.openstack.atlas.service.domain.entities.Host;
+import org.openstack.atlas.usagerefactor.helpers.HostIdUsageMap;
+import org.openstack.atlas.util.snmp.FakeStingraySnmpAgent;
+import org.openstack.atlas.util.snmp.OIDConstants;
+import org.openstack.atlas.util.snmp.StingraySnmpClient;
+import org.openstack.atlas.util.snmp.StingraySnmpSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(Enclosed.class)
+public class AsyncHostUsageCollectorTest {
+
+    public static class WhenCollectingHostUsage {
+        private FakeStingraySnmpAgent agent;
+        private AsyncHostUsageCollector collector;
+        private long oldTimeout;
+        private Host host;
+        // Nothing listens on this loopback address so its requests time out
+        private Host deadHost;
+
+        @Before
+        public void standUp() throws Exception {
+            agent = new FakeStingraySnmpAgent();
+            for (int i = 0; i < 50; i++) {
+                agent.addVirtualServer(OIDConstants.VS_CURRENT_CONNECTIONS, "1234_" + i, i);
+                agent.addVirtualServer(OIDConstants.VS_BYTES_IN, "1234_" + i, i * 10L);
+                agent.addVirtualServer(OIDConstants.VS_BYTES_OUT, "1234_" + i, i * 100L);
+            }
+            oldTimeout = StingraySnmpClient.getTimeout();
+            StingraySnmpClient.setTimeout(200);
+
+            collector = new AsyncHostUsageCollector(1000);
+            collector.setSnmpPort(agent.start());
+            host = newHost(1, "127.0.0.1");
+            deadHost = newHost(2, "127.0.0.2");
+        }
+
+        @After
+        public void tearDown() throws Exception {
+            collector.close();
+            StingraySnmpClient.setTimeout(oldTimeout);
+            StingraySnmpSession.closeAll();
+            agent.stop();
+        }
+
+        @Test
+        public void shouldCollectUsageKeyedByHostAndLoadBalancer() throws Exception {
+            Map<Integer, Map<Integer, SnmpUsage>> usage = collector.collect(Arrays.asList(host));
+
+            Assert.assertEquals(1, usage.size());
+            Assert.assertEquals(50, usage.get(1).size());
+            Assert.assertEquals(420L, usage.get(1).get(42).getBytesIn());
+            Assert.assertEquals(4200L, usage.get(1).get(42).getBytesOut());
+            Assert.assertEquals(42, usage.get(1).get(42).getConcurrentConnections());
+        }
+
+        @Test
+        public void shouldHandEachHostOverWithoutWaitingForTheOthers() throws Exception {
+            final long started = System.currentTimeMillis();
+            final List<HostIdUsageMap> handled = new ArrayList<HostIdUsageMap>();
+            final List<Long> handledAfterMillis = new ArrayList<Long>();
+
+            collector.collect(Arrays.asList(deadHost, host), new AsyncHostUsageCollector.HostUsageHandler() {
+                @Override
+                public void handle(HostIdUsageMap hostUsage) {
+                    handled.add(hostUsage);
+                    handledAfterMillis.add(System.currentTimeMillis() - started);
+                }
+            });
+
+            Assert.assertEquals(2, handled.size());
+            Assert.assertEquals(Integer.valueOf(1), handled.get(0).getHostId());
+            Assert.assertEquals(50, handled.get(0).getMap().size());
+            Assert.assertTrue(handledAfterMillis.get(0) < 1000);
+            Assert.assertEquals(Integer.valueOf(2), handled.get(1).getHostId());
+            Assert.assertTrue(handled.get(1).getMap().isEmpty());
+        }
+
+        @Test
+        public void shouldWalkEveryColumnInEachRequest() throws Exception {
+            collector.collect(Arrays.asList(host));
+
+            // 150 rows over three columns fit in one GETBULK plus the one that runs off the end
+            Assert.assertTrue(agent.getRequestCount() <= 2);
+        }
+
+        private static Host newHost(int id, String managementIp) {
+            Host newHost = new Host();
+            newHost.setId(id);
+            newHost.setName("host" + id);
+            newHost.setManagementIp(managementIp);
+            return newHost;
+        }
+    }
+}
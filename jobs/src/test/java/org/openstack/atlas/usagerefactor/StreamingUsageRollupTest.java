@@ -0,0 +1,157 @@
+package org.openstack.atlas.usagerefactor;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack.atlas.service.domain.entities.Usage;
+import org.openstack.atlas.service.domain.pojos.LbIdAccountId;
+import org.openstack.atlas.service.domain.usage.entities.LoadBalancerMergedHostUsage;
+import org.openstack.atlas.usage.BatchAction;
+import org.openstack.atlas.usagerefactor.generator.GeneratorPojo;
+import org.openstack.atlas.usagerefactor.generator.PolledUsageRecordGenerator;
+import org.openstack.atlas.util.common.CalendarUtils;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class StreamingUsageRollupTest {
+    private static final int ACCOUNT_ID = 5806065;
+
+    private List<LoadBalancerMergedHostUsage> allRecords;
+    private List<Calendar> hoursToRollup;
+
+    @Before
+    public void standUp() {
+        List<GeneratorPojo> generatorPojos = new ArrayList<GeneratorPojo>();
+        generatorPojos.add(new GeneratorPojo(ACCOUNT_ID, 1, 10));
+        generatorPojos.add(new GeneratorPojo(ACCOUNT_ID, 2, 30));
+        generatorPojos.add(new GeneratorPojo(ACCOUNT_ID, 3, 37));
+        allRecords = PolledUsageRecordGenerator.generate(generatorPojos, new GregorianCalendar(2013, Calendar.MARCH, 20, 8, 0, 0), 100L, 200L);
+
+        hoursToRollup = new ArrayList<Calendar>();
+        for (int hour = 8; hour < 11; hour++) {
+            hoursToRollup.add(new GregorianCalendar(2013, Calendar.MARCH, 20, hour, 0, 0));
+        }
+    }
+
+    @Test
+    public void shouldMatchHourByHourRollup() throws Exception {
+        List<String> expected = new ArrayList<String>();
+        UsageRollupProcessor hourByHourProcessor = new UsageRollupProcessorImpl();
+        for (Calendar hourToRollup : hoursToRollup) {
+            List<Usage> usages = hourByHourProcessor.processRecords(recordsVisibleForHour(hourToRollup), hourToRollup, new HashSet<LbIdAccountId>());
+            for (Usage usage : usages) {
+                expected.add(describe(usage));
+            }
+        }
+
+        final List<String> actual = new ArrayList<String>();
+        BatchAction<Usage> collector = new BatchAction<Usage>() {
+            @Override
+            public void execute(Collection<Usage> usages) throws Exception {
+                for (Usage usage : usages) {
+                    actual.add(describe(usage));
+                }
+            }
+        };
+        long numUsagesWritten = 0;
+        for (Calendar hourToRollup : hoursToRollup) {
+            StreamingUsageRollup rollup = new StreamingUsageRollup(new UsageRollupProcessorImpl(), hourToRollup, new HashSet<LbIdAccountId>(), 2, collector);
+            for (int lbId = 1; lbId <= 3; lbId++) {
+                rollup.handle(ACCOUNT_ID, lbId, recordsForLb(lbId));
+            }
+            rollup.finish();
+            numUsagesWritten += rollup.getNumUsagesWritten();
+        }
+
+        Collections.sort(expected);
+        Collections.sort(actual);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(expected.size(), numUsagesWritten);
+    }
+
+    @Test
+    public void shouldSkipLbWithNoRecordsInHourWhenNotActive() throws Exception {
+        RecordingProcessor processor = new RecordingProcessor();
+        StreamingUsageRollup rollup = new StreamingUsageRollup(processor, hoursToRollup.get(2), new HashSet<LbIdAccountId>(), 1000, noOpBatchAction());
+        rollup.handle(ACCOUNT_ID, 1, recordsForLb(1));
+        rollup.finish();
+
+        Assert.assertTrue(processor.recordsSeenByLb.isEmpty());
+    }
+
+    @Test
+    public void shouldRollUpActiveLbWithoutRecords() throws Exception {
+        Set<LbIdAccountId> active = new HashSet<LbIdAccountId>();
+        active.add(new LbIdAccountId(1, ACCOUNT_ID));
+        active.add(new LbIdAccountId(99, ACCOUNT_ID));
+        RecordingProcessor processor = new RecordingProcessor();
+        StreamingUsageRollup rollup = new StreamingUsageRollup(processor, hoursToRollup.get(2), active, 1000, noOpBatchAction());
+        rollup.handle(ACCOUNT_ID, 1, recordsForLb(1));
+        rollup.finish();
+
+        Assert.assertEquals(2, processor.recordsSeenByLb.size());
+        Assert.assertEquals(Integer.valueOf(0), processor.recordsSeenByLb.get(1));
+        Assert.assertEquals(Integer.valueOf(0), processor.recordsSeenByLb.get(99));
+        Assert.assertTrue(active.isEmpty());
+    }
+
+    // What the hour by hour job read: records up to the marker that the previous hour's delete left behind
+    private List<LoadBalancerMergedHostUsage> recordsVisibleForHour(Calendar hourToRollup) {
+        Calendar previousHour = CalendarUtils.copy(hourToRollup);
+        previousHour.add(Calendar.HOUR, -1);
+        Calendar rollupMarker = CalendarUtils.copy(hourToRollup);
+        rollupMarker.add(Calendar.HOUR, 1);
+        List<LoadBalancerMergedHostUsage> records = new ArrayList<LoadBalancerMergedHostUsage>();
+        for (LoadBalancerMergedHostUsage record : allRecords) {
+            if (!record.getPollTime().before(previousHour) && record.getPollTime().compareTo(rollupMarker) <= 0) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private List<LoadBalancerMergedHostUsage> recordsForLb(int lbId) {
+        List<LoadBalancerMergedHostUsage> records = new ArrayList<LoadBalancerMergedHostUsage>();
+        for (LoadBalancerMergedHostUsage record : allRecords) {
+            if (record.getLoadbalancerId() == lbId) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static BatchAction<Usage> noOpBatchAction() {
+        return new BatchAction<Usage>() {
+            @Override
+            public void execute(Collection<Usage> usages) throws Exception {
+            }
+        };
+    }
+
+    // Records how many records each load balancer was rolled up with
+    private static class RecordingProcessor extends UsageRollupProcessorImpl {
+        private final Map<Integer, Integer> recordsSeenByLb = new HashMap<Integer, Integer>();
+
+        @Override
+        public List<Usage> processRecordsForLb(Integer accountId, Integer lbId, List<LoadBalancerMergedHostUsage> records, Calendar hourToProcess) {
+            recordsSeenByLb.put(lbId, records.size());
+            return new ArrayList<Usage>();
+        }
+    }
+
+    private static String describe(Usage usage) {
+        return String.format("%d %s %s %d %d %d %s", usage.getLoadbalancer().getId(),
+                CalendarUtils.calendarToString(usage.getStartTime()), CalendarUtils.calendarToString(usage.getEndTime()),
+                usage.getIncomingTransfer(), usage.getOutgoingTransfer(), usage.getNumberOfPolls(), usage.getEventType());
+    }
+}
@@ -0,0 +1,3 @@
+use `loadbalancing_usage`;
+
+ALTER TABLE lb_merged_host_usage ADD KEY `lb_merged_host_usage_lb_poll_time_key` (`loadbalancer_id`, `poll_time`);
@@ -390,59 +390,27 @@ public class LoadBalancerEventRepository {
         return out;
     }
 
-    public void removeLoadBalancerServiceEventEntries() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DATE, -90);
-        entityManager.createQuery("DELETE FROM LoadBalancerServiceEvent a where a.created <= :days").setParameter("days", cal).executeUpdate();
-    }
-
-    public void removeNodeEventEntries() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DATE, -90);
-        entityManager.createQuery("DELETE FROM NodeEvent a where a.created <= :days").setParameter("days", cal).executeUpdate();
-    }
-
-    public void removeNodeServiceEventEntries() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DATE, -90);
-        entityManager.createQuery("DELETE FROM NodeServiceEvent a WHERE a.created <= :days")
-                .setParameter("days", cal).executeUpdate();
-    }
-
-    public void removeVirtualIpEventEntries() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DATE, -90);
-        entityManager.createQuery("DELETE FROM VirtualIpEvent a where a.created <= :days").setParameter("days", cal).executeUpdate();
-    }
-
-    public void removeHealthMonitorEventEntries() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DATE, -90);
-        entityManager.createQuery("DELETE FROM HealthMonitorEvent a where a.created <= :days").setParameter("days", cal).executeUpdate();
-    }
-
-    public void removeAccessListEventEntries() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DATE, -90);
-        entityManager.createQuery("DELETE FROM AccessListEvent a where a.created <= :days").setParameter("days", cal).executeUpdate();
-    }
-
-    public void removeConnectionLimitEventEntries() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DATE, -90);
-        entityManager.createQuery("DELETE FROM ConnectionLimitEvent a where a.created <= :days").setParameter("days", cal).executeUpdate();
-    }
-
-    public void removeSessionPersistenceEventEntries() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DATE, -90);
-        entityManager.createQuery("DELETE FROM SessionPersistenceEvent a where a.created <= :days").setParameter("days", cal).executeUpdate();
-    }
-
-    public void removeLoadBalancerEventEntries() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DATE, -90);
-        entityManager.createQuery("DELETE FROM LoadBalancerEvent a where a.created <= :days").setParameter("days", cal).executeUpdate();
+    /*
+     *  Ids of the oldest events of one type created on or before the cutoff,
+     *  in id order after the given id. eventClass must be one of the event
+     *  entities, its name goes into the query as is.
+     */
+    public List<Integer> getEventIdsCreatedBefore(Class<? extends Event> eventClass, Calendar cutoff, int afterId, int limit) {
+        return entityManager.createQuery("SELECT a.id FROM " + eventClass.getSimpleName() + " a WHERE a.id > :afterId AND a.created <= :cutoff ORDER BY a.id", Integer.class)
+                .setParameter("afterId", afterId)
+                .setParameter("cutoff", cutoff)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public int removeEventsCreatedBefore(Class<? extends Event> eventClass, Calendar cutoff, List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return entityManager.createQuery("DELETE FROM " + eventClass.getSimpleName() + " a WHERE a.id IN (:ids) AND a.created <= :cutoff")
+                .setParameter("ids", ids)
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
     }
 
     public Set<LbIdAccountId> getLoadBalancersActiveDuringPeriod(Calendar startTime, Calendar endTime) {
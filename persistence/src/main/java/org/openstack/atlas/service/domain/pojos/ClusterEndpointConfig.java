@@ -0,0 +1,136 @@
+package org.openstack.atlas.service.domain.pojos;
+
+import org.openstack.atlas.service.domain.entities.Cluster;
+import org.openstack.atlas.service.domain.entities.Host;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Everything needed to talk to a cluster's traffic managers that does not
+ * depend on the load balancer being changed: the host currently serving the
+ * REST endpoint, the failover hosts and the decrypted cluster credentials.
+ *
+ * The cluster and hosts are detached copies holding only their columns, not
+ * the entities they were loaded from. A cached config is shared by every
+ * request, so each caller gets its own copies (see copy()) and can't change
+ * what the next caller sees. Don't merge these hosts, they have no load
+ * balancers or backups, update the host by id instead.
+ */
+public class ClusterEndpointConfig {
+    private final Cluster cluster;
+    private final Host restEndpointHost;
+    private final List<String> failoverHostNames;
+    private final List<Host> failoverHosts;
+    private final String username;
+    private final String password;
+    private final long loadedAt;
+
+    public ClusterEndpointConfig(Cluster cluster, Host restEndpointHost, List<String> failoverHostNames, List<Host> failoverHosts, String username, String password) {
+        this(cluster, restEndpointHost, failoverHostNames, failoverHosts, username, password, System.currentTimeMillis());
+    }
+
+    private ClusterEndpointConfig(Cluster cluster, Host restEndpointHost, List<String> failoverHostNames, List<Host> failoverHosts, String username, String password, long loadedAt) {
+        this.cluster = detach(cluster);
+        this.restEndpointHost = detach(restEndpointHost, this.cluster);
+        this.failoverHostNames = failoverHostNames == null ? null : new ArrayList<String>(failoverHostNames);
+        this.failoverHosts = detach(failoverHosts, this.cluster);
+        this.username = username;
+        this.password = password;
+        this.loadedAt = loadedAt;
+    }
+
+    public ClusterEndpointConfig copy() {
+        return new ClusterEndpointConfig(cluster, restEndpointHost, failoverHostNames, failoverHosts, username, password, loadedAt);
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public Host getRestEndpointHost() {
+        return restEndpointHost;
+    }
+
+    public List<String> getFailoverHostNames() {
+        return failoverHostNames;
+    }
+
+    public List<Host> getFailoverHosts() {
+        return failoverHosts;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public boolean isOlderThan(long millis) {
+        return System.currentTimeMillis() - loadedAt > millis;
+    }
+
+    // False once the cluster's credentials have changed since this was loaded
+    public boolean hasCredentialsOf(Cluster current) {
+        return current != null && equal(cluster.getUsername(), current.getUsername()) && equal(cluster.getPassword(), current.getPassword());
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static Cluster detach(Cluster cluster) {
+        if (cluster == null) {
+            return null;
+        }
+        Cluster copy = new Cluster();
+        copy.setId(cluster.getId());
+        copy.setName(cluster.getName());
+        copy.setDescription(cluster.getDescription());
+        copy.setUsername(cluster.getUsername());
+        copy.setPassword(cluster.getPassword());
+        copy.setDataCenter(cluster.getDataCenter());
+        copy.setStatus(cluster.getStatus());
+        copy.setClusterType(cluster.getClusterType());
+        copy.setClusterIpv6Cidr(cluster.getClusterIpv6Cidr());
+        return copy;
+    }
+
+    private static List<Host> detach(List<Host> hosts, Cluster cluster) {
+        if (hosts == null) {
+            return null;
+        }
+        List<Host> copies = new ArrayList<Host>(hosts.size());
+        for (Host host : hosts) {
+            copies.add(detach(host, cluster));
+        }
+        return copies;
+    }
+
+    private static Host detach(Host host, Cluster cluster) {
+        if (host == null) {
+            return null;
+        }
+        Host copy = new Host();
+        copy.setId(host.getId());
+        copy.setName(host.getName());
+        copy.setZone(host.getZone());
+        copy.setCoreDeviceId(host.getCoreDeviceId());
+        copy.setMaxConcurrentConnections(host.getMaxConcurrentConnections());
+        copy.setHostStatus(host.getHostStatus());
+        copy.setCluster(cluster);
+        copy.setManagementIp(host.getManagementIp());
+        copy.setEndpoint(host.getEndpoint());
+        copy.setSoapEndpointActive(host.getSoapEndpointActive());
+        copy.setRestEndpoint(host.getRestEndpoint());
+        copy.setRestEndpointActive(host.getRestEndpointActive());
+        copy.setTrafficManagerName(host.getTrafficManagerName());
+        copy.setIpv6Servicenet(host.getIpv6Servicenet());
+        copy.setIpv6Public(host.getIpv6Public());
+        copy.setIpv4Public(host.getIpv4Public());
+        copy.setIpv4Servicenet(host.getIpv4Servicenet());
+        return copy;
+    }
+}
@@ -0,0 +1,33 @@
+package org.openstack.atlas.service.domain.pojos;
+
+import org.openstack.atlas.service.domain.entities.Host;
+
+public class HostLoad {
+
+    private Host host;
+    private long loadBalancerCount;
+
+    public HostLoad() {
+    }
+
+    public HostLoad(Host host, long loadBalancerCount) {
+        this.host = host;
+        this.loadBalancerCount = loadBalancerCount;
+    }
+
+    public Host getHost() {
+        return host;
+    }
+
+    public void setHost(Host host) {
+        this.host = host;
+    }
+
+    public long getLoadBalancerCount() {
+        return loadBalancerCount;
+    }
+
+    public void setLoadBalancerCount(long loadBalancerCount) {
+        this.loadBalancerCount = loadBalancerCount;
+    }
+}
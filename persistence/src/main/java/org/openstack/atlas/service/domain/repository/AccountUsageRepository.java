@@ -5,6 +5,7 @@ import org.apache.commons.logging.LogFactory;
 import org.hibernate.jpa.criteria.OrderImpl;
 import org.openstack.atlas.service.domain.entities.AccountUsage;
 import org.openstack.atlas.service.domain.entities.AccountUsage_;
+import org.openstack.atlas.service.domain.util.JdbcBatchInsert;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,9 +17,12 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -29,11 +33,20 @@ public class AccountUsageRepository {
     @PersistenceContext(unitName = "loadbalancing")
     private EntityManager entityManager;
     private final Integer NUM_DAYS_RETENTION = 120;
+    private static final String TABLE = "account_usage";
+    private static final String[] INSERT_COLUMNS = {"account_id", "num_loadbalancers", "num_public_vips", "num_servicenet_vips",
+            "start_time", "needs_pushed"};
 
     public void save(AccountUsage accountUsage) {
         entityManager.persist(accountUsage);
     }
 
+    public List<Long> batchCreate(Collection<AccountUsage> usages) {
+        LOG.info(String.format("batchCreate() called with %d records", usages.size()));
+        return new JdbcBatchInsert<AccountUsage>(TABLE, INSERT_COLUMNS, JdbcBatchInsert.getConfiguredChunkSize(), ACCOUNT_USAGE_BINDER)
+                .execute(entityManager, usages);
+    }
+
     public void updatePushedRecord(AccountUsage usageRecord) {
         LOG.info(String.format("updateEntryRecord called"));
         entityManager.merge(usageRecord);
@@ -115,4 +128,16 @@ public class AccountUsageRepository {
         criteria.orderBy(new OrderImpl(lbRoot.get(AccountUsage_.accountId), true), new OrderImpl(lbRoot.get(AccountUsage_.startTime), true));
         return entityManager.createQuery(criteria).setFirstResult(offset).setMaxResults(limit + 1).getResultList();
     }
+
+    private static final JdbcBatchInsert.RowBinder<AccountUsage> ACCOUNT_USAGE_BINDER = new JdbcBatchInsert.RowBinder<AccountUsage>() {
+        @Override
+        public void bind(PreparedStatement ps, AccountUsage usage) throws SQLException {
+            ps.setInt(1, usage.getAccountId());
+            ps.setInt(2, usage.getNumLoadBalancers());
+            ps.setInt(3, usage.getNumPublicVips());
+            ps.setInt(4, usage.getNumServicenetVips());
+            JdbcBatchInsert.setTimestamp(ps, 5, usage.getStartTime());
+            ps.setBoolean(6, usage.isNeedsPushed());
+        }
+    };
 }
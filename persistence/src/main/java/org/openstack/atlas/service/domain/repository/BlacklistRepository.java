@@ -2,13 +2,18 @@ package org.openstack.atlas.service.domain.repository;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.atlas.cfg.RestApiConfiguration;
 import org.openstack.atlas.service.domain.entities.BlacklistItem;
 import org.openstack.atlas.service.domain.entities.IpVersion;
 import org.openstack.atlas.service.domain.exceptions.EntityNotFoundException;
+import org.openstack.atlas.service.domain.util.BlacklistIndex;
 import org.openstack.atlas.util.ip.IPv6Cidr;
 import org.openstack.atlas.util.ip.exception.IPStringConversionException;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -17,14 +22,18 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Repository
 @Transactional
 public class BlacklistRepository {
     final Log LOG = LogFactory.getLog(BlacklistRepository.class);
+    private static final long DEFAULT_BLACKLIST_INDEX_TTL_MILLIS = 60000L;
     @PersistenceContext(unitName = "loadbalancing")
     private EntityManager entityManager;
-
+    private final AtomicLong blacklistVersion = new AtomicLong();
+    private volatile BlacklistIndex blacklistIndex;
+    private Long blacklistIndexTtlMillis;
 
     public BlacklistItem getById(Integer id) throws EntityNotFoundException {
         BlacklistItem bl = entityManager.find(BlacklistItem.class, id);
@@ -53,6 +62,54 @@ public class BlacklistRepository {
         }
     }
 
+    /*
+     *  Compiled blacklist, rebuilt after invalidateBlacklistIndex() or once
+     *  it is older than blacklist_index_ttl_millis. The mgmt api edits the
+     *  blacklist from another process, the ttl is what picks those edits up.
+     */
+    public BlacklistIndex getBlacklistIndex() throws IPStringConversionException {
+        BlacklistIndex index = blacklistIndex;
+        long version = blacklistVersion.get();
+        if (index != null && index.getVersion() == version && !index.isOlderThan(getBlacklistIndexTtlMillis())) {
+            return index;
+        }
+        index = BlacklistIndex.build(getAllBlacklistItems(), version);
+        blacklistIndex = index;
+        return index;
+    }
+
+    /*
+     *  Inside a transaction the index is only invalidated once it commits.
+     *  Bumping the version earlier would let another request rebuild the
+     *  index from the old rows and keep it under the new version.
+     */
+    public void invalidateBlacklistIndex() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            blacklistVersion.incrementAndGet();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                blacklistVersion.incrementAndGet();
+            }
+        });
+    }
+
+    private long getBlacklistIndexTtlMillis() {
+        if (blacklistIndexTtlMillis == null) {
+            long ttl;
+            try {
+                RestApiConfiguration configuration = new RestApiConfiguration();
+                ttl = Long.parseLong(configuration.getString(PublicApiServiceConfigurationKeys.blacklist_index_ttl_millis));
+            } catch (Exception e) {
+                ttl = DEFAULT_BLACKLIST_INDEX_TTL_MILLIS;
+            }
+            blacklistIndexTtlMillis = ttl;
+        }
+        return blacklistIndexTtlMillis;
+    }
+
     public Map<String, List<BlacklistItem>> getBlacklistItemsCidrHashMap(List<BlacklistItem> list) {
         return toHashMap(entityManager.createQuery("SELECT b FROM BlacklistItem b").getResultList());
     }
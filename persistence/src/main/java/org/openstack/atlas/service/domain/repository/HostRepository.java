@@ -3,7 +3,10 @@ package org.openstack.atlas.service.domain.repository;
 import org.openstack.atlas.service.domain.entities.*;
 import org.openstack.atlas.service.domain.exceptions.EntityNotFoundException;
 import org.openstack.atlas.service.domain.pojos.Customer;
+import org.openstack.atlas.service.domain.pojos.HostLoad;
 import org.openstack.atlas.service.domain.pojos.LoadBalancerCountByAccountIdHostId;
+import org.openstack.atlas.service.domain.services.helpers.HostPlacementPolicy;
+import org.openstack.atlas.service.domain.services.helpers.LeastLoadedHostPlacementPolicy;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.stereotype.Repository;
@@ -14,7 +17,9 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 @Transactional
@@ -23,6 +28,7 @@ public class HostRepository {
     final Log LOG = LogFactory.getLog(HostRepository.class);
     @PersistenceContext(unitName = "loadbalancing")
     private EntityManager entityManager;
+    private HostPlacementPolicy hostPlacementPolicy = new LeastLoadedHostPlacementPolicy();
 
     public Host getById(Integer id) throws EntityNotFoundException {
         Host host = entityManager.find(Host.class, id);
@@ -407,50 +413,40 @@ public class HostRepository {
     }
 
     public Host getDefaultActiveHost(Integer clusterId) throws EntityNotFoundException {
-        //get a host based on the following algorithm
-        //status = ACTIVE_TARGET, fewest concurrent connections and fewest number of assigned loadbalanders.
-        String sql = "SELECT h from Host h where h.cluster.id = :clusterId AND h.hostStatus= :hostStatus "
-                + "AND h.maxConcurrentConnections = (select min(i.maxConcurrentConnections) "
-                + "from Host i where i.cluster.id = :clusterId AND i.hostStatus = :hostStatus)";
-
-//        String sql = "SELECT h from Host h where h.cluster.id = :clusterId"
-//                + " AND h.hostStatus = '"
-//                + HostStatus.ACTIVE_TARGET + "'"
-//                + " AND h.maxConcurrentConnections =  ( select min(i.maxConcurrentConnections) from Host i where i.hostStatus = '"
-//                + HostStatus.ACTIVE_TARGET + "')";
-
-        Query qry = entityManager.createQuery(sql).setParameter("hostStatus", HostStatus.ACTIVE_TARGET).setParameter("clusterId", clusterId);
-        List<Host> hosts = qry.getResultList();
-
-        if (hosts != null && hosts.size() > 0) {
-            if (hosts.size() == 1) {
-                return (hosts.get(0));
-            } else {
-                Host minhost = null;
-                long mincount = 0;
-                long count = 0;
-                //fewest number
-                for (Host h : hosts) {
-                    String query = "select count(*) from LoadBalancer lb where lb.host.id = :id and lb.status != 'DELETED'";
-                    List<Long> lst = entityManager.createQuery(query).setParameter("id", h.getId()).getResultList();
-                    count = lst.get(0).longValue();
-                    if (count == 0) {
-                        return h;
-                    } else {
-                        if (mincount == 0) {
-                            mincount = count;
-                            minhost = h;
-                        } else if (mincount <= count) {
-                            //do nothing
-                        } else {
-                            mincount = count;
-                            minhost = h;
-                        }
-                    }
-                }
-                return minhost;
-            }
+        HostLoad chosen = hostPlacementPolicy.choose(getActiveTargetHostLoads(clusterId));
+        if (chosen == null) {
+            throw new EntityNotFoundException("ACTIVE_TARGET host not found");
+        }
+        return chosen.getHost();
+    }
+
+    // Two queries however many hosts the cluster has: the hosts, then one grouped count
+    public List<HostLoad> getActiveTargetHostLoads(Integer clusterId) {
+        String hostQuery = "SELECT h from Host h where h.cluster.id = :clusterId AND h.hostStatus = :hostStatus order by h.id";
+        List<Host> hosts = entityManager.createQuery(hostQuery).setParameter("clusterId", clusterId)
+                .setParameter("hostStatus", HostStatus.ACTIVE_TARGET).getResultList();
+        List<HostLoad> loads = new ArrayList<HostLoad>();
+        if (hosts.isEmpty()) {
+            return loads;
+        }
+
+        String countQuery = "select lb.host.id, count(*) from LoadBalancer lb where lb.host.cluster.id = :clusterId "
+                + "and lb.host.hostStatus = :hostStatus and lb.status != 'DELETED' group by lb.host.id";
+        List<Object[]> rows = entityManager.createQuery(countQuery).setParameter("clusterId", clusterId)
+                .setParameter("hostStatus", HostStatus.ACTIVE_TARGET).getResultList();
+        Map<Integer, Long> counts = new HashMap<Integer, Long>();
+        for (Object[] row : rows) {
+            counts.put((Integer) row[0], ((Number) row[1]).longValue());
+        }
+
+        for (Host host : hosts) {
+            Long count = counts.get(host.getId());
+            loads.add(new HostLoad(host, count == null ? 0 : count));
         }
-        throw new EntityNotFoundException("ACTIVE_TARGET host not found");
+        return loads;
+    }
+
+    public void setHostPlacementPolicy(HostPlacementPolicy hostPlacementPolicy) {
+        this.hostPlacementPolicy = hostPlacementPolicy;
     }
 }
@@ -1,5 +1,6 @@
 package org.openstack.atlas.service.domain.repository;
 
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.openstack.atlas.service.domain.pojos.LoadBalancerIdAndName;
 import org.openstack.atlas.service.domain.entities.*;
@@ -238,6 +239,26 @@ public class LoadBalancerRepository {
         return ((BigInteger) query.getSingleResult()).intValue();
     }
 
+    /*
+     *  Non deleted load balancer counts for the next maxAccounts accounts
+     *  after afterAccountId, in account order. Accounts whose load balancers
+     *  are all deleted are still returned, with a count of 0, so callers can
+     *  page through every account by passing back the last one seen.
+     */
+    public LinkedHashMap<Integer, Integer> getNumNonDeletedLoadBalancersByAccount(Integer afterAccountId, int maxAccounts) {
+        Query query = entityManager.createNativeQuery(
+                "select account_id, sum(case when status != 'DELETED' then 1 else 0 end) from loadbalancer" +
+                        " where account_id > :afterAccountId group by account_id order by account_id")
+                .setParameter("afterAccountId", afterAccountId)
+                .setMaxResults(maxAccounts);
+
+        LinkedHashMap<Integer, Integer> counts = new LinkedHashMap<Integer, Integer>();
+        for (Object[] row : (List<Object[]>) query.getResultList()) {
+            counts.put(((Number) row[0]).intValue(), row[1] == null ? 0 : ((Number) row[1]).intValue());
+        }
+        return counts;
+    }
+
     public List<LoadBalancerProtocolObject> getAllProtocols() {
         List<LoadBalancerProtocolObject> protocolObjects;
         protocolObjects = entityManager.createQuery(
@@ -310,37 +331,65 @@ public class LoadBalancerRepository {
     }
 
     public boolean testAndSetStatus(Integer accountId, Integer loadbalancerId, LoadBalancerStatus statusToChangeTo, boolean allowConcurrentModifications) throws EntityNotFoundException, UnprocessableEntityException {
-        String qStr = "from LoadBalancer lb where lb.accountId=:aid and lb.id=:lid";
-        List<LoadBalancer> lbList;
-        Query q = entityManager.createQuery(qStr).setLockMode(LockModeType.PESSIMISTIC_READ).
+        List<LoadBalancerStatus> expected = allowConcurrentModifications
+                ? Arrays.asList(LoadBalancerStatus.ACTIVE, LoadBalancerStatus.PENDING_UPDATE)
+                : Arrays.asList(LoadBalancerStatus.ACTIVE);
+        return compareAndSetStatus(accountId, loadbalancerId, expected, statusToChangeTo);
+    }
+
+    /**
+     * Moves the load balancer to statusToChangeTo only if it is currently in
+     * one of the expected statuses, as a single conditional update. The row
+     * is only locked for the update itself and the entity is never loaded,
+     * callers that need it should fetch it afterwards.
+     *
+     * @return true if the status was changed, false if the load balancer was
+     * in some other status
+     * @throws EntityNotFoundException if there is no such load balancer on the account
+     * @throws UnprocessableEntityException if the load balancer is deleted
+     */
+    public boolean compareAndSetStatus(Integer accountId, Integer loadbalancerId, Collection<LoadBalancerStatus> expected, LoadBalancerStatus statusToChangeTo) throws EntityNotFoundException, UnprocessableEntityException {
+        Calendar now = Calendar.getInstance();
+        int updated = entityManager.createQuery("update LoadBalancer lb set lb.status = :status, lb.updated = :updated " +
+                "where lb.id = :lid and lb.accountId = :aid and lb.status in (:expected)").
+                setParameter("status", statusToChangeTo).
+                setParameter("updated", now).
+                setParameter("lid", loadbalancerId).
                 setParameter("aid", accountId).
-                setParameter("lid", loadbalancerId);
-        lbList = q.getResultList();
-        if (lbList.size() < 1) {
-            throw new EntityNotFoundException();
+                setParameter("expected", expected).
+                executeUpdate();
+
+        if (updated > 0) {
+            syncManagedStatus(loadbalancerId, statusToChangeTo, now);
+            return true;
         }
 
-        LoadBalancer lb = lbList.get(0);
-        if (lb.getStatus().equals(DELETED)) {
+        // Only a lost race pays for finding out why
+        List<LoadBalancerStatus> current = entityManager.createQuery("select lb.status from LoadBalancer lb " +
+                "where lb.id = :lid and lb.accountId = :aid", LoadBalancerStatus.class).
+                setParameter("lid", loadbalancerId).
+                setParameter("aid", accountId).
+                getResultList();
+        if (current.isEmpty()) {
+            throw new EntityNotFoundException();
+        }
+        if (current.get(0).equals(DELETED)) {
             throw new UnprocessableEntityException(Constants.LoadBalancerDeleted);
         }
-        final boolean isActive = lb.getStatus().equals(LoadBalancerStatus.ACTIVE);
-        final boolean isPendingOrActive = lb.getStatus().equals(LoadBalancerStatus.PENDING_UPDATE) || isActive;
-
-        if (allowConcurrentModifications ? isPendingOrActive : isActive) {
-//            SimpleDateFormat sdfDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
-//            Date now = new Date();
-//            String strDate = sdfDate.format(now);
-//            LOG.debug("SET STATUS: " + strDate);
-            lb.setStatus(statusToChangeTo);
-            lb.setUpdated(Calendar.getInstance());
-            entityManager.merge(lb);
-            entityManager.flush();
+        return false;
+    }
 
-            return true;
+    /*
+     * The bulk update skips the persistence context. If the caller already
+     * holds this load balancer, bring it up to date, otherwise a later flush
+     * of that copy would write the old status back.
+     */
+    private void syncManagedStatus(Integer loadbalancerId, LoadBalancerStatus status, Calendar updated) {
+        LoadBalancer managed = entityManager.getReference(LoadBalancer.class, loadbalancerId);
+        if (Hibernate.isInitialized(managed)) {
+            managed.setStatus(status);
+            managed.setUpdated(updated);
         }
-
-        return false;
     }
 
     public List<Usage> getUsageByAccountIdandLbId(Integer accountId, Integer loadBalancerId, Calendar startTime, Calendar endTime) throws EntityNotFoundException, DeletedStatusException {
@@ -391,23 +440,11 @@ public class LoadBalancerRepository {
     }
 
     public boolean testAndSetStatusPending(Integer accountId, Integer loadbalancerId) throws EntityNotFoundException {
-        String qStr = "from LoadBalancer lb where lb.accountId=:aid and lb.id=:lid";
-        List<LoadBalancer> lbList;
-        Query q = entityManager.createQuery(qStr).setLockMode(LockModeType.PESSIMISTIC_WRITE).
-                setParameter("aid", accountId).
-                setParameter("lid", loadbalancerId);
-        lbList = q.getResultList();
-        if (lbList.size() < 1) {
-            throw new EntityNotFoundException();
-        }
-        if (!lbList.get(0).getStatus().equals(LoadBalancerStatus.ACTIVE)) {
+        try {
+            return compareAndSetStatus(accountId, loadbalancerId, Arrays.asList(LoadBalancerStatus.ACTIVE), LoadBalancerStatus.PENDING_UPDATE);
+        } catch (UnprocessableEntityException deleted) {
             return false;
         }
-
-        lbList.get(0).setStatus(LoadBalancerStatus.PENDING_UPDATE);
-        lbList.get(0).setUpdated(Calendar.getInstance());
-        entityManager.merge(lbList.get(0));
-        return true;
     }
 
     public List<LoadBalancer> getNonDeletedByAccountId(Integer accountId) {
@@ -7,6 +7,7 @@ import org.openstack.atlas.service.domain.entities.Usage;
 import org.openstack.atlas.service.domain.entities.Usage_;
 import org.openstack.atlas.service.domain.events.UsageEvent;
 import org.openstack.atlas.service.domain.exceptions.EntityNotFoundException;
+import org.openstack.atlas.service.domain.util.JdbcBatchInsert;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,6 +20,8 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -35,6 +38,9 @@ public class UsageRepository {
     private EntityManager entityManager;
     private final Integer NUM_DAYS_RETENTION = 90;
     private final Integer DEFAULT_DELETE_LIMIT = 10000;
+    private static final String[] INSERT_COLUMNS = {"loadbalancer_id", "account_id", "avg_concurrent_conns", "bandwidth_in", "bandwidth_out",
+            "avg_concurrent_conns_ssl", "bandwidth_in_ssl", "bandwidth_out_ssl", "start_time", "end_time", "num_polls", "num_vips",
+            "tags_bitmask", "event_type", "entry_version", "needs_pushed", "uuid", "corrected", "num_attempts"};
 
     public List<Usage> getMostRecentUsageForLoadBalancers(Collection<Integer> loadBalancerIds) {
         if (loadBalancerIds == null || loadBalancerIds.isEmpty()) return new ArrayList<Usage>();
@@ -101,11 +107,10 @@ public class UsageRepository {
         deleteAllRecordsBeforeOrEqualTo(deletePoint);
     }
 
-    public void batchCreate(Collection<Usage> usages) {
+    public List<Long> batchCreate(Collection<Usage> usages) {
         LOG.info(String.format("batchCreate() called with %d records", usages.size()));
-
-        String query = generateBatchInsertQuery(usages);
-        entityManager.createNativeQuery(query).executeUpdate();
+        return new JdbcBatchInsert<Usage>("lb_usage", INSERT_COLUMNS, JdbcBatchInsert.getConfiguredChunkSize(), USAGE_INSERT_BINDER)
+                .execute(entityManager, usages);
     }
 
     public void batchUpdate(List<Usage> usages) {
@@ -138,12 +143,34 @@ public class UsageRepository {
         entityManager.merge(usageRecord);
     }
 
-    private String generateBatchInsertQuery(Collection<Usage> usages) {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("INSERT INTO lb_usage(loadbalancer_id, account_id, avg_concurrent_conns, bandwidth_in, bandwidth_out, avg_concurrent_conns_ssl, bandwidth_in_ssl, bandwidth_out_ssl, start_time, end_time, num_polls, num_vips, tags_bitmask, event_type, entry_version, needs_pushed, uuid, corrected, num_attempts) values");
-        sb.append(generateFormattedValues(usages));
-        return sb.toString();
-    }
+    /*
+     *  New rows get their entry version bumped and are marked as needing to be
+     *  pushed, same as generateUpdatedFormattedValue does for usage updates.
+     */
+    private static final JdbcBatchInsert.RowBinder<Usage> USAGE_INSERT_BINDER = new JdbcBatchInsert.RowBinder<Usage>() {
+        @Override
+        public void bind(PreparedStatement ps, Usage usage) throws SQLException {
+            ps.setInt(1, usage.getLoadbalancer().getId());
+            JdbcBatchInsert.setInteger(ps, 2, usage.getAccountId());
+            JdbcBatchInsert.setDouble(ps, 3, usage.getAverageConcurrentConnections());
+            JdbcBatchInsert.setLong(ps, 4, usage.getIncomingTransfer());
+            JdbcBatchInsert.setLong(ps, 5, usage.getOutgoingTransfer());
+            JdbcBatchInsert.setDouble(ps, 6, usage.getAverageConcurrentConnectionsSsl());
+            JdbcBatchInsert.setLong(ps, 7, usage.getIncomingTransferSsl());
+            JdbcBatchInsert.setLong(ps, 8, usage.getOutgoingTransferSsl());
+            JdbcBatchInsert.setTimestamp(ps, 9, usage.getStartTime());
+            JdbcBatchInsert.setTimestamp(ps, 10, usage.getEndTime());
+            JdbcBatchInsert.setInteger(ps, 11, usage.getNumberOfPolls());
+            JdbcBatchInsert.setInteger(ps, 12, usage.getNumVips());
+            JdbcBatchInsert.setInteger(ps, 13, usage.getTags());
+            JdbcBatchInsert.setString(ps, 14, usage.getEventType());
+            ps.setInt(15, usage.getEntryVersion() == null ? 1 : usage.getEntryVersion() + 1);
+            ps.setBoolean(16, true);
+            JdbcBatchInsert.setString(ps, 17, usage.getUuid());
+            ps.setBoolean(18, usage.isCorrected());
+            ps.setInt(19, usage.getNumAttempts());
+        }
+    };
 
     private String generateBatchUpdateQuery(List<Usage> usages) {
         return generateBatchUpdateQuery(usages, true);
@@ -211,10 +238,6 @@ public class UsageRepository {
 //        return sb.toString();
 //    }
 
-    private String generateFormattedValues(Collection<Usage> usages) {
-        return generateFormattedValues(usages, true);
-    }
-
     private String generateFormattedValues(Collection<Usage> usages, boolean isUpdate) {
         StringBuilder sb = new StringBuilder();
 
@@ -27,6 +27,11 @@ public class VirtualIpRepository {
     private final Log LOG = LogFactory.getLog(VirtualIpRepository.class);
     @PersistenceContext(unitName = "loadbalancing")
     private EntityManager entityManager;
+    // How many free vips an allocation picks from at random
+    private static final int VIP_CLAIM_CANDIDATES = 32;
+    private static final String FREE_IPV4_VIPS = "from VirtualIp v where v.isAllocated = false and v.vipType = :vipType and v.cluster = :cluster and ";
+    private static final String DEALLOCATED_BEFORE = "(v.lastDeallocation is null or v.lastDeallocation < :vipReuseTime)";
+    private static final String DEALLOCATED_AFTER = "v.lastDeallocation > :vipReuseTime";
 
     public VirtualIpRepository() {
     }
@@ -85,6 +90,26 @@ public class VirtualIpRepository {
         return ((BigInteger) query.getSingleResult()).intValue();
     }
 
+    /*
+     *  Same count as getNumUniqueVipsForAccount for every account from
+     *  firstAccountId to lastAccountId in one grouped query. Accounts without
+     *  vips of the type are left out of the map.
+     */
+    public Map<Integer, Integer> getNumUniqueVipsByAccount(Integer firstAccountId, Integer lastAccountId, VirtualIpType type) {
+        Query query = entityManager.createNativeQuery("select l.account_id, count(distinct j.virtualip_id) from loadbalancer_virtualip j, loadbalancer l, virtual_ip_ipv4 v" +
+                " where l.id = j.loadbalancer_id and v.id = j.virtualip_id and v.type = :virtualIpType" +
+                " and l.account_id between :firstAccountId and :lastAccountId group by l.account_id")
+                .setParameter("virtualIpType", type.toString())
+                .setParameter("firstAccountId", firstAccountId)
+                .setParameter("lastAccountId", lastAccountId);
+
+        Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+        for (Object[] row : (List<Object[]>) query.getResultList()) {
+            counts.put(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+        }
+        return counts;
+    }
+
     public List<VirtualIp> getVipsByLoadBalancerId(Integer loadBalancerId) {
         List<VirtualIp> vips;
         String query = "select j.virtualIp from LoadBalancerJoinVip j where j.loadBalancer.id = :loadBalancerId";
@@ -259,56 +284,59 @@ public class VirtualIpRepository {
     }
 
     public VirtualIp allocateIpv4VipBeforeDate(Cluster cluster, Calendar vipReuseTime, VirtualIpType vipType) throws OutOfVipsException {
-        VirtualIp vipCandidate;
-        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<VirtualIp> criteria = builder.createQuery(VirtualIp.class);
-        Root<VirtualIp> vipRoot = criteria.from(VirtualIp.class);
-
-        Predicate isNotAllocated = builder.equal(vipRoot.get(VirtualIp_.isAllocated), false);
-        Predicate lastDeallocationIsNull = builder.isNull(vipRoot.get(VirtualIp_.lastDeallocation));
-        Predicate isBeforeLastDeallocation = builder.lessThan(vipRoot.get(VirtualIp_.lastDeallocation), vipReuseTime);
-        Predicate isVipType = builder.equal(vipRoot.get(VirtualIp_.vipType), vipType);
-        Predicate belongsToCluster = builder.equal(vipRoot.get(VirtualIp_.cluster), cluster);
-
-        criteria.select(vipRoot);
-        criteria.where(builder.and(isNotAllocated, isVipType, belongsToCluster, builder.or(lastDeallocationIsNull, isBeforeLastDeallocation)));
+        return allocateIpv4Vip(cluster, vipReuseTime, vipType, DEALLOCATED_BEFORE);
+    }
 
-        try {
-            vipCandidate = entityManager.createQuery(criteria).setLockMode(LockModeType.PESSIMISTIC_WRITE).setMaxResults(1).getSingleResult();
-        } catch (Exception e) {
-            LOG.error(e);
+    public VirtualIp allocateIpv4VipAfterDate(Cluster cluster, Calendar vipReuseTime, VirtualIpType vipType) throws OutOfVipsException {
+        return allocateIpv4Vip(cluster, vipReuseTime, vipType, DEALLOCATED_AFTER);
+    }
+
+    /*
+     * Parallel creates used to lock the first free vip with a locking read and
+     * queue up behind each other on that one row. Instead each create reads a
+     * window of free vips without locking, shuffles it, and claims one with a
+     * conditional update, so two creates only touch the same row when they
+     * happen to pick the same vip and the loser just moves on. The quarantine
+     * is checked again in the update, since the snapshot may be stale. If
+     * every vip in the window went to someone else, the old locking read,
+     * which always sees the latest rows, gets the last word.
+     */
+    private VirtualIp allocateIpv4Vip(Cluster cluster, Calendar vipReuseTime, VirtualIpType vipType, String quarantine) throws OutOfVipsException {
+        List<Integer> candidates = entityManager.createQuery("select v.id " + FREE_IPV4_VIPS + quarantine + " order by v.id")
+                .setParameter("cluster", cluster).setParameter("vipType", vipType).setParameter("vipReuseTime", vipReuseTime)
+                .setMaxResults(VIP_CLAIM_CANDIDATES).getResultList();
+        if (candidates.isEmpty()) {
             throw new OutOfVipsException(Constants.OutOfVips);
         }
 
-        vipCandidate.setAllocated(true);
-        vipCandidate.setLastAllocation(Calendar.getInstance());
-        entityManager.merge(vipCandidate);
-        return vipCandidate;
-    }
+        Collections.shuffle(candidates);
+        Calendar now = Calendar.getInstance();
+        String claim = "update VirtualIp v set v.isAllocated = true, v.lastAllocation = :now "
+                + "where v.id = :id and v.isAllocated = false and " + quarantine;
+        for (Integer id : candidates) {
+            int claimed = entityManager.createQuery(claim).setParameter("now", now).setParameter("id", id)
+                    .setParameter("vipReuseTime", vipReuseTime).executeUpdate();
+            if (claimed == 1) {
+                VirtualIp vip = entityManager.find(VirtualIp.class, id);
+                entityManager.refresh(vip);
+                return vip;
+            }
+        }
 
-    public VirtualIp allocateIpv4VipAfterDate(Cluster cluster, Calendar vipReuseTime, VirtualIpType vipType) throws OutOfVipsException {
+        LOG.info(String.format("All %d vip candidates in cluster %d were claimed by other requests, falling back to a locking read.",
+                candidates.size(), cluster.getId()));
         VirtualIp vipCandidate;
-        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<VirtualIp> criteria = builder.createQuery(VirtualIp.class);
-        Root<VirtualIp> vipRoot = criteria.from(VirtualIp.class);
-
-        Predicate isNotAllocated = builder.equal(vipRoot.get(VirtualIp_.isAllocated), false);
-        Predicate isAfterLastDeallocation = builder.greaterThan(vipRoot.get(VirtualIp_.lastDeallocation), vipReuseTime);
-        Predicate isVipType = builder.equal(vipRoot.get(VirtualIp_.vipType), vipType);
-        Predicate belongsToCluster = builder.equal(vipRoot.get(VirtualIp_.cluster), cluster);
-
-        criteria.select(vipRoot);
-        criteria.where(isNotAllocated, isAfterLastDeallocation, isVipType, belongsToCluster);
-
         try {
-            vipCandidate = entityManager.createQuery(criteria).setLockMode(LockModeType.PESSIMISTIC_WRITE).setMaxResults(1).getSingleResult();
+            vipCandidate = entityManager.createQuery("select v " + FREE_IPV4_VIPS + quarantine, VirtualIp.class)
+                    .setParameter("cluster", cluster).setParameter("vipType", vipType).setParameter("vipReuseTime", vipReuseTime)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE).setMaxResults(1).getSingleResult();
         } catch (Exception e) {
             LOG.error(e);
             throw new OutOfVipsException(Constants.OutOfVips);
         }
 
         vipCandidate.setAllocated(true);
-        vipCandidate.setLastAllocation(Calendar.getInstance());
+        vipCandidate.setLastAllocation(now);
         entityManager.merge(vipCandidate);
         return vipCandidate;
     }
@@ -2,8 +2,10 @@ package org.openstack.atlas.service.domain.services;
 
 import org.openstack.atlas.service.domain.entities.*;
 import org.openstack.atlas.service.domain.exceptions.*;
+import org.openstack.atlas.service.domain.pojos.ClusterEndpointConfig;
 import org.openstack.atlas.service.domain.pojos.Customer;
 import org.openstack.atlas.service.domain.pojos.LoadBalancerCountByAccountIdHostId;
+import org.openstack.atlas.util.crypto.exception.DecryptException;
 
 import java.util.List;
 
@@ -84,4 +86,10 @@ public interface HostService {
 
     public boolean isActiveHost(Host host) throws EntityNotFoundException;
 
+    public void setRestEndpointActive(Integer hostId, Boolean restEndpointActive) throws EntityNotFoundException;
+
+    public ClusterEndpointConfig getClusterEndpointConfig(Cluster cluster) throws DecryptException;
+
+    public void invalidateClusterEndpointConfigs();
+
 }
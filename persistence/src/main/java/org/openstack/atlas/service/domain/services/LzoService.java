@@ -1,6 +1,7 @@
 package org.openstack.atlas.service.domain.services;
 
 import java.util.List;
+import java.util.Set;
 import org.openstack.atlas.service.domain.entities.CloudFilesLzo;
 import org.openstack.atlas.service.domain.entities.HdfsLzo;
 import org.openstack.atlas.service.domain.exceptions.EntityNotFoundException;
@@ -29,4 +30,8 @@ public interface LzoService {
     public void finishCloudFilesLzo(int hourKey, CloudFilesSegmentContainer sc);
 
     public List<CloudFilesLzo> newCloudFilesLzo(int hourKey, CloudFilesSegmentContainer sc);
+
+    public CloudFilesLzo finishCloudFilesLzo(int hourKey, int frag, String md5Sum);
+
+    public Set<Integer> getFinishedCloudFilesLzoFrags(int hourKey);
 }
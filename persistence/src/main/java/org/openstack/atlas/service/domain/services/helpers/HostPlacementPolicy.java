@@ -0,0 +1,16 @@
+package org.openstack.atlas.service.domain.services.helpers;
+
+import org.openstack.atlas.service.domain.pojos.HostLoad;
+
+import java.util.List;
+
+/*
+ * Picks the host a new or migrating load balancer lands on. Candidates are
+ * every ACTIVE_TARGET host in the cluster, ordered by id, with its count of
+ * non deleted load balancers already filled in, so a policy never has to go
+ * back to the database. Returns null when none of them will do.
+ */
+public interface HostPlacementPolicy {
+
+    public HostLoad choose(List<HostLoad> candidates);
+}
@@ -0,0 +1,34 @@
+package org.openstack.atlas.service.domain.services.helpers;
+
+import org.openstack.atlas.service.domain.pojos.HostLoad;
+
+import java.util.List;
+
+/*
+ * The original placement rule: of the hosts with the lowest
+ * maxConcurrentConnections, the one carrying the fewest load balancers.
+ * Ties go to the first candidate. Hosts without maxConcurrentConnections
+ * are never picked.
+ */
+public class LeastLoadedHostPlacementPolicy implements HostPlacementPolicy {
+
+    @Override
+    public HostLoad choose(List<HostLoad> candidates) {
+        HostLoad chosen = null;
+        for (HostLoad candidate : candidates) {
+            Integer maxConnections = candidate.getHost().getMaxConcurrentConnections();
+            if (maxConnections == null) {
+                continue;
+            }
+            if (chosen == null) {
+                chosen = candidate;
+                continue;
+            }
+            int cmp = maxConnections.compareTo(chosen.getHost().getMaxConcurrentConnections());
+            if (cmp < 0 || (cmp == 0 && candidate.getLoadBalancerCount() < chosen.getLoadBalancerCount())) {
+                chosen = candidate;
+            }
+        }
+        return chosen;
+    }
+}
@@ -13,16 +13,12 @@ import org.openstack.atlas.service.domain.services.helpers.StringHelper;
 import org.openstack.atlas.service.domain.usage.repository.HostUsageRefactorRepository;
 import org.openstack.atlas.service.domain.usage.repository.HostUsageRepository;
 import org.openstack.atlas.service.domain.usage.repository.LoadBalancerMergedHostUsageRepository;
+import org.openstack.atlas.service.domain.util.BlacklistIndex;
 import org.openstack.atlas.service.domain.util.Constants;
-import org.openstack.atlas.util.ip.IPv4Cidr;
-import org.openstack.atlas.util.ip.IPv4Cidrs;
-import org.openstack.atlas.util.ip.IPv6Cidr;
-import org.openstack.atlas.util.ip.IPv6Cidrs;
 import org.openstack.atlas.util.ip.exception.IPStringConversionException;
 import org.openstack.atlas.util.ip.exception.IpTypeMissMatchException;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.List;
 import java.util.Set;
 
 import static org.openstack.atlas.service.domain.entities.LoadBalancerStatus.ACTIVE;
@@ -211,56 +207,24 @@ public class BaseService {
     }
 
     protected Node blackListedItemNode(Set<Node> nodes) throws IPStringConversionException, IpTypeMissMatchException {
-        IPv4Cidrs ip4Cidr = new IPv4Cidrs();
-        IPv6Cidrs ip6Cidr = new IPv6Cidrs();
-        Node badNode = new Node();
-        List<BlacklistItem> blackItems = blacklistRepository.getAllBlacklistItems();
-
+        BlacklistIndex blacklist = blacklistRepository.getBlacklistIndex();
         for (Node testMe : nodes) {
-            for (BlacklistItem bli : blackItems) {
-                if (bli.getBlacklistType() == null || bli.getBlacklistType().equals(BlacklistType.NODE)) {
-                    if (bli.getIpVersion().equals(IpVersion.IPV4)) {
-                        ip4Cidr.getCidrs().add(new IPv4Cidr(bli.getCidrBlock()));
-                        badNode.setIpAddress(testMe.getIpAddress());
-                        if (ip4Cidr.contains(testMe.getIpAddress())) {
-                            return badNode;
-                        }
-                    } else if (bli.getIpVersion().equals(IpVersion.IPV6)) {
-                        ip6Cidr.getCidrs().add(new IPv6Cidr(bli.getCidrBlock()));
-                        badNode.setIpAddress(testMe.getIpAddress());
-                        if (ip6Cidr.contains(testMe.getIpAddress())) {
-                            return badNode;
-                        }
-                    }
-                }
+            if (blacklist.isNodeBlacklisted(testMe.getIpAddress())) {
+                Node badNode = new Node();
+                badNode.setIpAddress(testMe.getIpAddress());
+                return badNode;
             }
         }
         return null;
     }
 
     protected AccessList blackListedItemAccessList(Set<AccessList> accessLists) throws IPStringConversionException, IpTypeMissMatchException {
-        IPv4Cidrs ip4Cidr = new IPv4Cidrs();
-        IPv6Cidrs ip6Cidr = new IPv6Cidrs();
-        AccessList badAccessListItem = new AccessList();
-        List<BlacklistItem> blackItems = blacklistRepository.getAllBlacklistItems();
-
+        BlacklistIndex blacklist = blacklistRepository.getBlacklistIndex();
         for (AccessList testMe : accessLists) {
-            for (BlacklistItem bli : blackItems) {
-                if (bli.getBlacklistType() == null || bli.getBlacklistType().equals(BlacklistType.ACCESSLIST)) {
-                    if (bli.getIpVersion().equals(IpVersion.IPV4)) {
-                        ip4Cidr.getCidrs().add(new IPv4Cidr(bli.getCidrBlock()));
-                        badAccessListItem.setIpAddress(testMe.getIpAddress());
-                        if (ip4Cidr.contains(testMe.getIpAddress())) {
-                            return badAccessListItem;
-                        }
-                    } else if (bli.getIpVersion().equals(IpVersion.IPV6)) {
-                        ip6Cidr.getCidrs().add(new IPv6Cidr(bli.getCidrBlock()));
-                        badAccessListItem.setIpAddress(testMe.getIpAddress());
-                        if (ip6Cidr.contains(testMe.getIpAddress())) {
-                            return badAccessListItem;
-                        }
-                    }
-                }
+            if (blacklist.isAccessListBlacklisted(testMe.getIpAddress())) {
+                AccessList badAccessListItem = new AccessList();
+                badAccessListItem.setIpAddress(testMe.getIpAddress());
+                return badAccessListItem;
             }
         }
         return null;
@@ -44,6 +44,7 @@ public class BlackListServiceImpl extends BaseService implements BlackListServic
         LOG.debug("Deleting the blacklistitem");
 
         blacklistRepository.delete(dbBlacklist);
+        blacklistRepository.invalidateBlacklistIndex();
 
     }
 
@@ -109,6 +110,7 @@ public class BlackListServiceImpl extends BaseService implements BlackListServic
 
         if (badList.size() == 0) {
             blacklistRepository.saveBlacklist(goodList);
+            blacklistRepository.invalidateBlacklistIndex();
         } else {
             String retString = "The following CIDR blocks are currently black listed: ";
             String retList[] = new String[badList.size()];
@@ -1,17 +1,30 @@
 package org.openstack.atlas.service.domain.services.impl;
 
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.atlas.cfg.RestApiConfiguration;
 import org.openstack.atlas.service.domain.entities.*;
 import org.openstack.atlas.service.domain.exceptions.*;
+import org.openstack.atlas.service.domain.pojos.ClusterEndpointConfig;
 import org.openstack.atlas.service.domain.pojos.Customer;
 import org.openstack.atlas.service.domain.pojos.LoadBalancerCountByAccountIdHostId;
 import org.openstack.atlas.service.domain.services.HostService;
+import org.openstack.atlas.util.crypto.CryptoUtil;
+import org.openstack.atlas.util.crypto.exception.DecryptException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class HostServiceImpl extends BaseService implements HostService {
+    private static final long DEFAULT_ENDPOINT_CONFIG_TTL_MILLIS = 60000L;
+    // Other api nodes update hosts too, so entries also expire on their own
+    private final Map<Integer, ClusterEndpointConfig> clusterEndpointConfigs = new ConcurrentHashMap<Integer, ClusterEndpointConfig>();
+    private Long endpointConfigTtlMillis;
 
     @Override
     public Host getById(Integer id) throws EntityNotFoundException {
@@ -54,6 +67,7 @@ public class HostServiceImpl extends BaseService implements HostService {
     @Override
     @Transactional
     public void deleteHost(Host queueHost) throws Exception {
+        invalidateClusterEndpointConfigs();
 
         List<LoadBalancer> dbLoadBalancers = hostRepository.getLoadBalancers(queueHost.getId());
         if (dbLoadBalancers != null && dbLoadBalancers.size() > 0) {
@@ -68,6 +82,7 @@ public class HostServiceImpl extends BaseService implements HostService {
     @Override
     @Transactional
     public void updateHost(Host queueHost) throws EntityNotFoundException {
+        invalidateClusterEndpointConfigs();
 
 
         Host dbHost = hostRepository.getById(queueHost.getId());
@@ -198,16 +213,19 @@ public class HostServiceImpl extends BaseService implements HostService {
 
     @Override
     public void save(Host host) {
+        invalidateClusterEndpointConfigs();
         hostRepository.save(host);
     }
 
     @Override
     public void delete(Host host) {
+        invalidateClusterEndpointConfigs();
         hostRepository.delete(host);
     }
 
     @Override
     public Host update(Host host) {
+        invalidateClusterEndpointConfigs();
         return hostRepository.update(host);
     }
 
@@ -292,6 +310,7 @@ public class HostServiceImpl extends BaseService implements HostService {
     @Override
     @Transactional
     public void activateHost(Host host) throws Exception {
+        invalidateClusterEndpointConfigs();
         Host dbHost = null;
 
         try {
@@ -312,6 +331,7 @@ public class HostServiceImpl extends BaseService implements HostService {
     @Override
     @Transactional
     public void inActivateHost(Host host) throws Exception {
+        invalidateClusterEndpointConfigs();
         Host dbHost = null;
 
         try {
@@ -357,4 +377,63 @@ public class HostServiceImpl extends BaseService implements HostService {
         Host host = hostRepository.getFirstAvailableSoapEndPointHost();
         return host;
     }
+
+    @Override
+    @Transactional
+    public void setRestEndpointActive(Integer hostId, Boolean restEndpointActive) throws EntityNotFoundException {
+        invalidateClusterEndpointConfigs();
+        Host dbHost = hostRepository.getById(hostId);
+        dbHost.setRestEndpointActive(restEndpointActive);
+        hostRepository.update(dbHost);
+    }
+
+    /*
+     *  Hands out a copy of the cached config, see ClusterEndpointConfig. The
+     *  cluster passed in is the caller's current view of it, a config loaded
+     *  with other credentials is thrown away.
+     */
+    @Override
+    public ClusterEndpointConfig getClusterEndpointConfig(Cluster cluster) throws DecryptException {
+        Integer clusterId = cluster.getId();
+        ClusterEndpointConfig endpointConfig = clusterEndpointConfigs.get(clusterId);
+        if (endpointConfig != null && !endpointConfig.isOlderThan(getEndpointConfigTtlMillis()) && endpointConfig.hasCredentialsOf(cluster)) {
+            return endpointConfig.copy();
+        }
+        endpointConfig = new ClusterEndpointConfig(cluster, hostRepository.getRestEndPointHost(clusterId),
+                hostRepository.getFailoverHostNames(clusterId), hostRepository.getFailoverHosts(clusterId),
+                cluster.getUsername(), CryptoUtil.decrypt(cluster.getPassword()));
+        clusterEndpointConfigs.put(clusterId, endpointConfig);
+        return endpointConfig.copy();
+    }
+
+    /*
+     *  Inside a transaction the configs are thrown away again once it
+     *  commits, or a request in between could cache the old hosts.
+     */
+    @Override
+    public void invalidateClusterEndpointConfigs() {
+        clusterEndpointConfigs.clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    clusterEndpointConfigs.clear();
+                }
+            });
+        }
+    }
+
+    private long getEndpointConfigTtlMillis() {
+        if (endpointConfigTtlMillis == null) {
+            long ttl;
+            try {
+                RestApiConfiguration configuration = new RestApiConfiguration();
+                ttl = Long.parseLong(configuration.getString(PublicApiServiceConfigurationKeys.endpoint_config_cache_ttl_millis));
+            } catch (Exception e) {
+                ttl = DEFAULT_ENDPOINT_CONFIG_TTL_MILLIS;
+            }
+            endpointConfigTtlMillis = ttl;
+        }
+        return endpointConfigTtlMillis;
+    }
 }
@@ -3,8 +3,10 @@ package org.openstack.atlas.service.domain.services.impl;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.openstack.atlas.service.domain.entities.CloudFilesLzo;
@@ -63,6 +65,31 @@ public class LzoServiceImpl extends BaseService implements LzoService {
         }
     }
 
+    @Transactional
+    @Override
+    public CloudFilesLzo finishCloudFilesLzo(int hourKey, int frag, String md5Sum) {
+        CloudFilesLzo lzo = lzoRepository.getCloudFilesLzo(hourKey, frag);
+        if (lzo == null) {
+            lzo = new CloudFilesLzo(hourKey, frag, md5Sum);
+        }
+        if (md5Sum != null) {
+            lzo.setMd5(md5Sum);
+        }
+        lzo.setFinished(true);
+        return lzoRepository.merge(lzo);
+    }
+
+    @Override
+    public Set<Integer> getFinishedCloudFilesLzoFrags(int hourKey) {
+        Set<Integer> frags = new HashSet<Integer>();
+        for (CloudFilesLzo lzo : lzoRepository.getCloudFilesLzo(hourKey)) {
+            if (lzo.isFinished()) {
+                frags.add(lzo.getFrag());
+            }
+        }
+        return frags;
+    }
+
     @Transactional
     @Override
     public List<CloudFilesLzo> newCloudFilesLzo(int hourKey, CloudFilesSegmentContainer sc) {
@@ -80,6 +107,11 @@ public class LzoServiceImpl extends BaseService implements LzoService {
             CloudFilesLzo lzo;
             if (lzoMap.containsKey(key)) {
                 lzo = lzoMap.get(key);
+                if (lzo.isFinished() && (md5Sum == null || md5Sum.equals(lzo.getMd5()))) {
+                    // Already in Cloud Files from an earlier attempt, keep it so the upload can resume past it
+                    out.add(lzo);
+                    continue;
+                }
             } else {
                 lzo = new CloudFilesLzo(hourKey, fragNumber, md5Sum);
             }
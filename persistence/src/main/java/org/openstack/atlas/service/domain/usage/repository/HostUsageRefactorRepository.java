@@ -3,6 +3,7 @@ package org.openstack.atlas.service.domain.usage.repository;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openstack.atlas.service.domain.usage.entities.LoadBalancerHostUsage;
+import org.openstack.atlas.service.domain.util.JdbcBatchInsert;
 import org.openstack.atlas.util.common.StringUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,8 +12,8 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 import javax.persistence.TemporalType;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.List;
@@ -24,71 +25,43 @@ public class HostUsageRefactorRepository {
 
     @PersistenceContext(unitName = "loadbalancingUsage")
     private EntityManager entityManager;
+    private static final String TABLE = "lb_host_usage";
+    private static final String[] INSERT_COLUMNS = {"account_id", "loadbalancer_id", "host_id", "bandwidth_out",
+            "bandwidth_in", "bandwidth_out_ssl", "bandwidth_in_ssl", "concurrent_connections",
+            "concurrent_connections_ssl", "tags_bitmask", "num_vips", "poll_time", "event_type"};
 
     public void create(LoadBalancerHostUsage usageRecord) {
         entityManager.persist(usageRecord);
     }
 
-    public void batchCreate(Collection<LoadBalancerHostUsage> usageRecords) {
+    public List<Long> batchCreate(Collection<LoadBalancerHostUsage> usageRecords) {
         LOG.info(String.format("batchCreate() called with %d records", usageRecords.size()));
-        if (usageRecords.size() > 0) {
-            String query = generateBatchInsertQuery(usageRecords);
-            entityManager.createNativeQuery(query).executeUpdate();
-        }
-    }
-
-    private String generateBatchInsertQuery(Collection<LoadBalancerHostUsage> usages) {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("INSERT INTO lb_host_usage (account_id, loadbalancer_id, host_id, bandwidth_out," +
-                "bandwidth_in, bandwidth_out_ssl, bandwidth_in_ssl, concurrent_connections," +
-                "concurrent_connections_ssl, tags_bitmask, num_vips, poll_time, event_type) VALUES");
-        sb.append(generateFormattedValuesForList(usages));
-        return sb.toString();
-    }
-
-    private String generateFormattedValuesForList(Collection<LoadBalancerHostUsage> usages) {
-        String queryString = "";
-        for (LoadBalancerHostUsage usage : usages) {
-            queryString += generateFormattedValues(usage);
-            queryString += "),";
-        }
-        if (queryString.endsWith(",")) {
-            queryString = queryString.substring(0, queryString.lastIndexOf(','));
-        }
-        return queryString;
+        return new JdbcBatchInsert<LoadBalancerHostUsage>(TABLE, INSERT_COLUMNS, JdbcBatchInsert.getConfiguredChunkSize(), HOST_USAGE_BINDER)
+                .execute(entityManager, usageRecords);
     }
 
     /**
-     * The order of the following appended values is deliberate.  Do no modify its order
-     * without modifying the order in the method generateBatchInsertQuery
+     * The order of the following bound values is deliberate.  Do no modify its order
+     * without modifying the order in INSERT_COLUMNS
      */
-    private String generateFormattedValues(LoadBalancerHostUsage usage) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("(");
-        sb.append(usage.getAccountId()).append(",");
-        sb.append(usage.getLoadbalancerId()).append(",");
-        sb.append(usage.getHostId()).append(",");
-        sb.append(usage.getOutgoingTransfer()).append(",");
-        sb.append(usage.getIncomingTransfer()).append(",");
-        sb.append(usage.getOutgoingTransferSsl()).append(",");
-        sb.append(usage.getIncomingTransferSsl()).append(",");
-        sb.append(usage.getConcurrentConnections()).append(",");
-        sb.append(usage.getConcurrentConnectionsSsl()).append(",");
-        sb.append(usage.getTagsBitmask()).append(",");
-        sb.append(usage.getNumVips()).append(",");
-
-        DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        String startTime = formatter.format(usage.getPollTime().getTime());
-        sb.append("'").append(startTime).append("',");
-
-        if (usage.getEventType() == null) {
-            sb.append(usage.getEventType());
-        } else {
-            sb.append("'").append(usage.getEventType()).append("'");
+    private static final JdbcBatchInsert.RowBinder<LoadBalancerHostUsage> HOST_USAGE_BINDER = new JdbcBatchInsert.RowBinder<LoadBalancerHostUsage>() {
+        @Override
+        public void bind(PreparedStatement ps, LoadBalancerHostUsage usage) throws SQLException {
+            ps.setInt(1, usage.getAccountId());
+            ps.setInt(2, usage.getLoadbalancerId());
+            ps.setInt(3, usage.getHostId());
+            ps.setLong(4, usage.getOutgoingTransfer());
+            ps.setLong(5, usage.getIncomingTransfer());
+            ps.setLong(6, usage.getOutgoingTransferSsl());
+            ps.setLong(7, usage.getIncomingTransferSsl());
+            ps.setLong(8, usage.getConcurrentConnections());
+            ps.setLong(9, usage.getConcurrentConnectionsSsl());
+            ps.setInt(10, usage.getTagsBitmask());
+            ps.setInt(11, usage.getNumVips());
+            JdbcBatchInsert.setTimestamp(ps, 12, usage.getPollTime());
+            JdbcBatchInsert.setString(ps, 13, usage.getEventType());
         }
-
-        return sb.toString();
-    }
+    };
 
     public void getByLbId(int lbId) {
 //        entityManager.persist(usageEventRecord);
@@ -2,6 +2,7 @@ package org.openstack.atlas.service.domain.usage.repository;
 
 import org.openstack.atlas.service.domain.exceptions.EntityNotFoundException;
 import org.openstack.atlas.service.domain.usage.entities.HostUsage;
+import org.openstack.atlas.service.domain.util.JdbcBatchInsert;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.stereotype.Repository;
@@ -11,7 +12,10 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
 import javax.persistence.TemporalType;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.List;
 import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
 import org.openstack.atlas.cfg.RestApiConfiguration;
@@ -24,6 +28,8 @@ public class HostUsageRepository {
     private EntityManager entityManager;
     private final Integer NUM_DAYS_RETENTION = 60;
     private final Integer DEFAULT_DELETE_LIMIT = 10000;
+    private static final String TABLE = "host_usage";
+    private static final String[] INSERT_COLUMNS = {"host_id", "bandwidth_bytes_in", "bandwidth_bytes_out", "snapshot_time"};
 
     public HostUsage getById(Integer id) throws EntityNotFoundException {
         HostUsage hostUsageRecord = entityManager.find(HostUsage.class, id);
@@ -47,6 +53,12 @@ public class HostUsageRepository {
         entityManager.persist(usageToSave);
     }
 
+    public List<Long> batchCreate(Collection<HostUsage> usages) {
+        LOG.info(String.format("batchCreate() called with %d records", usages.size()));
+        return new JdbcBatchInsert<HostUsage>(TABLE, INSERT_COLUMNS, JdbcBatchInsert.getConfiguredChunkSize(), HOST_USAGE_BINDER)
+                .execute(entityManager, usages);
+    }
+
     public void deleteOldRecords() {
         Calendar deletePoint = Calendar.getInstance();
         deletePoint.add(Calendar.DATE, -NUM_DAYS_RETENTION);
@@ -77,4 +89,14 @@ public class HostUsageRepository {
 
         LOG.info(String.format("Finished deleting rows. Deleted %d total rows in %d batch(es) with endTime before %s from 'host_usage' table.", totalRowsDeleted, batchCount, time.getTime()));
     }
+
+    private static final JdbcBatchInsert.RowBinder<HostUsage> HOST_USAGE_BINDER = new JdbcBatchInsert.RowBinder<HostUsage>() {
+        @Override
+        public void bind(PreparedStatement ps, HostUsage usage) throws SQLException {
+            ps.setInt(1, usage.getHostId());
+            ps.setLong(2, usage.getBandwidthBytesIn());
+            ps.setLong(3, usage.getBandwidthBytesOut());
+            JdbcBatchInsert.setTimestamp(ps, 4, usage.getSnapshotTime());
+        }
+    };
 }
@@ -2,12 +2,17 @@ package org.openstack.atlas.service.domain.usage.repository;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.openstack.atlas.service.domain.entities.LoadBalancer;
 import org.openstack.atlas.service.domain.entities.Usage;
 import org.openstack.atlas.service.domain.events.UsageEvent;
 import org.openstack.atlas.service.domain.exceptions.EntityNotFoundException;
 import org.openstack.atlas.service.domain.usage.entities.LoadBalancerMergedHostUsage;
 import org.openstack.atlas.service.domain.usage.entities.LoadBalancerMergedHostUsage_;
+import org.openstack.atlas.service.domain.util.JdbcBatchInsert;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,9 +23,9 @@ import javax.persistence.Query;
 import javax.persistence.TemporalType;
 import javax.persistence.criteria.*;
 import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 @Repository
@@ -30,6 +35,10 @@ public class LoadBalancerMergedHostUsageRepository {
     final Log LOG = LogFactory.getLog(LoadBalancerMergedHostUsageRepository.class);
     @PersistenceContext(unitName = "loadbalancingUsage")
     private EntityManager entityManager;
+    private static final String TABLE = "lb_merged_host_usage";
+    private static final String[] INSERT_COLUMNS = {"account_id", "loadbalancer_id", "outgoing_transfer", "incoming_transfer",
+            "outgoing_transfer_ssl", "incoming_transfer_ssl", "concurrent_connections", "concurrent_connections_ssl",
+            "num_vips", "tags_bitmask", "poll_time", "event_type"};
 
     public List<LoadBalancerMergedHostUsage> getAllUsageRecordsInOrder() {
         CriteriaBuilder builder = entityManager.getCriteriaBuilder();
@@ -61,6 +70,57 @@ public class LoadBalancerMergedHostUsageRepository {
         return (usageEvents == null) ? new ArrayList<LoadBalancerMergedHostUsage>() : usageEvents;
     }
 
+    /*
+     *  Streams every record with a pollTime before or equal to timestamp
+     *  ordered by (loadbalancer_id, poll_time) through a forward only cursor.
+     *  The order is exactly the lb_merged_host_usage_lb_poll_time_key index,
+     *  so rows stream from the index instead of waiting on a filesort of the
+     *  whole range. The handler is called once per load balancer with that
+     *  load balancer's records in pollTime order, so only one load balancer's
+     *  records are held in memory at a time.
+     */
+    public int streamUsageRecordsByLoadBalancerBeforeOrEqualToTime(Calendar timestamp, int fetchSize, LoadBalancerUsageHandler handler) throws Exception {
+        Session session = entityManager.unwrap(Session.class);
+        SQLQuery query = session.createSQLQuery("SELECT u.id, u.loadbalancer_id, u.concurrent_connections, u.incoming_transfer, " +
+                "u.outgoing_transfer, u.concurrent_connections_ssl, u.incoming_transfer_ssl, u.outgoing_transfer_ssl, u.poll_time, " +
+                "u.num_vips, u.tags_bitmask, u.event_type, u.account_id" +
+                " FROM lb_merged_host_usage u WHERE u.poll_time <= :timestamp" +
+                " ORDER BY u.loadbalancer_id, u.poll_time");
+        query.setTimestamp("timestamp", timestamp.getTime());
+        query.setReadOnly(true);
+        query.setFetchSize(fetchSize);
+        ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+        int numLoadBalancers = 0;
+        try {
+            List<LoadBalancerMergedHostUsage> lbRecords = new ArrayList<LoadBalancerMergedHostUsage>();
+            while (results.next()) {
+                LoadBalancerMergedHostUsage usage = rowToUsage(results.get());
+                if (!lbRecords.isEmpty()) {
+                    LoadBalancerMergedHostUsage last = lbRecords.get(lbRecords.size() - 1);
+                    if (last.getLoadbalancerId() != usage.getLoadbalancerId() || last.getAccountId() != usage.getAccountId()) {
+                        handler.handle(last.getAccountId(), last.getLoadbalancerId(), lbRecords);
+                        numLoadBalancers++;
+                        lbRecords = new ArrayList<LoadBalancerMergedHostUsage>();
+                    }
+                }
+                lbRecords.add(usage);
+            }
+            if (!lbRecords.isEmpty()) {
+                LoadBalancerMergedHostUsage last = lbRecords.get(lbRecords.size() - 1);
+                handler.handle(last.getAccountId(), last.getLoadbalancerId(), lbRecords);
+                numLoadBalancers++;
+            }
+        } finally {
+            results.close();
+        }
+        LOG.info(String.format("Streamed records for %d loadbalancers with pollTime before or equal to %s", numLoadBalancers, timestamp.getTime()));
+        return numLoadBalancers;
+    }
+
+    public interface LoadBalancerUsageHandler {
+        void handle(Integer accountId, Integer loadbalancerId, List<LoadBalancerMergedHostUsage> recordsInOrder) throws Exception;
+    }
+
     public void deleteAllRecordsBefore(Calendar timestamp) {
         Query query = entityManager.createQuery("DELETE LoadBalancerMergedHostUsage u WHERE u.pollTime < :timestamp")
                 .setParameter("timestamp", timestamp, TemporalType.TIMESTAMP);
@@ -116,13 +176,10 @@ public class LoadBalancerMergedHostUsageRepository {
         return usageItem;
     }
 
-    public void batchCreate(Collection<LoadBalancerMergedHostUsage> usages) {
+    public List<Long> batchCreate(Collection<LoadBalancerMergedHostUsage> usages) {
         LOG.info(String.format("batchCreate() called with %d records", usages.size()));
-        if(usages.isEmpty()) {
-            return;
-        }
-        String query = generateBatchInsertQuery(usages);
-        entityManager.createNativeQuery(query).executeUpdate();
+        return new JdbcBatchInsert<LoadBalancerMergedHostUsage>(TABLE, INSERT_COLUMNS, JdbcBatchInsert.getConfiguredChunkSize(), MERGED_USAGE_BINDER)
+                .execute(entityManager, usages);
     }
 
     public void batchDelete(Collection<LoadBalancerMergedHostUsage> usages) {
@@ -137,47 +194,21 @@ public class LoadBalancerMergedHostUsageRepository {
                 .executeUpdate();
     }
 
-    private String generateBatchInsertQuery(Collection<LoadBalancerMergedHostUsage> usages) {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("INSERT INTO lb_merged_host_usage(account_id, loadbalancer_id, outgoing_transfer, incoming_transfer, outgoing_transfer_ssl, incoming_transfer_ssl, concurrent_connections, concurrent_connections_ssl, num_vips, tags_bitmask, poll_time, event_type) values");
-        sb.append(generateFormattedValues(usages));
-        return sb.toString();
-    }
-
-    private String generateFormattedValues(Collection<LoadBalancerMergedHostUsage> usages) {
-        StringBuilder sb = new StringBuilder();
-
-        for (LoadBalancerMergedHostUsage usage : usages) {
-            sb.append("(");
-            if (usage.getId() != null) {
-                sb.append(usage.getId()).append(",");
-            }
-            sb.append(usage.getAccountId()).append(",");
-            sb.append(usage.getLoadbalancerId()).append(",");
-            sb.append(usage.getOutgoingTransfer()).append(",");
-            sb.append(usage.getIncomingTransfer()).append(",");
-            sb.append(usage.getOutgoingTransferSsl()).append(",");
-            sb.append(usage.getIncomingTransferSsl()).append(",");
-            sb.append(usage.getConcurrentConnections()).append(",");
-            sb.append(usage.getConcurrentConnectionsSsl()).append(",");
-            sb.append(usage.getNumVips()).append(",");
-            sb.append(usage.getTagsBitmask()).append(",");
-
-            DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            String pollTime = formatter.format(usage.getPollTime().getTime());
-            sb.append("'").append(pollTime).append("',");
-
-            if (usage.getEventType() == null) {
-                sb.append(usage.getEventType());
-            } else {
-                sb.append("'").append(usage.getEventType()).append("'");
-            }
-            sb.append("),");
-
+    private static final JdbcBatchInsert.RowBinder<LoadBalancerMergedHostUsage> MERGED_USAGE_BINDER = new JdbcBatchInsert.RowBinder<LoadBalancerMergedHostUsage>() {
+        @Override
+        public void bind(PreparedStatement ps, LoadBalancerMergedHostUsage usage) throws SQLException {
+            ps.setInt(1, usage.getAccountId());
+            ps.setInt(2, usage.getLoadbalancerId());
+            ps.setLong(3, usage.getOutgoingTransfer());
+            ps.setLong(4, usage.getIncomingTransfer());
+            ps.setLong(5, usage.getOutgoingTransferSsl());
+            ps.setLong(6, usage.getIncomingTransferSsl());
+            ps.setLong(7, usage.getConcurrentConnections());
+            ps.setLong(8, usage.getConcurrentConnectionsSsl());
+            ps.setInt(9, usage.getNumVips());
+            ps.setInt(10, usage.getTagsBitmask());
+            JdbcBatchInsert.setTimestamp(ps, 11, usage.getPollTime());
+            JdbcBatchInsert.setString(ps, 12, usage.getEventType());
         }
-        if (sb.toString().endsWith(",")) {
-            sb.deleteCharAt(sb.lastIndexOf(","));
-        }
-        return sb.toString();
-    }
+    };
 }
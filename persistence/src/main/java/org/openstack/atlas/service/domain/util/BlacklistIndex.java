@@ -0,0 +1,70 @@
+package org.openstack.atlas.service.domain.util;
+
+import org.openstack.atlas.service.domain.entities.BlacklistItem;
+import org.openstack.atlas.service.domain.entities.BlacklistType;
+import org.openstack.atlas.service.domain.entities.IpVersion;
+import org.openstack.atlas.util.ip.IPCidrTrie;
+import org.openstack.atlas.util.ip.IPv4Cidr;
+import org.openstack.atlas.util.ip.IPv6Cidr;
+import org.openstack.atlas.util.ip.exception.IPStringConversionException;
+
+import java.util.List;
+
+/*
+ * Immutable snapshot of the blacklist compiled into one cidr trie for node
+ * addresses and one for access list addresses. Items without a type apply to
+ * both. The version is the BlacklistRepository change counter the snapshot
+ * was built at.
+ */
+public class BlacklistIndex {
+    private final IPCidrTrie nodeCidrs;
+    private final IPCidrTrie accessListCidrs;
+    private final long version;
+    private final long builtAt;
+
+    private BlacklistIndex(IPCidrTrie nodeCidrs, IPCidrTrie accessListCidrs, long version) {
+        this.nodeCidrs = nodeCidrs;
+        this.accessListCidrs = accessListCidrs;
+        this.version = version;
+        this.builtAt = System.currentTimeMillis();
+    }
+
+    public static BlacklistIndex build(List<BlacklistItem> items, long version) throws IPStringConversionException {
+        IPCidrTrie nodeCidrs = new IPCidrTrie();
+        IPCidrTrie accessListCidrs = new IPCidrTrie();
+        for (BlacklistItem item : items) {
+            BlacklistType type = item.getBlacklistType();
+            if (type == null || type.equals(BlacklistType.NODE)) {
+                add(nodeCidrs, item);
+            }
+            if (type == null || type.equals(BlacklistType.ACCESSLIST)) {
+                add(accessListCidrs, item);
+            }
+        }
+        return new BlacklistIndex(nodeCidrs, accessListCidrs, version);
+    }
+
+    private static void add(IPCidrTrie trie, BlacklistItem item) throws IPStringConversionException {
+        if (IpVersion.IPV4.equals(item.getIpVersion())) {
+            trie.add(new IPv4Cidr(item.getCidrBlock()));
+        } else if (IpVersion.IPV6.equals(item.getIpVersion())) {
+            trie.add(new IPv6Cidr(item.getCidrBlock()));
+        }
+    }
+
+    public boolean isNodeBlacklisted(String ip) throws IPStringConversionException {
+        return nodeCidrs.contains(ip);
+    }
+
+    public boolean isAccessListBlacklisted(String ip) throws IPStringConversionException {
+        return accessListCidrs.contains(ip);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isOlderThan(long millis) {
+        return System.currentTimeMillis() - builtAt > millis;
+    }
+}
@@ -0,0 +1,208 @@
+package org.openstack.atlas.service.domain.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.atlas.cfg.RestApiConfiguration;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * Bulk insert through one parameterized PreparedStatement. Rows are bound
+ * with addBatch and sent every chunkSize rows, so a large insert costs one
+ * statement parse and a flat amount of memory no matter how many rows go in.
+ * With rewriteBatchedStatements=true on the MySQL connection url the driver
+ * folds each chunk into a single multi row INSERT on the wire; the first
+ * insert logs a warning when a MySQL url is missing the flag.
+ *
+ * The generated ids are returned in the order the rows were given.
+ */
+public class JdbcBatchInsert<T> {
+    private static final Log LOG = LogFactory.getLog(JdbcBatchInsert.class);
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static volatile boolean connectionUrlChecked = false;
+
+    private final String insertSql;
+    private final int chunkSize;
+    private final RowBinder<T> rowBinder;
+
+    public interface RowBinder<T> {
+        /*
+         *  Sets every parameter of the insert for one row. The parameter
+         *  order must match the column list of the insert statement.
+         */
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    public JdbcBatchInsert(String table, String[] columns, int chunkSize, RowBinder<T> rowBinder) {
+        this.insertSql = buildInsertSql(table, columns);
+        this.chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+        this.rowBinder = rowBinder;
+    }
+
+    public List<Long> execute(EntityManager entityManager, final Collection<T> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return new ArrayList<Long>();
+        }
+        return entityManager.unwrap(Session.class).doReturningWork(new ReturningWork<List<Long>>() {
+            @Override
+            public List<Long> execute(Connection connection) throws SQLException {
+                return insert(connection, rows);
+            }
+        });
+    }
+
+    public List<Long> insert(Connection connection, Collection<T> rows) throws SQLException {
+        if (!connectionUrlChecked) {
+            connectionUrlChecked = true;
+            warnIfBatchRewriteDisabled(connection);
+        }
+        List<Long> generatedIds = new ArrayList<Long>(rows.size());
+        PreparedStatement ps = connection.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
+        try {
+            int rowsInChunk = 0;
+            for (T row : rows) {
+                rowBinder.bind(ps, row);
+                ps.addBatch();
+                if (++rowsInChunk >= chunkSize) {
+                    executeChunk(ps, generatedIds);
+                    rowsInChunk = 0;
+                }
+            }
+            if (rowsInChunk > 0) {
+                executeChunk(ps, generatedIds);
+            }
+        } finally {
+            ps.close();
+        }
+        return generatedIds;
+    }
+
+    public String getInsertSql() {
+        return insertSql;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    private static void executeChunk(PreparedStatement ps, List<Long> generatedIds) throws SQLException {
+        ps.executeBatch();
+        ResultSet keys = ps.getGeneratedKeys();
+        try {
+            while (keys.next()) {
+                generatedIds.add(keys.getLong(1));
+            }
+        } finally {
+            keys.close();
+        }
+        ps.clearBatch();
+    }
+
+    private static String buildInsertSql(String table, String[] columns) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("INSERT INTO ").append(table).append("(");
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(columns[i]);
+        }
+        sb.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        sb.append(")");
+        return sb.toString();
+    }
+
+    public static void setTimestamp(PreparedStatement ps, int index, Calendar cal) throws SQLException {
+        if (cal == null) {
+            ps.setNull(index, Types.TIMESTAMP);
+        } else {
+            ps.setTimestamp(index, new Timestamp(cal.getTimeInMillis()));
+        }
+    }
+
+    public static void setString(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.VARCHAR);
+        } else {
+            ps.setString(index, value.toString());
+        }
+    }
+
+    public static void setInteger(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, value);
+        }
+    }
+
+    public static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+
+    public static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+
+    /*
+     *  True unless the url is a MySQL url without rewriteBatchedStatements=true.
+     */
+    public static boolean isBatchRewriteEnabled(String url) {
+        if (url == null || !url.toLowerCase().startsWith("jdbc:mysql:")) {
+            return true;
+        }
+        return url.toLowerCase().matches(".*[?&]rewritebatchedstatements=true(&.*)?");
+    }
+
+    private static void warnIfBatchRewriteDisabled(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String url = metaData == null ? null : metaData.getURL();
+        if (!isBatchRewriteEnabled(url)) {
+            LOG.warn(String.format("Connection url '%s' does not set rewriteBatchedStatements=true, so usage batch inserts will go out one row per statement.", url));
+        }
+    }
+
+    /*
+     *  Chunk size from usage_batch_insert_chunk_size, or the default when
+     *  the key is missing or malformed. Read once per JVM.
+     */
+    public static int getConfiguredChunkSize() {
+        return ConfiguredChunkSize.VALUE;
+    }
+
+    private static class ConfiguredChunkSize {
+        private static final int VALUE = readConfiguredChunkSize();
+
+        private static int readConfiguredChunkSize() {
+            RestApiConfiguration configuration = new RestApiConfiguration();
+            try {
+                return Integer.parseInt(configuration.getString(PublicApiServiceConfigurationKeys.usage_batch_insert_chunk_size));
+            } catch (NumberFormatException nfe) {
+                return DEFAULT_CHUNK_SIZE;
+            }
+        }
+    }
+}
@@ -16,14 +16,12 @@ import org.springframework.stereotype.Component;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 @Component
 public abstract class AbstractUsageEventCollection {
     private final Log LOG = LogFactory.getLog(AbstractUsageEventCollection.class);
-    private ExecutorService executorService;
+    private UsageCollectionExecutor usageCollectionExecutor;
     private UsageEventProcessor usageEventProcessor;
     private HostRepository hostRepository;
 
@@ -35,12 +33,17 @@ public abstract class AbstractUsageEventCollection {
         this.hostRepository = hostRepository;
     }
 
+    @Required
+    public void setUsageCollectionExecutor(UsageCollectionExecutor usageCollectionExecutor) {
+        this.usageCollectionExecutor = usageCollectionExecutor;
+    }
+
     @Required
     public void setUsageEventProcessor(UsageEventProcessor usageEventProcessor) {
         this.usageEventProcessor = usageEventProcessor;
     }
 
-    public abstract List<Future<SnmpUsage>> collectUsageRecords(ExecutorService executorService, UsageEventProcessor usageEventProcessor, List<Host> hosts, LoadBalancer lb) throws UsageEventCollectionException;
+    public abstract List<Future<SnmpUsage>> collectUsageRecords(UsageCollectionExecutor usageCollectionExecutor, UsageEventProcessor usageEventProcessor, List<Host> hosts, LoadBalancer lb) throws UsageEventCollectionException;
 
     public abstract List<SnmpUsage> getUsagesFromFutures(List<Future<SnmpUsage>> futures) throws UsageEventCollectionException;
 
@@ -69,8 +72,7 @@ public abstract class AbstractUsageEventCollection {
 
         List<SnmpUsage> usages;
         if (hosts != null && !hosts.isEmpty()) {
-            executorService = Executors.newFixedThreadPool(hosts.size());
-            List<Future<SnmpUsage>> futures = collectUsageRecords(executorService, usageEventProcessor, hosts, lb);
+            List<Future<SnmpUsage>> futures = collectUsageRecords(usageCollectionExecutor, usageEventProcessor, hosts, lb);
             usages = getUsagesFromFutures(futures);
             LOG.debug("Finished getting snmp usage for: " + lb.getId());
         } else {
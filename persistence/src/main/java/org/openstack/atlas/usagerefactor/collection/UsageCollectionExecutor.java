@@ -0,0 +1,264 @@
+package org.openstack.atlas.usagerefactor.collection;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openstack.atlas.cfg.Configuration;
+import org.openstack.atlas.cfg.PublicApiServiceConfigurationKeys;
+import org.openstack.atlas.cfg.RestApiConfiguration;
+import org.openstack.atlas.service.domain.entities.Host;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * The one pool every usage event's SNMP calls run on. It has a fixed number
+ * of threads and a bounded queue, so a burst of events waits its turn (or is
+ * turned away) instead of growing a pool per event. Each host also gets a
+ * cap on how many of its calls may be queued or running at once, so a burst
+ * of events on one cluster can't swamp that cluster's SNMP agents. A caller
+ * over a host's cap waits for a slot, up to hostWaitMillis.
+ *
+ * When the queue is full, CALLER_RUNS runs the call on the event's own
+ * thread, which slows the listener down to the pool's pace. REJECT fails
+ * the event instead.
+ */
+public class UsageCollectionExecutor {
+    private static final Log LOG = LogFactory.getLog(UsageCollectionExecutor.class);
+    private static final int DEFAULT_THREADS = 16;
+    private static final int DEFAULT_QUEUE_SIZE = 500;
+    private static final int DEFAULT_HOST_LIMIT = 4;
+    private static final int DEFAULT_HOST_WAIT_MILLIS = 30000;
+
+    public enum RejectionPolicy {
+        CALLER_RUNS, REJECT
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final RejectionPolicy rejectionPolicy;
+    private final int hostLimit;
+    private final long hostWaitMillis;
+    private final ConcurrentMap<Integer, Semaphore> hostPermits = new ConcurrentHashMap<Integer, Semaphore>();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong ranInCaller = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong hostWaitTimeouts = new AtomicLong();
+
+    public UsageCollectionExecutor() {
+        this(new RestApiConfiguration());
+    }
+
+    public UsageCollectionExecutor(Configuration configuration) {
+        this(getInt(configuration, PublicApiServiceConfigurationKeys.usage_event_collection_threads, DEFAULT_THREADS),
+                getInt(configuration, PublicApiServiceConfigurationKeys.usage_event_collection_queue_size, DEFAULT_QUEUE_SIZE),
+                getRejectionPolicy(configuration),
+                getInt(configuration, PublicApiServiceConfigurationKeys.usage_event_collection_host_limit, DEFAULT_HOST_LIMIT),
+                getInt(configuration, PublicApiServiceConfigurationKeys.usage_event_collection_host_wait_millis, DEFAULT_HOST_WAIT_MILLIS));
+    }
+
+    public UsageCollectionExecutor(int threads, int queueSize, RejectionPolicy rejectionPolicy, int hostLimit, long hostWaitMillis) {
+        this.rejectionPolicy = rejectionPolicy;
+        this.hostLimit = Math.max(1, hostLimit);
+        this.hostWaitMillis = Math.max(0, hostWaitMillis);
+        int size = Math.max(1, threads);
+        pool = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new CollectionThreadFactory(), new FullQueueHandler());
+        LOG.info(String.format("Usage collection executor started with %d threads, queue of %d, %s when full, %d calls per host",
+                size, Math.max(1, queueSize), rejectionPolicy, this.hostLimit));
+    }
+
+    /**
+     * Runs the call against the host on the shared pool. Blocks while the
+     * host is at its cap, and throws RejectedExecutionException if no slot
+     * frees up in time, or if the queue is full and the policy is REJECT.
+     */
+    public <T> Future<T> submit(Host host, final Callable<T> task) {
+        final Semaphore permits = permitsFor(host);
+        try {
+            if (!permits.tryAcquire(hostWaitMillis, TimeUnit.MILLISECONDS)) {
+                hostWaitTimeouts.incrementAndGet();
+                throw new RejectedExecutionException(String.format("Host %d already has %d usage calls outstanding", host.getId(), hostLimit));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for a usage collection slot", e);
+        }
+
+        HostTask<T> future = new HostTask<T>(permits, new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                try {
+                    return task.call();
+                } finally {
+                    completed.incrementAndGet();
+                }
+            }
+        });
+        try {
+            pool.execute(future);
+        } catch (RejectedExecutionException e) {
+            future.releasePermit();
+            throw e;
+        }
+        submitted.incrementAndGet();
+        return future;
+    }
+
+    public void shutdown() {
+        LOG.info("Shutting down usage collection executor: " + getStats());
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPoolSize() {
+        return pool.getPoolSize();
+    }
+
+    public int getLargestPoolSize() {
+        return pool.getLargestPoolSize();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return pool.getQueue().size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getRanInCallerCount() {
+        return ranInCaller.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getHostWaitTimeoutCount() {
+        return hostWaitTimeouts.get();
+    }
+
+    public int getAvailablePermits(Host host) {
+        return permitsFor(host).availablePermits();
+    }
+
+    public String getStats() {
+        return String.format("threads=%d active=%d queued=%d submitted=%d completed=%d ranInCaller=%d rejected=%d hostWaitTimeouts=%d",
+                getPoolSize(), getActiveCount(), getQueueSize(), getSubmittedCount(), getCompletedCount(),
+                getRanInCallerCount(), getRejectedCount(), getHostWaitTimeoutCount());
+    }
+
+    private Semaphore permitsFor(Host host) {
+        Semaphore permits = hostPermits.get(host.getId());
+        if (permits == null) {
+            permits = new Semaphore(hostLimit);
+            Semaphore raced = hostPermits.putIfAbsent(host.getId(), permits);
+            if (raced != null) {
+                permits = raced;
+            }
+        }
+        return permits;
+    }
+
+    /*
+     * Gives the host slot back once the call is finished, however it
+     * finishes. A task cancelled before it ran never calls its callable, so
+     * the slot can't be released from inside the callable.
+     */
+    private static class HostTask<T> extends FutureTask<T> {
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        HostTask(Semaphore permits, Callable<T> callable) {
+            super(callable);
+            this.permits = permits;
+        }
+
+        @Override
+        protected void done() {
+            releasePermit();
+        }
+
+        void releasePermit() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    private class FullQueueHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (rejectionPolicy == RejectionPolicy.CALLER_RUNS && !executor.isShutdown()) {
+                ranInCaller.incrementAndGet();
+                r.run();
+                return;
+            }
+            rejected.incrementAndGet();
+            LOG.warn("Usage collection queue is full, rejecting call: " + getStats());
+            throw new RejectedExecutionException("Usage collection queue is full");
+        }
+    }
+
+    private static class CollectionThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "usage-collection-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static int getInt(Configuration configuration, PublicApiServiceConfigurationKeys key, int defaultValue) {
+        try {
+            if (configuration.hasKeys(key)) {
+                return Integer.parseInt(configuration.getString(key).trim());
+            }
+        } catch (NumberFormatException nfe) {
+            LOG.warn(String.format("Invalid value for %s, using %d", key, defaultValue));
+        }
+        return defaultValue;
+    }
+
+    private static RejectionPolicy getRejectionPolicy(Configuration configuration) {
+        PublicApiServiceConfigurationKeys key = PublicApiServiceConfigurationKeys.usage_event_collection_rejection_policy;
+        try {
+            if (configuration.hasKeys(key)) {
+                return RejectionPolicy.valueOf(configuration.getString(key).trim().toUpperCase());
+            }
+        } catch (IllegalArgumentException iae) {
+            LOG.warn(String.format("Invalid value for %s, using %s", key, RejectionPolicy.CALLER_RUNS));
+        }
+        return RejectionPolicy.CALLER_RUNS;
+    }
+}
@@ -10,10 +10,9 @@ import org.openstack.atlas.usagerefactor.processor.UsageEventProcessor;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 public class UsageEventCollection extends AbstractUsageEventCollection {
     private final Log LOG = LogFactory.getLog(UsageEventCollection.class);
@@ -22,24 +21,24 @@ public class UsageEventCollection extends AbstractUsageEventCollection {
     }
 
     @Override
-    public List<Future<SnmpUsage>> collectUsageRecords(ExecutorService executorService,
+    public List<Future<SnmpUsage>> collectUsageRecords(UsageCollectionExecutor usageCollectionExecutor,
                                                        UsageEventProcessor usageEventProcessor, List<Host> hosts,
                                                        LoadBalancer lb)
             throws UsageEventCollectionException {
 
         LOG.debug("Collecting SNMP Usages for load balancer: " + lb.getId());
 
-        List<Future<SnmpUsage>> futures;
-        List<Callable<SnmpUsage>> callables = new ArrayList<Callable<SnmpUsage>>();
-
-        for (Host h : hosts) {
-            callables.add(new SnmpUsageCollector(h, lb));
-        }
+        List<Future<SnmpUsage>> futures = new ArrayList<Future<SnmpUsage>>();
         try {
             LOG.debug("Executing SNMP collection tasks for loadbalancer: " + lb.getId());
-            futures = executorService.invokeAll(callables);
-        } catch (InterruptedException e) {
+            for (Host h : hosts) {
+                futures.add(usageCollectionExecutor.submit(h, new SnmpUsageCollector(h, lb)));
+            }
+        } catch (RejectedExecutionException e) {
             LOG.error("Error Executing SNMP: " + e);
+            for (Future<SnmpUsage> f : futures) {
+                f.cancel(false);
+            }
             throw new UsageEventCollectionException("Error executing SNMP collection: ", e);
         }
         return futures;
@@ -4,6 +4,7 @@ import org.openstack.atlas.service.domain.entities.Host;
 import org.openstack.atlas.service.domain.entities.LoadBalancer;
 import org.openstack.atlas.usagerefactor.SnmpStats;
 import org.openstack.atlas.usagerefactor.SnmpUsage;
+import org.openstack.atlas.util.snmp.RawSnmpUsage;
 import org.openstack.atlas.util.snmp.exceptions.StingraySnmpGeneralException;
 
 import java.util.List;
@@ -19,6 +20,13 @@ public interface StingrayUsageClient {
      */
     Map<Integer, SnmpUsage> getHostUsage(Host host) throws StingraySnmpGeneralException;
 
+    /*
+     *  Same as getHostUsage(Host) but for raw usage that was
+     *  already walked from the host, e.g. by an asynchronous
+     *  walk started from StingraySnmpClient.
+     */
+    Map<Integer, SnmpUsage> getHostUsage(Host host, Map<String, RawSnmpUsage> rawMap);
+
 
     /*
      * Given a host ip address and virtual server name,
@@ -26,6 +34,10 @@ public interface StingrayUsageClient {
      * usage values for that virtual server on the given
      * host.  Please take note of the value returning to
      * zero upon the host machine rebooting.
+     *
+     * Only one load balancer at a time; usage for every
+     * load balancer on a host comes from getHostUsage.
+     * The GET does not wait for a walk of the same host.
      */
     SnmpUsage getVirtualServerUsage(Host host, LoadBalancer lb) throws StingraySnmpGeneralException;
 
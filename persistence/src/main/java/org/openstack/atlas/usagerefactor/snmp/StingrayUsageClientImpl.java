@@ -6,14 +6,19 @@ import org.openstack.atlas.service.domain.entities.Host;
 import org.openstack.atlas.service.domain.entities.LoadBalancer;
 import org.openstack.atlas.usagerefactor.SnmpStats;
 import org.openstack.atlas.usagerefactor.SnmpUsage;
+import org.openstack.atlas.util.snmp.OIDConstants;
 import org.openstack.atlas.util.snmp.RawSnmpUsage;
 import org.openstack.atlas.util.snmp.StingraySnmpClient;
+import org.openstack.atlas.util.snmp.StingraySnmpConstants;
 import org.openstack.atlas.util.snmp.exceptions.StingraySnmpGeneralException;
 import org.openstack.atlas.util.snmp.exceptions.StingraySnmpObjectNotFoundException;
 import org.openstack.atlas.util.snmp.exceptions.StingraySnmpRetryExceededException;
 import org.openstack.atlas.util.snmp.exceptions.StingraySnmpSetupException;
+import org.snmp4j.smi.Null;
+import org.snmp4j.smi.Variable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,17 +33,29 @@ public class StingrayUsageClientImpl implements StingrayUsageClient {
 
     public static final Pattern vsPattern = Pattern.compile("^[0-9]+_([0-9]+)$");
     public static final Pattern shadowPattern = Pattern.compile("^[0-9]+_([0-9]+)_S$");
+    private static final List<String> usageOids = Arrays.asList(OIDConstants.VS_BYTES_IN, OIDConstants.VS_BYTES_OUT,
+            OIDConstants.VS_CURRENT_CONNECTIONS);
+    private static final List<String> statsOids = Arrays.asList(OIDConstants.VS_CURRENT_CONNECTIONS, OIDConstants.VS_MAX_CONNECTIONS,
+            OIDConstants.VS_CONNECT_TIMED_OUT, OIDConstants.VS_DATA_TIMED_OUT, OIDConstants.VS_KEEPALIVE_TIMED_OUT,
+            OIDConstants.VS_CONNECTION_ERRORS, OIDConstants.VS_CONNECTION_FAILURES);
+
+    private String snmpPort = StingraySnmpConstants.PORT;
+
+    public void setSnmpPort(String snmpPort) {
+        this.snmpPort = snmpPort;
+    }
 
     @Override
     public Map<Integer, SnmpUsage> getHostUsage(Host host) throws StingraySnmpRetryExceededException, StingraySnmpSetupException, StingraySnmpGeneralException {
+        return getHostUsage(host, newSnmpClient(host).getSnmpUsage());
+    }
+
+    @Override
+    public Map<Integer, SnmpUsage> getHostUsage(Host host, Map<String, RawSnmpUsage> rawMap) {
         RestApiConfiguration configuration = new RestApiConfiguration();
         boolean log_all = configuration.hasKeys(PublicApiServiceConfigurationKeys.usage_poller_log_all_counters) &&
                 (configuration.getString(PublicApiServiceConfigurationKeys.usage_poller_log_all_counters).toLowerCase().equals("enabled"));
         Map<Integer, SnmpUsage> usage = new HashMap<Integer, SnmpUsage>();
-        String snmpIp = host.getManagementIp();
-        StingraySnmpClient client = new StingraySnmpClient();
-        client.setAddress(snmpIp);
-        Map<String, RawSnmpUsage> rawMap = client.getSnmpUsage();
         StringBuilder counterLogString = new StringBuilder();
         counterLogString.append("\n");
         for (RawSnmpUsage rawValue : rawMap.values()) {
@@ -85,57 +102,70 @@ public class StingrayUsageClientImpl implements StingrayUsageClient {
 
     @Override
     public SnmpUsage getVirtualServerUsage(Host host, LoadBalancer lb) throws StingraySnmpSetupException, StingraySnmpObjectNotFoundException, StingraySnmpGeneralException {
+        Map<String, Map<String, Variable>> values = getVirtualServerValues(host, lb, usageOids);
         SnmpUsage usage = new SnmpUsage();
-        StingraySnmpClient client = new StingraySnmpClient();
-        client.setAddress(host.getManagementIp());
-
         usage.setLoadbalancerId(lb.getId());
         usage.setHostId(host.getId());
         // Fetch Virtual Server Usage
-        String vsName = buildVsName(lb, false);
-        usage.setBytesIn(client.getBytesIn(vsName, false, true));
-        usage.setBytesOut(client.getBytesOut(vsName, false, true));
-        usage.setConcurrentConnections((int) client.getConcurrentConnections(vsName, false, true));
+        Map<String, Variable> vs = values.get(buildVsName(lb, false));
+        usage.setBytesIn(toLong(vs, OIDConstants.VS_BYTES_IN, -1L));
+        usage.setBytesOut(toLong(vs, OIDConstants.VS_BYTES_OUT, -1L));
+        usage.setConcurrentConnections((int) toLong(vs, OIDConstants.VS_CURRENT_CONNECTIONS, -1L));
 
         // Fetch Shadow Server Usage
-        String shadowName = buildVsName(lb, true);
-        usage.setBytesInSsl(client.getBytesIn(shadowName, false, true));
-        usage.setBytesOutSsl(client.getBytesOut(shadowName, false, true));
-        usage.setConcurrentConnectionsSsl((int) client.getConcurrentConnections(shadowName, false, true));
+        Map<String, Variable> shadow = values.get(buildVsName(lb, true));
+        usage.setBytesInSsl(toLong(shadow, OIDConstants.VS_BYTES_IN, -1L));
+        usage.setBytesOutSsl(toLong(shadow, OIDConstants.VS_BYTES_OUT, -1L));
+        usage.setConcurrentConnectionsSsl((int) toLong(shadow, OIDConstants.VS_CURRENT_CONNECTIONS, -1L));
         return usage;
     }
 
     @Override
     public SnmpStats getVirtualServerStats(Host host, LoadBalancer lb) throws StingraySnmpGeneralException {
+        Map<String, Map<String, Variable>> values = getVirtualServerValues(host, lb, statsOids);
         SnmpStats usage = new SnmpStats();
-        StingraySnmpClient client = new StingraySnmpClient();
-        client.setAddress(host.getManagementIp());
-
         usage.setLoadbalancerId(lb.getId());
         usage.setHostId(host.getId());
         // Fetch Virtual Server Usage
-        String vsName = buildVsName(lb, false);
-        usage.setConcurrentConnections((int) client.getConcurrentConnections(vsName, true, false));
-        usage.setMaxConnections(client.getMaxConnections(vsName, true, false));
-        usage.setConnectTimedOut(client.getConnectTimedOut(vsName, true, false));
-        usage.setDataTimedOut(client.getDataTimedOut(vsName, true, false));
-        usage.setKeepaliveTimedOut(client.getKeepAliveTimedOut(vsName, true, false));
-        usage.setConnectionErrors(client.getConnectionErrors(vsName, true, false));
-        usage.setConnectionFailures(client.getConnectionFailures(vsName, true, false));
+        Map<String, Variable> vs = values.get(buildVsName(lb, false));
+        usage.setConcurrentConnections((int) toLong(vs, OIDConstants.VS_CURRENT_CONNECTIONS, 0L));
+        usage.setMaxConnections((int) toLong(vs, OIDConstants.VS_MAX_CONNECTIONS, 0L));
+        usage.setConnectTimedOut((int) toLong(vs, OIDConstants.VS_CONNECT_TIMED_OUT, 0L));
+        usage.setDataTimedOut((int) toLong(vs, OIDConstants.VS_DATA_TIMED_OUT, 0L));
+        usage.setKeepaliveTimedOut((int) toLong(vs, OIDConstants.VS_KEEPALIVE_TIMED_OUT, 0L));
+        usage.setConnectionErrors((int) toLong(vs, OIDConstants.VS_CONNECTION_ERRORS, 0L));
+        usage.setConnectionFailures((int) toLong(vs, OIDConstants.VS_CONNECTION_FAILURES, 0L));
 
         // Fetch Shadow Server Usage
-        String shadowName = buildVsName(lb, true);
-        usage.setConcurrentConnectionsSsl((int) client.getConcurrentConnections(shadowName, true, false));
-        usage.setMaxConnectionsSsl(client.getMaxConnections(shadowName, true, false));
-        usage.setConnectTimedOutSsl(client.getConnectTimedOut(shadowName, true, false));
-        usage.setDataTimedOutSsl(client.getDataTimedOut(shadowName, true, false));
-        usage.setKeepaliveTimedOutSsl(client.getKeepAliveTimedOut(shadowName, true, false));
-        usage.setConnectionErrorsSsl(client.getConnectionErrors(shadowName, true, false));
-        usage.setConnectionFailuresSsl(client.getConnectionFailures(shadowName, true, false));
-
+        Map<String, Variable> shadow = values.get(buildVsName(lb, true));
+        usage.setConcurrentConnectionsSsl((int) toLong(shadow, OIDConstants.VS_CURRENT_CONNECTIONS, 0L));
+        usage.setMaxConnectionsSsl((int) toLong(shadow, OIDConstants.VS_MAX_CONNECTIONS, 0L));
+        usage.setConnectTimedOutSsl((int) toLong(shadow, OIDConstants.VS_CONNECT_TIMED_OUT, 0L));
+        usage.setDataTimedOutSsl((int) toLong(shadow, OIDConstants.VS_DATA_TIMED_OUT, 0L));
+        usage.setKeepaliveTimedOutSsl((int) toLong(shadow, OIDConstants.VS_KEEPALIVE_TIMED_OUT, 0L));
+        usage.setConnectionErrorsSsl((int) toLong(shadow, OIDConstants.VS_CONNECTION_ERRORS, 0L));
+        usage.setConnectionFailuresSsl((int) toLong(shadow, OIDConstants.VS_CONNECTION_FAILURES, 0L));
         return usage;
     }
 
+    // Every column of the load balancer's virtual server and its shadow server, in as few GETs as the host allows
+    private Map<String, Map<String, Variable>> getVirtualServerValues(Host host, LoadBalancer lb, List<String> oids) throws StingraySnmpGeneralException {
+        List<String> vsNames = Arrays.asList(buildVsName(lb, false), buildVsName(lb, true));
+        return newSnmpClient(host).getValuesForVirtualServers(vsNames, oids);
+    }
+
+    private StingraySnmpClient newSnmpClient(Host host) {
+        return new StingraySnmpClient(host.getManagementIp(), snmpPort);
+    }
+
+    private static long toLong(Map<String, Variable> columns, String oid, long notFound) {
+        Variable value = columns.get(oid);
+        if (value == null || value.isException() || value instanceof Null) {
+            return notFound;
+        }
+        return value.toLong();
+    }
+
     private static String buildVsName(LoadBalancer lb, boolean isShadowServer) {
         StringBuilder sb = new StringBuilder();
         sb.append(lb.getAccountId()).append("_").append(lb.getId());
@@ -0,0 +1,73 @@
+package org.openstack.atlas.service.domain.repository;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.openstack.atlas.service.domain.entities.BlacklistItem;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+
+public class BlacklistRepositoryTest {
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private Query query;
+    @InjectMocks
+    private BlacklistRepository repository;
+
+    @Before
+    public void standUp() {
+        MockitoAnnotations.initMocks(this);
+        when(entityManager.createQuery(anyString())).thenReturn(query);
+        when(query.getResultList()).thenReturn(new ArrayList<BlacklistItem>());
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void shouldInvalidateRightAwayOutsideATransaction() throws Exception {
+        long before = repository.getBlacklistIndex().getVersion();
+        repository.invalidateBlacklistIndex();
+        Assert.assertEquals(before + 1, repository.getBlacklistIndex().getVersion());
+    }
+
+    @Test
+    public void shouldKeepIndexUntilTheTransactionCommits() throws Exception {
+        long before = repository.getBlacklistIndex().getVersion();
+        TransactionSynchronizationManager.initSynchronization();
+        repository.invalidateBlacklistIndex();
+        Assert.assertEquals(before, repository.getBlacklistIndex().getVersion());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        Assert.assertEquals(before + 1, repository.getBlacklistIndex().getVersion());
+    }
+
+    @Test
+    public void shouldNotInvalidateWhenTheTransactionRollsBack() throws Exception {
+        long before = repository.getBlacklistIndex().getVersion();
+        TransactionSynchronizationManager.initSynchronization();
+        repository.invalidateBlacklistIndex();
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        Assert.assertEquals(before, repository.getBlacklistIndex().getVersion());
+    }
+}
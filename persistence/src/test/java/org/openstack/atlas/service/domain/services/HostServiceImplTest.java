@@ -0,0 +1,109 @@
+package org.openstack.atlas.service.domain.services;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.openstack.atlas.service.domain.entities.Cluster;
+import org.openstack.atlas.service.domain.entities.Host;
+import org.openstack.atlas.service.domain.pojos.ClusterEndpointConfig;
+import org.openstack.atlas.service.domain.repository.HostRepository;
+import org.openstack.atlas.service.domain.services.impl.HostServiceImpl;
+import org.openstack.atlas.util.crypto.CryptoUtil;
+
+import java.util.ArrayList;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(Enclosed.class)
+public class HostServiceImplTest {
+
+    public static class WhenCachingClusterEndpointConfig {
+        HostServiceImpl hostService;
+        HostRepository hostRepository;
+        Cluster cluster;
+        Host endpointHost;
+
+        @Before
+        public void standUp() throws Exception {
+            hostRepository = mock(HostRepository.class);
+            hostService = new HostServiceImpl();
+            hostService.setHostRepository(hostRepository);
+
+            cluster = new Cluster();
+            cluster.setId(1);
+            cluster.setUsername("admin");
+            cluster.setPassword(CryptoUtil.encrypt("secret"));
+            endpointHost = new Host();
+            endpointHost.setId(10);
+
+            when(hostRepository.getRestEndPointHost(1)).thenReturn(endpointHost);
+            when(hostRepository.getFailoverHostNames(1)).thenReturn(new ArrayList<String>());
+            when(hostRepository.getFailoverHosts(1)).thenReturn(new ArrayList<Host>());
+        }
+
+        @Test
+        public void shouldLoadAndDecryptOncePerCluster() throws Exception {
+            ClusterEndpointConfig first = hostService.getClusterEndpointConfig(cluster);
+            ClusterEndpointConfig second = hostService.getClusterEndpointConfig(cluster);
+
+            Assert.assertEquals("secret", first.getPassword());
+            Assert.assertEquals("secret", second.getPassword());
+            Assert.assertEquals(endpointHost.getId(), second.getRestEndpointHost().getId());
+            verify(hostRepository, times(1)).getRestEndPointHost(1);
+        }
+
+        @Test
+        public void shouldGiveEachCallerItsOwnHosts() throws Exception {
+            endpointHost.setRestEndpointActive(Boolean.TRUE);
+            ClusterEndpointConfig first = hostService.getClusterEndpointConfig(cluster);
+            first.getRestEndpointHost().setRestEndpointActive(Boolean.FALSE);
+            ClusterEndpointConfig second = hostService.getClusterEndpointConfig(cluster);
+
+            Assert.assertNotSame(endpointHost, first.getRestEndpointHost());
+            Assert.assertNotSame(first.getRestEndpointHost(), second.getRestEndpointHost());
+            Assert.assertEquals(Boolean.TRUE, second.getRestEndpointHost().getRestEndpointActive());
+            Assert.assertEquals(Boolean.TRUE, endpointHost.getRestEndpointActive());
+        }
+
+        @Test
+        public void shouldReloadWhenCredentialsChange() throws Exception {
+            hostService.getClusterEndpointConfig(cluster);
+            cluster.setPassword(CryptoUtil.encrypt("rotated"));
+            ClusterEndpointConfig second = hostService.getClusterEndpointConfig(cluster);
+
+            Assert.assertEquals("rotated", second.getPassword());
+            verify(hostRepository, times(2)).getRestEndPointHost(1);
+        }
+
+        @Test
+        public void shouldMarkRestEndpointBadByIdAndReload() throws Exception {
+            Host dbHost = new Host();
+            dbHost.setId(10);
+            dbHost.setRestEndpointActive(Boolean.TRUE);
+            when(hostRepository.getById(10)).thenReturn(dbHost);
+
+            hostService.getClusterEndpointConfig(cluster);
+            hostService.setRestEndpointActive(10, Boolean.FALSE);
+            hostService.getClusterEndpointConfig(cluster);
+
+            Assert.assertEquals(Boolean.FALSE, dbHost.getRestEndpointActive());
+            verify(hostRepository).update(dbHost);
+            verify(hostRepository, times(2)).getRestEndPointHost(1);
+        }
+
+        @Test
+        public void shouldReloadAfterHostUpdate() throws Exception {
+            ClusterEndpointConfig first = hostService.getClusterEndpointConfig(cluster);
+            hostService.update(endpointHost);
+            ClusterEndpointConfig second = hostService.getClusterEndpointConfig(cluster);
+
+            Assert.assertNotSame(first, second);
+            verify(hostRepository, times(2)).getRestEndPointHost(1);
+        }
+    }
+}
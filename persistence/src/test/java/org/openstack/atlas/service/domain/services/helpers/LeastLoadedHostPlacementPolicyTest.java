@@ -0,0 +1,67 @@
+package org.openstack.atlas.service.domain.services.helpers;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack.atlas.service.domain.entities.Host;
+import org.openstack.atlas.service.domain.pojos.HostLoad;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LeastLoadedHostPlacementPolicyTest {
+
+    private LeastLoadedHostPlacementPolicy policy;
+    private List<HostLoad> candidates;
+
+    @Before
+    public void standUp() {
+        policy = new LeastLoadedHostPlacementPolicy();
+        candidates = new ArrayList<HostLoad>();
+    }
+
+    @Test
+    public void shouldReturnNullWithoutCandidates() {
+        Assert.assertNull(policy.choose(candidates));
+    }
+
+    @Test
+    public void shouldPreferFewestMaxConcurrentConnections() {
+        candidates.add(hostLoad(1, 200, 0));
+        candidates.add(hostLoad(2, 100, 50));
+        candidates.add(hostLoad(3, 300, 0));
+        Assert.assertEquals(Integer.valueOf(2), policy.choose(candidates).getHost().getId());
+    }
+
+    @Test
+    public void shouldBreakConnectionTiesOnLoadBalancerCount() {
+        candidates.add(hostLoad(1, 100, 12));
+        candidates.add(hostLoad(2, 100, 3));
+        candidates.add(hostLoad(3, 100, 7));
+        Assert.assertEquals(Integer.valueOf(2), policy.choose(candidates).getHost().getId());
+    }
+
+    @Test
+    public void shouldGiveFullTiesToFirstCandidate() {
+        candidates.add(hostLoad(4, 100, 0));
+        candidates.add(hostLoad(5, 100, 0));
+        Assert.assertEquals(Integer.valueOf(4), policy.choose(candidates).getHost().getId());
+    }
+
+    @Test
+    public void shouldSkipHostsWithoutMaxConcurrentConnections() {
+        candidates.add(hostLoad(1, null, 0));
+        candidates.add(hostLoad(2, 500, 40));
+        Assert.assertEquals(Integer.valueOf(2), policy.choose(candidates).getHost().getId());
+
+        candidates.remove(1);
+        Assert.assertNull(policy.choose(candidates));
+    }
+
+    private static HostLoad hostLoad(Integer id, Integer maxConcurrentConnections, long loadBalancerCount) {
+        Host host = new Host();
+        host.setId(id);
+        host.setMaxConcurrentConnections(maxConcurrentConnections);
+        return new HostLoad(host, loadBalancerCount);
+    }
+}
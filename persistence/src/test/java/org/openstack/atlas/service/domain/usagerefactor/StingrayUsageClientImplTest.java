@@ -0,0 +1,182 @@
+package org.openstack.atlas.service.domain.usagerefactor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack.atlas.service.domain.entities.Host;
+import org.openstack.atlas.service.domain.entities.LoadBalancer;
+import org.openstack.atlas.usagerefactor.SnmpStats;
+import org.openstack.atlas.usagerefactor.SnmpUsage;
+import org.openstack.atlas.usagerefactor.snmp.StingrayUsageClientImpl;
+import org.openstack.atlas.util.snmp.FakeStingraySnmpAgent;
+import org.openstack.atlas.util.snmp.OIDConstants;
+import org.openstack.atlas.util.snmp.StingraySnmpClient;
+import org.openstack.atlas.util.snmp.StingraySnmpSession;
+import org.snmp4j.smi.Null;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class StingrayUsageClientImplTest {
+    private FakeStingraySnmpAgent agent;
+    private StingrayUsageClientImpl client;
+    private Host host;
+    private LoadBalancer lb;
+
+    @Before
+    public void standUp() throws Exception {
+        agent = new FakeStingraySnmpAgent();
+        // Another load balancer on the host that must not leak into the results
+        agent.addVirtualServer(OIDConstants.VS_BYTES_IN, "1234_99", 999L);
+        agent.addVirtualServer(OIDConstants.VS_BYTES_IN, "1234_99_S", 999L);
+
+        client = new StingrayUsageClientImpl();
+        client.setSnmpPort(agent.start());
+
+        host = new Host();
+        host.setId(1);
+        host.setManagementIp("127.0.0.1");
+        lb = new LoadBalancer();
+        lb.setId(5);
+        lb.setAccountId(1234);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        StingraySnmpSession.closeAll();
+        agent.stop();
+    }
+
+    @Test
+    public void shouldReadVirtualServerAndShadowServerUsage() throws Exception {
+        agent.addVirtualServer(OIDConstants.VS_BYTES_IN, "1234_5", 100L);
+        agent.addVirtualServer(OIDConstants.VS_BYTES_OUT, "1234_5", 200L);
+        agent.addVirtualServer(OIDConstants.VS_CURRENT_CONNECTIONS, "1234_5", 3L);
+        agent.addVirtualServer(OIDConstants.VS_BYTES_IN, "1234_5_S", 10L);
+        agent.addVirtualServer(OIDConstants.VS_BYTES_OUT, "1234_5_S", 20L);
+        agent.addVirtualServer(OIDConstants.VS_CURRENT_CONNECTIONS, "1234_5_S", 1L);
+
+        SnmpUsage usage = client.getVirtualServerUsage(host, lb);
+
+        Assert.assertEquals(5, usage.getLoadbalancerId());
+        Assert.assertEquals(1, usage.getHostId());
+        Assert.assertEquals(100L, usage.getBytesIn());
+        Assert.assertEquals(200L, usage.getBytesOut());
+        Assert.assertEquals(3, usage.getConcurrentConnections());
+        Assert.assertEquals(10L, usage.getBytesInSsl());
+        Assert.assertEquals(20L, usage.getBytesOutSsl());
+        Assert.assertEquals(1, usage.getConcurrentConnectionsSsl());
+        // Both servers' columns go out in one GET
+        Assert.assertEquals(1, agent.getRequestCount());
+    }
+
+    @Test
+    public void shouldDefaultMissingUsageToMinusOne() throws Exception {
+        agent.addVirtualServer(OIDConstants.VS_BYTES_IN, "1234_5", 100L);
+
+        SnmpUsage usage = client.getVirtualServerUsage(host, lb);
+
+        Assert.assertEquals(100L, usage.getBytesIn());
+        Assert.assertEquals(-1L, usage.getBytesOut());
+        Assert.assertEquals(-1, usage.getConcurrentConnections());
+        Assert.assertEquals(-1L, usage.getBytesInSsl());
+        Assert.assertEquals(-1L, usage.getBytesOutSsl());
+        Assert.assertEquals(-1, usage.getConcurrentConnectionsSsl());
+    }
+
+    @Test
+    public void shouldTreatExceptionAndNullValuesAsMissing() throws Exception {
+        agent.put(StingraySnmpClient.getOidFromVirtualServerName(OIDConstants.VS_BYTES_IN, "1234_5"), Null.noSuchObject);
+        agent.put(StingraySnmpClient.getOidFromVirtualServerName(OIDConstants.VS_BYTES_OUT, "1234_5"), new Null());
+        agent.addVirtualServer(OIDConstants.VS_CURRENT_CONNECTIONS, "1234_5", 3L);
+
+        SnmpUsage usage = client.getVirtualServerUsage(host, lb);
+        Assert.assertEquals(-1L, usage.getBytesIn());
+        Assert.assertEquals(-1L, usage.getBytesOut());
+        Assert.assertEquals(3, usage.getConcurrentConnections());
+
+        SnmpStats stats = client.getVirtualServerStats(host, lb);
+        Assert.assertEquals(3, stats.getConcurrentConnections());
+    }
+
+    @Test
+    public void shouldReadVirtualServerAndShadowServerStats() throws Exception {
+        agent.addVirtualServer(OIDConstants.VS_CURRENT_CONNECTIONS, "1234_5", 3L);
+        agent.addVirtualServer(OIDConstants.VS_MAX_CONNECTIONS, "1234_5", 30L);
+        agent.addVirtualServer(OIDConstants.VS_CONNECT_TIMED_OUT, "1234_5", 4L);
+        agent.addVirtualServer(OIDConstants.VS_DATA_TIMED_OUT, "1234_5", 5L);
+        agent.addVirtualServer(OIDConstants.VS_KEEPALIVE_TIMED_OUT, "1234_5", 6L);
+        agent.addVirtualServer(OIDConstants.VS_CONNECTION_ERRORS, "1234_5", 7L);
+        agent.addVirtualServer(OIDConstants.VS_CONNECTION_FAILURES, "1234_5", 8L);
+        agent.addVirtualServer(OIDConstants.VS_MAX_CONNECTIONS, "1234_5_S", 12L);
+
+        SnmpStats stats = client.getVirtualServerStats(host, lb);
+
+        Assert.assertEquals(5, stats.getLoadbalancerId());
+        Assert.assertEquals(1, stats.getHostId());
+        Assert.assertEquals(3, stats.getConcurrentConnections());
+        Assert.assertEquals(30, stats.getMaxConnections());
+        Assert.assertEquals(4, stats.getConnectTimedOut());
+        Assert.assertEquals(5, stats.getDataTimedOut());
+        Assert.assertEquals(6, stats.getKeepaliveTimedOut());
+        Assert.assertEquals(7, stats.getConnectionErrors());
+        Assert.assertEquals(8, stats.getConnectionFailures());
+        Assert.assertEquals(12, stats.getMaxConnectionsSsl());
+    }
+
+    @Test
+    public void shouldDefaultMissingStatsToZero() throws Exception {
+        SnmpStats stats = client.getVirtualServerStats(host, lb);
+
+        Assert.assertEquals(0, stats.getConcurrentConnections());
+        Assert.assertEquals(0, stats.getMaxConnections());
+        Assert.assertEquals(0, stats.getConnectionFailures());
+        Assert.assertEquals(0, stats.getConcurrentConnectionsSsl());
+        Assert.assertEquals(0, stats.getMaxConnectionsSsl());
+        Assert.assertEquals(0, stats.getConnectionFailuresSsl());
+    }
+
+    @Test
+    public void shouldSplitGetsTheHostRefuses() throws Exception {
+        agent.addVirtualServer(OIDConstants.VS_CONNECTION_FAILURES, "1234_5", 8L);
+        agent.addVirtualServer(OIDConstants.VS_CONNECTION_FAILURES, "1234_5_S", 9L);
+        agent.setMaxResponseVbs(4);
+
+        SnmpStats stats = client.getVirtualServerStats(host, lb);
+
+        Assert.assertEquals(8, stats.getConnectionFailures());
+        Assert.assertEquals(9, stats.getConnectionFailuresSsl());
+        Assert.assertTrue(agent.getRequestCount() > 1);
+    }
+
+    @Test
+    public void shouldNotWaitBehindAWalkOfTheSameHost() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            agent.addVirtualServer(OIDConstants.VS_BYTES_IN, "1234_" + (1000 + i), i);
+        }
+        agent.addVirtualServer(OIDConstants.VS_BYTES_IN, "1234_5", 100L);
+        // Small responses so the walk takes several delayed GETBULKs
+        agent.setMaxResponseVbs(30);
+        agent.setBulkResponseDelayMillis(200);
+        final AtomicReference<Map<Integer, SnmpUsage>> hostUsage = new AtomicReference<Map<Integer, SnmpUsage>>();
+        Thread walk = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    hostUsage.set(client.getHostUsage(host));
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        walk.start();
+        Thread.sleep(100);
+
+        Assert.assertEquals(100L, client.getVirtualServerUsage(host, lb).getBytesIn());
+        // The per event GET went out between the walk's first few delayed GETBULKs
+        Assert.assertTrue(agent.getRequestCount() < 4);
+        walk.join();
+        Assert.assertEquals(100L, hostUsage.get().get(5).getBytesIn());
+    }
+}
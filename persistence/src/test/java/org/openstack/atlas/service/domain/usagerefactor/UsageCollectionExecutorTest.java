@@ -0,0 +1,237 @@
+package org.openstack.atlas.service.domain.usagerefactor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstack.atlas.service.domain.entities.Host;
+import org.openstack.atlas.usagerefactor.collection.UsageCollectionExecutor;
+import org.openstack.atlas.usagerefactor.collection.UsageCollectionExecutor.RejectionPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UsageCollectionExecutorTest {
+    private UsageCollectionExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldKeepThreadCountFixedUnderEventBurst() throws Exception {
+        executor = new UsageCollectionExecutor(8, 50, RejectionPolicy.CALLER_RUNS, 3, 60000);
+        final List<Host> hosts = hosts(4);
+        final ConcurrentMap<Integer, AtomicInteger> running = new ConcurrentHashMap<Integer, AtomicInteger>();
+        final AtomicInteger maxPerHost = new AtomicInteger();
+        for (Host host : hosts) {
+            running.put(host.getId(), new AtomicInteger());
+        }
+
+        // 20 listener threads each handling 250 events, one call per host per event
+        final int events = 250;
+        final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> listeners = new ArrayList<Thread>();
+        for (int l = 0; l < 20; l++) {
+            Thread listener = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int e = 0; e < events; e++) {
+                        for (final Host host : hosts) {
+                            try {
+                                Future<Integer> f = executor.submit(host, new Callable<Integer>() {
+                                    @Override
+                                    public Integer call() throws Exception {
+                                        int now = running.get(host.getId()).incrementAndGet();
+                                        updateMax(maxPerHost, now);
+                                        Thread.sleep(0, 100000);
+                                        running.get(host.getId()).decrementAndGet();
+                                        return host.getId();
+                                    }
+                                });
+                                synchronized (futures) {
+                                    futures.add(f);
+                                }
+                            } catch (RejectedExecutionException ex) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+            listeners.add(listener);
+            listener.start();
+        }
+        for (Thread listener : listeners) {
+            listener.join();
+        }
+        for (Future<Integer> f : futures) {
+            Assert.assertNotNull(f.get(30, TimeUnit.SECONDS));
+        }
+
+        Assert.assertEquals(0, failures.get());
+        Assert.assertEquals(20 * events * hosts.size(), futures.size());
+        Assert.assertEquals(futures.size(), executor.getCompletedCount());
+        Assert.assertEquals(8, executor.getPoolSize());
+        Assert.assertEquals(8, executor.getLargestPoolSize());
+        Assert.assertTrue("per host max was " + maxPerHost.get(), maxPerHost.get() <= 3);
+    }
+
+    @Test
+    public void shouldRejectWhenQueueIsFull() throws Exception {
+        executor = new UsageCollectionExecutor(1, 1, RejectionPolicy.REJECT, 10, 1000);
+        Host host = hosts(1).get(0);
+        final CountDownLatch release = new CountDownLatch(1);
+        Callable<Integer> blocked = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                release.await();
+                return 1;
+            }
+        };
+        Future<Integer> running = executor.submit(host, blocked);
+        waitForActive(1);
+        Future<Integer> queued = executor.submit(host, blocked);
+        try {
+            executor.submit(host, blocked);
+            Assert.fail("Expected the full queue to reject");
+        } catch (RejectedExecutionException expected) {
+        }
+        Assert.assertEquals(1, executor.getRejectedCount());
+
+        release.countDown();
+        Assert.assertEquals(Integer.valueOf(1), running.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Integer.valueOf(1), queued.get(5, TimeUnit.SECONDS));
+        // The rejected call gave its host slot back
+        for (int i = 0; i < 10; i++) {
+            executor.submit(host, blocked).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void shouldRunInCallerWhenQueueIsFull() throws Exception {
+        executor = new UsageCollectionExecutor(1, 1, RejectionPolicy.CALLER_RUNS, 10, 1000);
+        Host host = hosts(1).get(0);
+        final CountDownLatch release = new CountDownLatch(1);
+        Callable<String> blocked = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                release.await();
+                return Thread.currentThread().getName();
+            }
+        };
+        Future<String> running = executor.submit(host, blocked);
+        waitForActive(1);
+        Future<String> queued = executor.submit(host, blocked);
+        Future<String> inCaller = executor.submit(host, new Callable<String>() {
+            @Override
+            public String call() {
+                return Thread.currentThread().getName();
+            }
+        });
+
+        Assert.assertTrue(inCaller.isDone());
+        Assert.assertEquals(Thread.currentThread().getName(), inCaller.get());
+        Assert.assertEquals(1, executor.getRanInCallerCount());
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldGiveUpWhenHostStaysAtItsCap() throws Exception {
+        executor = new UsageCollectionExecutor(4, 10, RejectionPolicy.CALLER_RUNS, 1, 50);
+        List<Host> hosts = hosts(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        Callable<Integer> blocked = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                release.await();
+                return 1;
+            }
+        };
+        Future<Integer> first = executor.submit(hosts.get(0), blocked);
+        try {
+            executor.submit(hosts.get(0), blocked);
+            Assert.fail("Expected the host cap to turn the call away");
+        } catch (RejectedExecutionException expected) {
+        }
+        Assert.assertEquals(1, executor.getHostWaitTimeoutCount());
+
+        // Other hosts aren't held up
+        Future<Integer> other = executor.submit(hosts.get(1), blocked);
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        other.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shouldGiveBackHostSlotsOfCancelledCalls() throws Exception {
+        executor = new UsageCollectionExecutor(1, 10, RejectionPolicy.REJECT, 3, 50);
+        Host host = hosts(1).get(0);
+        final CountDownLatch release = new CountDownLatch(1);
+        Callable<Integer> blocked = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                release.await();
+                return 1;
+            }
+        };
+        Future<Integer> running = executor.submit(host, blocked);
+        waitForActive(1);
+        Future<Integer> queued1 = executor.submit(host, blocked);
+        Future<Integer> queued2 = executor.submit(host, blocked);
+        Assert.assertEquals(0, executor.getAvailablePermits(host));
+
+        Assert.assertTrue(queued1.cancel(false));
+        Assert.assertTrue(queued2.cancel(false));
+        Assert.assertEquals(2, executor.getAvailablePermits(host));
+
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getAvailablePermits(host) < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(3, executor.getAvailablePermits(host));
+        // and the host can still take a full load of calls
+        for (int i = 0; i < 3; i++) {
+            executor.submit(host, blocked);
+        }
+    }
+
+    private void waitForActive(int active) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getActiveCount() < active && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(active, executor.getActiveCount());
+    }
+
+    private static List<Host> hosts(int count) {
+        List<Host> hosts = new ArrayList<Host>();
+        for (int i = 1; i <= count; i++) {
+            Host host = new Host();
+            host.setId(i);
+            hosts.add(host);
+        }
+        return hosts;
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+}
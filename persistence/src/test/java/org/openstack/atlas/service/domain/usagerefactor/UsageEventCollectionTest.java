@@ -31,6 +31,7 @@ import org.openstack.atlas.usagerefactor.SnmpUsage;
 import org.openstack.atlas.usagerefactor.collection.SnmpStatsCollector;
 import org.openstack.atlas.usagerefactor.snmp.StingrayUsageClient;
 import org.openstack.atlas.usagerefactor.collection.SnmpUsageCollector;
+import org.openstack.atlas.usagerefactor.collection.UsageCollectionExecutor;
 import org.openstack.atlas.usagerefactor.collection.UsageEventCollection;
 import org.openstack.atlas.usagerefactor.processor.UsageEventProcessor;
 import org.openstack.atlas.usagerefactor.processor.impl.UsageEventProcessorImpl;
@@ -81,7 +82,7 @@ public class UsageEventCollectionTest {
         HostRepository hostRepository;
 
         @Mock
-        ExecutorService executorService;
+        UsageCollectionExecutor usageCollectionExecutor;
 
         @Mock
         Executors executors;
@@ -113,15 +114,14 @@ public class UsageEventCollectionTest {
         @Ignore
         @Test
         public void shouldNotFailWhenCollectingUsageRecords() throws EntityNotFoundException, DeletedStatusException, InterruptedException, UsageEventCollectionException {
-            mock(ExecutorService.class);
-            PowerMockito.when(executorService.invokeAll(ArgumentMatchers.<Callable<Object>>anyCollection())).thenReturn(new ArrayList<java.util.concurrent.Future<Object>>());
+            PowerMockito.when(usageCollectionExecutor.submit(ArgumentMatchers.<Host>any(), ArgumentMatchers.<Callable<Object>>any())).thenReturn(mock(Future.class));
 
             List<Host> hosts = new ArrayList<Host>();
             Host host = new Host();
             hosts.add(host);
 
             when(hostRepository.getAll()).thenReturn(hosts);
-            List<Future<SnmpUsage>> futures = usageEventCollection.collectUsageRecords(executorService, new UsageEventProcessorImpl(), hosts, new LoadBalancer());
+            List<Future<SnmpUsage>> futures = usageEventCollection.collectUsageRecords(usageCollectionExecutor, new UsageEventProcessorImpl(), hosts, new LoadBalancer());
 
             Assert.assertNotNull(futures);
             usageEventCollection.collectUsageAndProcessUsageRecords(new LoadBalancer(), UsageEvent.SSL_ONLY_ON, eventTime);
@@ -0,0 +1,58 @@
+package org.openstack.atlas.service.domain.util;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack.atlas.service.domain.entities.BlacklistItem;
+import org.openstack.atlas.service.domain.entities.BlacklistType;
+import org.openstack.atlas.service.domain.entities.IpVersion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BlacklistIndexTest {
+    private BlacklistIndex index;
+
+    @Before
+    public void standUp() throws Exception {
+        List<BlacklistItem> items = new ArrayList<BlacklistItem>();
+        items.add(item("10.0.0.0/8", IpVersion.IPV4, BlacklistType.NODE));
+        items.add(item("192.168.0.0/16", IpVersion.IPV4, BlacklistType.ACCESSLIST));
+        items.add(item("172.16.0.0/12", IpVersion.IPV4, null));
+        items.add(item("2001:07FA:0001::/48", IpVersion.IPV6, BlacklistType.NODE));
+        index = BlacklistIndex.build(items, 7);
+    }
+
+    @Test
+    public void shouldKeepNodeAndAccessListViewsApart() throws Exception {
+        Assert.assertTrue(index.isNodeBlacklisted("10.1.2.3"));
+        Assert.assertFalse(index.isAccessListBlacklisted("10.1.2.3"));
+        Assert.assertTrue(index.isAccessListBlacklisted("192.168.1.1"));
+        Assert.assertFalse(index.isNodeBlacklisted("192.168.1.1"));
+    }
+
+    @Test
+    public void shouldApplyUntypedItemsToBothViews() throws Exception {
+        Assert.assertTrue(index.isNodeBlacklisted("172.20.0.1"));
+        Assert.assertTrue(index.isAccessListBlacklisted("172.20.0.1"));
+    }
+
+    @Test
+    public void shouldMatchIPv6Nodes() throws Exception {
+        Assert.assertTrue(index.isNodeBlacklisted("2001:7fa:1::10"));
+        Assert.assertFalse(index.isNodeBlacklisted("2001:7fa:2::10"));
+    }
+
+    @Test
+    public void shouldRememberVersion() {
+        Assert.assertEquals(7, index.getVersion());
+    }
+
+    private static BlacklistItem item(String cidr, IpVersion ipVersion, BlacklistType type) {
+        BlacklistItem item = new BlacklistItem();
+        item.setCidrBlock(cidr);
+        item.setIpVersion(ipVersion);
+        item.setBlacklistType(type);
+        return item;
+    }
+}
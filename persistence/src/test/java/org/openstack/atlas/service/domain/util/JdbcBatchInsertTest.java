@@ -0,0 +1,138 @@
+package org.openstack.atlas.service.domain.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JdbcBatchInsertTest {
+
+    private static final JdbcBatchInsert.RowBinder<Integer> BINDER = new JdbcBatchInsert.RowBinder<Integer>() {
+        @Override
+        public void bind(PreparedStatement ps, Integer row) throws SQLException {
+            ps.setInt(1, row);
+            ps.setString(2, "row" + row);
+        }
+    };
+
+    private Connection connection;
+    private PreparedStatement ps;
+    private int rowsInBatch;
+    private long nextId;
+
+    @Before
+    public void standUp() throws SQLException {
+        connection = mock(Connection.class);
+        ps = mock(PreparedStatement.class);
+        rowsInBatch = 0;
+        nextId = 100;
+        when(connection.prepareStatement(anyString(), anyInt())).thenReturn(ps);
+        when(ps.executeBatch()).thenAnswer(new Answer<int[]>() {
+            @Override
+            public int[] answer(InvocationOnMock invocation) {
+                return new int[rowsInBatch];
+            }
+        });
+        when(ps.getGeneratedKeys()).thenAnswer(new Answer<ResultSet>() {
+            @Override
+            public ResultSet answer(InvocationOnMock invocation) throws SQLException {
+                return generatedKeys();
+            }
+        });
+        countAddBatch();
+    }
+
+    @Test
+    public void shouldBuildParameterizedInsert() {
+        JdbcBatchInsert<Integer> insert = new JdbcBatchInsert<Integer>("lb_usage", new String[]{"a", "b"}, 10, BINDER);
+        assertEquals("INSERT INTO lb_usage(a, b) VALUES (?, ?)", insert.getInsertSql());
+    }
+
+    @Test
+    public void shouldFallBackToDefaultChunkSize() {
+        JdbcBatchInsert<Integer> insert = new JdbcBatchInsert<Integer>("lb_usage", new String[]{"a"}, 0, BINDER);
+        assertEquals(JdbcBatchInsert.DEFAULT_CHUNK_SIZE, insert.getChunkSize());
+    }
+
+    @Test
+    public void shouldExecuteInChunksAndReturnGeneratedIdsInOrder() throws SQLException {
+        JdbcBatchInsert<Integer> insert = new JdbcBatchInsert<Integer>("lb_usage", new String[]{"a", "b"}, 2, BINDER);
+        List<Long> ids = insert.insert(connection, Arrays.asList(1, 2, 3, 4, 5));
+
+        verify(connection).prepareStatement("INSERT INTO lb_usage(a, b) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS);
+        verify(ps, times(5)).addBatch();
+        verify(ps, times(3)).executeBatch();
+        verify(ps).setInt(1, 5);
+        verify(ps).setString(2, "row5");
+        verify(ps).close();
+        assertEquals(Arrays.asList(100L, 101L, 102L, 103L, 104L), ids);
+    }
+
+    @Test
+    public void shouldNotTouchConnectionForNoRows() throws SQLException {
+        JdbcBatchInsert<Integer> insert = new JdbcBatchInsert<Integer>("lb_usage", new String[]{"a"}, 2, BINDER);
+        assertEquals(0, insert.execute(null, new ArrayList<Integer>()).size());
+    }
+
+    @Test
+    public void shouldOnlyFlagMysqlUrlsWithoutBatchRewrite() {
+        assertFalse(JdbcBatchInsert.isBatchRewriteEnabled("jdbc:mysql://db:3306/loadbalancing_usage"));
+        assertFalse(JdbcBatchInsert.isBatchRewriteEnabled("jdbc:mysql://db:3306/loadbalancing_usage?rewriteBatchedStatements=false"));
+        assertTrue(JdbcBatchInsert.isBatchRewriteEnabled("jdbc:mysql://db:3306/loadbalancing_usage?useUnicode=true&rewriteBatchedStatements=true"));
+        assertTrue(JdbcBatchInsert.isBatchRewriteEnabled("jdbc:h2:mem:unit-testing-jpa"));
+        assertTrue(JdbcBatchInsert.isBatchRewriteEnabled(null));
+    }
+
+    private void countAddBatch() throws SQLException {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                rowsInBatch++;
+                return null;
+            }
+        }).when(ps).addBatch();
+    }
+
+    private ResultSet generatedKeys() throws SQLException {
+        final List<Long> keys = new ArrayList<Long>();
+        for (int i = 0; i < rowsInBatch; i++) {
+            keys.add(nextId++);
+        }
+        rowsInBatch = 0;
+        ResultSet rs = mock(ResultSet.class);
+        final int[] cursor = {-1};
+        when(rs.next()).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                return ++cursor[0] < keys.size();
+            }
+        });
+        when(rs.getLong(1)).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                return keys.get(cursor[0]);
+            }
+        });
+        return rs;
+    }
+}
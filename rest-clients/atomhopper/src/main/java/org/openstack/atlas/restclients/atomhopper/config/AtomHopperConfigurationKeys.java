@@ -19,5 +19,10 @@ public enum AtomHopperConfigurationKeys implements ConfigurationKey {
     ahusl_auth_password,
     ahusl_log_requests,
     ahusl_num_attempts,
-    ahusl_run_failed_entries
+    ahusl_run_failed_entries,
+    ahusl_compact_xml,
+    ahusl_window_max_retries,
+    ahusl_window_target_latency_millis,
+    ahusl_window_backoff_base_millis,
+    ahusl_window_backoff_max_millis
 }
@@ -51,6 +51,7 @@ import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.FileEntity;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.params.BasicHttpParams;
@@ -3066,6 +3067,30 @@ public String storeObjectAs(String container, String name, HttpEntity entity, Ma
     	this.connectionTimeOut = connectionTimeOut;
     }
 
+    /**
+     * Lets at least <code>maxConnections</code> requests to the storage host be in
+     * flight at once.  Limits already higher than that are left alone.
+     *
+     * @param maxConnections The number of concurrent requests the caller will make
+     */
+    public void ensureMaxConnectionsPerRoute(int maxConnections)
+    {
+    	ClientConnectionManager cm = client.getConnectionManager();
+    	if (cm instanceof ThreadSafeClientConnManager) {
+    		ThreadSafeClientConnManager pool = (ThreadSafeClientConnManager) cm;
+    		pool.setMaxTotal(Math.max(pool.getMaxTotal(), maxConnections));
+    		pool.setDefaultMaxPerRoute(Math.max(pool.getDefaultMaxPerRoute(), maxConnections));
+    	}
+    	else if (cm instanceof PoolingClientConnectionManager) {
+    		PoolingClientConnectionManager pool = (PoolingClientConnectionManager) cm;
+    		pool.setMaxTotal(Math.max(pool.getMaxTotal(), maxConnections));
+    		pool.setDefaultMaxPerRoute(Math.max(pool.getDefaultMaxPerRoute(), maxConnections));
+    	}
+    	else {
+    		logger.warn("Can't raise connections per route on " + cm + ", requests may queue for a connection");
+    	}
+    }
+
     /**
      * @return The storage URL on the other end of the ReST api
      */
@@ -0,0 +1,240 @@
+package com.rackspacecloud.client.cloudfiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpException;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.log4j.Logger;
+import org.openstack.atlas.util.common.CloudFilesSegment;
+import org.openstack.atlas.util.common.CloudFilesSegmentContainer;
+import org.openstack.atlas.util.common.SegmentedInputStream;
+import org.openstack.atlas.util.converters.BitConverters;
+import org.openstack.atlas.util.staticutils.StaticFileUtils;
+
+/**
+ * Uploads a file to Cloud Files as a segmented (dynamic large) object.
+ *
+ * Segments are PUT concurrently by at most maxWorkers threads. Every worker
+ * reads its segment with positional reads over one shared FileChannel and
+ * digests the bytes as they are written to the socket, so the file is only
+ * read once. Fragments the caller reports as already finished are skipped,
+ * which lets an interrupted upload resume where it left off, and the manifest
+ * is only written once every segment is stored.
+ *
+ * <pre>
+ *  Set&lt;Integer&gt; finished = lzoService.getFinishedCloudFilesLzoFrags(hourKey);
+ *  uploader.upload("logs", "2018010100.lzo", sc, finished, new SegmentListener() {
+ *      public void segmentStored(CloudFilesSegment seg) {
+ *          lzoService.finishCloudFilesLzo(hourKey, seg.getFragNumber(), seg.getMd5sum());
+ *      }
+ *  });
+ * </pre>
+ */
+public class FilesSegmentUploader {
+
+    private static final Logger logger = Logger.getLogger(FilesSegmentUploader.class);
+    private static final String MD5 = "MD5";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private final FilesClient client;
+    private final int maxWorkers;
+    private String contentType = DEFAULT_CONTENT_TYPE;
+
+    /**
+     * Told about each segment as soon as Cloud Files has stored it, so the
+     * caller can record it as finished before the rest of the upload is done.
+     */
+    public interface SegmentListener {
+
+        public void segmentStored(CloudFilesSegment segment) throws Exception;
+    }
+
+    public FilesSegmentUploader(FilesClient client, int maxWorkers) {
+        this.client = client;
+        this.maxWorkers = Math.max(1, maxWorkers);
+        // Otherwise the connection manager's per route default (2) caps how many workers actually send
+        client.ensureMaxConnectionsPerRoute(this.maxWorkers);
+    }
+
+    /**
+     * @param container      The container the segments and manifest go in
+     * @param objectName     The name of the manifest object, segments are stored under objectName/
+     * @param sc             The segments of the file to upload
+     * @param finishedFrags  Fragment numbers already stored by an earlier attempt, may be null
+     * @param listener       Called once per newly stored segment, may be null
+     * @return The number of segments stored by this call
+     * @throws IOException    A segment could not be read or sent
+     * @throws FilesException Cloud Files rejected a segment or the manifest
+     */
+    public int upload(final String container, final String objectName, CloudFilesSegmentContainer sc,
+            Set<Integer> finishedFrags, final SegmentListener listener) throws IOException, HttpException, FilesException, InterruptedException {
+        List<CloudFilesSegment> pending = new ArrayList<CloudFilesSegment>();
+        for (CloudFilesSegment segment : sc.getSegments()) {
+            if (finishedFrags == null || !finishedFrags.contains(segment.getFragNumber())) {
+                pending.add(segment);
+            }
+        }
+        logger.info(String.format("Uploading %d of %d segments of %s to %s/%s", pending.size(),
+                sc.getSegments().size(), sc.getFileName(), container, objectName));
+
+        if (!pending.isEmpty()) {
+            File file = new File(StaticFileUtils.expandUser(sc.getFileName()));
+            RandomAccessFile ra = new RandomAccessFile(file, "r");
+            final FileChannel channel = ra.getChannel();
+            ExecutorService workers = Executors.newFixedThreadPool(Math.min(maxWorkers, pending.size()));
+            try {
+                List<Future<Void>> results = new ArrayList<Future<Void>>();
+                for (final CloudFilesSegment segment : pending) {
+                    results.add(workers.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            storeSegment(container, objectName, channel, segment);
+                            if (listener != null) {
+                                listener.segmentStored(segment);
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> result : results) {
+                    waitFor(result);
+                }
+            } finally {
+                workers.shutdownNow();
+                StaticFileUtils.close(ra);
+            }
+        }
+
+        client.createManifestObject(container, contentType, objectName, container + "/" + segmentPrefix(objectName),
+                Collections.<String, String>emptyMap());
+        return pending.size();
+    }
+
+    public static String segmentPrefix(String objectName) {
+        return objectName + "/";
+    }
+
+    // Zero padded so Cloud Files, which joins segments in name order, joins them in frag order
+    public static String segmentName(String objectName, int fragNumber) {
+        return String.format("%s%08d", segmentPrefix(objectName), fragNumber);
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    private void storeSegment(String container, String objectName, FileChannel channel, CloudFilesSegment segment) throws IOException, HttpException, FilesException {
+        SegmentEntity entity = new SegmentEntity(channel, segment);
+        entity.setContentType(contentType);
+        String name = segmentName(objectName, segment.getFragNumber());
+        String etag = client.storeObjectAs(container, name, entity, new HashMap<String, String>(), null);
+        String md5sum = entity.getMd5sum();
+        if (etag == null || !etag.equalsIgnoreCase(md5sum)) {
+            throw new FilesException(String.format("Segment %s/%s came back with etag %s but %s was sent",
+                    container, name, etag, md5sum), null, null);
+        }
+        segment.setMd5sum(md5sum);
+    }
+
+    private static void waitFor(Future<Void> result) throws IOException, HttpException, FilesException, InterruptedException {
+        try {
+            result.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof FilesException) {
+                throw (FilesException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof HttpException) {
+                throw (HttpException) cause;
+            }
+            throw new FilesException("Segment upload failed", cause);
+        }
+    }
+
+    /*
+     * Streams the segment straight off the shared channel and digests it on
+     * the way out. Repeatable, since FilesClient resends the entity after a
+     * re-login, and each send digests from scratch.
+     */
+    private static class SegmentEntity extends AbstractHttpEntity {
+
+        private static final int BUFFSIZE = 64 * 1024;
+        private final FileChannel channel;
+        private final CloudFilesSegment segment;
+        private volatile String md5sum;
+
+        private SegmentEntity(FileChannel channel, CloudFilesSegment segment) {
+            this.channel = channel;
+            this.segment = segment;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return segment.getSize();
+        }
+
+        @Override
+        public InputStream getContent() {
+            return new SegmentedInputStream(channel, segment.getOffset(), segment.getSize());
+        }
+
+        @Override
+        public void writeTo(OutputStream os) throws IOException {
+            MessageDigest md;
+            try {
+                md = MessageDigest.getInstance(MD5);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IOException(ex);
+            }
+            InputStream is = new DigestInputStream(getContent(), md);
+            try {
+                byte[] buff = new byte[BUFFSIZE];
+                int nBytes;
+                while ((nBytes = is.read(buff, 0, BUFFSIZE)) > 0) {
+                    os.write(buff, 0, nBytes);
+                }
+                os.flush();
+            } finally {
+                StaticFileUtils.close(is);
+            }
+            md5sum = BitConverters.bytes2hex(md.digest());
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+
+        private String getMd5sum() {
+            return md5sum;
+        }
+    }
+}
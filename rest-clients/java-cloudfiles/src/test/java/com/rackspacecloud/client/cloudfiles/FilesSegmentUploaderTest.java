@@ -0,0 +1,176 @@
+package com.rackspacecloud.client.cloudfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.openstack.atlas.util.common.CloudFilesSegment;
+import org.openstack.atlas.util.common.CloudFilesSegmentContainer;
+import org.openstack.atlas.util.converters.BitConverters;
+
+import junit.framework.TestCase;
+
+public class FilesSegmentUploaderTest extends TestCase {
+    private static final String CONTAINER = "logs";
+    private static final String OBJECT_NAME = "2018010100.lzo";
+    private static final int SEGMENT_SIZE = 1000;
+
+    private File file;
+    private byte[] data;
+    private FakeFilesClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        data = new byte[10 * SEGMENT_SIZE + 123];
+        new Random(42).nextBytes(data);
+        file = File.createTempFile("segmentUploader", ".lzo");
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(data);
+        } finally {
+            os.close();
+        }
+        client = new FakeFilesClient(new ThreadSafeClientConnManager());
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    public void testShouldStoreEverySegmentThenTheManifest() throws Exception {
+        CloudFilesSegmentContainer sc = CloudFilesSegmentContainer.newSegmentContainer(file.getAbsolutePath(), SEGMENT_SIZE);
+        final List<Integer> stored = Collections.synchronizedList(new ArrayList<Integer>());
+
+        int count = new FilesSegmentUploader(client, 4).upload(CONTAINER, OBJECT_NAME, sc, null, new FilesSegmentUploader.SegmentListener() {
+            public void segmentStored(CloudFilesSegment segment) {
+                stored.add(segment.getFragNumber());
+            }
+        });
+
+        assertEquals(11, count);
+        assertEquals(11, stored.size());
+        assertEquals(CONTAINER + "/" + OBJECT_NAME + "/", client.manifest);
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (CloudFilesSegment segment : sc.getSegments()) {
+            byte[] bytes = client.objects.get(FilesSegmentUploader.segmentName(OBJECT_NAME, segment.getFragNumber()));
+            assertNotNull(bytes);
+            assertEquals(md5(bytes), segment.getMd5sum());
+            joined.write(bytes);
+        }
+        assertTrue(Arrays.equals(data, joined.toByteArray()));
+    }
+
+    public void testShouldSkipFragsFinishedByAnEarlierAttempt() throws Exception {
+        CloudFilesSegmentContainer sc = CloudFilesSegmentContainer.newSegmentContainer(file.getAbsolutePath(), SEGMENT_SIZE);
+        Set<Integer> finished = new HashSet<Integer>();
+        finished.add(0);
+        finished.add(1);
+        finished.add(2);
+
+        int count = new FilesSegmentUploader(client, 4).upload(CONTAINER, OBJECT_NAME, sc, finished, null);
+
+        assertEquals(8, count);
+        assertEquals(8, client.objects.size());
+        assertFalse(client.objects.containsKey(FilesSegmentUploader.segmentName(OBJECT_NAME, 0)));
+        assertTrue(client.objects.containsKey(FilesSegmentUploader.segmentName(OBJECT_NAME, 10)));
+        assertNotNull(client.manifest);
+    }
+
+    public void testShouldSendSegmentsConcurrentlyUpToMaxWorkers() throws Exception {
+        CloudFilesSegmentContainer sc = CloudFilesSegmentContainer.newSegmentContainer(file.getAbsolutePath(), SEGMENT_SIZE);
+        client.storeMillis = 50;
+
+        new FilesSegmentUploader(client, 3).upload(CONTAINER, OBJECT_NAME, sc, null, null);
+
+        assertTrue("at most " + client.maxInFlight.get() + " in flight", client.maxInFlight.get() > 1);
+        assertTrue("at most " + client.maxInFlight.get() + " in flight", client.maxInFlight.get() <= 3);
+    }
+
+    public void testShouldNotWriteManifestWhenEtagDoesNotMatch() throws Exception {
+        CloudFilesSegmentContainer sc = CloudFilesSegmentContainer.newSegmentContainer(file.getAbsolutePath(), SEGMENT_SIZE);
+        client.badEtag = true;
+        try {
+            new FilesSegmentUploader(client, 4).upload(CONTAINER, OBJECT_NAME, sc, null, null);
+            fail("Expected a FilesException");
+        } catch (FilesException expected) {
+        }
+        assertNull(client.manifest);
+    }
+
+    public void testShouldRaiseConnectionsPerRouteToMaxWorkers() {
+        ThreadSafeClientConnManager cm = new ThreadSafeClientConnManager();
+        int defaultMaxPerRoute = cm.getDefaultMaxPerRoute();
+
+        new FilesSegmentUploader(new FakeFilesClient(cm), 1);
+        assertEquals(defaultMaxPerRoute, cm.getDefaultMaxPerRoute());
+
+        new FilesSegmentUploader(new FakeFilesClient(cm), 32);
+        assertEquals(32, cm.getDefaultMaxPerRoute());
+        assertTrue(cm.getMaxTotal() >= 32);
+    }
+
+    private static String md5(byte[] bytes) throws Exception {
+        return BitConverters.bytes2hex(MessageDigest.getInstance("MD5").digest(bytes));
+    }
+
+    // Keeps what it is sent instead of talking to Cloud Files
+    private static class FakeFilesClient extends FilesClient {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<String, byte[]>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private volatile String manifest;
+        private volatile boolean badEtag;
+        private volatile long storeMillis;
+
+        private FakeFilesClient(ThreadSafeClientConnManager cm) {
+            super(new DefaultHttpClient(cm), "user", "pass", "http://localhost/auth", null, 1000);
+        }
+
+        @Override
+        public String storeObjectAs(String container, String name, HttpEntity entity, Map<String, String> metadata, String md5sum) throws IOException, HttpException, FilesException {
+            int now = inFlight.incrementAndGet();
+            int max;
+            while (now > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, now)) {
+            }
+            try {
+                if (storeMillis > 0) {
+                    Thread.sleep(storeMillis);
+                }
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                entity.writeTo(os);
+                byte[] bytes = os.toByteArray();
+                objects.put(name, bytes);
+                return badEtag ? "0" : md5(bytes);
+            } catch (IOException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new IOException(ex);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean createManifestObject(String container, String contentType, String name, String manifest, Map<String, String> metadata) {
+            this.manifest = manifest;
+            return true;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.rackspace.stingray.client;
 
 import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
 import org.rackspace.stingray.client.bandwidth.Bandwidth;
 import org.rackspace.stingray.client.config.Configuration;
 import org.rackspace.stingray.client.counters.VirtualServerStats;
@@ -37,6 +38,7 @@ import java.util.List;
 
 public class StingrayRestClient extends StingrayRestClientManager {
     private RequestManager requestManager = new RequestManagerImpl();
+    private boolean shared = false;
 
     public StingrayRestClient(URI endpoint, Configuration config, Client client) {
         super(config, endpoint, client, false, null, null);
@@ -54,6 +56,10 @@ public class StingrayRestClient extends StingrayRestClientManager {
         super(null, endpoint, null, false, adminUser, adminKey);
     }
 
+    public StingrayRestClient(URI endpoint, Client client, String adminUser, String adminKey) {
+        super(null, endpoint, client, false, adminUser, adminKey);
+    }
+
     public StingrayRestClient(URI endpoint, boolean isDebugging, String adminUser, String adminKey) {
         super(null, endpoint, null, isDebugging, adminUser, adminKey);
     }
@@ -1123,12 +1129,29 @@ public class StingrayRestClient extends StingrayRestClientManager {
     }
 
     /**
-     * Destroy the StingrayRestClient
+     * Closes the underlying client. Clients handed out by StingrayRestClientRegistry
+     * are shared between callers, so for those this is a no-op and the registry
+     * keeps the pooled connections open.
      */
     public void destroy() {
+        if (!shared) {
+            client.close();
+        }
+    }
+
+    void share() {
+        client.register(HttpAuthenticationFeature.basic(adminUser, adminKey));
+        shared = true;
+    }
+
+    void closeShared() {
         client.close();
     }
 
+    public boolean isShared() {
+        return shared;
+    }
+
     private VirtualServerStatsProperties getZeroStats() {
         VirtualServerStatsProperties props = new VirtualServerStatsProperties();
         props.setConnectTimedOut(0);
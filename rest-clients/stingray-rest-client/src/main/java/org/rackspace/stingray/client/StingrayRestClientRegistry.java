@@ -0,0 +1,200 @@
+package org.rackspace.stingray.client;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.rackspace.stingray.client.config.ClientConfigKeys;
+import org.rackspace.stingray.client.config.Configuration;
+import org.rackspace.stingray.client.config.StingrayRestClientConfiguration;
+import org.rackspace.stingray.client.util.StingrayRestClientUtil;
+
+import javax.ws.rs.client.Client;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out one shared StingrayRestClient per endpoint.
+ * Each client sends its requests over a pool of keep-alive connections to its
+ * Stingray host, so a burst of adapter calls reuses warm TLS connections
+ * instead of paying a new TCP and TLS handshake on every request. Connections
+ * left idle longer than stingray_idle_connection_timeout are closed by a
+ * background evictor.
+ * <p/>
+ * When an endpoint is asked for with other credentials than its client was
+ * built with, the client is replaced. The old one is closed after
+ * stingray_idle_connection_timeout, which gives calls already using it time
+ * to finish.
+ */
+public final class StingrayRestClientRegistry {
+    private static final Log LOG = LogFactory.getLog(StingrayRestClientRegistry.class);
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+    private static final long DEFAULT_IDLE_CONNECTION_TIMEOUT = 60000L;
+    private static final Map<String, PooledClient> clients = new ConcurrentHashMap<String, PooledClient>();
+    private static final Set<PooledClient> retired = Collections.newSetFromMap(new ConcurrentHashMap<PooledClient, Boolean>());
+    private static ScheduledExecutorService evictor;
+
+    private StingrayRestClientRegistry() {
+    }
+
+    /**
+     * Returns the shared client for the endpoint, creating it on first use or
+     * when the credentials have changed. Callers may call destroy() on the
+     * returned client as they always have, it leaves the shared connections
+     * open.
+     *
+     * @param endpoint  The REST endpoint of the Stingray host
+     * @param adminUser The admin user name
+     * @param adminKey  The admin key or password
+     * @return The shared client for these credentials
+     */
+    public static StingrayRestClient getClient(URI endpoint, String adminUser, String adminKey) {
+        String key = endpoint.toString();
+        PooledClient pooled = clients.get(key);
+        if (pooled != null && pooled.hasCredentials(adminUser, adminKey)) {
+            return pooled.restClient;
+        }
+        synchronized (StingrayRestClientRegistry.class) {
+            pooled = clients.get(key);
+            if (pooled == null || !pooled.hasCredentials(adminUser, adminKey)) {
+                PooledClient replaced = pooled;
+                pooled = createPooledClient(new StingrayRestClientConfiguration(), endpoint, adminUser, adminKey);
+                clients.put(key, pooled);
+                startEvictor(pooled.idleTimeout);
+                if (replaced != null) {
+                    retire(replaced);
+                    LOG.info(String.format("Credentials for endpoint %s changed, replaced its pooled Stingray client", endpoint));
+                } else {
+                    LOG.info(String.format("Created pooled Stingray client for endpoint %s with at most %d connections", endpoint, pooled.maxConnections));
+                }
+            }
+        }
+        return pooled.restClient;
+    }
+
+    /**
+     * Closes every shared client and its connections.
+     */
+    public static synchronized void closeAll() {
+        for (PooledClient pooled : clients.values()) {
+            pooled.close();
+        }
+        clients.clear();
+        for (PooledClient pooled : retired) {
+            pooled.close();
+        }
+        retired.clear();
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+    }
+
+    public static int size() {
+        return clients.size();
+    }
+
+    public static int retiredSize() {
+        return retired.size();
+    }
+
+    // Caller holds the class lock, so the evictor is running
+    private static void retire(final PooledClient pooled) {
+        retired.add(pooled);
+        evictor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (retired.remove(pooled)) {
+                    pooled.close();
+                }
+            }
+        }, pooled.idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    private static PooledClient createPooledClient(Configuration config, URI endpoint, String adminUser, String adminKey) {
+        int maxConnections;
+        long idleTimeout;
+        try {
+            maxConnections = Integer.parseInt(config.getString(ClientConfigKeys.stingray_max_connections_per_host));
+        } catch (Exception e) {
+            maxConnections = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+        }
+        try {
+            idleTimeout = Long.parseLong(config.getString(ClientConfigKeys.stingray_idle_connection_timeout));
+        } catch (Exception e) {
+            idleTimeout = DEFAULT_IDLE_CONNECTION_TIMEOUT;
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = StingrayRestClientUtil.ClientHelper.createConnectionManager(maxConnections);
+        Client client = StingrayRestClientUtil.ClientHelper.configurePooledClient(connectionManager);
+        StingrayRestClient restClient = new StingrayRestClient(endpoint, client, adminUser, adminKey);
+        restClient.share();
+        return new PooledClient(restClient, connectionManager, adminUser, adminKey, maxConnections, idleTimeout);
+    }
+
+    private static void startEvictor(long idleTimeout) {
+        if (evictor != null) {
+            return;
+        }
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "stingray-rest-client-evictor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        long period = Math.max(1000L, idleTimeout / 2);
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (PooledClient pooled : clients.values()) {
+                    try {
+                        pooled.connectionManager.closeExpiredConnections();
+                        pooled.connectionManager.closeIdleConnections(pooled.idleTimeout, TimeUnit.MILLISECONDS);
+                    } catch (Exception e) {
+                        LOG.warn("Error evicting idle Stingray connections", e);
+                    }
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private static class PooledClient {
+        private final StingrayRestClient restClient;
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private final String adminUser;
+        private final String adminKey;
+        private final int maxConnections;
+        private final long idleTimeout;
+
+        private PooledClient(StingrayRestClient restClient, PoolingHttpClientConnectionManager connectionManager, String adminUser, String adminKey,
+                             int maxConnections, long idleTimeout) {
+            this.restClient = restClient;
+            this.connectionManager = connectionManager;
+            this.adminUser = adminUser;
+            this.adminKey = adminKey;
+            this.maxConnections = maxConnections;
+            this.idleTimeout = idleTimeout;
+        }
+
+        private boolean hasCredentials(String user, String key) {
+            return equal(adminUser, user) && equal(adminKey, key);
+        }
+
+        private void close() {
+            restClient.closeShared();
+            connectionManager.shutdown();
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
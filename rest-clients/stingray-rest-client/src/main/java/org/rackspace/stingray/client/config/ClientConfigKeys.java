@@ -8,6 +8,8 @@ public enum ClientConfigKeys implements ConfigurationKey {
     stingray_admin_user,
     stingray_admin_key,
     stingray_read_timeout,
-    stingray_connect_timeout
+    stingray_connect_timeout,
+    stingray_max_connections_per_host,
+    stingray_idle_connection_timeout
 
 }
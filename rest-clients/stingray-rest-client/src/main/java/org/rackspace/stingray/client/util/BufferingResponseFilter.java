@@ -0,0 +1,38 @@
+package org.rackspace.stingray.client.util;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the whole response body as soon as it arrives and closes the
+ * underlying stream, which hands a pooled connection back to its pool.
+ * Stingray responses are small configuration documents so holding them
+ * in memory costs less than a connection parked on an unread response.
+ */
+public class BufferingResponseFilter implements ClientResponseFilter {
+
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
+        // Even an empty response holds its connection until the stream is closed
+        InputStream in = responseContext.getEntityStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                body.write(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        responseContext.setEntityStream(new ByteArrayInputStream(body.toByteArray()));
+    }
+}
@@ -2,6 +2,15 @@ package org.rackspace.stingray.client.util;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.jackson.internal.jackson.jaxrs.json.JacksonJsonProvider;
 import org.glassfish.jersey.logging.LoggingFeature;
@@ -22,6 +31,63 @@ public class StingrayRestClientUtil {
     public static class ClientHelper {
 
         public static Client configureClient(boolean isDebugging) {
+            SSLContext ctx = trustAllContext();
+            HttpsURLConnection.setDefaultSSLSocketFactory(ctx.getSocketFactory());
+
+            ClientConfig config = new ClientConfig();
+//            config..getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
+            config.getClasses().add(JacksonJsonProvider.class);
+            config.property(LoggingFeature.LOGGING_FEATURE_LOGGER_NAME, LoggingFeature.Verbosity.PAYLOAD_ANY);
+
+            Client client = ClientBuilder.newBuilder().withConfig(config)
+                    .sslContext(ctx).hostnameVerifier(new HostnameVerifier() {
+                        @Override
+                        public boolean verify(String hostname, SSLSession session) {
+                            return true;
+                        }
+                    }).build();
+            return client;
+        }
+
+        /**
+         * Builds a client that sends its requests through the given pool of
+         * keep-alive connections instead of opening a new one per request.
+         * Response bodies are buffered as they arrive so the connection goes
+         * back to the pool even when the caller never reads or closes the response.
+         *
+         * @param connectionManager The pool shared by every request of this client
+         * @return The pooled client
+         */
+        public static Client configurePooledClient(PoolingHttpClientConnectionManager connectionManager) {
+            ClientConfig config = new ClientConfig();
+            config.connectorProvider(new ApacheConnectorProvider());
+            config.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+            config.property(ApacheClientProperties.CONNECTION_MANAGER_SHARED, true);
+            config.register(JacksonJsonProvider.class);
+            config.property(LoggingFeature.LOGGING_FEATURE_LOGGER_NAME, LoggingFeature.Verbosity.PAYLOAD_ANY);
+            config.register(BufferingResponseFilter.class);
+            return ClientBuilder.newBuilder().withConfig(config).build();
+        }
+
+        /**
+         * Creates the pool of connections for one Stingray endpoint. Stingray
+         * uses self signed certificates so the trust rules match configureClient.
+         *
+         * @param maxConnections The most connections kept open to the endpoint
+         * @return The connection pool
+         */
+        public static PoolingHttpClientConnectionManager createConnectionManager(int maxConnections) {
+            Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", new SSLConnectionSocketFactory(trustAllContext(), NoopHostnameVerifier.INSTANCE))
+                    .build();
+            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+            connectionManager.setMaxTotal(maxConnections);
+            connectionManager.setDefaultMaxPerRoute(maxConnections);
+            return connectionManager;
+        }
+
+        private static SSLContext trustAllContext() {
             TrustManager[] certs = new TrustManager[]{
                     new X509TrustManager() {
                         @Override
@@ -46,21 +112,7 @@ public class StingrayRestClientUtil {
                 ctx.init(null, certs, new SecureRandom());
             } catch (java.security.GeneralSecurityException ex) {
             }
-            HttpsURLConnection.setDefaultSSLSocketFactory(ctx.getSocketFactory());
-
-            ClientConfig config = new ClientConfig();
-//            config..getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-            config.getClasses().add(JacksonJsonProvider.class);
-            config.property(LoggingFeature.LOGGING_FEATURE_LOGGER_NAME, LoggingFeature.Verbosity.PAYLOAD_ANY);
-
-            Client client = ClientBuilder.newBuilder().withConfig(config)
-                    .sslContext(ctx).hostnameVerifier(new HostnameVerifier() {
-                        @Override
-                        public boolean verify(String hostname, SSLSession session) {
-                            return true;
-                        }
-                    }).build();
-            return client;
+            return ctx;
         }
 
         public static Client createClient(boolean isDebugging) {
@@ -0,0 +1,97 @@
+package org.rackspace.stingray.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class StingrayRestClientRegistryTest {
+    private HttpServer server;
+    private URI endpoint;
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private final Set<String> authHeaders = Collections.synchronizedSet(new HashSet<String>());
+
+    @Before
+    public void standUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                authHeaders.add(exchange.getRequestHeaders().getFirst("Authorization"));
+                byte[] body = "{}".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/api/tm/1.0/config/active/");
+    }
+
+    @After
+    public void tearDown() {
+        StingrayRestClientRegistry.closeAll();
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldShareOneClientPerEndpoint() {
+        StingrayRestClient first = StingrayRestClientRegistry.getClient(endpoint, "admin", "key");
+        StingrayRestClient second = StingrayRestClientRegistry.getClient(endpoint, "admin", "key");
+
+        Assert.assertSame(first, second);
+        Assert.assertTrue(first.isShared());
+        Assert.assertEquals(1, StingrayRestClientRegistry.size());
+    }
+
+    @Test
+    public void shouldReplaceClientWhenCredentialsChange() throws Exception {
+        StingrayRestClient first = StingrayRestClientRegistry.getClient(endpoint, "admin", "key");
+        StingrayRestClient rotated = StingrayRestClientRegistry.getClient(endpoint, "admin", "otherKey");
+
+        Assert.assertNotSame(first, rotated);
+        Assert.assertSame(rotated, StingrayRestClientRegistry.getClient(endpoint, "admin", "otherKey"));
+        Assert.assertEquals(1, StingrayRestClientRegistry.size());
+        Assert.assertEquals(1, StingrayRestClientRegistry.retiredSize());
+        // Calls already holding the old client can still finish
+        Assert.assertTrue(first.deleteVirtualServer("vs"));
+        Assert.assertTrue(rotated.deleteVirtualServer("vs"));
+        Assert.assertEquals(2, authHeaders.size());
+    }
+
+    @Test
+    public void shouldReuseConnectionsAcrossCallsAndDestroy() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            StingrayRestClient client = StingrayRestClientRegistry.getClient(endpoint, "admin", "key");
+            Assert.assertTrue(client.deleteVirtualServer("vs" + i));
+            client.destroy();
+        }
+
+        Assert.assertEquals(1, clientPorts.size());
+        Assert.assertEquals(1, authHeaders.size());
+        Assert.assertTrue(authHeaders.iterator().next().startsWith("Basic "));
+    }
+
+    @Test
+    public void shouldForgetClientsOnCloseAll() {
+        StingrayRestClient first = StingrayRestClientRegistry.getClient(endpoint, "admin", "key");
+        StingrayRestClientRegistry.closeAll();
+
+        Assert.assertEquals(0, StingrayRestClientRegistry.size());
+        Assert.assertEquals(0, StingrayRestClientRegistry.retiredSize());
+        Assert.assertNotSame(first, StingrayRestClientRegistry.getClient(endpoint, "admin", "key"));
+    }
+}